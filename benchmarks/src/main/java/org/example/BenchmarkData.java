@@ -0,0 +1,35 @@
+package org.example;
+
+import java.util.SplittableRandom;
+
+/** Deterministic synthetic datasets shared by the benchmarks. */
+final class BenchmarkData {
+
+    private BenchmarkData() { }
+
+    /** Positive, increasing x in [1, 11) with a noisy curve that suits every model's domain. */
+    static double[][] curve(int n, long seed) {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        double[] xs = new double[n], ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            double x = 1 + 10.0 * i / n;
+            xs[i] = x;
+            ys[i] = 2.0 * Math.exp(0.25 * x) + 0.5 * x + rnd.nextGaussian() * 0.2;
+        }
+        return new double[][]{xs, ys};
+    }
+
+    /** The same data as tab-separated text with decimal commas, as Excel pastes it. */
+    static String pastedText(int n, long seed) {
+        double[][] d = curve(n, seed);
+        StringBuilder sb = new StringBuilder(n * 24);
+        for (int i = 0; i < n; i++) {
+            sb.append(format(d[0][i])).append('\t').append(format(d[1][i])).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String format(double v) {
+        return String.format(java.util.Locale.ROOT, "%.6f", v).replace('.', ',');
+    }
+}
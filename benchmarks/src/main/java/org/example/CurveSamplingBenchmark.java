@@ -0,0 +1,39 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** The fit-curve sampling loop behind updateChart, per model family. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CurveSamplingBenchmark {
+
+    @Param({"LINEAR", "POLYNOMIAL", "EXPONENTIAL", "POWER", "LOGARITHMIC", "RECIPROCAL"})
+    public String model;
+
+    @Param({"100", "1000", "10000", "100000", "1000000", "10000000"})
+    public int samples;
+
+    private FitResult fit;
+    private double[] fx, fy;
+
+    @Setup
+    public void setup() {
+        ModelType type = ModelType.valueOf(model);
+        double[] params = type == ModelType.POLYNOMIAL ? new double[]{0.5, -0.25, 0.125, 0.01, -0.001} : new double[]{2.0, 0.25};
+        fit = new FitResult(type, type == ModelType.POLYNOMIAL ? 4 : 0, params, 1, 0, 1, 11);
+        fx = new double[samples];
+        fy = new double[samples];
+    }
+
+    @Benchmark
+    public double[] sampleCurve() {
+        FitEngine.sampleCurve(fit, fit.xmin, fit.xmax, fx, fy);
+        return fy;
+    }
+}
@@ -0,0 +1,61 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link FitEngine#fitModel} per model, and the bare Levenberg–Marquardt driver
+ * {@link FitEngine#fitWithFunction}. Iterative fits stop at 1e6 points to keep runs bounded.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FitModelBenchmark {
+
+    @Param({"LINEAR", "POLYNOMIAL", "EXPONENTIAL", "POWER", "LOGARITHMIC", "RECIPROCAL"})
+    public String model;
+
+    @Param({"100", "1000", "10000", "100000", "1000000"})
+    public int n;
+
+    private double[] xs, ys;
+    private ModelType modelType;
+
+    @Setup
+    public void setup() {
+        double[][] d = BenchmarkData.curve(n, 42);
+        xs = d[0];
+        ys = d[1];
+        modelType = ModelType.valueOf(model);
+    }
+
+    @Benchmark
+    public FitResult fitModel() {
+        return FitEngine.fitModel(xs, ys, modelType, 4, FitMonitor.NONE);
+    }
+
+    /** Exponential LM from a fixed start, without guess or metrics. */
+    @State(Scope.Benchmark)
+    public static class LmState {
+        @Param({"100", "1000", "10000", "100000", "1000000"})
+        public int n;
+
+        double[] xs, ys;
+
+        @Setup
+        public void setup() {
+            double[][] d = BenchmarkData.curve(n, 42);
+            xs = d[0];
+            ys = d[1];
+        }
+    }
+
+    @Benchmark
+    public FitEngine.Solution fitWithFunction(LmState s) {
+        return FitEngine.fitWithFunction(s.xs, s.ys, ModelEvaluator.of(ModelType.EXPONENTIAL, new double[]{1.5, 0.3}), FitMonitor.NONE);
+    }
+}
@@ -0,0 +1,50 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text parsing: the paste path ({@link DelimitedImporter#parse(String)}, which replaced
+ * splitSmart/parseLocalized) and the memory-mapped file path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ImportBenchmark {
+
+    @Param({"100", "1000", "10000", "100000", "1000000", "10000000"})
+    public int n;
+
+    private String text;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        text = BenchmarkData.pastedText(n, 3);
+        file = Files.createTempFile("curvefit-bench", ".tsv");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public DelimitedImporter.Result parsePaste() {
+        return DelimitedImporter.parse(text);
+    }
+
+    @Benchmark
+    public DelimitedImporter.Result importFile() throws IOException {
+        return DelimitedImporter.importFile(file);
+    }
+}
@@ -0,0 +1,63 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scalar against Vector API kernels on the same blocks the fits use. The vector variant needs
+ * the application installed with {@code -Pvector}; the fork adds the incubator module.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class KernelBenchmark {
+
+    @Param({"scalar", "vector"})
+    public String kernels;
+
+    @Param({"1000", "100000", "1000000"})
+    public int n;
+
+    private Kernels k;
+    private double[] xs, ys, out;
+    private final double[] poly = {0.5, -0.25, 0.125, 0.01, -0.001};
+
+    @Setup
+    public void setup() {
+        k = kernels.equals("vector") ? Kernels.vector() : Kernels.scalar();
+        if (k == null) throw new IllegalStateException("Vector kernels unavailable: install the application with -Pvector");
+        double[][] d = BenchmarkData.curve(n, 7);
+        xs = d[0];
+        ys = d[1];
+        out = new double[FitEngine.METRICS_BLOCK];
+    }
+
+    /** Quadratic normal equations: five power sums and three y sums, with the block copy the fit makes. */
+    @Benchmark
+    public double[] powerSums() {
+        double[] lanes = new double[8 * Kernels.LANES];
+        for (int b = 0; b < n; b += FitEngine.METRICS_BLOCK) {
+            int m = Math.min(FitEngine.METRICS_BLOCK, n - b);
+            System.arraycopy(xs, b, out, 0, m);
+            k.powerSums(out, ys, null, b, m, 2, lanes);
+        }
+        return lanes;
+    }
+
+    @Benchmark
+    public double[] residualMoments() {
+        double[] lanes = new double[Kernels.MOMENT_SLOTS];
+        for (int b = 0; b < n; b += FitEngine.METRICS_BLOCK) k.residualMoments(ys, null, b, xs, Math.min(FitEngine.METRICS_BLOCK, n - b), lanes);
+        return lanes;
+    }
+
+    @Benchmark
+    public double[] horner() {
+        for (int b = 0; b < n; b += FitEngine.METRICS_BLOCK) k.horner(poly, xs, b, Math.min(n, b + FitEngine.METRICS_BLOCK), out);
+        return out;
+    }
+}
@@ -0,0 +1,43 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** R²/RMSE pass over the data, the tail of every fit. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    @Param({"100", "1000", "10000", "100000", "1000000", "10000000"})
+    public int n;
+
+    private double[] xs, ys;
+    private final double[] poly = {0.5, -0.25, 0.125, 0.01, -0.001};
+
+    @Setup
+    public void setup() {
+        double[][] d = BenchmarkData.curve(n, 7);
+        xs = d[0];
+        ys = d[1];
+    }
+
+    @Benchmark
+    public FitEngine.Metrics linear() {
+        return FitEngine.metrics(xs, ys, ModelEvaluator.of(ModelType.LINEAR, new double[]{1.0, 2.0}));
+    }
+
+    @Benchmark
+    public FitEngine.Metrics polynomial() {
+        return FitEngine.metrics(xs, ys, ModelEvaluator.of(ModelType.POLYNOMIAL, poly));
+    }
+
+    @Benchmark
+    public FitEngine.Metrics exponential() {
+        return FitEngine.metrics(xs, ys, ModelEvaluator.of(ModelType.EXPONENTIAL, new double[]{2.0, 0.25}));
+    }
+}
@@ -2,81 +2,220 @@ package org.example;
 
 import com.formdev.flatlaf.FlatLaf;
 import com.formdev.flatlaf.themes.FlatMacDarkLaf;
-import org.apache.commons.math3.fitting.PolynomialCurveFitter;
-import org.apache.commons.math3.fitting.SimpleCurveFitter;
-import org.apache.commons.math3.fitting.WeightedObservedPoint;
-import org.apache.commons.math3.analysis.ParametricUnivariateFunction;
 import org.knowm.xchart.*;
 import org.knowm.xchart.style.lines.SeriesLines;
 import org.knowm.xchart.style.markers.SeriesMarkers;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class App {
 
-    enum ModelType {
-        LINEAR("Linear: y = a + b·x"),
-        POLYNOMIAL("Polynomial (degree n)"),
-        EXPONENTIAL("Exponential: y = a·e^(b·x)"),
-        POWER("Power: y = a·x^b"),
-        LOGARITHMIC("Logarithmic: y = a + b·ln(x)"),
-        RECIPROCAL("Reciprocal: y = a + b/x");
-
-        public final String label;
-        ModelType(String label) { this.label = label; }
-        @Override public String toString() { return label; }
-    }
-
-    private final JFrame frame = new JFrame("CurveFit — Quick Regression Calculator");
+    // Created in start(), so the CDS training run can build everything else without a display
+    private JFrame frame;
     private final JComboBox<ModelType> modelCombo = new JComboBox<>(ModelType.values());
     private final JSpinner degreeSpinner = new JSpinner(new SpinnerNumberModel(2, 2, 6, 1));
+    // Breakpoints of a piecewise linear or polynomial fit; 0 fits one curve
+    private final JLabel breaksLabel = new JLabel("Breaks:");
+    private final JSpinner breaksSpinner = new JSpinner(new SpinnerNumberModel(0, 0, SegmentedFit.MAX_BREAKS, 1));
+    // Installed models and this session's formulas; type a new formula to compile it
+    private final JComboBox<Object> formulaCombo = new JComboBox<>(ModelRegistry.all().toArray());
+    private final JComboBox<Object> robustCombo = new JComboBox<>(new Object[]{"Off", RobustFit.Loss.HUBER, RobustFit.Loss.TUKEY});
+    private final JCheckBox intervalsCheck = new JCheckBox("95% intervals", true);
     private final JButton fitButton = new JButton("Fit");
+    private final JButton fitAllButton = new JButton("Fit All");
+    private final JButton cancelButton = new JButton("Cancel");
     private final JButton clearButton = new JButton("Clear Data");
     private final JButton deleteButton = new JButton("Delete Selected Row(s)");
     private final JTextArea pasteArea = new JTextArea(3, 30);
     private final JButton addRowsButton = new JButton("Add from Paste");
     private final JLabel statsLabel = new JLabel(" ");
-    private final JLabel hintLabel = new JLabel("Paste 2 columns from Excel (X and Y). Tabs, commas, semicolons, or spaces accepted.");
+    private final DiagnosticsTableModel diagnosticsModel = new DiagnosticsTableModel();
+    private JScrollPane diagnosticsPanel;
+    // The listener is added when the panel is first shown; until then nothing loads Diagnostics
+    private boolean diagnosticsListening;
+    private final JLabel hintLabel = new JLabel("Paste columns from Excel (X, then one or more Y series; a column headed W holds weights), or open/drop a CSV file. Tabs, commas, semicolons, or spaces accepted.");
 
-    private final DefaultTableModel tableModel = new DefaultTableModel(new Object[]{"X", "Y"}, 0) {
-        @Override public boolean isCellEditable(int row, int column) { return true; }
-        @Override public Class<?> getColumnClass(int columnIndex) { return Double.class; }
-    };
+    private final DataTableModel tableModel = new DataTableModel();
     private final JTable table = new JTable(tableModel);
-
+    private JScrollPane tableScroll;
+    private int sortColumn = -1;
+    private boolean sortAscending;
+    // A file too large for the heap, shown read-only from its mapping instead of the table model
+    private MappedDataset dataset;
+    private double[][] datasetOverview;
+    // Copies an opened project into the table while its mapping is on screen
+    private SwingWorker<?, ?> projectLoad;
+    // Live input feeding the chart, and the choices last made in its dialog
+    private LiveStream live;
+    private final JMenuItem stopLiveItem = new JMenuItem("Stop Live Input");
+    private String liveSource = "localhost:5000";
+    private RollingWindow.Mode liveMode = RollingWindow.Mode.SLIDING;
+    private int liveWindow = 1000, liveHalfLife = 200;
+    private double liveRate = 5;
+
+    // Null until there is something to draw; the placeholder holds the chart's place
     private XYChart chart;
     private XChartPanel<XYChart> chartPanel;
+    private final JPanel chartArea = new JPanel(new BorderLayout());
+    // What the chart shows; the series themselves are rebuilt from this for the current viewport
+    private List<ScatterPyramid> chartData = Collections.emptyList();
+    private List<String> chartDataNames = Collections.emptyList();
+    private List<FitResult> chartFits = Collections.emptyList();
+    private List<String> chartNames = Collections.emptyList();
+    private double viewMin = Double.NaN, viewMax = Double.NaN;
+    // The chart's series belong to the live stream and can be updated in place
+    private boolean liveChart;
+    // Table fingerprint when its last change was handled; sorts leave it as it is
+    private long handledFingerprint;
+
+    // The fit currently running in the background; a new Fit click replaces it
+    private SwingWorker<?, ?> activeFit;
+    // Bootstrap of the fit on screen, started once the fit itself is shown
+    private SwingWorker<?, ?> activeBootstrap;
+    // The fit on screen; linear-in-parameter fits are kept current as the data is edited
+    private FitResult lastFit;
+    // Loss of the fit on screen, null for ordinary least squares (robust fits are not kept current)
+    private RobustFit.Loss lastLoss;
+    // Results on the current data, so repeat fits and model toggles are instant
+    private final FitCache fitCache = new FitCache(FitCache.DEFAULT_CAPACITY);
+    // Convergence settings of the iterative fits, and their last converged parameters per model
+    private FitSettings fitSettings = FitSettings.DEFAULT;
+    private final Map<ModelType, double[]> warmStarts = new EnumMap<>(ModelType.class);
+    private final Map<CurveModel, double[]> customWarmStarts = new HashMap<>();
+
+    // "Fit all" ranking window, reused between runs
+    private JDialog rankingDialog;
+    private final JComboBox<FitRanking.Criterion> criterionCombo = new JComboBox<>(FitRanking.Criterion.values());
+    private final JSpinner topNSpinner = new JSpinner(new SpinnerNumberModel(3, 1, 10, 1));
+    private final RankingTableModel rankingModel = new RankingTableModel();
+    private double[] rankedXs, rankedYs;
+
+    // Per-series results of the last multi-series fit
+    private JDialog seriesDialog;
+    private final SeriesTableModel seriesModel = new SeriesTableModel();
+
+    // X, the Y series and a weight column
+    private static final int IMPORT_COLUMNS = DataTableModel.MAX_SERIES + 2;
+    // Files from this size on are converted to a mapped column file instead of loaded
+    private static final long MAPPED_IMPORT_BYTES = 256L << 20;
+    // X buckets of the chart's overview of a mapped dataset
+    private static final int OVERVIEW_BUCKETS = 4096;
+    // Loaded by warmUp() after the window shows, rather than by the first fit or chart
+    private static final String[] WARM_UP_CLASSES = {
+            "org.example.FitEngine", "org.apache.commons.math3.fitting.leastsquares.LevenbergMarquardtOptimizer",
+            "org.apache.commons.math3.fitting.leastsquares.LeastSquaresBuilder", "org.apache.commons.math3.linear.Array2DRowRealMatrix",
+            "org.knowm.xchart.XYChart", "org.knowm.xchart.XChartPanel", "org.knowm.xchart.style.XYStyler"
+    };
+
+    private static final Color[] FIT_COLORS = {
+            new Color(255, 109, 132), new Color(255, 200, 87), new Color(134, 224, 124),
+            new Color(198, 146, 255), new Color(255, 160, 90), new Color(120, 220, 220)
+    };
 
     public static void main(String[] args) {
+        Startup.begin();
+        // Headless batch mode skips the look and feel and never creates a window
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--startup-training")) {
+            trainStartup();
+            return;
+        }
         // Modern, “sexy” dark theme
         FlatLaf.setup(new FlatMacDarkLaf());
+        Startup.mark("look and feel");
         SwingUtilities.invokeLater(() -> new App().start());
     }
 
     private void start() {
+        frame = new JFrame("CurveFit — Quick Regression Calculator");
         frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
         frame.setMinimumSize(new Dimension(1200, 720));
-        frame.setLayout(new BorderLayout());
-        frame.add(buildTopBar(), BorderLayout.NORTH);
-        frame.add(buildMainSplit(), BorderLayout.CENTER);
-        frame.add(buildBottomBar(), BorderLayout.SOUTH);
+        frame.setJMenuBar(buildMenuBar());
+        frame.setContentPane(buildContent());
+
+        // Drop CSV/TSV files onto the window to import them
+        FileDropHandler dropHandler = new FileDropHandler();
+        frame.setTransferHandler(dropHandler);
+        tableScroll.setTransferHandler(dropHandler);
+        chartArea.setTransferHandler(dropHandler);
+        Startup.mark("frame");
+
+        frame.addWindowListener(new WindowAdapter() {
+            @Override public void windowOpened(WindowEvent e) {
+                Startup.windowShown();
+                warmUp();
+            }
+        });
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+    }
+
+    /** The window's contents, wired up; needs no window, so it also builds headless. */
+    private JPanel buildContent() {
+        JPanel content = new JPanel(new BorderLayout());
+        content.add(buildTopBar(), BorderLayout.NORTH);
+        content.add(buildMainSplit(), BorderLayout.CENTER);
+        content.add(buildBottomBar(), BorderLayout.SOUTH);
 
         modelCombo.addActionListener(e -> degreeSpinner.setVisible(getSelectedModel() == ModelType.POLYNOMIAL));
         degreeSpinner.setVisible(getSelectedModel() == ModelType.POLYNOMIAL);
+        modelCombo.addActionListener(e -> updateBreaksVisible());
+        updateBreaksVisible();
+        breaksSpinner.setToolTipText("Fit this many regime changes, each segment with its own curve; 0 for one curve");
+        modelCombo.addActionListener(e -> formulaCombo.setVisible(getSelectedModel() == ModelType.CUSTOM));
+        formulaCombo.setVisible(getSelectedModel() == ModelType.CUSTOM);
+        formulaCombo.setEditable(true);
+        formulaCombo.setPrototypeDisplayValue("a*exp(-b*x) + c*sin(d*x)");
+        formulaCombo.setToolTipText("Formula in x, e.g. a*exp(-b*x)+c; other names are the parameters");
+        // The live stream refits whatever model is selected
+        modelCombo.addActionListener(e -> updateLiveModel());
+        degreeSpinner.addChangeListener(e -> updateLiveModel());
 
         fitButton.addActionListener(e -> doFit());
+        fitAllButton.addActionListener(e -> doFitAll());
+        cancelButton.addActionListener(e -> cancelFit());
+        cancelButton.setEnabled(false);
         addRowsButton.addActionListener(e -> addRowsFromPaste());
-        clearButton.addActionListener(e -> tableModel.setRowCount(0));
+        clearButton.addActionListener(e -> clearData());
         deleteButton.addActionListener(e -> deleteSelectedRows());
+        tableModel.addTableModelListener(e -> {
+            long fingerprint = tableModel.fingerprint();
+            // A sort, or an edit that changes nothing, leaves the fit and the chart as they are
+            if (fingerprint == handledFingerprint) return;
+            handledFingerprint = fingerprint;
+            fitCache.retain(fingerprint);
+            refitIncrementally();
+        });
 
         // Enable DEL key to delete selected rows
         table.addKeyListener(new KeyAdapter() {
@@ -84,9 +223,107 @@ public class App {
                 if (e.getKeyCode() == KeyEvent.VK_DELETE) deleteSelectedRows();
             }
         });
+        return content;
+    }
 
-        frame.setLocationRelativeTo(null);
-        frame.setVisible(true);
+    /**
+     * Loads what the first fit and the first chart need, and registers the diagnostics MBean,
+     * on a background thread once the window is up, so none of it delays the window.
+     */
+    private static void warmUp() {
+        Thread t = new Thread(() -> {
+            long start = System.nanoTime();
+            Diagnostics.registerMBean();
+            try {
+                for (String name : WARM_UP_CLASSES) Class.forName(name);
+            } catch (ClassNotFoundException ex) {
+                // Loaded on first use instead
+            }
+            Startup.background("warm-up", System.nanoTime() - start);
+        }, "curvefit-warm-up");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        t.start();
+    }
+
+    /**
+     * The training run behind the {@code cds} Maven profile: builds the window's contents
+     * headless, fits every built-in model and paints a chart, then exits, so that
+     * {@code -XX:ArchiveClassesAtExit} archives the classes a session starts with.
+     */
+    private static void trainStartup() {
+        FlatLaf.setup(new FlatMacDarkLaf());
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                // The menu bar needs a display for its shortcut keys; it is a small part anyway
+                App app = new App();
+                JPanel content = app.buildContent();
+                content.setSize(1200, 720);
+                content.doLayout();
+                double[] xs = new double[64], ys = new double[64];
+                for (int i = 0; i < xs.length; i++) {
+                    xs[i] = 1 + i * 0.25;
+                    ys[i] = 2 * Math.exp(0.1 * xs[i]) + Math.sin(i);
+                }
+                app.tableModel.addRows(xs, ys, xs.length);
+                for (ModelType model : ModelType.values()) {
+                    if (model == ModelType.CUSTOM) continue;
+                    try {
+                        app.lastFit = FitEngine.fitModel(xs, ys, null, model, 2, null, FitSettings.DEFAULT, FitMonitor.NONE);
+                    } catch (IllegalArgumentException ex) {
+                        // Not every model fits every data set
+                    }
+                }
+                // XChartPanel needs a display too; the chart is drawn straight into an image
+                app.chart = newChart();
+                app.rebuildChart(Collections.singletonList(new ScatterPyramid(xs, ys)), Collections.singletonList("Data"),
+                        Collections.singletonList(app.lastFit), Collections.singletonList("Fit"));
+                BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g = image.createGraphics();
+                app.chart.paint(g, 800, 600);
+                g.dispose();
+            });
+        } catch (InterruptedException | InvocationTargetException ex) {
+            throw new IllegalStateException("Startup training failed", ex);
+        }
+    }
+
+    private JMenuBar buildMenuBar() {
+        JMenuBar bar = new JMenuBar();
+        JMenu file = new JMenu("File");
+        JMenuItem open = new JMenuItem("Open…");
+        open.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_O, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
+        open.addActionListener(e -> chooseAndImportFile());
+        file.add(open);
+        JMenuItem openProject = new JMenuItem("Open Project…");
+        openProject.addActionListener(e -> chooseAndOpenProject());
+        file.add(openProject);
+        JMenuItem saveProject = new JMenuItem("Save Project…");
+        saveProject.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_S, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
+        saveProject.addActionListener(e -> chooseAndSaveProject());
+        file.add(saveProject);
+        file.addSeparator();
+        JMenuItem liveInput = new JMenuItem("Live Input…");
+        liveInput.addActionListener(e -> chooseLiveInput());
+        file.add(liveInput);
+        stopLiveItem.addActionListener(e -> {
+            stopLive();
+            statsLabel.setText("Live input stopped.");
+        });
+        stopLiveItem.setEnabled(false);
+        file.add(stopLiveItem);
+        bar.add(file);
+        JMenu fit = new JMenu("Fit");
+        JMenuItem convergence = new JMenuItem("Convergence Settings…");
+        convergence.addActionListener(e -> editFitSettings());
+        fit.add(convergence);
+        bar.add(fit);
+        JMenu view = new JMenu("View");
+        JCheckBoxMenuItem diagnostics = new JCheckBoxMenuItem("Diagnostics");
+        diagnostics.addActionListener(e -> showDiagnostics(diagnostics.isSelected()));
+        view.add(diagnostics);
+        bar.add(view);
+        return bar;
     }
 
     private JPanel buildTopBar() {
@@ -102,11 +339,19 @@ public class App {
         left.add(modelCombo);
         left.add(degreeLbl);
         left.add(degreeSpinner);
+        left.add(breaksLabel);
+        left.add(breaksSpinner);
+        left.add(formulaCombo);
+        left.add(new JLabel("Robust:"));
+        left.add(robustCombo);
+        left.add(intervalsCheck);
 
         JPanel right = new JPanel();
         right.setOpaque(false);
         right.setLayout(new FlowLayout(FlowLayout.RIGHT, 10, 0));
         right.add(fitButton);
+        right.add(fitAllButton);
+        right.add(cancelButton);
         right.add(deleteButton);
         right.add(clearButton);
 
@@ -144,8 +389,17 @@ public class App {
         JPanel tablePanel = new JPanel(new BorderLayout());
         tablePanel.setBorder(BorderFactory.createTitledBorder("Data (editable) — select rows and press Delete to remove"));
         table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
-        table.setAutoCreateRowSorter(true);
-        JScrollPane tableScroll = new JScrollPane(table);
+        // Header clicks sort the primitive columns in place (a RowSorter would box every cell)
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override public void mouseClicked(MouseEvent e) {
+                int col = table.convertColumnIndexToModel(table.columnAtPoint(e.getPoint()));
+                if (col < 0 || dataset != null) return;
+                sortAscending = col != sortColumn || !sortAscending;
+                sortColumn = col;
+                tableModel.sortBy(col, sortAscending);
+            }
+        });
+        tableScroll = new JScrollPane(table);
         tablePanel.add(tableScroll, BorderLayout.CENTER);
 
         panel.add(pastePanel, BorderLayout.NORTH);
@@ -155,7 +409,48 @@ public class App {
     }
 
     private JPanel buildChartPanel() {
-        chart = new XYChartBuilder()
+        chartArea.setBorder(new EmptyBorder(10, 12, 10, 12));
+        JLabel placeholder = new JLabel("The chart appears here once there is data to show.", SwingConstants.CENTER);
+        placeholder.setForeground(new Color(150, 150, 150));
+        chartArea.add(placeholder, BorderLayout.CENTER);
+        return chartArea;
+    }
+
+    /**
+     * Creates the chart on first use. XChart and its fonts are the slowest part of the window
+     * to build, and an empty chart shows nothing the placeholder does not.
+     */
+    private void ensureChart() {
+        if (chart != null) return;
+        chart = newChart();
+        chartPanel = new XChartPanel<XYChart>(chart) {
+            @SuppressWarnings("try")
+            @Override protected void paintComponent(Graphics g) {
+                try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.PAINT, chartPoints())) {
+                    super.paintComponent(g);
+                }
+            }
+        };
+        // Wheel zooms around the cursor, double-click resets; both re-decimate for the new view
+        chartPanel.addMouseWheelListener(e -> zoomChart(chart.getChartXFromCoordinate(e.getX()),
+                Math.pow(0.8, -e.getPreciseWheelRotation())));
+        chartPanel.addMouseListener(new MouseAdapter() {
+            @Override public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) resetZoom();
+            }
+        });
+        chartPanel.addComponentListener(new ComponentAdapter() {
+            @Override public void componentResized(ComponentEvent e) { refreshChartView(); }
+        });
+        chartPanel.setTransferHandler(chartArea.getTransferHandler());
+        chartArea.removeAll();
+        chartArea.add(chartPanel, BorderLayout.CENTER);
+        chartArea.revalidate();
+    }
+
+    // An empty chart in the window's dark styling
+    private static XYChart newChart() {
+        XYChart chart = new XYChartBuilder()
                 .width(800).height(600)
                 .title("Curve Fit")
                 .xAxisTitle("X").yAxisTitle("Y")
@@ -172,12 +467,15 @@ public class App {
         chart.getStyler().setChartFontColor(new Color(230, 230, 230));
         chart.getStyler().setAxisTickLabelsColor(new Color(220, 220, 220));
         chart.getStyler().setMarkerSize(6);
+        return chart;
+    }
 
-        chartPanel = new XChartPanel<>(chart);
-        JPanel wrapper = new JPanel(new BorderLayout());
-        wrapper.setBorder(new EmptyBorder(10, 12, 10, 12));
-        wrapper.add(chartPanel, BorderLayout.CENTER);
-        return wrapper;
+    // Empties the chart, if it was ever created
+    private void clearChart() {
+        chartData = Collections.emptyList();
+        if (chart == null) return;
+        chart.getSeriesMap().clear();
+        chartPanel.repaint();
     }
 
     private JPanel buildBottomBar() {
@@ -185,436 +483,1642 @@ public class App {
         bottom.setBorder(new EmptyBorder(8, 12, 12, 12));
         statsLabel.setText("Ready. Add data → choose model → Fit");
         bottom.add(statsLabel, BorderLayout.WEST);
+
+        JTable diagnosticsTable = new JTable(diagnosticsModel);
+        diagnosticsTable.setFillsViewportHeight(true);
+        diagnosticsPanel = new JScrollPane(diagnosticsTable);
+        diagnosticsPanel.setPreferredSize(new Dimension(620, 190));
+        diagnosticsPanel.setVisible(false);
+        bottom.add(diagnosticsPanel, BorderLayout.EAST);
         return bottom;
     }
 
+    private void showDiagnostics(boolean show) {
+        if (show && !diagnosticsListening) {
+            // Spans end on worker and pool threads; the table refreshes on the EDT, and only while shown
+            Diagnostics.get().addListener(() -> {
+                if (diagnosticsPanel.isVisible()) SwingUtilities.invokeLater(diagnosticsModel::fireTableDataChanged);
+            });
+            diagnosticsListening = true;
+        }
+        diagnosticsPanel.setVisible(show);
+        if (show) diagnosticsModel.fireTableDataChanged();
+        frame.revalidate();
+    }
+
+    /** Latest sample of each pipeline phase, for the diagnostics panel. */
+    @SuppressWarnings("serial")
+    private static class DiagnosticsTableModel extends javax.swing.table.AbstractTableModel {
+        private static final String[] COLUMNS = {"Phase", "ms", "Points", "Mpts/s", "Allocated", "Iter/Eval"};
+        private static final Diagnostics.Phase[] PHASES = Diagnostics.Phase.values();
+
+        @Override public int getRowCount() { return PHASES.length; }
+        @Override public int getColumnCount() { return COLUMNS.length; }
+        @Override public String getColumnName(int column) { return COLUMNS[column]; }
+
+        @Override public Object getValueAt(int row, int column) {
+            Diagnostics.Phase phase = PHASES[row];
+            if (column == 0) return phase.label;
+            Diagnostics.Sample s = Diagnostics.get().latest(phase);
+            if (s == null) return "";
+            switch (column) {
+                case 1: return new DecimalFormat("0.00").format(s.millis());
+                case 2: return s.points;
+                case 3: return new DecimalFormat("0.00").format(s.pointsPerSecond() / 1e6);
+                case 4: return s.allocatedBytes < 0 ? "n/a" : new DecimalFormat("0.0").format(s.allocatedBytes / 1048576.0) + " MB";
+                default: return s.evaluations > 0 ? s.iterations + " / " + s.evaluations : "";
+            }
+        }
+    }
+
+    private void updateBreaksVisible() {
+        boolean segmentable = isSegmentable(getSelectedModel());
+        breaksLabel.setVisible(segmentable);
+        breaksSpinner.setVisible(segmentable);
+    }
+
+    private static boolean isSegmentable(ModelType model) {
+        return model == ModelType.LINEAR || model == ModelType.POLYNOMIAL;
+    }
+
     private ModelType getSelectedModel() {
         return (ModelType) modelCombo.getSelectedItem();
     }
 
+    /** The formula or installed model in the formula box, compiled on first use; null after reporting an error. */
+    private CurveModel getSelectedFormula() {
+        Object item = formulaCombo.getSelectedItem();
+        if (item instanceof CurveModel) return (CurveModel) item;
+        String text = item == null ? "" : item.toString().trim();
+        CurveModel model;
+        try {
+            model = ModelRegistry.resolve(text);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(frame, ex.getMessage(), "Formula Error", JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
+        if (((DefaultComboBoxModel<Object>) formulaCombo.getModel()).getIndexOf(model) < 0) formulaCombo.addItem(model);
+        formulaCombo.setSelectedItem(model);
+        return model;
+    }
+
     private void addRowsFromPaste() {
         String text = pasteArea.getText().trim();
         if (text.isEmpty()) return;
+        if (dataset != null) {
+            JOptionPane.showMessageDialog(frame, "A mapped dataset is read-only. Clear Data to go back to the editable table.",
+                    "Read-only Data", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
 
-        int added = 0;
-        for (String line : text.split("\\R")) {
-            if (line.trim().isEmpty()) continue;
+        DelimitedImporter.Result parsed = DelimitedImporter.parse(text, IMPORT_COLUMNS);
+        addImportedRows(parsed);
 
-            String[] tokens = splitSmart(line.trim());
-            if (tokens.length < 2) continue;
+        if (parsed.rows() == 0) {
+            JOptionPane.showMessageDialog(frame,
+                    "Could not parse any rows. Expecting X and one or more Y values per line (weights in a column headed w).",
+                    "Parse Warning", JOptionPane.WARNING_MESSAGE);
+        } else if (parsed.raggedRows > 0) {
+            JOptionPane.showMessageDialog(frame,
+                    parsed.raggedRows + " row" + (parsed.raggedRows == 1 ? " has" : "s have") + " more cells than the first row; the extra cells were ignored.",
+                    "Parse Warning", JOptionPane.WARNING_MESSAGE);
+        }
+    }
 
-            try {
-                // Replace decimal comma with dot for locales that use comma
-                double x = parseLocalized(tokens[0]);
-                double y = parseLocalized(tokens[1]);
-                tableModel.addRow(new Object[]{x, y});
-                added++;
-            } catch (NumberFormatException ignored) {
+    /** Appends parsed rows: X, every Y series and the weight column if there is one. */
+    private void addImportedRows(DelimitedImporter.Result parsed) {
+        int[] columns = parsed.seriesColumns();
+        if (parsed.rows() == 0 || columns.length == 0) return;
+        List<double[]> series = new ArrayList<>(columns.length);
+        String[] names = new String[columns.length];
+        for (int s = 0; s < columns.length; s++) {
+            series.add(parsed.columns.get(columns[s]).buffer());
+            if (parsed.header != null && columns[s] < parsed.header.length) names[s] = parsed.header[columns[s]];
+        }
+        DoubleColumn weights = parsed.weights();
+        tableModel.addRows(parsed.xs().buffer(), series, names, weights == null ? null : weights.buffer(), parsed.rows());
+        int invalid = parsed.invalidWeights();
+        if (invalid > 0) {
+            JOptionPane.showMessageDialog(frame,
+                    invalid + " weight" + (invalid == 1 ? " was" : "s were") + " blank or negative and count" + (invalid == 1 ? "s" : "") + " as 1.",
+                    "Weight Warning", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    private void chooseAndImportFile() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("Delimited text, column file or project (csv, tsv, txt, cfcol, cfproj)", "csv", "tsv", "txt", "dat", "cfcol", "cfproj"));
+        if (chooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
+            importFile(chooser.getSelectedFile().toPath());
+        }
+    }
+
+    /**
+     * Parses the file off the EDT, then appends all rows with a single table event. Column
+     * files, and delimited files too large for the table, are opened as a mapped dataset.
+     */
+    private void importFile(Path path) {
+        if (path.getFileName().toString().endsWith(ProjectFile.EXTENSION)) {
+            openProject(path);
+            return;
+        }
+        try {
+            if (path.getFileName().toString().endsWith(MappedDataset.EXTENSION) || Files.size(path) >= MAPPED_IMPORT_BYTES) {
+                openDataset(path);
+                return;
             }
+        } catch (IOException ex) {
+            // Unreadable: the ordinary import below reports it
+        }
+        if (dataset != null) {
+            JOptionPane.showMessageDialog(frame, "A mapped dataset is read-only. Clear Data to go back to the editable table.",
+                    "Read-only Data", JOptionPane.WARNING_MESSAGE);
+            return;
         }
+        statsLabel.setText("Importing " + path.getFileName() + " …");
+        long start = System.nanoTime();
+        new SwingWorker<DelimitedImporter.Result, Void>() {
+            @Override protected DelimitedImporter.Result doInBackground() throws IOException {
+                return DelimitedImporter.importFile(path, IMPORT_COLUMNS);
+            }
 
-        if (added == 0) {
-            JOptionPane.showMessageDialog(frame,
-                    "Could not parse any rows. Expecting two numeric columns per line.",
-                    "Parse Warning", JOptionPane.WARNING_MESSAGE);
+            @Override protected void done() {
+                try {
+                    DelimitedImporter.Result parsed = get();
+                    addImportedRows(parsed);
+                    long ms = (System.nanoTime() - start) / 1_000_000;
+                    statsLabel.setText("Imported " + parsed.rows() + " rows from " + path.getFileName()
+                            + (parsed.skippedLines > 0 ? " (" + parsed.skippedLines + " lines skipped)" : "")
+                            + (parsed.raggedRows > 0 ? " (" + parsed.raggedRows + " rows had extra cells, ignored)" : "")
+                            + " in " + ms + " ms");
+                    if (parsed.rows() == 0) {
+                        JOptionPane.showMessageDialog(frame,
+                                "Could not parse any rows. Expecting X and one or more Y values per line (weights in a column headed w).",
+                                "Parse Warning", JOptionPane.WARNING_MESSAGE);
+                    }
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+                    statsLabel.setText("Import failed.");
+                    JOptionPane.showMessageDialog(frame,
+                            "Could not read " + path.getFileName() + ": " + cause.getMessage(),
+                            "Import Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Converts a large delimited file to a temporary column file once (column files are used
+     * as they are), maps it and shows it read-only. The chart gets a min-max overview.
+     */
+    private void openDataset(Path path) {
+        statsLabel.setText("Mapping " + path.getFileName() + " …");
+        long start = System.nanoTime();
+        new SwingWorker<MappedDataset, Void>() {
+            private double[][] overview;
+
+            @Override protected MappedDataset doInBackground() throws IOException {
+                MappedDataset data = path.getFileName().toString().endsWith(MappedDataset.EXTENSION)
+                        ? MappedDataset.open(path) : MappedDataset.convert(path, IMPORT_COLUMNS);
+                try {
+                    if (data.yColumn() >= data.columns()) throw new IOException("The file has no Y column.");
+                    StreamingFit.Summary summary = StreamingFit.summarize(data, data.yColumn(), FitMonitor.NONE);
+                    overview = StreamingFit.overview(data, data.yColumn(), summary, OVERVIEW_BUCKETS, FitMonitor.NONE);
+                    return data;
+                } catch (IOException | RuntimeException ex) {
+                    data.close();
+                    throw ex;
+                }
+            }
+
+            @Override protected void done() {
+                try {
+                    MappedDataset data = get();
+                    stopLive();
+                    if (activeFit != null) activeFit.cancel(true);
+                    activeFit = null;
+                    cancelBootstrap();
+                    closeDataset();
+                    dataset = data;
+                    datasetOverview = overview;
+                    lastFit = null;
+                    table.setModel(new MappedTableModel(data));
+                    if (overview[0].length > 0) updateChart(overview[0], overview[1], Collections.emptyList(), Collections.emptyList());
+                    long ms = (System.nanoTime() - start) / 1_000_000;
+                    statsLabel.setText("Mapped " + data.rows() + " rows from " + path.getFileName() + " in " + ms + " ms (read-only)"
+                            + (data.rows() > MappedTableModel.MAX_ROWS ? "; the table lists the first " + MappedTableModel.MAX_ROWS : ""));
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+                    statsLabel.setText("Import failed.");
+                    JOptionPane.showMessageDialog(frame,
+                            "Could not read " + path.getFileName() + ": " + cause.getMessage(),
+                            "Import Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    private void closeDataset() {
+        if (projectLoad != null) projectLoad.cancel(true);
+        projectLoad = null;
+        if (dataset == null) return;
+        try {
+            dataset.close();
+        } catch (IOException ex) {
+            // Nothing left to release
         }
+        dataset = null;
+        datasetOverview = null;
     }
 
-    private static double parseLocalized(String s) {
-        s = s.trim();
-        // allow decimal comma
-        if (s.indexOf(',') >= 0 && s.indexOf('.') < 0) {
-            s = s.replace(',', '.');
+    private void chooseAndSaveProject() {
+        if (live != null) {
+            showLiveRunning();
+            return;
+        }
+        if (projectLoad != null) {
+            JOptionPane.showMessageDialog(frame, "The project is still being loaded into the table.", "Save Project",
+                    JOptionPane.INFORMATION_MESSAGE);
+            return;
         }
-        return Double.parseDouble(s);
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("CurveFit project (cfproj)", ProjectFile.EXTENSION.substring(1)));
+        if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) return;
+        Path path = chooser.getSelectedFile().toPath();
+        if (!path.getFileName().toString().endsWith(ProjectFile.EXTENSION)) path = path.resolveSibling(path.getFileName() + ProjectFile.EXTENSION);
+        saveProject(path);
     }
 
     /**
-     * Splits a line robustly for Excel paste:
-     * 1) Try tab/semicolon first; 2) then multiple spaces; 3) finally comma.
-     * This prevents breaking decimals that use comma if tab-delimited.
+     * Writes the data, the selected model and the fits to a project file off the EDT. The
+     * table is copied first, so editing while it saves does not change what is written.
      */
-    private static String[] splitSmart(String line) {
-        String[] t = line.split("[\\t;]+");
-        if (t.length >= 2) return trimAll(t);
-        t = line.trim().split("\\s+");
-        if (t.length >= 2) return trimAll(t);
-        t = line.split(",");
-        return trimAll(t);
+    private void saveProject(Path path) {
+        Object formula = formulaCombo.getSelectedItem();
+        RobustFit.Loss loss = robustCombo.getSelectedItem() instanceof RobustFit.Loss ? (RobustFit.Loss) robustCombo.getSelectedItem() : null;
+        MappedDataset data = dataset;
+        long fingerprint = tableModel.fingerprint();
+        Map<FitCache.Key, FitResult> fits = new LinkedHashMap<>();
+        if (data == null) {
+            for (Map.Entry<FitCache.Key, FitResult> e : fitCache.entries().entrySet()) {
+                if (e.getKey().fingerprint == fingerprint) fits.put(e.getKey(), e.getValue());
+            }
+        }
+        double[][] columns = data == null ? tableModel.columns() : null;
+        ProjectFile.Session session = new ProjectFile.Session(data != null, columns != null && columns.length > tableModel.seriesCount() + 1,
+                getSelectedModel(), (Integer) degreeSpinner.getValue(),
+                formula instanceof CurveModel ? ((CurveModel) formula).name() : formula == null ? "" : formula.toString().trim(),
+                loss, fingerprint, lastFit, lastLoss, fits);
+        String[] names = null;
+        if (columns != null) {
+            names = new String[columns.length];
+            names[0] = "X";
+            for (int s = 0; s < tableModel.seriesCount(); s++) names[1 + s] = tableModel.header(s);
+            if (session.weighted) names[names.length - 1] = "W";
+        }
+        String[] columnNames = names;
+        statsLabel.setText("Saving " + path.getFileName() + " …");
+        long start = System.nanoTime();
+        new SwingWorker<Void, Void>() {
+            @Override protected Void doInBackground() throws IOException {
+                if (data != null) ProjectFile.save(path, data, session);
+                else ProjectFile.save(path, columns, columnNames, session);
+                return null;
+            }
+
+            @Override protected void done() {
+                try {
+                    get();
+                    long ms = (System.nanoTime() - start) / 1_000_000;
+                    statsLabel.setText("Saved " + path.getFileName() + " in " + ms + " ms");
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+                    statsLabel.setText("Save failed.");
+                    JOptionPane.showMessageDialog(frame, "Could not save " + path.getFileName() + ": " + cause.getMessage(),
+                            "Save Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
     }
 
-    private static String[] trimAll(String[] arr) {
-        String[] out = new String[arr.length];
-        for (int i = 0; i < arr.length; i++) out[i] = arr[i].trim();
-        return out;
+    private void chooseAndOpenProject() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("CurveFit project (cfproj)", ProjectFile.EXTENSION.substring(1)));
+        if (chooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) openProject(chooser.getSelectedFile().toPath());
     }
 
-    private void deleteSelectedRows() {
-        int[] selected = table.getSelectedRows();
-        if (selected.length == 0) return;
+    /**
+     * Maps a project and restores the model selection, the chart and the fit on screen from its
+     * session alone. The data stays in the mapping, shown read-only, until a {@link ProjectLoader}
+     * has copied it into the table; projects saved from a mapped dataset stay mapped.
+     */
+    private void openProject(Path path) {
+        statsLabel.setText("Opening " + path.getFileName() + " …");
+        long start = System.nanoTime();
+        new SwingWorker<ProjectFile.Opened, Void>() {
+            @Override protected ProjectFile.Opened doInBackground() throws IOException {
+                return ProjectFile.open(path);
+            }
+
+            @Override protected void done() {
+                ProjectFile.Opened opened;
+                try {
+                    opened = get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+                    statsLabel.setText("Open failed.");
+                    JOptionPane.showMessageDialog(frame, "Could not open " + path.getFileName() + ": " + cause.getMessage(),
+                            "Open Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                ProjectFile.Session session = opened.session;
+                stopLive();
+                if (activeFit != null) activeFit.cancel(true);
+                activeFit = null;
+                cancelButton.setEnabled(false);
+                cancelBootstrap();
+                closeDataset();
+                restoreSelection(session);
+                dataset = opened.data;
+                datasetOverview = session.overviews[0];
+                lastFit = session.shown;
+                lastLoss = session.shownLoss;
+                table.setModel(new MappedTableModel(opened.data));
+                showProjectChart(opened.data, session);
+                long ms = (System.nanoTime() - start) / 1_000_000;
+                String opening = "Opened " + path.getFileName() + " (" + opened.data.rows() + " rows) in " + ms + " ms";
+                if (session.mapped) {
+                    statsLabel.setText(opening + " (read-only)");
+                    return;
+                }
+                statsLabel.setText(opening + "; loading the table …");
+                ProjectLoader loader = new ProjectLoader(opened.data, session);
+                projectLoad = loader;
+                loader.execute();
+            }
+        }.execute();
+    }
+
+    private void restoreSelection(ProjectFile.Session session) {
+        modelCombo.setSelectedItem(session.model);
+        degreeSpinner.setValue(Math.max(2, Math.min(6, session.degree)));
+        if (!session.formula.isEmpty()) {
+            try {
+                CurveModel model = ModelRegistry.resolve(session.formula);
+                if (((DefaultComboBoxModel<Object>) formulaCombo.getModel()).getIndexOf(model) < 0) formulaCombo.addItem(model);
+                formulaCombo.setSelectedItem(model);
+            } catch (IllegalArgumentException ex) {
+                // Shown as typed; Fit reports the error
+                formulaCombo.setSelectedItem(session.formula);
+            }
+        }
+        robustCombo.setSelectedItem(session.loss != null ? session.loss : "Off");
+    }
 
-        // Convert view index to model index and delete from bottom up
-        Arrays.sort(selected);
-        for (int i = selected.length - 1; i >= 0; i--) {
-            tableModel.removeRow(table.convertRowIndexToModel(selected[i]));
+    // The saved overview of each series and the fit on screen, drawn before any data is read
+    private void showProjectChart(MappedDataset data, ProjectFile.Session session) {
+        int[] series = ProjectFile.seriesColumns(data, session);
+        // A mapped dataset is charted and fitted by its first series only
+        int shown = session.mapped ? 1 : series.length;
+        List<ScatterPyramid> scatters = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (int s = 0; s < shown; s++) {
+            String name = data.name(series[s]);
+            scatters.add(new ScatterPyramid(session.overviews[s][0], session.overviews[s][1]));
+            names.add(name.isEmpty() ? "Y" + (s + 1) : name);
         }
+        showScatters(scatters, names);
     }
 
-    private List<double[]> readData() {
-        int n = tableModel.getRowCount();
-        List<double[]> data = new ArrayList<>();
-        for (int i = 0; i < n; i++) {
-            Object xo = tableModel.getValueAt(i, 0);
-            Object yo = tableModel.getValueAt(i, 1);
-            if (xo == null || yo == null) continue;
+    /**
+     * Reads an opened project into a table model off the EDT, then swaps the mapping for the
+     * editable table, whose fingerprint brings the saved fits back into the cache.
+     */
+    private class ProjectLoader extends SwingWorker<DataTableModel, Void> {
+        private final MappedDataset data;
+        private final ProjectFile.Session session;
+        // The full-resolution chart of the loaded rows, also built off the EDT
+        private final List<ScatterPyramid> scatters = new ArrayList<>();
+        private List<String> scatterNames;
+
+        ProjectLoader(MappedDataset data, ProjectFile.Session session) {
+            this.data = data;
+            this.session = session;
+        }
+
+        @Override protected DataTableModel doInBackground() throws IOException {
+            if (data.rows() > Integer.MAX_VALUE - 8) throw new IOException("The project has too many rows for the table.");
+            int n = (int) data.rows();
+            double[][] columns = new double[data.columns()][n];
+            for (int g = 0, at = 0; g < data.groups(); g++) {
+                if (isCancelled()) return null;
+                for (int c = 0; c < columns.length; c++) data.read(c, g, columns[c], at);
+                at += data.rowsIn(g);
+            }
+            int[] series = ProjectFile.seriesColumns(data, session);
+            List<double[]> ys = new ArrayList<>();
+            String[] names = new String[series.length];
+            for (int s = 0; s < series.length; s++) {
+                ys.add(columns[series[s]]);
+                names[s] = data.name(series[s]);
+            }
+            // Filled here without listeners; the statistics and fingerprint cost O(n)
+            DataTableModel loaded = new DataTableModel();
+            loaded.addRows(columns[0], ys, names, session.weighted ? columns[columns.length - 1] : null, n);
+            DataTableModel.SeriesSnapshot snapshot = loaded.snapshotSeries();
+            for (double[] y : snapshot.ys) scatters.add(seriesPyramid(snapshot.xs, y));
+            scatterNames = Arrays.asList(snapshot.names);
+            return loaded;
+        }
+
+        @Override protected void done() {
+            if (projectLoad != this || isCancelled()) return;
+            projectLoad = null;
+            DataTableModel loaded;
+            try {
+                loaded = get();
+            } catch (InterruptedException | ExecutionException ex) {
+                Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+                statsLabel.setText("Loading the table failed; the project stays read-only: " + cause.getMessage());
+                return;
+            }
+            // A fit started over the mapping meanwhile is redone on the table if wanted
+            if (activeFit != null) activeFit.cancel(true);
+            activeFit = null;
+            cancelButton.setEnabled(false);
+            closeDataset();
+            // Held back while the rows go in, so the incremental refit does not replace it
+            FitResult shown = lastFit;
+            lastFit = null;
+            table.setModel(tableModel);
+            tableModel.replaceWith(loaded);
+            lastFit = shown;
+            if (tableModel.fingerprint() == session.fingerprint) session.fits.forEach(fitCache::put);
+            updateCacheTip();
+            // Live input started meanwhile keeps the chart
+            if (live != null) return;
+            showScatters(scatters, scatterNames);
+            statsLabel.setText(lastFit != null ? lastFit.toDisplayString() : "Loaded " + tableModel.getRowCount() + " rows.");
+        }
+    }
+
+    // One scatter per series, named as in the series view, and the fit on screen
+    private void showScatters(List<ScatterPyramid> scatters, List<String> seriesNames) {
+        List<String> scatterNames = new ArrayList<>();
+        Set<String> used = new HashSet<>();
+        for (int s = 0; s < scatters.size(); s++) {
+            String name = seriesNames.get(s);
+            name = used.add(name) ? name : name + " #" + (s + 1);
+            used.add(name);
+            scatterNames.add(scatters.size() == 1 ? "Data" : name + " (data)");
+        }
+        rebuildChart(scatters, scatterNames, lastFit == null ? Collections.emptyList() : Collections.singletonList(lastFit),
+                Collections.singletonList("Fit"));
+        chartPanel.revalidate();
+        chartPanel.repaint();
+    }
+
+    /** Empties the table, or drops a mapped dataset and returns to the empty table. */
+    private void clearData() {
+        if (live != null) {
+            stopLive();
+            clearChart();
+            statsLabel.setText("Ready. Add data → choose model → Fit");
+        }
+        if (dataset == null) {
+            tableModel.clear();
+            return;
+        }
+        if (activeFit != null) activeFit.cancel(true);
+        activeFit = null;
+        cancelButton.setEnabled(false);
+        closeDataset();
+        lastFit = null;
+        table.setModel(tableModel);
+        tableModel.clear();
+        clearChart();
+        statsLabel.setText("Ready. Add data → choose model → Fit");
+    }
+
+    /** Accepts files dropped anywhere on the window. */
+    @SuppressWarnings("serial")
+    private class FileDropHandler extends TransferHandler {
+        @Override public boolean canImport(TransferSupport support) {
+            return support.isDataFlavorSupported(DataFlavor.javaFileListFlavor);
+        }
+
+        @Override public boolean importData(TransferSupport support) {
+            if (!canImport(support)) return false;
             try {
-                double x = ((Number) xo).doubleValue();
-                double y = ((Number) yo).doubleValue();
-                data.add(new double[]{x, y});
-            } catch (Exception ignored) { }
+                @SuppressWarnings("unchecked")
+                List<File> files = (List<File>) support.getTransferable().getTransferData(DataFlavor.javaFileListFlavor);
+                for (File f : files) importFile(f.toPath());
+                return !files.isEmpty();
+            } catch (UnsupportedFlavorException | IOException ex) {
+                return false;
+            }
         }
-        return data;
+    }
+
+    private void deleteSelectedRows() {
+        int[] selected = table.getSelectedRows();
+        if (selected.length == 0 || dataset != null) return;
+
+        for (int i = 0; i < selected.length; i++) selected[i] = table.convertRowIndexToModel(selected[i]);
+        tableModel.removeRows(selected);
+        table.clearSelection();
+    }
+
+    /** Tolerance and evaluation budget of the iterative fits. */
+    private void editFitSettings() {
+        Double[] tolerances = {1e-4, 1e-6, 1e-8, 1e-10, 1e-12, 1e-14};
+        JComboBox<Double> toleranceCombo = new JComboBox<>(tolerances);
+        toleranceCombo.setRenderer(new DefaultListCellRenderer() {
+            @Override public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean selected, boolean focus) {
+                return super.getListCellRendererComponent(list, String.format(Locale.US, "%.0e", (Double) value), index, selected, focus);
+            }
+        });
+        toleranceCombo.setSelectedItem(fitSettings.tolerance);
+        JSpinner budgetSpinner = new JSpinner(new SpinnerNumberModel(fitSettings.maxEvaluations, 10, 10_000_000, 1000));
+        JPanel panel = new JPanel(new GridLayout(2, 2, 8, 8));
+        panel.add(new JLabel("Relative tolerance:"));
+        panel.add(toleranceCombo);
+        panel.add(new JLabel("Evaluation budget:"));
+        panel.add(budgetSpinner);
+        int choice = JOptionPane.showConfirmDialog(frame, panel, "Convergence Settings", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (choice != JOptionPane.OK_OPTION) return;
+        FitSettings settings = new FitSettings((Double) toleranceCombo.getSelectedItem(), (Integer) budgetSpinner.getValue());
+        if (settings.tolerance == fitSettings.tolerance && settings.maxEvaluations == fitSettings.maxEvaluations) return;
+        fitSettings = settings;
+        // Cached iterative fits were converged under the old settings
+        fitCache.clear();
+        updateCacheTip();
     }
 
     private void doFit() {
-        List<double[]> data = readData();
-        if (data.size() < 2) {
+        if (live != null) {
+            showLiveRunning();
+            return;
+        }
+        if (isSegmentable(getSelectedModel()) && (Integer) breaksSpinner.getValue() > 0) {
+            doFitSegmented();
+            return;
+        }
+        if (dataset != null) {
+            doFitDataset();
+            return;
+        }
+        if (tableModel.seriesCount() > 1) {
+            doFitSeries();
+            return;
+        }
+        // Complete rows, sorted by x (important for drawing a nice line)
+        double[][] data = tableModel.snapshotSortedByX();
+        double[] xs = data[0];
+        double[] ys = data[1];
+        double[] ws = data[2];
+        if (xs.length < 2) {
             JOptionPane.showMessageDialog(frame, "Please add at least 2 data points.", "Not enough data", JOptionPane.WARNING_MESSAGE);
             return;
         }
 
-        // Sort by x (important for drawing a nice line)
-        data.sort(Comparator.comparingDouble(o -> o[0]));
-        double[] xs = data.stream().mapToDouble(a -> a[0]).toArray();
-        double[] ys = data.stream().mapToDouble(a -> a[1]).toArray();
+        ModelType model = getSelectedModel();
+        int degree = (Integer) degreeSpinner.getValue();
+        RobustFit.Loss loss = robustCombo.getSelectedItem() instanceof RobustFit.Loss ? (RobustFit.Loss) robustCombo.getSelectedItem() : null;
+        CurveModel custom = null;
+        if (model == ModelType.CUSTOM) {
+            if (loss != null) {
+                JOptionPane.showMessageDialog(frame, "Custom formulas are fitted by ordinary least squares only; switch Robust off.",
+                        "Not available", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            custom = getSelectedFormula();
+            if (custom == null) return;
+        }
+        FitCache.Key key = custom != null
+                ? new FitCache.Key(tableModel.fingerprint(), custom)
+                : new FitCache.Key(tableModel.fingerprint(), model, degree, loss);
+
+        // A new request makes any running fit stale
+        if (activeFit != null) activeFit.cancel(true);
+        activeFit = null;
+        cancelBootstrap();
+        FitResult cached = fitCache.get(key);
+        updateCacheTip();
+        if (cached != null) {
+            cancelButton.setEnabled(false);
+            lastFit = cached;
+            lastLoss = loss;
+            updateChart(xs, ys, cached);
+            statsLabel.setText(cached.toDisplayString());
+            if (loss == null && cached.intervals == null) startBootstrap(key, xs, ys, ws, cached);
+            return;
+        }
+        activeFit = new FitWorker(key, xs, ys, ws, model, custom, degree, loss,
+                custom != null ? customWarmStarts.get(custom) : warmStarts.get(model), fitSettings);
+        cancelButton.setEnabled(true);
+        statsLabel.setText("Fitting " + (custom != null ? custom.name() : model.label) + (loss != null ? " (" + loss + ")" : "") + " …");
+        activeFit.execute();
+    }
 
+    /** Streams a fit over the mapped dataset; ordinary least squares only, without intervals. */
+    private void doFitDataset() {
+        if (robustCombo.getSelectedItem() instanceof RobustFit.Loss) {
+            JOptionPane.showMessageDialog(frame, "Robust fits need the data in memory; switch Robust off for a mapped dataset.",
+                    "Not available", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
         ModelType model = getSelectedModel();
+        int degree = (Integer) degreeSpinner.getValue();
+        if (activeFit != null) activeFit.cancel(true);
+        cancelBootstrap();
+        DatasetFitWorker worker = new DatasetFitWorker(dataset, model, degree, fitSettings);
+        activeFit = worker;
+        cancelButton.setEnabled(true);
+        statsLabel.setText("Fitting " + model.label + " over " + dataset.rows() + " mapped rows …");
+        worker.execute();
+    }
 
-        try {
-            FitResult result = fitModel(xs, ys, model, (Integer) degreeSpinner.getValue());
-            updateChart(xs, ys, result);
-            statsLabel.setText(result.toDisplayString());
-        } catch (IllegalArgumentException ex) {
-            JOptionPane.showMessageDialog(frame,
-                    ex.getMessage(),
-                    "Fitting Error", JOptionPane.ERROR_MESSAGE);
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(frame,
-                    "An unexpected error occurred: " + ex.getMessage(),
+    /**
+     * Reports why a fit worker ended without a result. Invalid input (IllegalArgumentException)
+     * is explained as it is; anything else is logged and shown as unexpected.
+     */
+    private void reportWorkerFailure(Exception ex) {
+        if (ex instanceof CancellationException || ex instanceof InterruptedException) {
+            statsLabel.setText("Fit cancelled.");
+            return;
+        }
+        Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+        statsLabel.setText("Fit failed.");
+        if (cause instanceof IllegalArgumentException) {
+            JOptionPane.showMessageDialog(frame, cause.getMessage(), "Fitting Error", JOptionPane.ERROR_MESSAGE);
+        } else {
+            cause.printStackTrace();
+            JOptionPane.showMessageDialog(frame, "An unexpected error occurred: " + cause.getMessage(),
                     "Fitting Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
-    // === Fitting ===
+    /** Scans the mapping chunk by chunk off the EDT; progress is reported per row group. */
+    private class DatasetFitWorker extends SwingWorker<FitResult, Integer> {
+        private final MappedDataset data;
+        private final double[][] overview;
+        private final ModelType model;
+        private final int degree;
+        private final FitSettings settings;
+
+        DatasetFitWorker(MappedDataset data, ModelType model, int degree, FitSettings settings) {
+            this.data = data;
+            this.overview = datasetOverview;
+            this.model = model;
+            this.degree = degree;
+            this.settings = settings;
+        }
+
+        @Override protected FitResult doInBackground() {
+            FitMonitor monitor = p -> {
+                if (isCancelled()) throw new CancellationException("Fit cancelled");
+                publish(p.iteration);
+            };
+            return StreamingFit.fit(data, data.yColumn(), data.weightColumn(), model, degree, settings, monitor);
+        }
+
+        @Override protected void process(List<Integer> chunks) {
+            if (activeFit != this || isCancelled()) return;
+            statsLabel.setText("Fitting " + model.label + " …  step " + chunks.get(chunks.size() - 1));
+        }
+
+        @Override protected void done() {
+            if (activeFit != this || isCancelled()) return;
+            activeFit = null;
+            cancelButton.setEnabled(false);
+            try {
+                FitResult result = get();
+                lastFit = result;
+                lastLoss = null;
+                if (overview[0].length > 0) updateChart(overview[0], overview[1], result);
+                statsLabel.setText(result.toDisplayString());
+            } catch (CancellationException | InterruptedException | ExecutionException ex) {
+                reportWorkerFailure(ex);
+            }
+        }
+    }
+
+    /** Piecewise fit of the first series with the chosen number of breakpoints; no cache, intervals or live refits. */
+    private void doFitSegmented() {
+        String unavailable = dataset != null ? "Segmented fits need the data in memory; set Breaks to 0 for a mapped dataset."
+                : robustCombo.getSelectedItem() instanceof RobustFit.Loss ? "Segmented fits are ordinary least squares only; switch Robust off."
+                : getSelectedModel() == ModelType.POLYNOMIAL && (Integer) degreeSpinner.getValue() > SegmentedFit.MAX_DEGREE
+                ? "Segmented polynomials go up to degree " + SegmentedFit.MAX_DEGREE + "." : null;
+        if (unavailable != null) {
+            JOptionPane.showMessageDialog(frame, unavailable, "Not available", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        double[][] data = tableModel.snapshotSortedByX();
+        if (data[0].length < 2) {
+            JOptionPane.showMessageDialog(frame, "Please add at least 2 data points.", "Not enough data", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        ModelType model = getSelectedModel();
+        int breaks = (Integer) breaksSpinner.getValue();
+        if (activeFit != null) activeFit.cancel(true);
+        cancelBootstrap();
+        // The fit on screen is about to be replaced by the segments
+        lastFit = null;
+        SegmentWorker worker = new SegmentWorker(data[0], data[1], data[2], model, (Integer) degreeSpinner.getValue(), breaks);
+        activeFit = worker;
+        cancelButton.setEnabled(true);
+        statsLabel.setText("Searching " + breaks + " breakpoint" + (breaks == 1 ? "" : "s") + " in " + data[0].length + " points …");
+        worker.execute();
+    }
 
-    static class FitResult {
-        final ModelType model;
-        final int degree; // relevant for polynomial
-        final double[] params; // a, b, c...
-        final double r2;
-        final double rmse;
-        final double xmin, xmax;
+    /** Searches the breakpoints and fits the segments off the EDT; each segment is drawn as its own curve. */
+    private class SegmentWorker extends SwingWorker<SegmentedFit.Result, FitProgress> {
+        private final double[] xs, ys, ws;
+        private final ModelType model;
+        private final int degree, breaks;
 
-        FitResult(ModelType model, int degree, double[] params, double r2, double rmse, double xmin, double xmax) {
+        SegmentWorker(double[] xs, double[] ys, double[] ws, ModelType model, int degree, int breaks) {
+            this.xs = xs;
+            this.ys = ys;
+            this.ws = ws;
             this.model = model;
             this.degree = degree;
-            this.params = params;
-            this.r2 = r2;
-            this.rmse = rmse;
-            this.xmin = xmin;
-            this.xmax = xmax;
-        }
-
-        String toDisplayString() {
-            DecimalFormat df = new DecimalFormat("0.###E0");
-            StringBuilder eq = new StringBuilder("Model: ").append(model.label).append("  |  ");
-            eq.append("Equation: ").append(formatEquation(df)).append("  |  ");
-            eq.append("R² = ").append(new DecimalFormat("0.0000").format(r2));
-            eq.append("    RMSE = ").append(new DecimalFormat("0.0000").format(rmse));
-            return eq.toString();
-        }
-
-        String formatEquation(DecimalFormat df) {
-            switch (model) {
-                case LINEAR:
-                    return "y = " + fmt(df, params[0]) + " + " + fmt(df, params[1]) + "·x";
-                case POLYNOMIAL:
-                    StringBuilder sb = new StringBuilder("y = ");
-                    // PolynomialCurveFitter returns [a0, a1, ..., an] for a0 + a1 x + a2 x^2 ...
-                    for (int i = params.length - 1; i >= 0; i--) {
-                        double c = params[i];
-                        if (i == params.length - 1) {
-                            sb.append(fmt(df, c)).append("·x").append(superscript(i));
-                        } else if (i > 1) {
-                            sb.append(" + ").append(fmt(df, c)).append("·x").append(superscript(i));
-                        } else if (i == 1) {
-                            sb.append(" + ").append(fmt(df, c)).append("·x");
-                        } else {
-                            sb.append(" + ").append(fmt(df, c));
-                        }
-                    }
-                    return sb.toString().replace("x¹", "x").replace("x⁰", "");
-                case EXPONENTIAL:
-                    return "y = " + fmt(df, params[0]) + "·e^(" + fmt(df, params[1]) + "·x)";
-                case POWER:
-                    return "y = " + fmt(df, params[0]) + "·x^(" + fmt(df, params[1]) + ")";
-                case LOGARITHMIC:
-                    return "y = " + fmt(df, params[0]) + " + " + fmt(df, params[1]) + "·ln(x)";
-                case RECIPROCAL:
-                    return "y = " + fmt(df, params[0]) + " + " + fmt(df, params[1]) + "/x";
-                default:
-                    return "";
-            }
-        }
-
-        private static String fmt(DecimalFormat df, double v) {
-            // Use fixed decimals for moderate ranges, scientific for large/small
-            if (Math.abs(v) >= 1e-3 && Math.abs(v) < 1e4) {
-                return String.format(Locale.US, "%.6f", v);
-            }
-            return df.format(v);
-        }
-
-        private static String superscript(int n) {
-            String s = String.valueOf(n);
-            StringBuilder sb = new StringBuilder();
-            for (char c : s.toCharArray()) {
-                switch (c) {
-                    case '0': sb.append('⁰'); break;
-                    case '1': sb.append('¹'); break;
-                    case '2': sb.append('²'); break;
-                    case '3': sb.append('³'); break;
-                    case '4': sb.append('⁴'); break;
-                    case '5': sb.append('⁵'); break;
-                    case '6': sb.append('⁶'); break;
-                    case '7': sb.append('⁷'); break;
-                    case '8': sb.append('⁸'); break;
-                    case '9': sb.append('⁹'); break;
-                    case '-': sb.append('⁻'); break;
-                    default: sb.append(c);
+            this.breaks = breaks;
+        }
+
+        @Override protected SegmentedFit.Result doInBackground() {
+            return SegmentedFit.fit(xs, ys, ws, model, degree, breaks, p -> {
+                if (isCancelled()) throw new CancellationException("Fit cancelled");
+                publish(p);
+            });
+        }
+
+        @Override protected void process(List<FitProgress> chunks) {
+            if (activeFit != this || isCancelled()) return;
+            // Progress of the search only; the segment refits report iterations of their own
+            FitProgress last = null;
+            for (FitProgress p : chunks) if (p.iteration <= breaks) last = p;
+            if (last == null) return;
+            statsLabel.setText("Searching breakpoints …  best with " + last.iteration + "  |  RMS = "
+                    + new DecimalFormat("0.####E0").format(last.rms));
+        }
+
+        @Override protected void done() {
+            if (activeFit != this || isCancelled()) return;
+            activeFit = null;
+            cancelButton.setEnabled(false);
+            try {
+                SegmentedFit.Result result = get();
+                List<String> names = new ArrayList<>();
+                for (int i = 0; i < result.segments.size(); i++) names.add("Segment " + (i + 1));
+                updateChart(xs, ys, result.segments, names);
+                statsLabel.setText(result.toDisplayString());
+            } catch (CancellationException | InterruptedException | ExecutionException ex) {
+                reportWorkerFailure(ex);
+            }
+        }
+    }
+
+    /** Fits the selected model to every Y series at once; no cache, intervals or live refits. */
+    private void doFitSeries() {
+        DataTableModel.SeriesSnapshot data = tableModel.snapshotSeries();
+        if (data.xs.length < 2) {
+            JOptionPane.showMessageDialog(frame, "Please add at least 2 data points.", "Not enough data", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        ModelType model = getSelectedModel();
+        int degree = (Integer) degreeSpinner.getValue();
+        RobustFit.Loss loss = robustCombo.getSelectedItem() instanceof RobustFit.Loss ? (RobustFit.Loss) robustCombo.getSelectedItem() : null;
+        if (activeFit != null) activeFit.cancel(true);
+        cancelBootstrap();
+        // The fit on screen is about to be replaced by per-series curves
+        lastFit = null;
+        SeriesWorker worker = new SeriesWorker(data, model, degree, loss, fitSettings);
+        activeFit = worker;
+        cancelButton.setEnabled(true);
+        statsLabel.setText("Fitting " + model.label + " to " + data.ys.length + " series …");
+        worker.execute();
+    }
+
+    private void cancelFit() {
+        if (activeFit == null && activeBootstrap == null) return;
+        if (activeFit == null) {
+            cancelBootstrap();
+            cancelButton.setEnabled(false);
+            if (lastFit != null) statsLabel.setText(lastFit.toDisplayString());
+            return;
+        }
+        activeFit.cancel(true);
+        activeFit = null;
+        cancelButton.setEnabled(false);
+        statsLabel.setText("Fit cancelled.");
+    }
+
+    private void cancelBootstrap() {
+        if (activeBootstrap == null) return;
+        activeBootstrap.cancel(true);
+        activeBootstrap = null;
+        if (activeFit == null) cancelButton.setEnabled(false);
+    }
+
+    /** Caches {@code fit} unless the table changed since its key was taken. */
+    private void cacheFit(FitCache.Key key, FitResult fit) {
+        if (key.fingerprint == tableModel.fingerprint()) fitCache.put(key, fit);
+        updateCacheTip();
+    }
+
+    private void updateCacheTip() {
+        statsLabel.setToolTipText("Fit cache: " + fitCache.size() + " results, "
+                + fitCache.hits() + " hits, " + fitCache.misses() + " misses");
+    }
+
+    /** Bootstraps the fit on screen in the background; the intervals appear when it is done. */
+    private void startBootstrap(FitCache.Key key, double[] xs, double[] ys, double[] ws, FitResult fit) {
+        cancelBootstrap();
+        if (!intervalsCheck.isSelected()) return;
+        BootstrapWorker worker = new BootstrapWorker(key, xs, ys, ws, fit);
+        activeBootstrap = worker;
+        cancelButton.setEnabled(true);
+        worker.execute();
+    }
+
+    private class BootstrapWorker extends SwingWorker<Bootstrap.Intervals, Integer> {
+        private final FitCache.Key key;
+        private final double[] xs, ys, ws;
+        private final FitResult fit;
+        private final int replicates;
+        private final AtomicInteger finished = new AtomicInteger();
+
+        BootstrapWorker(FitCache.Key key, double[] xs, double[] ys, double[] ws, FitResult fit) {
+            this.key = key;
+            this.xs = xs;
+            this.ys = ys;
+            this.ws = ws;
+            this.fit = fit;
+            this.replicates = Bootstrap.replicatesFor(fit.model);
+        }
+
+        @Override protected Bootstrap.Intervals doInBackground() throws InterruptedException {
+            // Pool threads are not interrupted by cancel(), so the replicates poll the worker
+            FitMonitor monitor = p -> {
+                if (isCancelled()) throw new CancellationException("Bootstrap cancelled");
+            };
+            return Bootstrap.run(xs, ys, ws, fit, replicates, 42L, monitor, () -> {
+                int done = finished.incrementAndGet();
+                if (done % 25 == 0) publish(done);
+            });
+        }
+
+        @Override protected void process(List<Integer> chunks) {
+            if (activeBootstrap != this || isCancelled() || lastFit != fit) return;
+            statsLabel.setText(fit.toDisplayString() + "  |  bootstrapping " + chunks.get(chunks.size() - 1) + "/" + replicates + " …");
+        }
+
+        @Override protected void done() {
+            if (activeBootstrap != this || isCancelled()) return;
+            activeBootstrap = null;
+            if (activeFit == null) cancelButton.setEnabled(false);
+            // The data or the fit on screen changed meanwhile: these intervals belong to neither
+            if (lastFit != fit) return;
+            try {
+                lastFit = fit.withIntervals(get());
+                cacheFit(key, lastFit);
+                updateChart(xs, ys, lastFit);
+                statsLabel.setText(lastFit.toDisplayString());
+            } catch (CancellationException | InterruptedException ex) {
+                statsLabel.setText(fit.toDisplayString());
+            } catch (ExecutionException ee) {
+                statsLabel.setText(fit.toDisplayString() + "  |  intervals unavailable: " + ee.getCause().getMessage());
+            }
+        }
+    }
+
+    /**
+     * Runs one fit off the Event Dispatch Thread. Progress is published per optimizer
+     * iteration; the chart and stats label are only touched once the result is complete.
+     */
+    private class FitWorker extends SwingWorker<FitResult, FitProgress> {
+        private final FitCache.Key key;
+        private final double[] xs, ys, ws;
+        private final ModelType model;
+        private final CurveModel custom;
+        private final int degree;
+        private final RobustFit.Loss loss;
+        private final double[] warmStart;
+        private final FitSettings settings;
+
+        FitWorker(FitCache.Key key, double[] xs, double[] ys, double[] ws, ModelType model, CurveModel custom, int degree,
+                  RobustFit.Loss loss, double[] warmStart, FitSettings settings) {
+            this.key = key;
+            this.warmStart = warmStart;
+            this.settings = settings;
+            this.xs = xs;
+            this.ys = ys;
+            this.ws = ws;
+            this.model = model;
+            this.custom = custom;
+            this.degree = degree;
+            this.loss = loss;
+        }
+
+        @Override protected FitResult doInBackground() {
+            if (custom != null) return FitEngine.fitModel(xs, ys, ws, custom, warmStart, settings, this::publish);
+            return loss == null
+                    ? FitEngine.fitModel(xs, ys, ws, model, degree, warmStart, settings, this::publish)
+                    : RobustFit.fit(xs, ys, ws, model, degree, loss, settings, this::publish);
+        }
+
+        @Override protected void process(List<FitProgress> chunks) {
+            if (activeFit != this || isCancelled()) return;
+            FitProgress last = chunks.get(chunks.size() - 1);
+            statsLabel.setText("Fitting " + (custom != null ? custom.name() : model.label) + " …  iteration " + last.iteration
+                    + "  |  RMS = " + new DecimalFormat("0.####E0").format(last.rms));
+        }
+
+        @Override protected void done() {
+            // A stale or cancelled fit must not overwrite a newer result
+            if (activeFit != this || isCancelled()) return;
+            activeFit = null;
+            cancelButton.setEnabled(false);
+            try {
+                FitResult result = get();
+                lastFit = result;
+                lastLoss = loss;
+                cacheFit(key, result);
+                if (custom != null) customWarmStarts.put(custom, result.params);
+                else if (result.iterations > 0) warmStarts.put(model, result.params);
+                updateChart(xs, ys, result);
+                statsLabel.setText(result.toDisplayString());
+                // Robust fits would need robust replicates; their intervals are not bootstrapped
+                if (loss == null) startBootstrap(key, xs, ys, ws, result);
+            } catch (CancellationException | InterruptedException | ExecutionException ex) {
+                reportWorkerFailure(ex);
+            }
+        }
+    }
+
+    /** Fits every series concurrently and shows the per-series table once all are done. */
+    private class SeriesWorker extends SwingWorker<List<SeriesFit.Entry>, Integer> {
+        private final DataTableModel.SeriesSnapshot data;
+        private final ModelType model;
+        private final int degree;
+        private final RobustFit.Loss loss;
+        private final FitSettings settings;
+        private final AtomicInteger finished = new AtomicInteger();
+
+        SeriesWorker(DataTableModel.SeriesSnapshot data, ModelType model, int degree, RobustFit.Loss loss, FitSettings settings) {
+            this.data = data;
+            this.model = model;
+            this.degree = degree;
+            this.loss = loss;
+            this.settings = settings;
+        }
+
+        @Override protected List<SeriesFit.Entry> doInBackground() throws InterruptedException {
+            // Pool threads are not interrupted by cancel(), so the fits poll the worker
+            FitMonitor monitor = p -> {
+                if (isCancelled()) throw new CancellationException("Fit cancelled");
+            };
+            return SeriesFit.fitAll(data.xs, data.ys, data.names, data.ws, model, degree, loss, settings, monitor,
+                    () -> publish(finished.incrementAndGet()));
+        }
+
+        @Override protected void process(List<Integer> chunks) {
+            if (activeFit != this || isCancelled()) return;
+            statsLabel.setText("Fitting " + model.label + " …  " + chunks.get(chunks.size() - 1) + "/" + data.ys.length + " series done");
+        }
+
+        @Override protected void done() {
+            if (activeFit != this || isCancelled()) return;
+            activeFit = null;
+            cancelButton.setEnabled(false);
+            try {
+                List<SeriesFit.Entry> entries = get();
+                int failed = 0;
+                for (SeriesFit.Entry e : entries) if (e.fit == null) failed++;
+                updateChart(data.xs, data.ys, entries);
+                seriesModel.setEntries(entries);
+                showSeriesResults();
+                statsLabel.setText(model.label + (loss != null ? " (" + loss + ")" : "") + " fitted to " + (entries.size() - failed)
+                        + " of " + entries.size() + " series" + (failed > 0 ? "; " + failed + " failed" : ""));
+            } catch (CancellationException | InterruptedException | ExecutionException ex) {
+                reportWorkerFailure(ex);
+            }
+        }
+    }
+
+    private void showSeriesResults() {
+        if (seriesDialog == null) {
+            seriesDialog = new JDialog(frame, "Series results", false);
+            JTable seriesTable = new JTable(seriesModel);
+            seriesTable.getColumnModel().getColumn(4).setPreferredWidth(360);
+            seriesDialog.add(new JScrollPane(seriesTable));
+            seriesDialog.setSize(760, 340);
+            seriesDialog.setLocationRelativeTo(frame);
+        }
+        seriesDialog.setVisible(true);
+    }
+
+    @SuppressWarnings("serial")
+    private static class SeriesTableModel extends javax.swing.table.AbstractTableModel {
+        private static final String[] COLUMNS = {"Series", "n", "R²", "RMSE", "Equation"};
+        private List<SeriesFit.Entry> entries = new ArrayList<>();
+
+        void setEntries(List<SeriesFit.Entry> entries) {
+            this.entries = new ArrayList<>(entries);
+            fireTableDataChanged();
+        }
+
+        @Override public int getRowCount() { return entries.size(); }
+        @Override public int getColumnCount() { return COLUMNS.length; }
+        @Override public String getColumnName(int column) { return COLUMNS[column]; }
+
+        @Override public Object getValueAt(int row, int column) {
+            SeriesFit.Entry e = entries.get(row);
+            DecimalFormat df = new DecimalFormat("0.0000");
+            switch (column) {
+                case 0: return e.name;
+                case 1: return e.n;
+                case 2: return e.fit == null ? "" : df.format(e.fit.r2);
+                case 3: return e.fit == null ? "" : df.format(e.fit.rmse);
+                default: return e.fit == null ? e.error : e.fit.formatEquation(new DecimalFormat("0.######"));
+            }
+        }
+    }
+
+    private void doFitAll() {
+        if (live != null) {
+            showLiveRunning();
+            return;
+        }
+        if (dataset != null) {
+            JOptionPane.showMessageDialog(frame, "Fit All needs the data in memory; fit one model at a time on a mapped dataset.",
+                    "Not available", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        double[][] data = tableModel.snapshotSortedByX();
+        if (data[0].length < 2) {
+            JOptionPane.showMessageDialog(frame, "Please add at least 2 data points.", "Not enough data", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        if (activeFit != null) activeFit.cancel(true);
+        cancelBootstrap();
+        FitAllWorker worker = new FitAllWorker(tableModel.fingerprint(), data[0], data[1], data[2], fitSettings);
+        activeFit = worker;
+        cancelButton.setEnabled(true);
+        statsLabel.setText("Fitting all models …");
+        worker.execute();
+    }
+
+    /** Runs every candidate model concurrently and shows the ranking once all are done. */
+    private class FitAllWorker extends SwingWorker<List<FitRanking.Entry>, Integer> {
+        private final long fingerprint;
+        private final double[] xs, ys, ws;
+        private final FitSettings settings;
+        private final AtomicInteger finished = new AtomicInteger();
+
+        FitAllWorker(long fingerprint, double[] xs, double[] ys, double[] ws, FitSettings settings) {
+            this.fingerprint = fingerprint;
+            this.settings = settings;
+            this.xs = xs;
+            this.ys = ys;
+            this.ws = ws;
+        }
+
+        @Override protected List<FitRanking.Entry> doInBackground() throws InterruptedException {
+            // The pool threads are not interrupted by cancel(), so each fit polls the worker instead
+            FitMonitor monitor = p -> {
+                if (isCancelled()) throw new CancellationException("Fit cancelled");
+            };
+            return FitRanking.fitAll(xs, ys, ws, settings, monitor, () -> publish(finished.incrementAndGet()));
+        }
+
+        @Override protected void process(List<Integer> chunks) {
+            if (activeFit != this || isCancelled()) return;
+            statsLabel.setText("Fitting all models …  " + chunks.get(chunks.size() - 1) + " done");
+        }
+
+        @Override protected void done() {
+            if (activeFit != this || isCancelled()) return;
+            activeFit = null;
+            cancelButton.setEnabled(false);
+            try {
+                List<FitRanking.Entry> entries = get();
+                // Every candidate is an ordinary fit of this data: picking one with Fit is then instant
+                for (FitRanking.Entry e : entries) {
+                    if (e.fit == null) continue;
+                    cacheFit(new FitCache.Key(fingerprint, e.model, e.degree, null), e.fit);
+                    if (e.fit.iterations > 0) warmStarts.put(e.model, e.fit.params);
                 }
+                rankedXs = xs;
+                rankedYs = ys;
+                rankingModel.setEntries(entries);
+                showRanking();
+            } catch (CancellationException | InterruptedException | ExecutionException ex) {
+                reportWorkerFailure(ex);
             }
-            return sb.toString();
-        }
-    }
-
-    private FitResult fitModel(double[] xs, double[] ys, ModelType model, int degree) {
-        double xmin = Arrays.stream(xs).min().orElse(0);
-        double xmax = Arrays.stream(xs).max().orElse(1);
-
-        switch (model) {
-            case LINEAR: {
-                // y = a + b x
-                ParametricUnivariateFunction f = new ParametricUnivariateFunction() {
-                    @Override public double value(double x, double[] p) { return p[0] + p[1] * x; }
-                    @Override public double[] gradient(double x, double[] p) { return new double[]{1.0, x}; }
-                };
-                double[] guess = linearGuess(xs, ys); // [a,b]
-                double[] params = fitWithFunction(xs, ys, f, guess);
-                Metrics m = metrics(xs, ys, x -> params[0] + params[1] * x);
-                return new FitResult(model, 1, params, m.r2, m.rmse, xmin, xmax);
-            }
-            case POLYNOMIAL: {
-                if (degree < 2 || degree > 6) throw new IllegalArgumentException("Polynomial degree must be between 2 and 6.");
-                List<WeightedObservedPoint> points = new ArrayList<>();
-                for (int i = 0; i < xs.length; i++) points.add(new WeightedObservedPoint(1.0, xs[i], ys[i]));
-                double[] params = PolynomialCurveFitter.create(degree).fit(points);
-                Metrics m = metrics(xs, ys, x -> {
-                    double y = 0;
-                    for (int i = 0; i < params.length; i++) y += params[i] * Math.pow(x, i);
-                    return y;
-                });
-                return new FitResult(model, degree, params, m.r2, m.rmse, xmin, xmax);
-            }
-            case EXPONENTIAL: {
-                // y = a * e^(b x), y>0 ideally
-                ParametricUnivariateFunction f = new ParametricUnivariateFunction() {
-                    @Override public double value(double x, double[] p) { return p[0] * Math.exp(p[1] * x); }
-                    @Override public double[] gradient(double x, double[] p) {
-                        double e = Math.exp(p[1] * x);
-                        return new double[]{e, p[0] * x * e};
-                    }
-                };
-                double[] guess = expGuess(xs, ys);
-                double[] params = fitWithFunction(xs, ys, f, guess);
-                Metrics m = metrics(xs, ys, x -> params[0] * Math.exp(params[1] * x));
-                return new FitResult(model, 0, params, m.r2, m.rmse, xmin, xmax);
-            }
-            case POWER: {
-                // y = a * x^b, x>0, y>0 ideally
-                if (Arrays.stream(xs).anyMatch(v -> v <= 0))
-                    throw new IllegalArgumentException("Power model requires x > 0 for all points.");
-                ParametricUnivariateFunction f = new ParametricUnivariateFunction() {
-                    @Override public double value(double x, double[] p) { return p[0] * Math.pow(x, p[1]); }
-                    @Override public double[] gradient(double x, double[] p) {
-                        double xb = Math.pow(x, p[1]);
-                        return new double[]{xb, p[0] * xb * Math.log(x)};
+        }
+    }
+
+    private void showRanking() {
+        if (rankingDialog == null) {
+            rankingDialog = new JDialog(frame, "Fit All — model ranking", false);
+            JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
+            controls.setBorder(new EmptyBorder(8, 8, 8, 8));
+            controls.add(new JLabel("Rank by:"));
+            controls.add(criterionCombo);
+            controls.add(new JLabel("Curves on chart:"));
+            controls.add(topNSpinner);
+            criterionCombo.addActionListener(e -> applyRanking());
+            topNSpinner.addChangeListener(e -> applyRanking());
+
+            JTable rankingTable = new JTable(rankingModel);
+            rankingTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+            // Double-click makes a candidate the current fit
+            rankingTable.addMouseListener(new MouseAdapter() {
+                @Override public void mouseClicked(MouseEvent e) {
+                    int row = rankingTable.getSelectedRow();
+                    if (e.getClickCount() != 2 || row < 0) return;
+                    FitRanking.Entry entry = rankingModel.entries.get(row);
+                    if (entry.fit == null) return;
+                    cancelBootstrap();
+                    lastFit = entry.fit;
+                    lastLoss = null;
+                    updateChart(rankedXs, rankedYs, entry.fit);
+                    statsLabel.setText(entry.fit.toDisplayString());
+                }
+            });
+
+            rankingDialog.setLayout(new BorderLayout());
+            rankingDialog.add(controls, BorderLayout.NORTH);
+            rankingDialog.add(new JScrollPane(rankingTable), BorderLayout.CENTER);
+            rankingDialog.setSize(760, 340);
+            rankingDialog.setLocationRelativeTo(frame);
+        }
+        applyRanking();
+        rankingDialog.setVisible(true);
+    }
+
+    /** Re-sorts the candidates and overlays the top N curves. */
+    private void applyRanking() {
+        FitRanking.Criterion criterion = (FitRanking.Criterion) criterionCombo.getSelectedItem();
+        List<FitRanking.Entry> entries = rankingModel.entries;
+        FitRanking.rank(entries, criterion);
+        rankingModel.fireTableDataChanged();
+
+        int topN = (Integer) topNSpinner.getValue();
+        List<FitResult> fits = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (FitRanking.Entry e : entries) {
+            if (e.fit == null || fits.size() >= topN) continue;
+            fits.add(e.fit);
+            names.add("#" + (fits.size()) + " " + e.name());
+        }
+        if (fits.isEmpty()) {
+            statsLabel.setText("No model could be fitted to this data.");
+            return;
+        }
+        cancelBootstrap();
+        lastFit = fits.get(0);
+        lastLoss = null;
+        updateChart(rankedXs, rankedYs, fits, names);
+        statsLabel.setText("Best by " + criterion.label + " — " + lastFit.toDisplayString());
+    }
+
+    @SuppressWarnings("serial")
+    private static class RankingTableModel extends javax.swing.table.AbstractTableModel {
+        private static final String[] COLUMNS = {"#", "Model", "Params", "R²", "RMSE", "AIC", "BIC"};
+        private List<FitRanking.Entry> entries = new ArrayList<>();
+
+        void setEntries(List<FitRanking.Entry> entries) {
+            this.entries = new ArrayList<>(entries);
+            fireTableDataChanged();
+        }
+
+        @Override public int getRowCount() { return entries.size(); }
+        @Override public int getColumnCount() { return COLUMNS.length; }
+        @Override public String getColumnName(int column) { return COLUMNS[column]; }
+
+        @Override public Object getValueAt(int row, int column) {
+            FitRanking.Entry e = entries.get(row);
+            DecimalFormat df = new DecimalFormat("0.0000");
+            switch (column) {
+                case 0: return row + 1;
+                case 1: return e.name();
+                case 2: return e.parameterCount();
+                default:
+                    if (e.fit == null) return column == 3 ? e.error : "";
+                    if (column == 3) return df.format(e.fit.r2);
+                    if (column == 4) return df.format(e.fit.rmse);
+                    return new DecimalFormat("0.00").format(column == 5 ? e.aic() : e.bic());
+            }
+        }
+    }
+
+    // === Live input ===
+
+    /** Source, window and refit rate of a live stream; starting one replaces any other. */
+    private void chooseLiveInput() {
+        JTextField sourceField = new JTextField(liveSource, 24);
+        JComboBox<RollingWindow.Mode> modeCombo = new JComboBox<>(RollingWindow.Mode.values());
+        modeCombo.setSelectedItem(liveMode);
+        JSpinner windowSpinner = new JSpinner(new SpinnerNumberModel(liveWindow, 2, 1_000_000, 100));
+        JSpinner halfLifeSpinner = new JSpinner(new SpinnerNumberModel(liveHalfLife, 1, 1_000_000, 10));
+        JSpinner rateSpinner = new JSpinner(new SpinnerNumberModel(liveRate, 0.5, 60.0, 1.0));
+        halfLifeSpinner.setEnabled(liveMode == RollingWindow.Mode.DECAYING);
+        modeCombo.addActionListener(e -> halfLifeSpinner.setEnabled(modeCombo.getSelectedItem() == RollingWindow.Mode.DECAYING));
+        JPanel panel = new JPanel(new GridLayout(5, 2, 8, 8));
+        panel.add(new JLabel("Port, host:port, file or named pipe:"));
+        panel.add(sourceField);
+        panel.add(new JLabel("Window:"));
+        panel.add(modeCombo);
+        panel.add(new JLabel("Window size (points):"));
+        panel.add(windowSpinner);
+        panel.add(new JLabel("Half-life (points):"));
+        panel.add(halfLifeSpinner);
+        panel.add(new JLabel("Refits per second, at most:"));
+        panel.add(rateSpinner);
+        int choice = JOptionPane.showConfirmDialog(frame, panel, "Live Input", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (choice != JOptionPane.OK_OPTION || sourceField.getText().isBlank()) return;
+        liveSource = sourceField.getText().trim();
+        liveMode = (RollingWindow.Mode) modeCombo.getSelectedItem();
+        liveWindow = (Integer) windowSpinner.getValue();
+        liveHalfLife = (Integer) halfLifeSpinner.getValue();
+        liveRate = ((Number) rateSpinner.getValue()).doubleValue();
+        startLive();
+    }
+
+    private void startLive() {
+        stopLive();
+        if (activeFit != null) activeFit.cancel(true);
+        activeFit = null;
+        cancelBootstrap();
+        cancelButton.setEnabled(false);
+        lastFit = null;
+        liveChart = false;
+        RollingWindow window = new RollingWindow(liveMode, liveWindow, liveHalfLife);
+        // Frames are coalesced: the EDT only ever draws the newest one
+        AtomicReference<LiveStream.Frame> pending = new AtomicReference<>();
+        LiveStream[] stream = new LiveStream[1];
+        stream[0] = new LiveStream(liveSource, window, liveRate, getSelectedModel(), (Integer) degreeSpinner.getValue(), fitSettings,
+                new LiveStream.Listener() {
+                    @Override public void onFrame(LiveStream.Frame f) {
+                        // A frame without points keeps those of the undrawn frame it replaces
+                        if (pending.getAndUpdate(f::withDataOf) == null) {
+                            SwingUtilities.invokeLater(() -> showLiveFrame(stream[0], pending.getAndSet(null)));
+                        }
                     }
-                };
-                double[] guess = powerGuess(xs, ys);
-                double[] params = fitWithFunction(xs, ys, f, guess);
-                Metrics m = metrics(xs, ys, x -> params[0] * Math.pow(x, params[1]));
-                return new FitResult(model, 0, params, m.r2, m.rmse, xmin, xmax);
-            }
-            case LOGARITHMIC: {
-                // y = a + b ln(x), x>0
-                if (Arrays.stream(xs).anyMatch(v -> v <= 0))
-                    throw new IllegalArgumentException("Logarithmic model requires x > 0 for all points.");
-                ParametricUnivariateFunction f = new ParametricUnivariateFunction() {
-                    @Override public double value(double x, double[] p) { return p[0] + p[1] * Math.log(x); }
-                    @Override public double[] gradient(double x, double[] p) { return new double[]{1.0, Math.log(x)}; }
-                };
-                double[] guess = logGuess(xs, ys);
-                double[] params = fitWithFunction(xs, ys, f, guess);
-                Metrics m = metrics(xs, ys, x -> params[0] + params[1] * Math.log(x));
-                return new FitResult(model, 0, params, m.r2, m.rmse, xmin, xmax);
-            }
-            case RECIPROCAL: {
-                // y = a + b / x, x != 0
-                if (Arrays.stream(xs).anyMatch(v -> v == 0))
-                    throw new IllegalArgumentException("Reciprocal model requires x ≠ 0 for all points.");
-                ParametricUnivariateFunction f = new ParametricUnivariateFunction() {
-                    @Override public double value(double x, double[] p) { return p[0] + p[1] / x; }
-                    @Override public double[] gradient(double x, double[] p) { return new double[]{1.0, 1.0 / x}; }
-                };
-                double[] guess = recipGuess(xs, ys);
-                double[] params = fitWithFunction(xs, ys, f, guess);
-                Metrics m = metrics(xs, ys, x -> params[0] + params[1] / x);
-                return new FitResult(model, 0, params, m.r2, m.rmse, xmin, xmax);
-            }
-        }
-        throw new IllegalStateException("Unhandled model");
-    }
-
-    private static double[] fitWithFunction(double[] xs, double[] ys, ParametricUnivariateFunction f, double[] start) {
-        List<WeightedObservedPoint> points = new ArrayList<>();
-        for (int i = 0; i < xs.length; i++) points.add(new WeightedObservedPoint(1.0, xs[i], ys[i]));
-        return SimpleCurveFitter.create(f, start).withMaxIterations(10_000).withMaxIterations(10_000).fit(points);
-    }
-
-    // Initial guesses
-
-    private static double[] linearGuess(double[] xs, double[] ys) {
-        // least-squares closed-form
-        double n = xs.length;
-        double sumx = 0, sumy = 0, sumxx = 0, sumxy = 0;
-        for (int i = 0; i < xs.length; i++) {
-            sumx += xs[i]; sumy += ys[i]; sumxx += xs[i]*xs[i]; sumxy += xs[i]*ys[i];
-        }
-        double denom = n*sumxx - sumx*sumx;
-        double b = denom == 0 ? 0 : (n*sumxy - sumx*sumy)/denom;
-        double a = (sumy - b*sumx)/n;
-        return new double[]{a, b};
-    }
-
-    private static double[] expGuess(double[] xs, double[] ys) {
-        // ln(y) = ln(a) + b x
-        List<double[]> pairs = new ArrayList<>();
-        for (int i = 0; i < xs.length; i++) if (ys[i] > 0) pairs.add(new double[]{xs[i], Math.log(ys[i])});
-        if (pairs.size() < 2) return new double[]{1, 0.01};
-        double[] x = pairs.stream().mapToDouble(p -> p[0]).toArray();
-        double[] ly = pairs.stream().mapToDouble(p -> p[1]).toArray();
-        double[] ab = linearGuess(x, ly);
-        return new double[]{Math.exp(ab[0]), ab[1]};
-    }
-
-    private static double[] powerGuess(double[] xs, double[] ys) {
-        // ln(y) = ln(a) + b ln(x)
-        List<double[]> pairs = new ArrayList<>();
-        for (int i = 0; i < xs.length; i++) if (xs[i] > 0 && ys[i] > 0) pairs.add(new double[]{Math.log(xs[i]), Math.log(ys[i])});
-        if (pairs.size() < 2) return new double[]{1, 1};
-        double[] lx = pairs.stream().mapToDouble(p -> p[0]).toArray();
-        double[] ly = pairs.stream().mapToDouble(p -> p[1]).toArray();
-        double[] ab = linearGuess(lx, ly);
-        return new double[]{Math.exp(ab[0]), ab[1]};
-    }
-
-    private static double[] logGuess(double[] xs, double[] ys) {
-        // y = a + b ln(x)
-        List<double[]> pairs = new ArrayList<>();
-        for (int i = 0; i < xs.length; i++) if (xs[i] > 0) pairs.add(new double[]{Math.log(xs[i]), ys[i]});
-        if (pairs.size() < 2) return new double[]{ys[0], 1};
-        double[] lx = pairs.stream().mapToDouble(p -> p[0]).toArray();
-        double[] y = pairs.stream().mapToDouble(p -> p[1]).toArray();
-        return linearGuess(lx, y);
-    }
-
-    private static double[] recipGuess(double[] xs, double[] ys) {
-        // y = a + b*(1/x) => linear in (1/x)
-        double[] zx = Arrays.stream(xs).map(v -> 1.0/v).toArray();
-        return linearGuess(zx, ys);
-    }
-
-    static class Metrics {
-        final double r2, rmse;
-        Metrics(double r2, double rmse) { this.r2 = r2; this.rmse = rmse; }
-    }
-
-    private static Metrics metrics(double[] xs, double[] ys, java.util.function.DoubleUnaryOperator f) {
-        double mean = Arrays.stream(ys).average().orElse(0);
-        double ssTot = 0, ssRes = 0;
-        for (int i = 0; i < ys.length; i++) {
-            double yhat = f.applyAsDouble(xs[i]);
-            ssRes += Math.pow(ys[i] - yhat, 2);
-            ssTot += Math.pow(ys[i] - mean, 2);
-        }
-        double r2 = ssTot == 0 ? 1.0 : 1.0 - ssRes / ssTot;
-        double rmse = Math.sqrt(ssRes / ys.length);
-        return new Metrics(r2, rmse);
+
+                    // Points are copied and sorted only for a frame the chart will draw next
+                    @Override public boolean wantsPoints() { return pending.get() == null; }
+                });
+        live = stream[0];
+        stopLiveItem.setEnabled(true);
+        statsLabel.setText("Live: waiting for points from " + liveSource + " …");
+    }
+
+    private void stopLive() {
+        if (live == null) return;
+        live.close();
+        live = null;
+        stopLiveItem.setEnabled(false);
+    }
+
+    private void updateLiveModel() {
+        if (live != null) live.model(getSelectedModel(), (Integer) degreeSpinner.getValue());
+    }
+
+    private void showLiveRunning() {
+        JOptionPane.showMessageDialog(frame, "Live input is running and refits the selected model as points arrive. "
+                + "Stop it from the File menu to fit the table.", "Live Input", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    private void showLiveFrame(LiveStream stream, LiveStream.Frame f) {
+        // Frames of a stream that has since been stopped or replaced are dropped
+        if (stream != live || f == null) return;
+        if (f.inWindow >= 2) updateLiveChart(f.data, f.fit);
+        String counts = f.received + " points received, " + f.inWindow + " in the window";
+        if (f.ended) {
+            stopLive();
+            statsLabel.setText("Live input ended" + (f.error != null ? ": " + f.error : "") + " (" + counts + ")");
+            if (f.failure != null) {
+                JOptionPane.showMessageDialog(frame, "Live refitting stopped: " + f.failure, "Live Input", JOptionPane.ERROR_MESSAGE);
+            }
+            return;
+        }
+        statsLabel.setText("Live: " + counts + " — " + (f.fit != null ? f.fit.toDisplayString() : f.error));
+    }
+
+    // === Fitting ===
+
+    /**
+     * Re-solves the displayed linear-in-parameter fit from the table's running sums after an
+     * edit, paste, delete or clear, and redraws it over the table's own chart points: neither
+     * copies nor sorts the rows, so both cost O(edited rows), not O(n).
+     */
+    private void refitIncrementally() {
+        if (lastFit == null || lastLoss != null || activeFit != null || live != null || !FitEngine.isLinearInParameters(lastFit.model)) return;
+        // The refit has no intervals yet; press Fit to bootstrap the edited data
+        cancelBootstrap();
+        ScatterPyramid points = tableModel.points();
+        if (points.size() < 2) {
+            lastFit = null;
+            clearChart();
+            statsLabel.setText("Ready. Add data → choose model → Fit");
+            return;
+        }
+        try {
+            double[] range = tableModel.xRange();
+            FitCache.Key key = new FitCache.Key(tableModel.fingerprint(), lastFit.model, lastFit.degree, null);
+            FitResult result = fitCache.get(key);
+            if (result == null) {
+                SufficientStats stats = tableModel.stats(FitEngine.transformOf(lastFit.model));
+                result = FitEngine.fitFromStats(stats, lastFit.model, lastFit.degree, range[0], range[1]);
+                cacheFit(key, result);
+            }
+            lastFit = result;
+            updateTableChart(points, result);
+            statsLabel.setText(result.toDisplayString());
+        } catch (IllegalArgumentException ex) {
+            statsLabel.setText(ex.getMessage());
+        }
     }
 
     // === Chart update ===
 
     private void updateChart(double[] xs, double[] ys, FitResult fit) {
-        chart.getSeriesMap().clear();
+        updateChart(xs, ys, Collections.singletonList(fit), Collections.singletonList("Fit"));
+    }
 
-        // Data scatter
-        XYSeries scatter = chart.addSeries("Data", xs, ys);
-        scatter.setMarker(SeriesMarkers.CIRCLE);
-        scatter.setLineStyle(SeriesLines.NONE);
-        scatter.setMarkerColor(new Color(91, 207, 250));
+    /**
+     * Draws the data and one curve per fit, in palette order. {@code xs} must be sorted; the
+     * scatter is decimated to the plot width and the curves sampled at about two points per
+     * pixel, both again whenever the panel is resized or zoomed.
+     */
+    @SuppressWarnings("try")
+    private void updateChart(double[] xs, double[] ys, List<FitResult> fits, List<String> names) {
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.RENDER, xs.length)) {
+            rebuildChart(Collections.singletonList(new ScatterPyramid(xs, ys)), Collections.singletonList("Data"), fits, names);
+        }
+        chartPanel.revalidate();
+        chartPanel.repaint();
+    }
 
-        // Fit curve
-        double min = fit.xmin, max = fit.xmax;
-        if (min == max) { min -= 1; max += 1; }
-        int samples = Math.min(1000, Math.max(200, xs.length * 10));
-        double[] fx = new double[samples];
-        double[] fy = new double[samples];
-        double step = (max - min) / (samples - 1);
-        for (int i = 0; i < samples; i++) {
-            double x = min + i * step;
-            fx[i] = x;
-            fy[i] = evalFit(fit, x);
+    /**
+     * The table's points with one fit. When the chart already shows those points and a fit
+     * without a band, only the curve changes and the series are updated in place.
+     */
+    @SuppressWarnings("try")
+    private void updateTableChart(ScatterPyramid points, FitResult fit) {
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.RENDER, points.size())) {
+            if (!liveChart && chartData.size() == 1 && chartData.get(0) == points && chartFits.size() == 1
+                    && chartFits.get(0).intervals == null && fit.intervals == null) {
+                chartFits = Collections.singletonList(fit);
+                if (isZoomed() && dataCount(viewMin, viewMax) < 2) resetViewRange();
+                redecimate();
+            } else {
+                rebuildChart(Collections.singletonList(points), Collections.singletonList("Data"),
+                        Collections.singletonList(fit), Collections.singletonList("Fit"));
+            }
         }
-        XYSeries fitSeries = chart.addSeries("Fit", fx, fy);
-        fitSeries.setMarker(SeriesMarkers.NONE);
-        fitSeries.setLineStyle(SeriesLines.SOLID);
-        fitSeries.setLineColor(new Color(255, 109, 132));
+        chartPanel.revalidate();
+        chartPanel.repaint();
+    }
 
+    /**
+     * Live frames replace the points and the curve of the series already on the chart, so
+     * the series, their styling and the legend are built once per stream instead of per refit.
+     * A frame without points ({@code points == null}) moves the curve over the points on screen.
+     */
+    @SuppressWarnings("try")
+    private void updateLiveChart(RollingWindow.Snapshot points, FitResult fit) {
+        if (points == null && !liveChart) return;
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.RENDER, points == null ? 0 : points.xs.length)) {
+            ScatterPyramid data = points == null ? chartData.get(0) : new ScatterPyramid(points.xs, points.ys);
+            if (liveChart && (fit != null) == !chartFits.isEmpty()) {
+                chartData = Collections.singletonList(data);
+                chartFits = fit == null ? Collections.emptyList() : Collections.singletonList(fit);
+                if (isZoomed() && dataCount(viewMin, viewMax) < 2) resetViewRange();
+                redecimate();
+            } else {
+                rebuildChart(Collections.singletonList(data), Collections.singletonList("Data"),
+                        Collections.singletonList(fit), Collections.singletonList("Fit"));
+                liveChart = true;
+            }
+        }
+        chartPanel.repaint();
+    }
+
+    /**
+     * Several series: one scatter and one curve per series, both in the series' palette
+     * colour; only the curves are listed in the legend. Failed series show their points only.
+     */
+    @SuppressWarnings("try")
+    private void updateChart(double[] xs, double[][] ys, List<SeriesFit.Entry> entries) {
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.RENDER, (long) xs.length * ys.length)) {
+            List<ScatterPyramid> scatters = new ArrayList<>();
+            List<String> scatterNames = new ArrayList<>();
+            List<FitResult> fits = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            Set<String> used = new HashSet<>();
+            for (int s = 0; s < ys.length; s++) {
+                SeriesFit.Entry e = entries.get(s);
+                // Chart series need distinct names; headers may repeat
+                String name = used.add(e.name) ? e.name : e.name + " #" + (s + 1);
+                used.add(name);
+                scatters.add(seriesPyramid(xs, ys[s]));
+                scatterNames.add(name + " (data)");
+                fits.add(e.fit);
+                names.add(name);
+            }
+            rebuildChart(scatters, scatterNames, fits, names);
+        }
         chartPanel.revalidate();
         chartPanel.repaint();
     }
 
-    private double evalFit(FitResult fit, double x) {
-        double[] p = fit.params;
-        switch (fit.model) {
-            case LINEAR: return p[0] + p[1] * x;
-            case POLYNOMIAL:
-                double y = 0;
-                for (int i = 0; i < p.length; i++) y += p[i] * Math.pow(x, i);
-                return y;
-            case EXPONENTIAL: return p[0] * Math.exp(p[1] * x);
-            case POWER:
-                if (x <= 0) return Double.NaN;
-                return p[0] * Math.pow(x, p[1]);
-            case LOGARITHMIC:
-                if (x <= 0) return Double.NaN;
-                return p[0] + p[1] * Math.log(x);
-            case RECIPROCAL:
-                if (x == 0) return Double.NaN;
-                return p[0] + p[1] / x;
-        }
-        return Double.NaN;
+    // The points of one series, without its gaps
+    private static ScatterPyramid seriesPyramid(double[] xs, double[] y) {
+        int m = 0;
+        for (double v : y) if (!Double.isNaN(v)) m++;
+        double[] px = new double[m], py = new double[m];
+        for (int i = 0, j = 0; i < y.length; i++) {
+            if (Double.isNaN(y[i])) continue;
+            px[j] = xs[i];
+            py[j++] = y[i];
+        }
+        return new ScatterPyramid(px, py);
+    }
+
+    private void rebuildChart(List<ScatterPyramid> scatters, List<String> scatterNames, List<FitResult> fits, List<String> names) {
+        ensureChart();
+        chart.getSeriesMap().clear();
+        chartData = new ArrayList<>();
+        chartDataNames = new ArrayList<>();
+        chartFits = new ArrayList<>();
+        chartNames = new ArrayList<>();
+        boolean multi = scatters.size() > 1;
+        for (int s = 0; s < scatters.size(); s++) {
+            if (scatters.get(s).size() == 0) continue;
+            chartData.add(scatters.get(s));
+            chartDataNames.add(scatterNames.get(s));
+        }
+        // A zoom survives edits and refits as long as there is still data in view
+        if (isZoomed() && dataCount(viewMin, viewMax) < 2) resetViewRange();
+
+        // Data scatters: the single one in the data colour, several in their series' colours
+        for (int s = 0; s < scatters.size(); s++) {
+            if (scatters.get(s).size() == 0) continue;
+            double[][] view = dataView(scatters.get(s));
+            XYSeries scatter = chart.addSeries(scatterNames.get(s), view[0], view[1]);
+            scatter.setMarker(SeriesMarkers.CIRCLE);
+            scatter.setLineStyle(SeriesLines.NONE);
+            scatter.setMarkerColor(multi ? FIT_COLORS[s % FIT_COLORS.length] : new Color(91, 207, 250));
+            scatter.setShowInLegend(!multi);
+        }
+
+        // Fit curves, each with its prediction band once bootstrapped
+        for (int f = 0; f < fits.size(); f++) {
+            FitResult fit = fits.get(f);
+            if (fit == null) continue;
+            chartFits.add(fit);
+            chartNames.add(names.get(f));
+            double[][] curve = curveView(fit);
+            XYSeries fitSeries = chart.addSeries(names.get(f), curve[0], curve[1]);
+            fitSeries.setMarker(SeriesMarkers.NONE);
+            fitSeries.setLineStyle(SeriesLines.SOLID);
+            fitSeries.setLineColor(FIT_COLORS[f % FIT_COLORS.length]);
+            if (fit.intervals == null) continue;
+            double[][] band = bandView(fit, curve[0]);
+            for (int side = 0; side < 2; side++) {
+                XYSeries bandSeries = chart.addSeries(bandName(names.get(f), side), curve[0], band[side]);
+                bandSeries.setMarker(SeriesMarkers.NONE);
+                bandSeries.setLineStyle(SeriesLines.DASH_DASH);
+                bandSeries.setLineColor(FIT_COLORS[f % FIT_COLORS.length].darker());
+                bandSeries.setShowInLegend(side == 0);
+            }
+        }
+    }
+
+    /** Re-decimates the existing series for the current plot size and X range. */
+    @SuppressWarnings("try")
+    private void refreshChartView() {
+        if (chartData.isEmpty() || !chart.getSeriesMap().containsKey(chartDataNames.get(0))) return;
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.RENDER, dataCount(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY))) {
+            redecimate();
+        }
+        chartPanel.repaint();
+    }
+
+    private void redecimate() {
+        for (int s = 0; s < chartData.size(); s++) {
+            double[][] view = dataView(chartData.get(s));
+            chart.updateXYSeries(chartDataNames.get(s), view[0], view[1], null);
+        }
+        for (int f = 0; f < chartFits.size(); f++) {
+            FitResult fit = chartFits.get(f);
+            double[][] curve = curveView(fit);
+            chart.updateXYSeries(chartNames.get(f), curve[0], curve[1], null);
+            if (fit.intervals == null) continue;
+            double[][] band = bandView(fit, curve[0]);
+            for (int side = 0; side < 2; side++) chart.updateXYSeries(bandName(chartNames.get(f), side), curve[0], band[side], null);
+        }
+    }
+
+    // Points XChart draws in the current view: the decimated scatter plus the curves
+    private int chartPoints() {
+        int points = 0;
+        if (chart != null) for (XYSeries s : chart.getSeriesMap().values()) points += s.getXData().length;
+        return points;
+    }
+
+    private void zoomChart(double center, double factor) {
+        if (dataCount(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY) < 2 || Double.isNaN(center)) return;
+        double min = isZoomed() ? viewMin : dataMinX(), max = isZoomed() ? viewMax : dataMaxX();
+        double newMin = center - (center - min) * factor, newMax = center + (max - center) * factor;
+        if (newMin <= dataMinX() && newMax >= dataMaxX()) {
+            resetZoom();
+            return;
+        }
+        // Keep at least two points in view so the scatter never goes empty
+        if (!(newMax > newMin) || dataCount(newMin, newMax) < 2) return;
+        viewMin = newMin;
+        viewMax = newMax;
+        chart.getStyler().setXAxisMin(viewMin);
+        chart.getStyler().setXAxisMax(viewMax);
+        refreshChartView();
+    }
+
+    private void resetZoom() {
+        if (!isZoomed()) return;
+        resetViewRange();
+        refreshChartView();
+    }
+
+    private void resetViewRange() {
+        viewMin = viewMax = Double.NaN;
+        chart.getStyler().setXAxisMin(null);
+        chart.getStyler().setXAxisMax(null);
+    }
+
+    private boolean isZoomed() { return !Double.isNaN(viewMin); }
+
+    // Horizontal pixels available to the plot, roughly
+    private int plotPixels() {
+        return Math.max(200, chartPanel == null ? 0 : chartPanel.getWidth());
+    }
+
+    private double[][] dataView(ScatterPyramid data) {
+        return isZoomed()
+                ? data.view(viewMin, viewMax, plotPixels())
+                : data.view(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, plotPixels());
+    }
+
+    // Extent and point count of all scatters on the chart together
+    private double dataMinX() {
+        double min = Double.POSITIVE_INFINITY;
+        for (ScatterPyramid p : chartData) min = Math.min(min, p.minX());
+        return min;
+    }
+
+    private double dataMaxX() {
+        double max = Double.NEGATIVE_INFINITY;
+        for (ScatterPyramid p : chartData) max = Math.max(max, p.maxX());
+        return max;
+    }
+
+    private int dataCount(double x0, double x1) {
+        int count = 0;
+        for (ScatterPyramid p : chartData) count += p.count(x0, x1);
+        return count;
+    }
+
+    private static String bandName(String fitName, int side) {
+        return fitName + (side == 0 ? " — 95% prediction band" : " — 95% prediction band (lower)");
+    }
+
+    /** {@code {upper, lower}} prediction band of a bootstrapped fit at the curve's sample points. */
+    private double[][] bandView(FitResult fit, double[] fx) {
+        double[] lower = new double[fx.length], upper = new double[fx.length];
+        fit.intervals.predictionBand(fit, fx, lower, upper);
+        return new double[][]{upper, lower};
+    }
+
+    private double[][] curveView(FitResult fit) {
+        double min = fit.xmin, max = fit.xmax;
+        if (min == max) { min -= 1; max += 1; }
+        if (isZoomed()) {
+            double lo = Math.max(min, viewMin), hi = Math.min(max, viewMax);
+            min = lo < hi ? lo : viewMin;
+            max = lo < hi ? hi : viewMax;
+        }
+        int samples = 2 * plotPixels();
+        double[] fx = new double[samples];
+        double[] fy = new double[samples];
+        FitEngine.sampleCurve(fit, min, max, fx, fy);
+        return new double[][]{fx, fy};
     }
+
+
 }
@@ -0,0 +1,384 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Headless batch mode: fits every series of every input file and writes the equations and
+ * metrics as CSV or JSON. Never touches Swing, so it runs on servers and in CI pipelines.
+ * <p>
+ * A file holds one X column followed by one or more Y columns; each Y column is a series. A
+ * column headed w or weight holds point weights for every series, read as the table reads them.
+ * Files are processed in parallel, one task per file, inside a single JVM.
+ */
+final class BatchRunner {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java -jar curvefit-regression-all.jar --batch [options] <file-or-directory>...",
+            "  --model <linear|polynomial|exponential|power|logarithmic|reciprocal|all>  (default: all)",
+            "  --degree <2..6>            polynomial degree for --model polynomial (default: 2)",
+            "  --formula <expr>           fit a formula in x instead, e.g. \"a*exp(-b*x)+c\"",
+            "  --best <aic|bic|r2|rmse>   with --model all, keep only the best model per series",
+            "  --robust <huber|tukey>     robust (IRLS) fits instead of ordinary least squares",
+            "  --tolerance <t>            relative convergence tolerance of iterative fits (default: 1e-10)",
+            "  --max-evaluations <n>      evaluation budget of each iterative fit (default: 100000)",
+            "  --format <csv|json>        output format (default: csv)",
+            "  --out <file>               output file (default: standard output)",
+            "  --threads <n>              worker threads (default: available processors)");
+
+    private static final String[] EXTENSIONS = {".csv", ".tsv", ".txt", ".dat"};
+
+    private ModelType model; // null means every candidate
+    private CurveModel formula; // overrides model
+    private int degree = 2;
+    private FitRanking.Criterion best;
+    private RobustFit.Loss robust;
+    private FitSettings settings = FitSettings.DEFAULT;
+    private boolean json;
+    private Path out;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private final List<Path> inputs = new ArrayList<>();
+
+    /** One output line: a fitted (or failed) model for one series. */
+    private static final class Row {
+        final String source, series;
+        final FitRanking.Entry entry;
+
+        Row(String source, String series, FitRanking.Entry entry) {
+            this.source = source;
+            this.series = series;
+            this.entry = entry;
+        }
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        System.exit(run(args, System.err));
+    }
+
+    /** Runs the batch and returns the process exit code: 0 ok, 1 some inputs failed, 2 usage error. */
+    static int run(String[] args, PrintStream err) {
+        BatchRunner runner = new BatchRunner();
+        try {
+            runner.parseArgs(args);
+        } catch (IllegalArgumentException ex) {
+            err.println(ex.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+        try {
+            return runner.execute(err);
+        } catch (IOException ex) {
+            err.println("Error: " + ex.getMessage());
+            return 1;
+        }
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            if (!a.startsWith("--")) {
+                inputs.add(Paths.get(a));
+                continue;
+            }
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + a);
+            String v = args[++i].toLowerCase(Locale.ROOT);
+            switch (a) {
+                case "--model":
+                    model = v.equals("all") ? null : parseEnum(ModelType.class, v, a);
+                    break;
+                case "--formula":
+                    formula = ModelRegistry.resolve(args[i]);
+                    break;
+                case "--degree":
+                    degree = parseInt(v, a);
+                    if (degree < FitRanking.MIN_DEGREE || degree > FitRanking.MAX_DEGREE) {
+                        throw new IllegalArgumentException("Polynomial degree must be between 2 and 6.");
+                    }
+                    break;
+                case "--best":
+                    best = parseEnum(FitRanking.Criterion.class, v, a);
+                    break;
+                case "--robust":
+                    robust = parseEnum(RobustFit.Loss.class, v, a);
+                    break;
+                case "--tolerance":
+                    settings = new FitSettings(parseDouble(v, a), settings.maxEvaluations);
+                    break;
+                case "--max-evaluations":
+                    settings = new FitSettings(settings.tolerance, parseInt(v, a));
+                    break;
+                case "--format":
+                    if (!v.equals("csv") && !v.equals("json")) throw new IllegalArgumentException("Unknown format: " + v);
+                    json = v.equals("json");
+                    break;
+                case "--out":
+                    out = Paths.get(args[i]);
+                    break;
+                case "--threads":
+                    threads = Math.max(1, parseInt(v, a));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + a);
+            }
+        }
+        if (inputs.isEmpty()) throw new IllegalArgumentException("No input files or directories given.");
+        if (formula != null && robust != null) throw new IllegalArgumentException("--robust does not apply to --formula.");
+        if (formula == null && model == ModelType.CUSTOM) throw new IllegalArgumentException("--model custom needs --formula.");
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String v, String option) {
+        try {
+            return Enum.valueOf(type, v.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown value for " + option + ": " + v);
+        }
+    }
+
+    private static int parseInt(String v, String option) {
+        try {
+            return Integer.parseInt(v);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Expected a number for " + option + ": " + v);
+        }
+    }
+
+    private static double parseDouble(String v, String option) {
+        try {
+            return Double.parseDouble(v);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Expected a number for " + option + ": " + v);
+        }
+    }
+
+    private int execute(PrintStream err) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path p : inputs) {
+            if (Files.isDirectory(p)) {
+                try (Stream<Path> walk = Files.walk(p)) {
+                    files.addAll(walk.filter(Files::isRegularFile).filter(BatchRunner::hasDataExtension)
+                            .sorted().collect(Collectors.toList()));
+                }
+            } else {
+                files.add(p);
+            }
+        }
+
+        // One task per file; results keep input order so output is reproducible
+        List<List<Row>> results;
+        String[] failures = new String[files.size()], notes = new String[files.size()];
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            results = pool.submit(() -> IntStream.range(0, files.size()).parallel().mapToObj(i -> {
+                try {
+                    return fitFile(files.get(i), notes, i);
+                } catch (IOException | RuntimeException ex) {
+                    failures[i] = files.get(i) + " (" + ex.getClass().getSimpleName() + ": " + ex.getMessage() + ")";
+                    return new ArrayList<Row>();
+                }
+            }).collect(Collectors.toList())).get();
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new IOException("Batch interrupted", ex);
+        } finally {
+            pool.shutdown();
+        }
+
+        for (String note : notes) if (note != null) err.println(note);
+        int failed = 0;
+        for (String f : failures) {
+            if (f == null) continue;
+            err.println("Skipped " + f);
+            failed++;
+        }
+
+        Writer w = out == null
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(out, StandardCharsets.UTF_8);
+        try {
+            if (json) writeJson(w, results); else writeCsv(w, results);
+        } finally {
+            if (out == null) w.flush(); else w.close();
+        }
+        return failed == 0 ? 0 : 1;
+    }
+
+    private static boolean hasDataExtension(Path p) {
+        String name = p.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (String ext : EXTENSIONS) if (name.endsWith(ext)) return true;
+        return false;
+    }
+
+    // Warnings about the file, if any, go to notes[index]
+    private List<Row> fitFile(Path file, String[] notes, int index) throws IOException {
+        DelimitedImporter.Result data = DelimitedImporter.importFile(file, Integer.MAX_VALUE);
+        int invalid = data.invalidWeights();
+        StringJoiner note = new StringJoiner("; ", file + ": ", "");
+        if (invalid > 0) note.add(invalid + " blank or negative weights count as 1");
+        if (data.raggedRows > 0) note.add(data.raggedRows + " rows have more cells than the first row; the extra cells are ignored");
+        if (invalid > 0 || data.raggedRows > 0) notes[index] = note.toString();
+        List<Row> rows = new ArrayList<>();
+        String source = file.toString();
+        double[] x = data.xs().buffer();
+        // The weight column applies to every series and is never fitted itself, as in the table
+        DoubleColumn weights = data.weights();
+        double[] w = weights == null ? null : weights.buffer();
+        int n = data.rows();
+        boolean weighted = false;
+        for (int i = 0; w != null && i < n && !weighted; i++) weighted = DataTableModel.weightOrOne(w[i]) != 1.0;
+        for (int c : data.seriesColumns()) {
+            String series = data.header != null && c < data.header.length ? data.header[c] : "y" + c;
+            double[] y = data.columns.get(c).buffer();
+            int m = 0;
+            for (int i = 0; i < n; i++) if (!Double.isNaN(x[i]) && !Double.isNaN(y[i])) m++;
+            double[] xs = new double[m], ys = new double[m], ws = weighted ? new double[m] : null;
+            boolean sorted = true;
+            for (int i = 0, j = 0; i < n; i++) {
+                if (Double.isNaN(x[i]) || Double.isNaN(y[i])) continue;
+                xs[j] = x[i];
+                ys[j] = y[i];
+                if (weighted) ws[j] = DataTableModel.weightOrOne(w[i]);
+                if (j > 0 && xs[j] < xs[j - 1]) sorted = false;
+                j++;
+            }
+            if (!sorted) {
+                if (weighted) DoubleColumn.sortBy(xs, m, ys, ws);
+                else DoubleColumn.sortBy(xs, m, ys);
+            }
+            if (m < 2) {
+                ModelType mt = formula != null ? ModelType.CUSTOM : model == null ? ModelType.LINEAR : model;
+                rows.add(new Row(source, series, new FitRanking.Entry(mt, formula, degree, null, "fewer than 2 data points", m)));
+                continue;
+            }
+            fitSeries(source, series, xs, ys, ws, rows);
+        }
+        return rows;
+    }
+
+    private void fitSeries(String source, String series, double[] xs, double[] ys, double[] ws, List<Row> rows) {
+        if (formula != null) {
+            rows.add(new Row(source, series, FitRanking.fitCandidate(xs, ys, ws, formula, settings, FitMonitor.NONE)));
+            return;
+        }
+        if (model != null) {
+            int d = model == ModelType.POLYNOMIAL ? degree : 0;
+            rows.add(new Row(source, series, FitRanking.fitCandidate(xs, ys, ws, model, d, robust, settings, FitMonitor.NONE)));
+            return;
+        }
+        // Sequential within a series: the parallelism is already across files
+        List<FitRanking.Entry> entries = new ArrayList<>();
+        for (int[] c : FitRanking.candidates()) {
+            entries.add(FitRanking.fitCandidate(xs, ys, ws, ModelType.values()[c[0]], c[1], robust, settings, FitMonitor.NONE));
+        }
+        if (best != null) {
+            FitRanking.rank(entries, best);
+            entries = entries.subList(0, 1);
+        }
+        for (FitRanking.Entry e : entries) rows.add(new Row(source, series, e));
+    }
+
+    // === Output ===
+
+    private static void writeCsv(Writer w, List<List<Row>> results) throws IOException {
+        w.write("source,series,n,model,degree,r2,rmse,aic,bic,params,equation,error\n");
+        for (List<Row> rows : results) {
+            for (Row r : rows) {
+                FitRanking.Entry e = r.entry;
+                FitResult f = e.fit;
+                StringBuilder sb = new StringBuilder();
+                sb.append(csv(r.source)).append(',').append(csv(r.series)).append(',').append(e.n).append(',');
+                sb.append(e.model.name().toLowerCase(Locale.ROOT)).append(',');
+                sb.append(e.model == ModelType.POLYNOMIAL ? e.degree : 0).append(',');
+                if (f != null) {
+                    sb.append(f.r2).append(',').append(f.rmse).append(',').append(e.aic()).append(',').append(e.bic()).append(',');
+                    StringBuilder params = new StringBuilder();
+                    for (double p : f.params) params.append(params.length() == 0 ? "" : " ").append(p);
+                    sb.append(params).append(',').append(csv(f.formatEquation(new DecimalFormat("0.###E0")))).append(',');
+                } else {
+                    sb.append(",,,,,,").append(csv(e.error));
+                }
+                w.write(sb.append('\n').toString());
+            }
+        }
+    }
+
+    private static void writeJson(Writer w, List<List<Row>> results) throws IOException {
+        w.write("[");
+        boolean first = true;
+        for (List<Row> rows : results) {
+            for (Row r : rows) {
+                FitRanking.Entry e = r.entry;
+                FitResult f = e.fit;
+                StringBuilder sb = new StringBuilder(first ? "\n  {" : ",\n  {");
+                first = false;
+                sb.append("\"source\": ").append(json(r.source));
+                sb.append(", \"series\": ").append(json(r.series));
+                sb.append(", \"n\": ").append(e.n);
+                sb.append(", \"model\": ").append(json(e.model.name().toLowerCase(Locale.ROOT)));
+                sb.append(", \"degree\": ").append(e.model == ModelType.POLYNOMIAL ? e.degree : 0);
+                if (f != null) {
+                    sb.append(", \"params\": [");
+                    for (int i = 0; i < f.params.length; i++) sb.append(i == 0 ? "" : ", ").append(json(f.params[i]));
+                    sb.append("], \"r2\": ").append(json(f.r2));
+                    sb.append(", \"rmse\": ").append(json(f.rmse));
+                    sb.append(", \"aic\": ").append(json(e.aic()));
+                    sb.append(", \"bic\": ").append(json(e.bic()));
+                    if (f.iterations > 0) {
+                        sb.append(", \"iterations\": ").append(f.iterations);
+                        sb.append(", \"evaluations\": ").append(f.evaluations);
+                    }
+                    sb.append(", \"equation\": ").append(json(f.formatEquation(new DecimalFormat("0.###E0"))));
+                } else {
+                    sb.append(", \"error\": ").append(json(e.error));
+                }
+                w.write(sb.append('}').toString());
+            }
+        }
+        w.write(first ? "]\n" : "\n]\n");
+    }
+
+    private static String csv(String s) {
+        if (s == null) return "";
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    private static String json(double v) {
+        return Double.isFinite(v) ? Double.toString(v) : "null";
+    }
+
+    private static String json(String s) {
+        if (s == null) return "null";
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,295 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Case-resampling bootstrap of a fitted model. A resample is n draws with replacement, used
+ * as multiplicities, so every replicate is one weighted fit over the original (sorted) arrays
+ * with no copying. Replicates run in parallel on the common fork-join pool. Each replicate
+ * draws from its own {@link SplittableRandom} split, so results depend only on the seed,
+ * not on thread scheduling. Iterative models start from the full-data optimum.
+ */
+final class Bootstrap {
+
+    static final double LEVEL = 0.95;
+    // Two-sided normal quantile for LEVEL
+    private static final double Z = 1.959963984540054;
+
+    private Bootstrap() { }
+
+    /** Replicates per model family: iterative fits cost far more than direct solves. */
+    static int replicatesFor(ModelType model) {
+        return FitEngine.isLinearInParameters(model) ? 1000 : 200;
+    }
+
+    /** Percentile confidence intervals of the parameters, plus the replicate fits behind them. */
+    static final class Intervals {
+        final int replicates, failed;
+        final double[] low, high;
+        private final ModelEvaluator[] curves;
+
+        Intervals(int replicates, int failed, double[] low, double[] high, ModelEvaluator[] curves) {
+            this.replicates = replicates;
+            this.failed = failed;
+            this.low = low;
+            this.high = high;
+            this.curves = curves;
+        }
+
+        /** Replicates that converged, each with its parameters. */
+        int curveCount() { return curves.length; }
+
+        double[] curve(int r) { return curves[r].p; }
+
+        /**
+         * Prediction band around {@code fit} at each {@code fx}: ±z·√(Var_boot ŷ(x) + RMSE²),
+         * i.e. the spread of the replicate curves plus the residual noise.
+         */
+        void predictionBand(FitResult fit, double[] fx, double[] lower, double[] upper) {
+            int m = fx.length;
+            double[] mean = new double[m], m2 = new double[m], y = new double[m];
+            int k = 0;
+            for (ModelEvaluator c : curves) {
+                c.evaluate(fx, y);
+                k++;
+                for (int i = 0; i < m; i++) {
+                    double d = y[i] - mean[i];
+                    mean[i] += d / k;
+                    m2[i] += d * (y[i] - mean[i]);
+                }
+            }
+            ModelEvaluator center = ModelEvaluator.of(fit);
+            center.evaluate(fx, y);
+            double noise = fit.rmse * fit.rmse;
+            for (int i = 0; i < m; i++) {
+                double half = Z * Math.sqrt((k > 1 ? m2[i] / (k - 1) : 0) + noise);
+                lower[i] = y[i] - half;
+                upper[i] = y[i] + half;
+            }
+        }
+    }
+
+    /**
+     * Bootstraps {@code fit} with {@code replicates} resamples. The monitor is polled once
+     * per replicate (and by iterative fits per iteration) and may throw
+     * {@link CancellationException} to abort the run.
+     */
+    @SuppressWarnings("try")
+    static Intervals run(double[] xs, double[] ys, double[] ws, FitResult fit, int replicates, long seed,
+                         FitMonitor monitor, Runnable onReplicateDone) throws InterruptedException {
+        // Points resampled: every replicate draws n of them
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.BOOTSTRAP, (long) xs.length * replicates)) {
+            return resample(xs, ys, ws, fit, replicates, seed, monitor, onReplicateDone);
+        }
+    }
+
+    private static Intervals resample(double[] xs, double[] ys, double[] ws, FitResult fit, int replicates, long seed,
+                                      FitMonitor monitor, Runnable onReplicateDone) throws InterruptedException {
+        int n = xs.length;
+        int p = fit.params.length;
+        int degree = fit.model == ModelType.POLYNOMIAL ? fit.degree : 1;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[replicates];
+        for (int r = 0; r < replicates; r++) streams[r] = root.split();
+        double[][] params = new double[replicates][];
+        Design design = FitEngine.isLinearInParameters(fit.model) ? new Design(xs, ys, ws, fit.model, degree) : null;
+
+        // A few chunks per worker thread; each chunk owns its buffers for all its replicates
+        int chunks = Math.min(replicates, ForkJoinPool.commonPool().getParallelism() * 4);
+        List<Callable<Void>> tasks = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            int from = (int) ((long) replicates * c / chunks), to = (int) ((long) replicates * (c + 1) / chunks);
+            tasks.add(() -> {
+                Refiner refiner = design == null ? new Refiner(xs, ys, ws, fit) : null;
+                for (int r = from; r < to; r++) {
+                    monitor.onIteration(new FitProgress(r, fit.rmse));
+                    try {
+                        params[r] = design != null ? design.replicate(streams[r]) : refiner.replicate(streams[r]);
+                    } catch (IllegalArgumentException ex) {
+                        // Degenerate resample (too few distinct x): leave it out
+                        params[r] = null;
+                    }
+                    onReplicateDone.run();
+                }
+                return null;
+            });
+        }
+        for (Future<Void> f : ForkJoinPool.commonPool().invokeAll(tasks)) {
+            try {
+                f.get();
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof CancellationException) throw (CancellationException) ex.getCause();
+                throw new IllegalStateException(ex.getCause());
+            }
+        }
+
+        int ok = 0;
+        for (double[] q : params) if (q != null && allFinite(q)) params[ok++] = q;
+        if (ok < 2) throw new IllegalArgumentException("Too few bootstrap replicates could be fitted.");
+        double[] low = new double[p], high = new double[p], column = new double[ok];
+        double alpha = (1 - LEVEL) / 2;
+        for (int j = 0; j < p; j++) {
+            for (int r = 0; r < ok; r++) column[r] = params[r][j];
+            Arrays.sort(column);
+            low[j] = percentile(column, alpha);
+            high[j] = percentile(column, 1 - alpha);
+        }
+        ModelEvaluator[] curves = new ModelEvaluator[ok];
+        for (int r = 0; r < ok; r++) curves[r] = ModelEvaluator.of(fit, params[r]);
+        return new Intervals(replicates, replicates - ok, low, high, curves);
+    }
+
+    /**
+     * Linear-in-parameter models: the scaled regressor u = (t(x) - c)/s is computed once, and
+     * each replicate accumulates the normal equations straight from its n draws, then solves
+     * them like {@link SufficientStats}. No per-replicate arrays, no transform calls.
+     */
+    private static final class Design {
+        final double[] u, ys, ws;
+        final int p;
+        final double c, s;
+
+        Design(double[] xs, double[] ys, double[] ws, ModelType model, int degree) {
+            LinearLeastSquares.Transform transform = FitEngine.transformOf(model);
+            int n = xs.length;
+            u = new double[n];
+            double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                u[i] = transform.apply(xs[i]);
+                lo = Math.min(lo, u[i]);
+                hi = Math.max(hi, u[i]);
+            }
+            double center = 0.5 * (lo + hi), scale = 0.5 * (hi - lo);
+            if (!(scale > 0) || Double.isInfinite(scale)) scale = 1.0;
+            for (int i = 0; i < n; i++) u[i] = (u[i] - center) / scale;
+            this.c = center;
+            this.s = scale;
+            this.ys = ys;
+            this.ws = ws;
+            this.p = degree + 1;
+        }
+
+        double[] replicate(SplittableRandom rnd) {
+            int n = u.length;
+            double[][] ata = new double[p][p];
+            double[] aty = new double[p], row = new double[p];
+            for (int d = 0; d < n; d++) {
+                int i = rnd.nextInt(n);
+                double w = ws == null ? 1.0 : ws[i];
+                if (w == 0) continue;
+                LinearLeastSquares.basis(u[i], row);
+                double y = ys[i];
+                for (int j = 0; j < p; j++) {
+                    double rj = w * row[j];
+                    aty[j] += rj * y;
+                    for (int k = 0; k <= j; k++) ata[j][k] += rj * row[k];
+                }
+            }
+            return LinearLeastSquares.unscale(LinearLeastSquares.solveCholesky(ata, aty), c, s);
+        }
+    }
+
+    /**
+     * Iterative models: weighted Gauss–Newton from the full-data optimum, which a resample
+     * moves only slightly, with step halving as a safeguard. Buffers live for the whole chunk.
+     */
+    private static final class Refiner {
+        static final int MAX_STEPS = 30;
+
+        final double[] xs, ys, ws, counts, values;
+        final double[][] jacobian;
+        final ModelEvaluator f;
+        final double[] start;
+
+        Refiner(double[] xs, double[] ys, double[] ws, FitResult fit) {
+            this.xs = xs;
+            this.ys = ys;
+            this.ws = ws;
+            this.start = fit.params;
+            this.f = ModelEvaluator.of(fit);
+            int n = xs.length, p = fit.params.length;
+            counts = new double[n];
+            values = new double[n];
+            jacobian = new double[n][p];
+        }
+
+        double[] replicate(SplittableRandom rnd) {
+            int n = xs.length, p = start.length;
+            // n draws with replacement, as counts per point (times the data weight)
+            Arrays.fill(counts, 0);
+            for (int d = 0; d < n; d++) counts[rnd.nextInt(n)]++;
+            if (ws != null) for (int i = 0; i < n; i++) counts[i] *= ws[i];
+
+            double[] params = start.clone(), trial = new double[p];
+            f.setParameters(params);
+            double cost = cost();
+            for (int step = 0; step < MAX_STEPS; step++) {
+                f.valueAndJacobian(xs, values, jacobian);
+                double[][] jtj = new double[p][p];
+                double[] jtr = new double[p];
+                for (int i = 0; i < n; i++) {
+                    double w = counts[i];
+                    if (w == 0) continue;
+                    double[] row = jacobian[i];
+                    double r = ys[i] - values[i];
+                    for (int j = 0; j < p; j++) {
+                        double wj = w * row[j];
+                        jtr[j] += wj * r;
+                        for (int k = 0; k <= j; k++) jtj[j][k] += wj * row[k];
+                    }
+                }
+                double[] delta = LinearLeastSquares.solveCholesky(jtj, jtr);
+                double t = 1;
+                double next = Double.POSITIVE_INFINITY;
+                for (int half = 0; half < 20; half++, t *= 0.5) {
+                    for (int k = 0; k < p; k++) trial[k] = params[k] + t * delta[k];
+                    f.setParameters(trial);
+                    next = cost();
+                    if (next <= cost) break;
+                }
+                // No step lowers the cost: already at the minimum to rounding
+                if (!(next <= cost)) return params;
+                boolean converged = true;
+                for (int k = 0; k < p; k++) {
+                    if (Math.abs(trial[k] - params[k]) > 1e-10 * (Math.abs(trial[k]) + 1e-10)) converged = false;
+                    params[k] = trial[k];
+                }
+                cost = next;
+                if (converged) return params;
+            }
+            return params;
+        }
+
+        // Weighted residual sum of squares at the evaluator's current parameters
+        private double cost() {
+            f.evaluate(xs, values);
+            double sum = 0;
+            for (int i = 0; i < xs.length; i++) {
+                double r = ys[i] - values[i];
+                sum += counts[i] * r * r;
+            }
+            return sum;
+        }
+    }
+
+    private static boolean allFinite(double[] v) {
+        for (double d : v) if (!Double.isFinite(d)) return false;
+        return true;
+    }
+
+    // Linear interpolation between order statistics of a sorted sample
+    private static double percentile(double[] sorted, double q) {
+        double pos = q * (sorted.length - 1);
+        int i = (int) Math.floor(pos);
+        if (i >= sorted.length - 1) return sorted[sorted.length - 1];
+        return sorted[i] + (pos - i) * (sorted[i + 1] - sorted[i]);
+    }
+}
@@ -0,0 +1,45 @@
+package org.example;
+
+import java.util.function.DoubleFunction;
+
+/**
+ * Service-provider interface for fit models beyond the built-in {@link ModelType}s. A model is
+ * a function y = f(x; p) with named parameters p, fitted by Levenberg–Marquardt from
+ * {@link #initialGuess}, and plugs into the fit, metrics, chart and bootstrap unchanged.
+ * <p>
+ * Providers are found with {@link java.util.ServiceLoader}: list the implementing class in
+ * {@code META-INF/services/org.example.CurveModel} of a jar on the class path. Formulas typed
+ * by the user are {@link ExpressionModel}s. Implementations must be immutable and thread-safe,
+ * since fits evaluate one model from several threads at once.
+ */
+public interface CurveModel {
+
+    /** Unique name, shown in the model list and in results. */
+    String name();
+
+    /** Parameter names, in the order of the parameter arrays. */
+    String[] parameterNames();
+
+    /** Writes f(xs[i]; params) for i in [from, to) into {@code out[i - from]}; NaN outside the domain. */
+    void evaluate(double[] xs, int from, int to, double[] params, double[] out);
+
+    /** Writes ∂f/∂p at x into {@code out[0..parameterNames().length)}. */
+    void gradient(double x, double[] params, double[] out);
+
+    /** Values and Jacobian rows at every x; override when both share work. */
+    default void valueAndJacobian(double[] xs, double[] params, double[] values, double[][] jacobian) {
+        evaluate(xs, 0, xs.length, params, values);
+        for (int i = 0; i < xs.length; i++) gradient(xs[i], params, jacobian[i]);
+    }
+
+    /** Starting parameters for the iterative fit of the (weighted) points; {@code ws} may be null. */
+    double[] initialGuess(double[] xs, double[] ys, double[] ws);
+
+    /** Fitted equation for display, with numbers formatted by {@code format}. */
+    default String equation(double[] params, DoubleFunction<String> format) {
+        StringBuilder sb = new StringBuilder(name());
+        String[] names = parameterNames();
+        for (int i = 0; i < params.length; i++) sb.append(i == 0 ? ": " : ", ").append(names[i]).append(" = ").append(format.apply(params[i]));
+        return sb.toString();
+    }
+}
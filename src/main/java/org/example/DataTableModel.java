@@ -0,0 +1,456 @@
+package org.example;
+
+import javax.swing.UIManager;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Table model over primitive {@link DoubleColumn}s: X, one or more Y series and the weight W
+ * (1 unless set; a blank weight cell means 1). The table, the header sort and the fit all work
+ * on the same {@code double[]} buffers; cells are only boxed when Swing asks to render them.
+ * <p>
+ * Every mutation also updates one {@link SufficientStats} per regressor transform for the
+ * first series, so the linear-in-parameter models can be refitted in time proportional to the
+ * edit, not to n, the chart's {@link ScatterPyramid} of those points, and an order-independent
+ * fingerprint of all rows for {@link FitCache}.
+ */
+@SuppressWarnings("serial")
+final class DataTableModel extends AbstractTableModel {
+
+    static final int X = 0, Y = 1;
+    /** Most Y series a table holds; wider imports keep the first ones. */
+    static final int MAX_SERIES = 64;
+
+    private final DoubleColumn x = new DoubleColumn();
+    private final List<DoubleColumn> ys = new ArrayList<>(List.of(new DoubleColumn()));
+    // Header names of the series; null entries get Y1, Y2, …
+    private final List<String> names = new ArrayList<>(Arrays.asList((String) null));
+    private final DoubleColumn w = new DoubleColumn();
+    // Rows whose weight is not 1; while zero, fits take the unweighted path
+    private int weightedRows;
+
+    // True while rows are known to be in ascending X order, so fits can skip their sort
+    private boolean sortedByX = true;
+
+    private final SufficientStats[] stats = {
+            new SufficientStats(LinearLeastSquares.Transform.IDENTITY),
+            new SufficientStats(LinearLeastSquares.Transform.LOG),
+            new SufficientStats(LinearLeastSquares.Transform.RECIPROCAL)
+    };
+    // The complete rows of the first series in X order, for the chart and the X range
+    private ScatterPyramid points = new ScatterPyramid();
+    // Sum of per-row hashes and count of the rows with an X: a multiset hash, updated in O(1)
+    private long rowHashSum;
+    private int hashedRows;
+
+    /** All series of the rows that have an X, sorted by X: the input of a multi-series fit. */
+    static final class SeriesSnapshot {
+        final double[] xs;
+        final double[][] ys; // [series][row], NaN where a series has no value
+        final double[] ws;   // null while every weight is 1
+        final String[] names;
+
+        SeriesSnapshot(double[] xs, double[][] ys, double[] ws, String[] names) {
+            this.xs = xs;
+            this.ys = ys;
+            this.ws = ws;
+            this.names = names;
+        }
+    }
+
+    @Override public int getRowCount() { return x.size(); }
+    @Override public int getColumnCount() { return ys.size() + 2; }
+    @Override public Class<?> getColumnClass(int columnIndex) { return Double.class; }
+    @Override public boolean isCellEditable(int row, int column) { return true; }
+
+    @Override public String getColumnName(int column) {
+        if (column == X) return "X";
+        if (column == weightColumn()) return "W";
+        return seriesName(column - Y);
+    }
+
+    @Override public Object getValueAt(int row, int column) {
+        double v = column(column).get(row);
+        return Double.isNaN(v) ? null : v;
+    }
+
+    @Override public void setValueAt(Object value, int row, int column) {
+        double v = value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+        if (column == weightColumn()) {
+            if (v < 0) {
+                // Weights are never negative; keep the old one
+                UIManager.getLookAndFeel().provideErrorFeedback(null);
+                return;
+            }
+            v = weightOrOne(v);
+        }
+        unaccount(row);
+        column(column).set(row, v);
+        account(row);
+        if (column == X && sortedByX) sortedByX = inOrder(row);
+        fireTableCellUpdated(row, column);
+    }
+
+    int seriesCount() { return ys.size(); }
+
+    /** Name of series {@code s}: its header, else "Y" alone or Y1, Y2, … */
+    String seriesName(int s) {
+        String name = names.get(s);
+        if (name != null && !name.isEmpty()) return name;
+        return ys.size() == 1 ? "Y" : "Y" + (s + 1);
+    }
+
+    int weightColumn() { return ys.size() + 1; }
+
+    /** Header of series {@code s} as imported, "" when it had none. */
+    String header(int s) {
+        String name = names.get(s);
+        return name == null ? "" : name;
+    }
+
+    /** Copies of the columns in row order: X, every series, then W unless every weight is 1. */
+    double[][] columns() {
+        int k = ys.size();
+        double[][] columns = new double[k + (weightedRows > 0 ? 2 : 1)][];
+        columns[0] = x.toArray();
+        for (int s = 0; s < k; s++) columns[1 + s] = ys.get(s).toArray();
+        if (weightedRows > 0) columns[k + 1] = w.toArray();
+        return columns;
+    }
+
+    void addRow(double xv, double yv) {
+        int row = x.size();
+        x.add(xv);
+        ys.get(0).add(yv);
+        for (int s = 1; s < ys.size(); s++) ys.get(s).add(Double.NaN);
+        w.add(1.0);
+        account(row);
+        if (sortedByX) sortedByX = inOrder(row);
+        fireTableRowsInserted(row, row);
+    }
+
+    /** Appends {@code n} rows with a single table event. */
+    void addRows(double[] xs, double[] ys, int n) {
+        addRows(xs, ys, null, n);
+    }
+
+    /** Appends {@code n} weighted rows of the first series; {@code ws == null} means unit weights. */
+    void addRows(double[] xs, double[] ys, double[] ws, int n) {
+        addRows(xs, List.of(ys), null, ws, n);
+    }
+
+    /**
+     * Appends {@code n} rows of several series with a single event. Series beyond the current
+     * count are added (NaN in the existing rows); series the rows lack are NaN. NaN or
+     * negative weights count as 1.
+     */
+    void addRows(double[] xs, List<double[]> series, String[] seriesNames, double[] ws, int n) {
+        if (n == 0) return;
+        int added = Math.min(series.size(), MAX_SERIES) - ys.size();
+        int first = x.size();
+        for (int s = ys.size(); s < series.size() && s < MAX_SERIES; s++) {
+            DoubleColumn c = new DoubleColumn(first + n);
+            for (int i = 0; i < first; i++) c.add(Double.NaN);
+            ys.add(c);
+            names.add(null);
+        }
+        if (seriesNames != null) {
+            for (int s = 0; s < seriesNames.length && s < ys.size(); s++) if (names.get(s) == null) names.set(s, seriesNames[s]);
+        }
+        x.addAll(xs, 0, n);
+        for (int s = 0; s < ys.size(); s++) {
+            DoubleColumn c = ys.get(s);
+            if (s < series.size()) {
+                c.addAll(series.get(s), 0, n);
+            } else {
+                c.ensureCapacity(first + n);
+                for (int i = 0; i < n; i++) c.add(Double.NaN);
+            }
+        }
+        w.ensureCapacity(first + n);
+        for (int i = 0; i < n; i++) w.add(ws == null ? 1.0 : weightOrOne(ws[i]));
+        accountAll(first, n);
+        if (sortedByX) {
+            for (int i = first; i < first + n && sortedByX; i++) sortedByX = inOrder(i);
+        }
+        if (added > 0) fireTableStructureChanged();
+        else fireTableRowsInserted(first, first + n - 1);
+    }
+
+    /** Removes the given model rows (any order) in one compaction pass and one event. */
+    void removeRows(int[] rows) {
+        if (rows.length == 0) return;
+        int[] sorted = rows.clone();
+        Arrays.sort(sorted);
+        // Removing many points one by one costs more than indexing the rest afresh
+        boolean reindex = (long) sorted.length * ScatterPyramid.BLOCK > points.size();
+        for (int row : sorted) unaccount(row, !reindex);
+        x.removeSorted(sorted);
+        for (DoubleColumn c : ys) c.removeSorted(sorted);
+        w.removeSorted(sorted);
+        if (reindex) {
+            double[][] data = snapshot();
+            points = new ScatterPyramid(data[0], data[1]);
+        }
+        fireTableDataChanged();
+    }
+
+    /** Removes every row; the table goes back to a single unnamed series. */
+    void clear() {
+        boolean structure = ys.size() > 1 || names.get(0) != null;
+        x.clear();
+        ys.subList(1, ys.size()).clear();
+        ys.get(0).clear();
+        names.subList(1, names.size()).clear();
+        names.set(0, null);
+        w.clear();
+        weightedRows = 0;
+        sortedByX = true;
+        for (SufficientStats s : stats) s.clear();
+        points = new ScatterPyramid();
+        rowHashSum = 0;
+        hashedRows = 0;
+        if (structure) fireTableStructureChanged();
+        else fireTableDataChanged();
+    }
+
+    /**
+     * Takes over the rows, series and running statistics of {@code loaded}, which must not be
+     * used afterwards: a table filled off the EDT goes live with one structure event.
+     */
+    void replaceWith(DataTableModel loaded) {
+        x.moveFrom(loaded.x);
+        ys.clear();
+        ys.addAll(loaded.ys);
+        names.clear();
+        names.addAll(loaded.names);
+        w.moveFrom(loaded.w);
+        weightedRows = loaded.weightedRows;
+        sortedByX = loaded.sortedByX;
+        System.arraycopy(loaded.stats, 0, stats, 0, stats.length);
+        points = loaded.points;
+        rowHashSum = loaded.rowHashSum;
+        hashedRows = loaded.hashedRows;
+        fireTableStructureChanged();
+    }
+
+    /** Sorts the underlying columns in place by the given column; empty cells stay last either way. */
+    void sortBy(int column, boolean ascending) {
+        int n = x.size();
+        double[] key = column(column).buffer();
+        double[][] others = new double[getColumnCount() - 1][];
+        for (int c = 0, k = 0; c < getColumnCount(); c++) if (c != column) others[k++] = column(c).buffer();
+        DoubleColumn.sortBy(key, n, others);
+        if (!ascending) {
+            // NaN sorts last, so only the rows before it are turned around
+            int m = n;
+            while (m > 0 && Double.isNaN(key[m - 1])) m--;
+            DoubleColumn.reverse(key, m);
+            for (double[] o : others) DoubleColumn.reverse(o, m);
+        }
+        sortedByX = column == X && ascending;
+        fireTableDataChanged();
+    }
+
+    /**
+     * Returns {@code {xs, ys, ws}} for the first series: the complete (non-NaN) rows, sorted
+     * ascending by X, with {@code ws == null} while every weight is 1. The arrays are a private
+     * copy, so a background fit is unaffected by later edits.
+     */
+    @SuppressWarnings("try")
+    double[][] snapshotSortedByX() {
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.SNAPSHOT, x.size())) {
+            return snapshot();
+        }
+    }
+
+    private double[][] snapshot() {
+        int n = x.size();
+        double[] xb = x.buffer(), yb = ys.get(0).buffer(), wb = w.buffer();
+        boolean weighted = weightedRows > 0;
+        int m = 0;
+        for (int i = 0; i < n; i++) if (!Double.isNaN(xb[i]) && !Double.isNaN(yb[i])) m++;
+        double[] xs = new double[m], ys = new double[m], ws = weighted ? new double[m] : null;
+        if (m == n) {
+            System.arraycopy(xb, 0, xs, 0, n);
+            System.arraycopy(yb, 0, ys, 0, n);
+            if (weighted) System.arraycopy(wb, 0, ws, 0, n);
+        } else {
+            for (int i = 0, j = 0; i < n; i++) {
+                if (Double.isNaN(xb[i]) || Double.isNaN(yb[i])) continue;
+                xs[j] = xb[i];
+                if (weighted) ws[j] = wb[i];
+                ys[j++] = yb[i];
+            }
+        }
+        if (!sortedByX) {
+            if (weighted) DoubleColumn.sortBy(xs, m, ys, ws);
+            else DoubleColumn.sortBy(xs, m, ys);
+        }
+        return new double[][]{xs, ys, ws};
+    }
+
+    /** Every series over the rows that have an X, copied and sorted by X once for all of them. */
+    @SuppressWarnings("try")
+    SeriesSnapshot snapshotSeries() {
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.SNAPSHOT, (long) x.size() * ys.size())) {
+            int n = x.size(), k = ys.size();
+            double[] xb = x.buffer(), wb = w.buffer();
+            boolean weighted = weightedRows > 0;
+            int m = 0;
+            for (int i = 0; i < n; i++) if (!Double.isNaN(xb[i])) m++;
+            double[] xs = new double[m], ws = weighted ? new double[m] : null;
+            double[][] series = new double[k][m];
+            for (int i = 0, j = 0; i < n; i++) {
+                if (Double.isNaN(xb[i])) continue;
+                xs[j] = xb[i];
+                if (weighted) ws[j] = wb[i];
+                for (int s = 0; s < k; s++) series[s][j] = ys.get(s).buffer()[i];
+                j++;
+            }
+            if (!sortedByX) {
+                double[][] companions = Arrays.copyOf(series, k + (weighted ? 1 : 0));
+                if (weighted) companions[k] = ws;
+                DoubleColumn.sortBy(xs, m, companions);
+            }
+            String[] seriesNames = new String[k];
+            for (int s = 0; s < k; s++) seriesNames[s] = seriesName(s);
+            return new SeriesSnapshot(xs, series, ws, seriesNames);
+        }
+    }
+
+    /** Running statistics of the complete rows of the first series for the given regressor transform. */
+    SufficientStats stats(LinearLeastSquares.Transform transform) {
+        return stats[transform.ordinal()];
+    }
+
+    /**
+     * Hash of the rows with an X as a multiset of (x, y…, w). Fits see those rows sorted by X,
+     * so row order and rows without an X do not change it; any other edit does (up to 64-bit
+     * collisions). A table built up paste by paste hashes the same as the same rows loaded at once.
+     */
+    long fingerprint() {
+        return mix(rowHashSum + mix(hashedRows) + ys.size());
+    }
+
+    /** {@code {xmin, xmax}} over the complete rows of the first series. */
+    double[] xRange() {
+        if (points.size() == 0) return new double[]{Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        return new double[]{points.minX(), points.maxX()};
+    }
+
+    /**
+     * The complete rows of the first series as a chart index, kept current with every edit.
+     * Owned by the table: it changes in place and must only be read on the table's thread.
+     */
+    ScatterPyramid points() {
+        return points;
+    }
+
+    static double weightOrOne(double v) {
+        return Double.isNaN(v) || v < 0 ? 1.0 : v;
+    }
+
+    private void account(int row) {
+        account(row, true);
+    }
+
+    // Without updatePoints the caller adds the row's point itself
+    private void account(int row, boolean updatePoints) {
+        double xv = x.get(row), yv = ys.get(0).get(row), wv = w.get(row);
+        if (wv != 1.0) weightedRows++;
+        if (Double.isNaN(xv)) return;
+        rowHashSum += rowHash(row);
+        hashedRows++;
+        if (Double.isNaN(yv)) return;
+        for (SufficientStats s : stats) s.add(xv, yv, wv);
+        if (updatePoints) points.add(xv, yv);
+    }
+
+    // Accounts rows [first, first + n) after a bulk append; complete blocks take the bulk path
+    private void accountAll(int first, int n) {
+        double[] xb = x.buffer(), yb = ys.get(0).buffer(), wb = w.buffer();
+        boolean complete = true;
+        for (int i = first; i < first + n && complete; i++) complete = !Double.isNaN(xb[i]) && !Double.isNaN(yb[i]);
+        if (!complete) {
+            double[] xs = new double[n], ys1 = new double[n];
+            int m = 0;
+            for (int i = first; i < first + n; i++) {
+                account(i, false);
+                if (Double.isNaN(xb[i]) || Double.isNaN(yb[i])) continue;
+                xs[m] = xb[i];
+                ys1[m++] = yb[i];
+            }
+            addPoints(xs, ys1, m);
+            return;
+        }
+        double[] xs = Arrays.copyOfRange(xb, first, first + n), ys1 = Arrays.copyOfRange(yb, first, first + n);
+        double[] ws = null;
+        for (int i = first; i < first + n; i++) {
+            if (wb[i] == 1.0) continue;
+            if (ws == null) ws = Arrays.copyOfRange(wb, first, first + n);
+            weightedRows++;
+        }
+        for (SufficientStats s : stats) s.addAll(xs, ys1, ws, n);
+        for (int i = first; i < first + n; i++) rowHashSum += rowHash(i);
+        hashedRows += n;
+        addPoints(xs, ys1, n);
+    }
+
+    // Adds the first n of these points, which the index then owns, to the chart points
+    private void addPoints(double[] xs, double[] ys, int n) {
+        boolean ordered = true;
+        for (int i = 1; i < n && ordered; i++) ordered = xs[i - 1] <= xs[i];
+        if (!ordered) DoubleColumn.sortBy(xs, n, ys);
+        points.addAll(xs, ys, n);
+    }
+
+    private void unaccount(int row) {
+        unaccount(row, true);
+    }
+
+    // Without updatePoints the caller re-indexes the points afterwards
+    private void unaccount(int row, boolean updatePoints) {
+        double xv = x.get(row), yv = ys.get(0).get(row), wv = w.get(row);
+        if (wv != 1.0) weightedRows--;
+        if (Double.isNaN(xv)) return;
+        rowHashSum -= rowHash(row);
+        hashedRows--;
+        if (Double.isNaN(yv)) return;
+        for (SufficientStats s : stats) s.remove(xv, yv, wv);
+        if (updatePoints) points.remove(xv, yv);
+    }
+
+    // Empty cells do not contribute, so adding series (NaN in the existing rows) leaves the hash
+    // of those rows as it was and the sum never needs a rehash
+    private long rowHash(int row) {
+        long h = mix(Double.doubleToLongBits(x.get(row)));
+        for (int s = 0; s < ys.size(); s++) {
+            double v = ys.get(s).get(row);
+            if (!Double.isNaN(v)) h = mix(h ^ mix(Double.doubleToLongBits(v) + s));
+        }
+        return mix(h ^ Double.doubleToLongBits(w.get(row)));
+    }
+
+    // SplitMix64 finaliser
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private DoubleColumn column(int column) {
+        if (column == X) return x;
+        if (column == weightColumn()) return w;
+        return ys.get(column - Y);
+    }
+
+    // Row is in order relative to its neighbours (NaN sorts last, like the primitive sort)
+    private boolean inOrder(int row) {
+        double v = x.get(row);
+        if (row > 0 && Double.compare(x.get(row - 1), v) > 0) return false;
+        return row + 1 >= x.size() || Double.compare(v, x.get(row + 1)) <= 0;
+    }
+}
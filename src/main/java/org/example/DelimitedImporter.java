@@ -0,0 +1,339 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * Bulk parser for delimited X/Y text: pasted Excel ranges, CSV and TSV files.
+ * <p>
+ * Files are memory-mapped and scanned byte by byte. The delimiter is detected once from the
+ * first lines, and numbers are parsed in place without creating Strings, keeping the decimal
+ * comma support of the old paste parser. Rows land directly in primitive columns, ready for a
+ * single {@link DataTableModel#addRows} call.
+ * <p>
+ * By default only the first two numbers of a line are kept (X and Y). With more columns
+ * requested, every numeric column is kept (X, Y1, Y2, …), empty cells become NaN and a
+ * leading non-numeric line is taken as the header; {@link Result#weightColumn()} tells the
+ * weight column apart from the Y series.
+ */
+final class DelimitedImporter {
+
+    /** Same precedence the paste parser always used: tab/semicolon, then blanks, then comma. */
+    enum Delimiter {
+        TAB_OR_SEMICOLON, WHITESPACE, COMMA;
+
+        boolean isSeparator(byte c) {
+            switch (this) {
+                case TAB_OR_SEMICOLON: return c == '\t' || c == ';';
+                case WHITESPACE: return c == ' ' || c == '\t';
+                default: return c == ',';
+            }
+        }
+    }
+
+    static final class Result {
+        final List<DoubleColumn> columns = new ArrayList<>();
+        String[] header;
+        Delimiter delimiter;
+        int skippedLines;
+        // Rows with more cells than the first data row; their extra cells are dropped
+        int raggedRows;
+
+        DoubleColumn xs() { return columns.get(0); }
+        DoubleColumn ys() { return columns.get(1); }
+        int rows() { return columns.isEmpty() ? 0 : columns.get(0).size(); }
+
+        /**
+         * Index of the point-weight column, or -1: the column headed w, weight or weights.
+         * Without a header every column after X is a series.
+         */
+        int weightColumn() { return DelimitedImporter.weightColumn(header, columns.size()); }
+
+        DoubleColumn weights() {
+            int c = weightColumn();
+            return c < 0 ? null : columns.get(c);
+        }
+
+        /** Weights that are blank or negative and so count as 1; 0 without a weight column. */
+        int invalidWeights() {
+            DoubleColumn w = weights();
+            int bad = 0;
+            for (int i = 0, n = w == null ? 0 : w.size(); i < n; i++) if (!(w.get(i) >= 0)) bad++;
+            return bad;
+        }
+
+        /** Indices of the Y series: every column after X except the weights. */
+        int[] seriesColumns() {
+            int w = weightColumn();
+            return IntStream.range(1, columns.size()).filter(c -> c != w).toArray();
+        }
+    }
+
+    /** The weight-column rule of {@link Result#weightColumn()} for any header (null if none). */
+    static int weightColumn(String[] header, int columns) {
+        if (header == null) return -1;
+        for (int c = 1; c < columns && c < header.length; c++) {
+            String h = header[c].toLowerCase(Locale.ROOT);
+            if (h.equals("w") || h.equals("weight") || h.equals("weights")) return c;
+        }
+        return -1;
+    }
+
+    // Mapped windows stay well below the 2 GB limit of a single MappedByteBuffer
+    private static final long WINDOW = 1L << 28;
+    // Below this size a plain read is cheaper than setting up a mapping
+    private static final long MAP_THRESHOLD = 1L << 20;
+    private static final int SAMPLE_LINES = 20;
+
+    private final Result result = new Result();
+    private final int maxColumns;
+    private double[] row;
+    // Column count fixed by the first data row, 0 before it
+    private int width;
+    private final NumberParser numbers = new NumberParser();
+    // Set while converting to a column file: rows go there instead of into the result
+    private Path target;
+    private MappedDataset.Writer writer;
+
+    private DelimitedImporter(int maxColumns) {
+        this.maxColumns = maxColumns;
+        this.row = new double[Math.min(maxColumns, 16)];
+    }
+
+    static Result importFile(Path path) throws IOException {
+        return importFile(path, 2);
+    }
+
+    /** Imports up to {@code maxColumns} numeric columns; the first is X. */
+    static Result importFile(Path path, int maxColumns) throws IOException {
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.IMPORT, 0)) {
+            Result result = readFile(path, maxColumns);
+            span.points(result.rows());
+            return result;
+        }
+    }
+
+    private static Result readFile(Path path, int maxColumns) throws IOException {
+        DelimitedImporter importer = new DelimitedImporter(maxColumns);
+        importer.scan(path);
+        return importer.finish();
+    }
+
+    /**
+     * Converts a delimited file into a {@link MappedDataset} column file in one streaming pass,
+     * with constant heap; returns the number of rows written. Columns are named from the
+     * header, blank without one.
+     */
+    static long convert(Path source, Path target, int maxColumns) throws IOException {
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.IMPORT, 0)) {
+            DelimitedImporter importer = new DelimitedImporter(maxColumns);
+            importer.target = target;
+            try {
+                importer.scan(source);
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            } finally {
+                if (importer.writer != null) importer.writer.close();
+            }
+            if (importer.writer == null) throw new IOException("No numeric rows found.");
+            span.points(importer.writer.rows());
+            return importer.writer.rows();
+        }
+    }
+
+    private void scan(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < MAP_THRESHOLD) {
+                ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(path));
+                parse(buf, bomLength(buf), buf.limit());
+                return;
+            }
+            long pos = 0;
+            while (pos < size) {
+                long len = Math.min(WINDOW, size - pos);
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                boolean last = pos + len >= size;
+                int end = (int) len;
+                if (!last) {
+                    // Stop at the last full line (LF, CRLF or CR); the remainder starts the next window
+                    while (end > 0 && buf.get(end - 1) != '\n' && buf.get(end - 1) != '\r') end--;
+                    if (end == 0) end = (int) len;
+                }
+                parse(buf, pos == 0 ? bomLength(buf) : 0, end);
+                pos += end;
+            }
+        }
+    }
+
+    static Result parse(String text) {
+        return parse(text, 2);
+    }
+
+    static Result parse(String text, int maxColumns) {
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.IMPORT, 0)) {
+            ByteBuffer buf = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+            DelimitedImporter importer = new DelimitedImporter(maxColumns);
+            importer.parse(buf, 0, buf.limit());
+            Result result = importer.finish();
+            span.points(result.rows());
+            return result;
+        }
+    }
+
+    private Result finish() {
+        while (result.columns.size() < 2) result.columns.add(new DoubleColumn());
+        return result;
+    }
+
+    private static int bomLength(ByteBuffer b) {
+        return b.limit() >= 3 && b.get(0) == (byte) 0xEF && b.get(1) == (byte) 0xBB && b.get(2) == (byte) 0xBF ? 3 : 0;
+    }
+
+    private void parse(ByteBuffer b, int from, int to) {
+        if (result.delimiter == null) result.delimiter = detect(b, from, to);
+        Delimiter d = result.delimiter;
+        int ls = from;
+        while (ls < to) {
+            int le = ls;
+            while (le < to && b.get(le) != '\n' && b.get(le) != '\r') le++;
+            if (!isBlankLine(b, ls, le)) {
+                int n = parseLine(b, ls, le, d);
+                if (n >= 2) {
+                    addRow(n);
+                } else {
+                    if (n < 0 && result.columns.isEmpty() && result.header == null && maxColumns > 2) {
+                        result.header = splitHeader(b, ls, le, d);
+                    }
+                    result.skippedLines++;
+                }
+            }
+            ls = le + 1;
+        }
+    }
+
+    private void addRow(int n) {
+        // The first data row fixes the column count
+        if (width == 0) width = n;
+        if (target != null) {
+            writeRow(n);
+            return;
+        }
+        List<DoubleColumn> cols = result.columns;
+        if (cols.isEmpty()) {
+            for (int c = 0; c < n; c++) cols.add(new DoubleColumn(1024));
+        }
+        for (int c = 0; c < cols.size(); c++) cols.get(c).add(c < n ? row[c] : Double.NaN);
+    }
+
+    private void writeRow(int n) {
+        try {
+            if (writer == null) {
+                String[] names = new String[n];
+                for (int c = 0; c < n; c++) names[c] = result.header != null && c < result.header.length ? result.header[c] : "";
+                writer = new MappedDataset.Writer(target, names);
+            }
+            writer.append(row, n);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static String[] splitHeader(ByteBuffer b, int ls, int le, Delimiter d) {
+        List<String> names = new ArrayList<>();
+        int i = ls;
+        while (i < le) {
+            while (i < le && (b.get(i) == ' ' || (d != Delimiter.COMMA && d.isSeparator(b.get(i))))) i++;
+            if (i >= le) break;
+            int ts = i;
+            while (i < le && !d.isSeparator(b.get(i))) i++;
+            byte[] bytes = new byte[i - ts];
+            for (int k = ts; k < i; k++) bytes[k - ts] = b.get(k);
+            names.add(new String(bytes, StandardCharsets.UTF_8).trim().replace("\"", ""));
+            if (d == Delimiter.COMMA && i < le) i++;
+        }
+        return names.toArray(new String[0]);
+    }
+
+    private static Delimiter detect(ByteBuffer b, int from, int to) {
+        boolean tabOrSemi = false, blanks = false;
+        int lines = 0;
+        for (int ls = from; ls < to && lines < SAMPLE_LINES; ) {
+            int le = ls;
+            while (le < to && b.get(le) != '\n' && b.get(le) != '\r') le++;
+            if (!isBlankLine(b, ls, le)) {
+                lines++;
+                boolean inToken = false;
+                int tokens = 0;
+                for (int i = ls; i < le; i++) {
+                    byte c = b.get(i);
+                    if (c == '\t' || c == ';') tabOrSemi = true;
+                    boolean blank = c == ' ' || c == '\t';
+                    if (!blank && !inToken) tokens++;
+                    inToken = !blank;
+                }
+                if (tokens >= 2) blanks = true;
+            }
+            ls = le + 1;
+        }
+        if (tabOrSemi) return Delimiter.TAB_OR_SEMICOLON;
+        return blanks ? Delimiter.WHITESPACE : Delimiter.COMMA;
+    }
+
+    private static boolean isBlankLine(ByteBuffer b, int ls, int le) {
+        for (int i = ls; i < le; i++) if (b.get(i) > ' ') return false;
+        return true;
+    }
+
+    /**
+     * Parses up to the column count (or {@code maxColumns} before the first row) numbers of one
+     * line; returns how many, or -1 on a bad token.
+     */
+    private int parseLine(ByteBuffer b, int ls, int le, Delimiter d) {
+        int col = 0, i = ls;
+        boolean decimalComma = d != Delimiter.COMMA;
+        int limit = width == 0 ? maxColumns : width;
+        while (i < le && col < limit) {
+            while (i < le && (b.get(i) == ' ' || (d != Delimiter.COMMA && d.isSeparator(b.get(i))))) i++;
+            if (i >= le) break;
+            int ts = i;
+            while (i < le && !d.isSeparator(b.get(i))) i++;
+            int te = i;
+            while (te > ts && b.get(te - 1) <= ' ') te--;
+            double v;
+            if (te == ts && maxColumns > 2) {
+                v = Double.NaN; // empty cell in a multi-column file
+            } else {
+                v = numbers.parse(b, ts, te, decimalComma);
+                if (numbers.failed()) return -1;
+            }
+            if (col == row.length) row = Arrays.copyOf(row, row.length * 2);
+            row[col++] = v;
+            if (d == Delimiter.COMMA && i < le && ++i == le && maxColumns > 2 && col < limit) {
+                // trailing comma: the last cell is empty
+                if (col == row.length) row = Arrays.copyOf(row, row.length * 2);
+                row[col++] = Double.NaN;
+            }
+        }
+        if (col == limit && width > 0 && width < maxColumns && hasMoreCells(b, i, le, d)) result.raggedRows++;
+        return col;
+    }
+
+    // Whether anything but blanks and separators follows on the line
+    private static boolean hasMoreCells(ByteBuffer b, int i, int le, Delimiter d) {
+        for (; i < le; i++) if (b.get(i) > ' ' && !d.isSeparator(b.get(i))) return true;
+        return false;
+    }
+}
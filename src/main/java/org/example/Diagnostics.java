@@ -0,0 +1,232 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Timing and allocation of the phases of the import and fit pipeline. A phase is measured
+ * with a {@link Span} (wall time, points, bytes allocated, optimizer counts) and the latest
+ * sample of each phase is kept here. Every span is also emitted as a JFR event, and the
+ * samples are published over JMX, so a slow fit can be profiled on a user's workstation with
+ * {@code jcmd <pid> JFR.start} or JConsole alone.
+ * <p>
+ * A span costs two clock reads and two allocation-counter reads, so spans wrap whole phases,
+ * never loop bodies. Sequential phases count the current thread's allocations; parallel
+ * ones sum over all threads, which includes whatever else ran meanwhile.
+ */
+final class Diagnostics implements DiagnosticsMXBean {
+
+    static final String OBJECT_NAME = "org.example:type=Diagnostics";
+
+    enum Phase {
+        IMPORT("Import", false), SNAPSHOT("Snapshot + sort", false), SOLVE("Solve", false),
+        METRICS("Metrics", false), FIT_ALL("Fit all", true), FIT_SERIES("Fit series", true), BOOTSTRAP("Bootstrap", true),
+        SEGMENTS("Breakpoint search", true), LIVE("Live refit", false), RENDER("Chart series", false), PAINT("Chart paint", false);
+
+        final String label;
+        final boolean parallel;
+        Phase(String label, boolean parallel) { this.label = label; this.parallel = parallel; }
+        @Override public String toString() { return label; }
+    }
+
+    /** The most recent run of a phase. */
+    static final class Sample {
+        final long nanos, points, allocatedBytes;
+        final int iterations, evaluations;
+
+        Sample(long nanos, long points, long allocatedBytes, int iterations, int evaluations) {
+            this.nanos = nanos;
+            this.points = points;
+            this.allocatedBytes = allocatedBytes;
+            this.iterations = iterations;
+            this.evaluations = evaluations;
+        }
+
+        double millis() { return nanos / 1e6; }
+
+        double pointsPerSecond() { return nanos == 0 ? 0 : points * 1e9 / nanos; }
+    }
+
+    @Name("org.example.Phase")
+    @Label("CurveFit Phase")
+    @Category("CurveFit")
+    @Description("One phase of the CurveFit import or fit pipeline")
+    static final class PhaseEvent extends Event {
+        @Label("Phase") String phase;
+        @Label("Points") long points;
+        @Label("Allocated") @DataAmount long allocated;
+        @Label("Iterations") int iterations;
+        @Label("Evaluations") int evaluations;
+    }
+
+    private static final Diagnostics INSTANCE = new Diagnostics();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATION_SUPPORTED = allocationSupported();
+
+    private final Map<Phase, Sample> latest = new EnumMap<>(Phase.class);
+    private final Map<Phase, Long> runs = new EnumMap<>(Phase.class);
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private int lastIterations, lastEvaluations;
+
+    private Diagnostics() { }
+
+    static Diagnostics get() { return INSTANCE; }
+
+    /** Starts measuring {@code phase} over {@code points} points; close the span to record it. */
+    static Span begin(Phase phase, long points) {
+        return new Span(phase, points);
+    }
+
+    /** Measures one phase; use with try-with-resources. */
+    static final class Span implements AutoCloseable {
+        private final Phase phase;
+        private long points;
+        private final long start, allocatedAtStart;
+        private final PhaseEvent event = new PhaseEvent();
+        private int iterations, evaluations;
+
+        private Span(Phase phase, long points) {
+            this.phase = phase;
+            this.points = points;
+            this.allocatedAtStart = allocatedBytes(phase.parallel);
+            event.begin();
+            this.start = System.nanoTime();
+        }
+
+        /** Points processed, when only known at the end (an import). */
+        void points(long points) { this.points = points; }
+
+        /** Optimizer work done in this phase. */
+        void counts(int iterations, int evaluations) {
+            this.iterations = iterations;
+            this.evaluations = evaluations;
+        }
+
+        @Override public void close() {
+            long nanos = System.nanoTime() - start;
+            event.end();
+            // Threads that ended during a parallel phase take their counts with them
+            long allocated = allocatedAtStart < 0 ? -1 : Math.max(0, allocatedBytes(phase.parallel) - allocatedAtStart);
+            if (event.shouldCommit()) {
+                event.phase = phase.name();
+                event.points = points;
+                event.allocated = allocated;
+                event.iterations = iterations;
+                event.evaluations = evaluations;
+                event.commit();
+            }
+            INSTANCE.record(phase, new Sample(nanos, points, allocated, iterations, evaluations));
+        }
+    }
+
+    /** Registers the JMX view once; failures only cost the JMX view. */
+    static void registerMBean() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, name);
+            }
+        } catch (JMException ex) {
+            System.err.println("Diagnostics MBean not registered: " + ex.getMessage());
+        }
+    }
+
+    /** Runs {@code listener} after every recorded span, on the recording thread. */
+    void addListener(Runnable listener) { listeners.add(listener); }
+
+    synchronized Sample latest(Phase phase) { return latest.get(phase); }
+
+    private void record(Phase phase, Sample sample) {
+        synchronized (this) {
+            latest.put(phase, sample);
+            runs.merge(phase, 1L, Long::sum);
+            if (sample.evaluations > 0) {
+                lastIterations = sample.iterations;
+                lastEvaluations = sample.evaluations;
+            }
+        }
+        for (Runnable l : listeners) l.run();
+    }
+
+    // === JMX ===
+
+    @Override public synchronized Map<String, Double> getLastMillis() {
+        Map<String, Double> out = new LinkedHashMap<>();
+        latest.forEach((p, s) -> out.put(p.label, s.millis()));
+        return out;
+    }
+
+    @Override public synchronized Map<String, Long> getLastPoints() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        latest.forEach((p, s) -> out.put(p.label, s.points));
+        return out;
+    }
+
+    @Override public synchronized Map<String, Double> getLastPointsPerSecond() {
+        Map<String, Double> out = new LinkedHashMap<>();
+        latest.forEach((p, s) -> out.put(p.label, s.pointsPerSecond()));
+        return out;
+    }
+
+    @Override public synchronized Map<String, Long> getLastAllocatedBytes() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        latest.forEach((p, s) -> out.put(p.label, s.allocatedBytes));
+        return out;
+    }
+
+    @Override public synchronized Map<String, Long> getRuns() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        runs.forEach((p, n) -> out.put(p.label, n));
+        return out;
+    }
+
+    @Override public synchronized int getLastIterations() { return lastIterations; }
+
+    @Override public synchronized int getLastEvaluations() { return lastEvaluations; }
+
+    @Override public void reset() {
+        synchronized (this) {
+            latest.clear();
+            runs.clear();
+            lastIterations = lastEvaluations = 0;
+        }
+        for (Runnable l : listeners) l.run();
+    }
+
+    // === Allocation counters (HotSpot's extension of ThreadMXBean) ===
+
+    private static boolean allocationSupported() {
+        if (!(THREADS instanceof com.sun.management.ThreadMXBean)) return false;
+        com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean) THREADS;
+        try {
+            if (t.isThreadAllocatedMemorySupported() && !t.isThreadAllocatedMemoryEnabled()) t.setThreadAllocatedMemoryEnabled(true);
+            return t.isThreadAllocatedMemoryEnabled();
+        } catch (UnsupportedOperationException | SecurityException ex) {
+            return false;
+        }
+    }
+
+    // Bytes allocated so far by this thread, or by all live threads; -1 if unsupported
+    private static long allocatedBytes(boolean allThreads) {
+        if (!ALLOCATION_SUPPORTED) return -1;
+        com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean) THREADS;
+        if (!allThreads) return t.getThreadAllocatedBytes(Thread.currentThread().getId());
+        long sum = 0;
+        for (long b : t.getThreadAllocatedBytes(t.getAllThreadIds())) if (b > 0) sum += b;
+        return sum;
+    }
+}
@@ -0,0 +1,29 @@
+package org.example;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link Diagnostics}, registered as {@value Diagnostics#OBJECT_NAME}. Maps are
+ * keyed by phase name and hold the most recent run of each phase. Public only because JMX
+ * requires the management interface to be.
+ */
+public interface DiagnosticsMXBean {
+
+    Map<String, Double> getLastMillis();
+
+    Map<String, Long> getLastPoints();
+
+    Map<String, Double> getLastPointsPerSecond();
+
+    /** Bytes allocated during the phase, or -1 where the JVM cannot measure it. */
+    Map<String, Long> getLastAllocatedBytes();
+
+    /** Number of times each phase has run. */
+    Map<String, Long> getRuns();
+
+    int getLastIterations();
+
+    int getLastEvaluations();
+
+    void reset();
+}
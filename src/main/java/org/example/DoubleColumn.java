@@ -0,0 +1,128 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Growable column of primitive doubles. Missing cells are stored as {@code NaN},
+ * so a column never holds per-row objects.
+ */
+final class DoubleColumn {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private double[] data;
+    private int size;
+
+    DoubleColumn() { this(MIN_CAPACITY); }
+
+    DoubleColumn(int capacity) { data = new double[Math.max(MIN_CAPACITY, capacity)]; }
+
+    int size() { return size; }
+
+    double get(int i) {
+        if (i >= size) throw new IndexOutOfBoundsException("Index " + i + ", size " + size);
+        return data[i];
+    }
+
+    void set(int i, double v) {
+        if (i >= size) throw new IndexOutOfBoundsException("Index " + i + ", size " + size);
+        data[i] = v;
+    }
+
+    void add(double v) {
+        ensureCapacity(size + 1);
+        data[size++] = v;
+    }
+
+    void addAll(double[] src, int offset, int length) {
+        ensureCapacity(size + length);
+        System.arraycopy(src, offset, data, size, length);
+        size += length;
+    }
+
+    /** Removes the given indices (ascending, unique) with a single compaction pass. */
+    void removeSorted(int[] indices) {
+        if (indices.length == 0) return;
+        int write = indices[0];
+        int next = 0;
+        for (int read = indices[0]; read < size; read++) {
+            if (next < indices.length && indices[next] == read) { next++; continue; }
+            data[write++] = data[read];
+        }
+        size = write;
+    }
+
+    void clear() { size = 0; }
+
+    /** Takes over the values of {@code other}, which is left empty. */
+    void moveFrom(DoubleColumn other) {
+        data = other.data;
+        size = other.size;
+        other.data = new double[MIN_CAPACITY];
+        other.size = 0;
+    }
+
+    /** Live backing buffer; only the first {@link #size()} entries are meaningful. */
+    double[] buffer() { return data; }
+
+    double[] toArray() { return Arrays.copyOf(data, size); }
+
+    void ensureCapacity(int min) {
+        if (min <= data.length) return;
+        int cap = Math.max(min, data.length + (data.length >> 1));
+        data = Arrays.copyOf(data, cap);
+    }
+
+    // === Primitive sorting ===
+
+    /**
+     * Sorts {@code keys[0..n)} ascending (NaN last) and applies the same permutation to every
+     * companion array. In-place quicksort, no boxing and no index arrays.
+     */
+    static void sortBy(double[] keys, int n, double[]... companions) {
+        quickSort(keys, companions, 0, n - 1);
+    }
+
+    private static void quickSort(double[] k, double[][] c, int lo, int hi) {
+        while (hi - lo > 24) {
+            // median of three as pivot, then three-way partition so duplicate x values stay cheap
+            int mid = (lo + hi) >>> 1;
+            if (Double.compare(k[mid], k[lo]) < 0) swap(k, c, mid, lo);
+            if (Double.compare(k[hi], k[lo]) < 0) swap(k, c, hi, lo);
+            if (Double.compare(k[hi], k[mid]) < 0) swap(k, c, hi, mid);
+            double pivot = k[mid];
+            int lt = lo, gt = hi, i = lo;
+            while (i <= gt) {
+                int cmp = Double.compare(k[i], pivot);
+                if (cmp < 0) swap(k, c, lt++, i++);
+                else if (cmp > 0) swap(k, c, i, gt--);
+                else i++;
+            }
+            // recurse into the smaller half to bound stack depth
+            if (lt - lo < hi - gt) {
+                quickSort(k, c, lo, lt - 1);
+                lo = gt + 1;
+            } else {
+                quickSort(k, c, gt + 1, hi);
+                hi = lt - 1;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && Double.compare(k[j], k[j - 1]) < 0; j--) swap(k, c, j, j - 1);
+        }
+    }
+
+    private static void swap(double[] k, double[][] c, int a, int b) {
+        double t = k[a]; k[a] = k[b]; k[b] = t;
+        for (double[] arr : c) {
+            t = arr[a]; arr[a] = arr[b]; arr[b] = t;
+        }
+    }
+
+    /** Reverses {@code arr[0..n)} in place. */
+    static void reverse(double[] arr, int n) {
+        for (int i = 0, j = n - 1; i < j; i++, j--) {
+            double t = arr[i]; arr[i] = arr[j]; arr[j] = t;
+        }
+    }
+}
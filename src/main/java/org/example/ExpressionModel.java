@@ -0,0 +1,790 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.DoubleFunction;
+
+/**
+ * A user-entered formula such as {@code a*exp(-b*x)+c} as a {@link CurveModel}. Every name other
+ * than {@code x}, a function or {@code pi} is a parameter (in alphabetical order); {@code e^…}
+ * is Euler's number. Operators are {@code + - * / ^} (also {@code **}), with the functions exp,
+ * ln (log), log10, sqrt, abs, sin, cos, tan, atan, sinh, cosh and tanh.
+ * <p>
+ * The formula is parsed once into a hash-consed expression graph, so equal subexpressions are
+ * one node; the partial derivative for each parameter is taken symbolically on that graph and
+ * simplified. Value and gradient are then compiled to flat instruction arrays: parts that do
+ * not depend on x are computed once per call, and each remaining instruction runs as a tight
+ * loop over a block of points, so dispatch costs once per block instead of once per point and
+ * the value and all derivatives share their common subexpressions.
+ */
+final class ExpressionModel implements CurveModel {
+
+    // Points per block: the registers of a formula stay in cache
+    private static final int BLOCK = 256;
+    private static final int MAX_PARAMETERS = 16;
+
+    private static final int CONST = 0, X = 1, PARAM = 2, ADD = 3, SUB = 4, MUL = 5, DIV = 6, POW = 7, NEG = 8,
+            EXP = 9, LN = 10, LOG10 = 11, SQRT = 12, ABS = 13, SIGN = 14, SIN = 15, COS = 16, TAN = 17, ATAN = 18,
+            SINH = 19, COSH = 20, TANH = 21;
+    private static final Map<String, Integer> FUNCTIONS = Map.ofEntries(
+            Map.entry("exp", EXP), Map.entry("ln", LN), Map.entry("log", LN), Map.entry("log10", LOG10),
+            Map.entry("sqrt", SQRT), Map.entry("abs", ABS), Map.entry("sin", SIN), Map.entry("cos", COS),
+            Map.entry("tan", TAN), Map.entry("atan", ATAN), Map.entry("sinh", SINH), Map.entry("cosh", COSH),
+            Map.entry("tanh", TANH));
+
+    private final String formula;
+    private final String[] names;
+    private final Node root;
+    // Parameters the formula is jointly linear in, solved exactly while searching for a start
+    private final boolean[] linear;
+    private final Program value, full;
+
+    private ExpressionModel(String formula, String[] names, Node root, Node[] gradient, boolean[] linear) {
+        this.formula = formula;
+        this.names = names;
+        this.root = root;
+        this.linear = linear;
+        value = new Program(new Node[]{root});
+        Node[] outputs = new Node[gradient.length + 1];
+        outputs[0] = root;
+        System.arraycopy(gradient, 0, outputs, 1, gradient.length);
+        full = new Program(outputs);
+    }
+
+    /** Parses, differentiates and compiles {@code formula}; a leading {@code y =} is ignored. */
+    static ExpressionModel compile(String formula) {
+        String text = formula.trim().replaceFirst("^(?:y|f\\(x\\))\\s*=\\s*", "");
+        Parser parser = new Parser(text);
+        Node root = parser.parse();
+        String[] names = parser.parameters.toArray(new String[0]);
+        if (names.length == 0) throw new IllegalArgumentException("The formula has no parameters to fit.");
+        if (names.length > MAX_PARAMETERS) throw new IllegalArgumentException("A formula can have at most " + MAX_PARAMETERS + " parameters.");
+        // Parameter indices were assigned in order of appearance; renumber alphabetically
+        int[] order = new int[names.length];
+        for (int k = 0; k < names.length; k++) order[k] = parser.order.indexOf(names[k]);
+        Graph g = parser.graph;
+        root = g.renumber(root, order, new IdentityHashMap<>());
+        Node[] gradient = new Node[names.length];
+        for (int k = 0; k < names.length; k++) gradient[k] = g.derivative(root, k, new IdentityHashMap<>());
+        return new ExpressionModel(text, names, root, gradient, linearParameters(gradient));
+    }
+
+    // f is linear in p_k when ∂f/∂p_k does not involve p_k; jointly linear parameters must not
+    // involve each other either, so candidates are dropped, last first, until none does
+    private static boolean[] linearParameters(Node[] gradient) {
+        long set = 0;
+        for (int k = 0; k < gradient.length; k++) if ((gradient[k].params & 1L << k) == 0) set |= 1L << k;
+        for (int k = gradient.length - 1; k >= 0; k--) {
+            if ((set & 1L << k) != 0 && (gradient[k].params & set) != 0) set &= ~(1L << k);
+        }
+        boolean[] linear = new boolean[gradient.length];
+        for (int k = 0; k < gradient.length; k++) linear[k] = (set & 1L << k) != 0;
+        return linear;
+    }
+
+    @Override public String name() { return formula; }
+
+    @Override public String[] parameterNames() { return names.clone(); }
+
+    @Override public String toString() { return formula; }
+
+    @Override public void evaluate(double[] xs, int from, int to, double[] params, double[] out) {
+        Scratch t = value.prepare(params);
+        for (int b = from; b < to; b += BLOCK) {
+            int n = Math.min(BLOCK, to - b);
+            value.run(t, xs, b, n);
+            value.copy(t, 0, out, b - from, n);
+        }
+    }
+
+    @Override public void gradient(double x, double[] params, double[] out) {
+        Scratch t = full.prepare(params);
+        t.one[0] = x;
+        full.run(t, t.one, 0, 1);
+        for (int k = 0; k < names.length; k++) out[k] = full.output(t, k + 1, 0);
+    }
+
+    @Override public void valueAndJacobian(double[] xs, double[] params, double[] values, double[][] jacobian) {
+        Scratch t = full.prepare(params);
+        for (int b = 0; b < xs.length; b += BLOCK) {
+            int n = Math.min(BLOCK, xs.length - b);
+            full.run(t, xs, b, n);
+            full.copy(t, 0, values, b, n);
+            for (int k = 0; k < names.length; k++) {
+                int code = full.outputs[k + 1];
+                if (code >= 0) {
+                    double[] r = t.registers[code];
+                    for (int i = 0; i < n; i++) jacobian[b + i][k] = r[i];
+                } else {
+                    double s = t.scalars[-1 - code];
+                    for (int i = 0; i < n; i++) jacobian[b + i][k] = s;
+                }
+            }
+        }
+    }
+
+    /**
+     * Grid search over the parameters the formula is not linear in, on a strided sample of at
+     * most 200 points; for each grid point the linear ones are solved exactly by weighted least
+     * squares. The grid spans signs and decades, also relative to the X scale.
+     */
+    @Override public double[] initialGuess(double[] xs, double[] ys, double[] ws) {
+        int p = names.length, stride = Math.max(1, xs.length / 200), m = (xs.length + stride - 1) / stride;
+        double[] sx = new double[m], sy = new double[m], sw = new double[m];
+        double scale = 0;
+        for (int i = 0, j = 0; j < m; i += stride, j++) {
+            sx[j] = xs[i];
+            sy[j] = ys[i];
+            sw[j] = ws == null ? 1 : ws[i];
+            scale = Math.max(scale, Math.abs(xs[i]));
+        }
+        List<Double> values = new ArrayList<>(List.of(1.0, -1.0, 0.1, -0.1, 10.0, -10.0));
+        if (scale > 0 && (scale < 0.5 || scale > 2)) for (double v : new double[]{1, -1, 5, -5}) values.add(v / scale);
+        int[] nonlinear = new int[p];
+        int q = 0;
+        for (int k = 0; k < p; k++) if (!linear[k]) nonlinear[q++] = k;
+        double[] start = new double[p], best = new double[p], trial = new double[p];
+        Arrays.fill(start, 1);
+        Search search = new Search(sx, sy, sw);
+        double bestCost = search.cost(start, trial) ? search.last : Double.POSITIVE_INFINITY;
+        if (bestCost < Double.POSITIVE_INFINITY) best = trial.clone();
+        double combos = Math.pow(values.size(), q);
+        if (combos <= 1000) {
+            // Every combination
+            int[] digit = new int[q];
+            for (long c = 0; c < combos; c++) {
+                for (int j = 0; j < q; j++) start[nonlinear[j]] = values.get(digit[j]);
+                if (search.cost(start, trial) && search.last < bestCost) {
+                    bestCost = search.last;
+                    best = trial.clone();
+                }
+                for (int j = 0; j < q && ++digit[j] == values.size(); j++) digit[j] = 0;
+            }
+        } else {
+            // Too many: coordinate sweeps from the best point so far
+            for (int sweep = 0; sweep < 2; sweep++) {
+                for (int j = 0; j < q; j++) {
+                    double[] base = best.clone();
+                    for (double v : values) {
+                        base[nonlinear[j]] = v;
+                        if (search.cost(base, trial) && search.last < bestCost) {
+                            bestCost = search.last;
+                            best = trial.clone();
+                        }
+                    }
+                }
+            }
+        }
+        if (bestCost == Double.POSITIVE_INFINITY) Arrays.fill(best, 1);
+        return best;
+    }
+
+    /** Cost of a start on the sample, after solving the linear parameters. */
+    private final class Search {
+        final double[] xs, ys, ws, values;
+        final double[][] jacobian;
+        double last;
+
+        Search(double[] xs, double[] ys, double[] ws) {
+            this.xs = xs;
+            this.ys = ys;
+            this.ws = ws;
+            values = new double[xs.length];
+            jacobian = new double[xs.length][names.length];
+        }
+
+        // Fills out with start, its linear parameters solved; false when the cost is not finite
+        boolean cost(double[] start, double[] out) {
+            int p = names.length;
+            System.arraycopy(start, 0, out, 0, p);
+            int l = 0;
+            for (boolean b : linear) if (b) l++;
+            if (l > 0) {
+                // With the linear parameters at 0, f is the offset and their columns are the basis
+                for (int k = 0; k < p; k++) if (linear[k]) out[k] = 0;
+                valueAndJacobian(xs, out, values, jacobian);
+                double[][] a = new double[l][l];
+                double[] rhs = new double[l];
+                for (int i = 0; i < xs.length; i++) {
+                    double w = ws[i], r = ys[i] - values[i];
+                    if (!Double.isFinite(r)) return false;
+                    for (int j = 0, jj = 0; j < p; j++) {
+                        if (!linear[j]) continue;
+                        rhs[jj] += w * jacobian[i][j] * r;
+                        for (int k = 0, kk = 0; k <= j; k++) {
+                            if (!linear[k]) continue;
+                            a[jj][kk++] += w * jacobian[i][j] * jacobian[i][k];
+                        }
+                        jj++;
+                    }
+                }
+                double[] c;
+                try {
+                    c = LinearLeastSquares.solveCholesky(a, rhs);
+                } catch (IllegalArgumentException ex) {
+                    // Collinear columns at this start
+                    return false;
+                }
+                for (int k = 0, kk = 0; k < p; k++) if (linear[k]) out[k] = c[kk++];
+            }
+            evaluate(xs, 0, xs.length, out, values);
+            double sum = 0;
+            for (int i = 0; i < xs.length; i++) {
+                double r = ys[i] - values[i];
+                sum += ws[i] * r * r;
+            }
+            last = sum;
+            return Double.isFinite(sum);
+        }
+    }
+
+    /** The formula with the fitted values in place of the parameters. */
+    @Override public String equation(double[] params, DoubleFunction<String> format) {
+        StringBuilder sb = new StringBuilder("y = ");
+        print(root, 0, params, format, sb);
+        return sb.toString();
+    }
+
+    private static void print(Node n, int outer, double[] params, DoubleFunction<String> format, StringBuilder sb) {
+        int prec = precedence(n.op);
+        boolean paren = prec < outer;
+        if (paren) sb.append('(');
+        switch (n.op) {
+            case CONST:
+                // Constants as typed: whole numbers stay whole
+                double c = n.value;
+                sb.append(c == Math.PI ? "π" : c == Math.E ? "e" : c == Math.rint(c) && Math.abs(c) < 1e15 ? String.valueOf((long) c) : format.apply(c));
+                break;
+            case X:
+                sb.append('x');
+                break;
+            case PARAM: {
+                double v = params[(int) n.value];
+                sb.append(v < 0 && outer > 0 ? "(" + format.apply(v) + ")" : format.apply(v));
+                break;
+            }
+            case ADD: case SUB: case MUL: case DIV: case POW:
+                // Left-associative operators need parentheses on the right at equal precedence
+                print(n.a, n.op == POW ? prec + 1 : prec, params, format, sb);
+                sb.append(n.op == ADD ? " + " : n.op == SUB ? " - " : n.op == MUL ? "·" : n.op == DIV ? "/" : "^");
+                print(n.b, n.op == POW ? prec : prec + 1, params, format, sb);
+                break;
+            case NEG:
+                // -(b·x) reads as -b·x; only sums need parentheses
+                sb.append('-');
+                print(n.a, precedence(MUL), params, format, sb);
+                break;
+            default:
+                sb.append(functionName(n.op)).append('(');
+                print(n.a, 0, params, format, sb);
+                sb.append(')');
+        }
+        if (paren) sb.append(')');
+    }
+
+    private static int precedence(int op) {
+        switch (op) {
+            case ADD: case SUB: return 1;
+            case MUL: case DIV: return 2;
+            case NEG: return 3;
+            case POW: return 4;
+            default: return 5;
+        }
+    }
+
+    private static String functionName(int op) {
+        if (op == SIGN) return "sign";
+        for (Map.Entry<String, Integer> e : FUNCTIONS.entrySet()) if (e.getValue() == op && !e.getKey().equals("log")) return e.getKey();
+        return "?";
+    }
+
+    // === Expression graph ===
+
+    /** Hash-consed: structurally equal nodes are the same object, so equality is identity. */
+    private static final class Node {
+        final int op;
+        final double value; // the constant, or the parameter index
+        final Node a, b;
+        final boolean varying; // depends on x
+        final long params; // bit k: depends on parameter k
+        private final int hash;
+
+        Node(int op, double value, Node a, Node b) {
+            this.op = op;
+            this.value = value;
+            this.a = a;
+            this.b = b;
+            varying = op == X || a != null && a.varying || b != null && b.varying;
+            params = (op == PARAM ? 1L << (int) value : 0) | (a != null ? a.params : 0) | (b != null ? b.params : 0);
+            hash = ((op * 31 + Double.hashCode(value)) * 31 + System.identityHashCode(a)) * 31 + System.identityHashCode(b);
+        }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof Node)) return false;
+            Node n = (Node) o;
+            return op == n.op && Double.compare(value, n.value) == 0 && a == n.a && b == n.b;
+        }
+
+        @Override public int hashCode() { return hash; }
+    }
+
+    /** Builds nodes with constant folding and the algebraic identities that derivatives produce. */
+    private static final class Graph {
+        private final Map<Node, Node> nodes = new HashMap<>();
+
+        Node intern(int op, double value, Node a, Node b) {
+            return nodes.computeIfAbsent(new Node(op, value, a, b), n -> n);
+        }
+
+        Node constant(double v) { return intern(CONST, v, null, null); }
+        Node x() { return intern(X, 0, null, null); }
+        Node param(int k) { return intern(PARAM, k, null, null); }
+
+        boolean is(Node n, double v) { return n.op == CONST && n.value == v; }
+
+        Node binary(int op, Node a, Node b) {
+            if (a.op == CONST && b.op == CONST) return constant(apply(op, a.value, b.value));
+            switch (op) {
+                case ADD:
+                    if (is(a, 0)) return b;
+                    if (is(b, 0)) return a;
+                    if (b.op == NEG) return binary(SUB, a, b.a);
+                    break;
+                case SUB:
+                    if (is(b, 0)) return a;
+                    if (is(a, 0)) return unary(NEG, b);
+                    if (a == b) return constant(0);
+                    if (b.op == NEG) return binary(ADD, a, b.a);
+                    break;
+                case MUL:
+                    if (is(a, 0) || is(b, 0)) return constant(0);
+                    if (is(a, 1)) return b;
+                    if (is(b, 1)) return a;
+                    if (is(a, -1)) return unary(NEG, b);
+                    if (is(b, -1)) return unary(NEG, a);
+                    if (a.op == NEG) return unary(NEG, binary(MUL, a.a, b));
+                    if (b.op == NEG) return unary(NEG, binary(MUL, a, b.a));
+                    // Constants to the left, so c1·(c2·u) folds
+                    if (b.op == CONST) return binary(MUL, b, a);
+                    if (a.op == CONST && b.op == MUL && b.a.op == CONST) return binary(MUL, constant(a.value * b.a.value), b.b);
+                    break;
+                case DIV:
+                    if (is(a, 0)) return constant(0);
+                    if (is(b, 1)) return a;
+                    if (a == b) return constant(1);
+                    break;
+                case POW:
+                    if (is(b, 0)) return constant(1);
+                    if (is(b, 1)) return a;
+                    break;
+                default:
+                    break;
+            }
+            return intern(op, 0, a, b);
+        }
+
+        Node unary(int op, Node a) {
+            if (a.op == CONST) return constant(apply(op, a.value, 0));
+            if (op == NEG && a.op == NEG) return a.a;
+            return intern(op, 0, a, null);
+        }
+
+        // Replaces parameter indices by their alphabetical rank
+        Node renumber(Node n, int[] order, Map<Node, Node> memo) {
+            Node done = memo.get(n);
+            if (done != null) return done;
+            Node out;
+            if (n.op == PARAM) {
+                int k = (int) n.value, rank = 0;
+                for (int j = 0; j < order.length; j++) if (order[j] == k) rank = j;
+                out = param(rank);
+            } else if (n.b != null) {
+                out = binary(n.op, renumber(n.a, order, memo), renumber(n.b, order, memo));
+            } else if (n.a != null) {
+                out = unary(n.op, renumber(n.a, order, memo));
+            } else {
+                out = n;
+            }
+            memo.put(n, out);
+            return out;
+        }
+
+        /** ∂n/∂p_k, memoised per node so shared subexpressions are differentiated once. */
+        Node derivative(Node n, int k, Map<Node, Node> memo) {
+            if ((n.params & 1L << k) == 0) return constant(0);
+            Node done = memo.get(n);
+            if (done != null) return done;
+            Node a = n.a, b = n.b, out;
+            Node da = a == null ? null : derivative(a, k, memo), db = b == null ? null : derivative(b, k, memo);
+            switch (n.op) {
+                case PARAM: out = constant(1); break;
+                case ADD: out = binary(ADD, da, db); break;
+                case SUB: out = binary(SUB, da, db); break;
+                case MUL: out = binary(ADD, binary(MUL, da, b), binary(MUL, a, db)); break;
+                case DIV: out = binary(SUB, binary(DIV, da, b), binary(DIV, binary(MUL, a, db), binary(MUL, b, b))); break;
+                case POW:
+                    if (!(b.params != 0 || b.varying)) {
+                        // u^c: c·u^(c-1)·u'
+                        out = binary(MUL, binary(MUL, b, binary(POW, a, binary(SUB, b, constant(1)))), da);
+                    } else {
+                        // u^v·(v'·ln u + v·u'/u)
+                        out = binary(MUL, n, binary(ADD, binary(MUL, db, unary(LN, a)), binary(DIV, binary(MUL, b, da), a)));
+                    }
+                    break;
+                case NEG: out = unary(NEG, da); break;
+                case EXP: out = binary(MUL, n, da); break;
+                case LN: out = binary(DIV, da, a); break;
+                case LOG10: out = binary(DIV, da, binary(MUL, constant(Math.log(10)), a)); break;
+                case SQRT: out = binary(DIV, da, binary(MUL, constant(2), n)); break;
+                case ABS: out = binary(MUL, unary(SIGN, a), da); break;
+                case SIN: out = binary(MUL, unary(COS, a), da); break;
+                case COS: out = unary(NEG, binary(MUL, unary(SIN, a), da)); break;
+                case TAN: out = binary(DIV, da, binary(POW, unary(COS, a), constant(2))); break;
+                case ATAN: out = binary(DIV, da, binary(ADD, constant(1), binary(MUL, a, a))); break;
+                case SINH: out = binary(MUL, unary(COSH, a), da); break;
+                case COSH: out = binary(MUL, unary(SINH, a), da); break;
+                case TANH: out = binary(MUL, binary(SUB, constant(1), binary(MUL, n, n)), da); break;
+                default: out = constant(0); break;
+            }
+            memo.put(n, out);
+            return out;
+        }
+    }
+
+    private static double apply(int op, double a, double b) {
+        switch (op) {
+            case ADD: return a + b;
+            case SUB: return a - b;
+            case MUL: return a * b;
+            case DIV: return a / b;
+            case POW: return Math.pow(a, b);
+            case NEG: return -a;
+            case EXP: return Math.exp(a);
+            case LN: return Math.log(a);
+            case LOG10: return Math.log10(a);
+            case SQRT: return Math.sqrt(a);
+            case ABS: return Math.abs(a);
+            case SIGN: return Math.signum(a);
+            case SIN: return Math.sin(a);
+            case COS: return Math.cos(a);
+            case TAN: return Math.tan(a);
+            case ATAN: return Math.atan(a);
+            case SINH: return Math.sinh(a);
+            case COSH: return Math.cosh(a);
+            case TANH: return Math.tanh(a);
+            default: throw new IllegalStateException("Not an operator: " + op);
+        }
+    }
+
+    // === Parser ===
+
+    /** Recursive descent over the usual precedence: + -, then * /, then unary -, then ^ (right-associative). */
+    private static final class Parser {
+        final Graph graph = new Graph();
+        final TreeSet<String> parameters = new TreeSet<>();
+        final List<String> order = new ArrayList<>();
+        private final String s;
+        private int pos;
+
+        Parser(String s) { this.s = s; }
+
+        Node parse() {
+            if (s.isEmpty()) throw new IllegalArgumentException("The formula is empty.");
+            Node n = sum();
+            skipSpace();
+            if (pos < s.length()) throw error("Unexpected '" + s.charAt(pos) + "'");
+            return n;
+        }
+
+        private Node sum() {
+            Node n = product();
+            while (true) {
+                if (eat('+')) n = graph.binary(ADD, n, product());
+                else if (eat('-')) n = graph.binary(SUB, n, product());
+                else return n;
+            }
+        }
+
+        private Node product() {
+            Node n = unary();
+            while (true) {
+                skipSpace();
+                if (s.startsWith("**", pos)) return n;
+                if (eat('*') || eat('·')) n = graph.binary(MUL, n, unary());
+                else if (eat('/')) n = graph.binary(DIV, n, unary());
+                else return n;
+            }
+        }
+
+        private Node unary() {
+            if (eat('-')) return graph.unary(NEG, unary());
+            if (eat('+')) return unary();
+            return power();
+        }
+
+        private Node power() {
+            Node base = primary();
+            skipSpace();
+            if (s.startsWith("**", pos)) {
+                pos += 2;
+                return graph.binary(POW, base, unary());
+            }
+            if (eat('^')) return graph.binary(POW, base, unary());
+            return base;
+        }
+
+        private Node primary() {
+            skipSpace();
+            if (pos >= s.length()) throw error("Unexpected end of formula");
+            char c = s.charAt(pos);
+            if (eat('(')) {
+                Node n = sum();
+                if (!eat(')')) throw error("Missing ')'");
+                return n;
+            }
+            if (Character.isDigit(c) || c == '.') return number();
+            if (Character.isLetter(c) || c == '_') return name();
+            throw error("Unexpected '" + c + "'");
+        }
+
+        private Node number() {
+            int start = pos;
+            while (pos < s.length() && (Character.isDigit(s.charAt(pos)) || s.charAt(pos) == '.')) pos++;
+            if (pos < s.length() && (s.charAt(pos) == 'e' || s.charAt(pos) == 'E')) {
+                int mark = pos++;
+                if (pos < s.length() && (s.charAt(pos) == '+' || s.charAt(pos) == '-')) pos++;
+                if (pos < s.length() && Character.isDigit(s.charAt(pos))) {
+                    while (pos < s.length() && Character.isDigit(s.charAt(pos))) pos++;
+                } else {
+                    pos = mark;
+                }
+            }
+            try {
+                return graph.constant(Double.parseDouble(s.substring(start, pos)));
+            } catch (NumberFormatException ex) {
+                pos = start;
+                throw error("Malformed number");
+            }
+        }
+
+        private Node name() {
+            int start = pos;
+            while (pos < s.length() && (Character.isLetterOrDigit(s.charAt(pos)) || s.charAt(pos) == '_')) pos++;
+            String id = s.substring(start, pos);
+            Integer function = FUNCTIONS.get(id);
+            if (function != null) {
+                if (!eat('(')) throw error("Expected '(' after " + id);
+                Node arg = sum();
+                if (!eat(')')) throw error("Missing ')'");
+                return graph.unary(function, arg);
+            }
+            if (eat('(')) {
+                pos = start;
+                throw error("Unknown function '" + id + "'");
+            }
+            if (id.equals("x")) return graph.x();
+            if (id.equals("pi")) return graph.constant(Math.PI);
+            skipSpace();
+            if (id.equals("e") && pos < s.length() && s.charAt(pos) == '^') return graph.constant(Math.E);
+            parameters.add(id);
+            if (!order.contains(id)) order.add(id);
+            return graph.param(order.indexOf(id));
+        }
+
+        private boolean eat(char c) {
+            skipSpace();
+            if (pos < s.length() && s.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipSpace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        private IllegalArgumentException error(String what) {
+            return new IllegalArgumentException(what + " at position " + (pos + 1) + " of the formula.");
+        }
+    }
+
+    // === Compiled form ===
+
+    /** Per-thread registers of a program; a model is evaluated from several threads at once. */
+    private static final class Scratch {
+        final double[][] registers;
+        final double[] scalars;
+        final double[] one = new double[1];
+
+        Scratch(int registers, int scalars) {
+            this.registers = new double[registers][BLOCK];
+            this.scalars = new double[scalars];
+        }
+    }
+
+    /**
+     * Flat instruction arrays for a set of output nodes. Nodes independent of x become scalar
+     * instructions, run once per call; the rest become vector instructions over a block, with
+     * registers reused after their last read. An operand {@code >= 0} names a vector register,
+     * {@code < 0} the scalar slot {@code -1 - operand}; outputs are coded the same way.
+     */
+    private static final class Program {
+        final int[] sOp, sDst, sA, sB;
+        final double[] sValue;
+        final int[] vOp, vDst, vA, vB;
+        final int[] outputs;
+        final ThreadLocal<Scratch> scratch;
+
+        Program(Node[] roots) {
+            List<Node> order = new ArrayList<>();
+            Map<Node, Integer> index = new IdentityHashMap<>();
+            for (Node r : roots) topological(r, order, index);
+            List<Node> scalarNodes = new ArrayList<>(), vectorNodes = new ArrayList<>();
+            Map<Node, Integer> code = new IdentityHashMap<>();
+            for (Node n : order) {
+                if (n.varying) {
+                    vectorNodes.add(n);
+                } else {
+                    code.put(n, -1 - scalarNodes.size());
+                    scalarNodes.add(n);
+                }
+            }
+            int ns = scalarNodes.size();
+            sOp = new int[ns];
+            sDst = new int[ns];
+            sA = new int[ns];
+            sB = new int[ns];
+            sValue = new double[ns];
+            for (int k = 0; k < ns; k++) {
+                Node n = scalarNodes.get(k);
+                sOp[k] = n.op;
+                sDst[k] = k;
+                sValue[k] = n.value;
+                sA[k] = n.a == null ? 0 : -1 - code.get(n.a);
+                sB[k] = n.b == null ? 0 : -1 - code.get(n.b);
+            }
+
+            // Last instruction reading each vector node; outputs stay live to the end
+            int nv = vectorNodes.size();
+            Map<Node, Integer> lastUse = new IdentityHashMap<>();
+            for (int k = 0; k < nv; k++) {
+                Node n = vectorNodes.get(k);
+                if (n.a != null && n.a.varying) lastUse.put(n.a, k);
+                if (n.b != null && n.b.varying) lastUse.put(n.b, k);
+            }
+            for (Node r : roots) if (r.varying) lastUse.put(r, Integer.MAX_VALUE);
+            vOp = new int[nv];
+            vDst = new int[nv];
+            vA = new int[nv];
+            vB = new int[nv];
+            List<Integer> free = new ArrayList<>();
+            int registers = 0;
+            for (int k = 0; k < nv; k++) {
+                Node n = vectorNodes.get(k);
+                vOp[k] = n.op;
+                vA[k] = n.a == null ? 0 : code.get(n.a);
+                vB[k] = n.b == null ? 0 : code.get(n.b);
+                // Operands read for the last time free their registers before the result is placed
+                if (n.a != null && n.a.varying && lastUse.get(n.a) == k) free.add(code.get(n.a));
+                if (n.b != null && n.b.varying && n.b != n.a && lastUse.get(n.b) == k) free.add(code.get(n.b));
+                int reg = free.isEmpty() ? registers++ : free.remove(free.size() - 1);
+                vDst[k] = reg;
+                code.put(n, reg);
+                if (!lastUse.containsKey(n)) free.add(reg);
+            }
+            outputs = new int[roots.length];
+            for (int o = 0; o < roots.length; o++) outputs[o] = code.get(roots[o]);
+            int r = Math.max(1, registers);
+            scratch = ThreadLocal.withInitial(() -> new Scratch(r, ns));
+        }
+
+        private static void topological(Node n, List<Node> order, Map<Node, Integer> seen) {
+            if (n == null || seen.containsKey(n)) return;
+            topological(n.a, order, seen);
+            topological(n.b, order, seen);
+            seen.put(n, order.size());
+            order.add(n);
+        }
+
+        /** This thread's scratch, with the scalar part computed for {@code params}. */
+        Scratch prepare(double[] params) {
+            Scratch t = scratch.get();
+            double[] s = t.scalars;
+            for (int k = 0; k < sOp.length; k++) {
+                switch (sOp[k]) {
+                    case CONST: s[k] = sValue[k]; break;
+                    case PARAM: s[k] = params[(int) sValue[k]]; break;
+                    default: s[k] = apply(sOp[k], s[sA[k]], s[sB[k]]); break;
+                }
+            }
+            return t;
+        }
+
+        /** Runs the vector instructions over xs[from, from + n), n ≤ BLOCK. */
+        void run(Scratch t, double[] xs, int from, int n) {
+            double[][] r = t.registers;
+            double[] sc = t.scalars;
+            for (int k = 0; k < vOp.length; k++) {
+                double[] d = r[vDst[k]];
+                int a = vA[k], b = vB[k];
+                switch (vOp[k]) {
+                    case X:
+                        System.arraycopy(xs, from, d, 0, n);
+                        break;
+                    case ADD:
+                        if (a >= 0 && b >= 0) { double[] u = r[a], v = r[b]; for (int i = 0; i < n; i++) d[i] = u[i] + v[i]; }
+                        else if (a >= 0) { double[] u = r[a]; double v = sc[-1 - b]; for (int i = 0; i < n; i++) d[i] = u[i] + v; }
+                        else { double u = sc[-1 - a]; double[] v = r[b]; for (int i = 0; i < n; i++) d[i] = u + v[i]; }
+                        break;
+                    case SUB:
+                        if (a >= 0 && b >= 0) { double[] u = r[a], v = r[b]; for (int i = 0; i < n; i++) d[i] = u[i] - v[i]; }
+                        else if (a >= 0) { double[] u = r[a]; double v = sc[-1 - b]; for (int i = 0; i < n; i++) d[i] = u[i] - v; }
+                        else { double u = sc[-1 - a]; double[] v = r[b]; for (int i = 0; i < n; i++) d[i] = u - v[i]; }
+                        break;
+                    case MUL:
+                        if (a >= 0 && b >= 0) { double[] u = r[a], v = r[b]; for (int i = 0; i < n; i++) d[i] = u[i] * v[i]; }
+                        else if (a >= 0) { double[] u = r[a]; double v = sc[-1 - b]; for (int i = 0; i < n; i++) d[i] = u[i] * v; }
+                        else { double u = sc[-1 - a]; double[] v = r[b]; for (int i = 0; i < n; i++) d[i] = u * v[i]; }
+                        break;
+                    case DIV:
+                        if (a >= 0 && b >= 0) { double[] u = r[a], v = r[b]; for (int i = 0; i < n; i++) d[i] = u[i] / v[i]; }
+                        else if (a >= 0) { double[] u = r[a]; double v = sc[-1 - b]; for (int i = 0; i < n; i++) d[i] = u[i] / v; }
+                        else { double u = sc[-1 - a]; double[] v = r[b]; for (int i = 0; i < n; i++) d[i] = u / v[i]; }
+                        break;
+                    case POW:
+                        if (a >= 0 && b >= 0) { double[] u = r[a], v = r[b]; for (int i = 0; i < n; i++) d[i] = Math.pow(u[i], v[i]); }
+                        else if (a >= 0) {
+                            double[] u = r[a];
+                            double v = sc[-1 - b];
+                            if (v == 2) for (int i = 0; i < n; i++) d[i] = u[i] * u[i];
+                            else for (int i = 0; i < n; i++) d[i] = Math.pow(u[i], v);
+                        }
+                        else { double u = sc[-1 - a]; double[] v = r[b]; for (int i = 0; i < n; i++) d[i] = Math.pow(u, v[i]); }
+                        break;
+                    case NEG: { double[] u = r[a]; for (int i = 0; i < n; i++) d[i] = -u[i]; break; }
+                    case EXP: { double[] u = r[a]; for (int i = 0; i < n; i++) d[i] = Math.exp(u[i]); break; }
+                    case LN: { double[] u = r[a]; for (int i = 0; i < n; i++) d[i] = Math.log(u[i]); break; }
+                    case SQRT: { double[] u = r[a]; for (int i = 0; i < n; i++) d[i] = Math.sqrt(u[i]); break; }
+                    default: { double[] u = r[a]; int op = vOp[k]; for (int i = 0; i < n; i++) d[i] = apply(op, u[i], 0); break; }
+                }
+            }
+        }
+
+        double output(Scratch t, int o, int i) {
+            int c = outputs[o];
+            return c >= 0 ? t.registers[c][i] : t.scalars[-1 - c];
+        }
+
+        void copy(Scratch t, int o, double[] dst, int at, int n) {
+            int c = outputs[o];
+            if (c >= 0) System.arraycopy(t.registers[c], 0, dst, at, n);
+            else Arrays.fill(dst, at, at + n, t.scalars[-1 - c]);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.example;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded LRU cache of fit results. A key is the data fingerprint (see
+ * {@link DataTableModel#fingerprint()}) plus model, degree and robust loss, so pressing Fit
+ * again on unchanged data, or toggling back to a model already fitted, costs a map lookup.
+ * Results for other data are dropped by {@link #retain} whenever the table changes.
+ * <p>
+ * Fit All fills it from pool threads, so every method is synchronized.
+ */
+final class FitCache {
+
+    static final int DEFAULT_CAPACITY = 32;
+
+    /** What a fit depends on: the data, the model and how it is fitted. */
+    static final class Key {
+        final long fingerprint;
+        final ModelType model;
+        final int degree;
+        final RobustFit.Loss loss;
+        final CurveModel custom;
+
+        Key(long fingerprint, ModelType model, int degree, RobustFit.Loss loss) {
+            this(fingerprint, model, null, degree, loss);
+        }
+
+        /** A custom model's ordinary fit; registered models are unique by name, so identity will do. */
+        Key(long fingerprint, CurveModel custom) {
+            this(fingerprint, ModelType.CUSTOM, custom, 0, null);
+        }
+
+        private Key(long fingerprint, ModelType model, CurveModel custom, int degree, RobustFit.Loss loss) {
+            this.fingerprint = fingerprint;
+            this.model = model;
+            this.custom = custom;
+            // Only polynomials have a degree; the spinner value is irrelevant to the others
+            this.degree = model == ModelType.POLYNOMIAL ? degree : 0;
+            this.loss = loss;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return fingerprint == k.fingerprint && model == k.model && degree == k.degree && loss == k.loss && custom == k.custom;
+        }
+
+        @Override public int hashCode() {
+            return Objects.hash(fingerprint, model, degree, loss, custom);
+        }
+    }
+
+    private final Map<Key, FitResult> entries;
+    private long hits, misses;
+
+    FitCache(int capacity) {
+        entries = new LinkedHashMap<Key, FitResult>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<Key, FitResult> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** The cached result, or null; counts a hit or a miss. */
+    synchronized FitResult get(Key key) {
+        FitResult fit = entries.get(key);
+        if (fit != null) hits++; else misses++;
+        return fit;
+    }
+
+    synchronized void put(Key key, FitResult fit) {
+        entries.put(key, fit);
+    }
+
+    /** Drops every result computed on data other than {@code fingerprint}. */
+    synchronized void retain(long fingerprint) {
+        entries.keySet().removeIf(k -> k.fingerprint != fingerprint);
+    }
+
+    /** A copy of the entries, least recently used first. */
+    synchronized Map<Key, FitResult> entries() {
+        return new LinkedHashMap<>(entries);
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() { return entries.size(); }
+
+    synchronized long hits() { return hits; }
+
+    synchronized long misses() { return misses; }
+}
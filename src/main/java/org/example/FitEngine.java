@@ -0,0 +1,348 @@
+package org.example;
+
+import org.apache.commons.math3.exception.TooManyEvaluationsException;
+import org.apache.commons.math3.exception.TooManyIterationsException;
+import org.apache.commons.math3.fitting.leastsquares.LeastSquaresBuilder;
+import org.apache.commons.math3.fitting.leastsquares.LeastSquaresOptimizer;
+import org.apache.commons.math3.fitting.leastsquares.LeastSquaresProblem;
+import org.apache.commons.math3.fitting.leastsquares.LevenbergMarquardtOptimizer;
+import org.apache.commons.math3.fitting.leastsquares.MultivariateJacobianFunction;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.util.Pair;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * UI-free fitting engine shared by the Swing app and the headless batch runner.
+ * Everything here is static and thread-safe; callers own the input arrays.
+ */
+final class FitEngine {
+
+    static final int METRICS_BLOCK = 1024;
+    static final int MAX_ITERATIONS = 10_000;
+
+    private FitEngine() { }
+
+    static boolean isLinearInParameters(ModelType model) {
+        return model != ModelType.EXPONENTIAL && model != ModelType.POWER && model != ModelType.CUSTOM;
+    }
+
+    /** Regressor transform of a linear-in-parameter model (a polynomial in t = x, ln x or 1/x). */
+    static LinearLeastSquares.Transform transformOf(ModelType model) {
+        switch (model) {
+            case LINEAR:
+            case POLYNOMIAL: return LinearLeastSquares.Transform.IDENTITY;
+            case LOGARITHMIC: return LinearLeastSquares.Transform.LOG;
+            case RECIPROCAL: return LinearLeastSquares.Transform.RECIPROCAL;
+            default: throw new IllegalStateException("Not linear in its parameters: " + model);
+        }
+    }
+
+    /** Solves a linear-in-parameter model from running sums, without touching the points. */
+    static FitResult fitFromStats(SufficientStats stats, ModelType model, int degree, double xmin, double xmax) {
+        if (stats.outOfDomain() > 0) {
+            throw new IllegalArgumentException(model == ModelType.LOGARITHMIC
+                    ? "Logarithmic model requires x > 0 for all points."
+                    : "Reciprocal model requires x ≠ 0 for all points.");
+        }
+        SufficientStats.Solution sol = stats.solve(model == ModelType.POLYNOMIAL ? degree : 1);
+        return new FitResult(model, degree, sol.params, sol.r2, sol.rmse, xmin, xmax);
+    }
+
+    /** Fitted parameters plus what the iterative optimizer spent on them (zero for direct solves). */
+    static final class Solution {
+        final double[] params;
+        final int iterations, evaluations;
+
+        Solution(double[] params, int iterations, int evaluations) {
+            this.params = params;
+            this.iterations = iterations;
+            this.evaluations = evaluations;
+        }
+    }
+
+    static FitResult fitModel(double[] xs, double[] ys, ModelType model, int degree, FitMonitor monitor) {
+        return fitModel(xs, ys, null, model, degree, monitor);
+    }
+
+    /** Weighted fit minimising {@code Σ w·(y - f(x))²}; {@code ws == null} means unit weights. */
+    static FitResult fitModel(double[] xs, double[] ys, double[] ws, ModelType model, int degree, FitMonitor monitor) {
+        return fitModel(xs, ys, ws, model, degree, null, FitSettings.DEFAULT, monitor);
+    }
+
+    /**
+     * As above, with convergence settings. An iterative model starts from {@code warmStart}
+     * (typically the previous fit of the same model) when that is closer than the log-linear
+     * guess, so a refit after a small edit takes a handful of iterations.
+     */
+    @SuppressWarnings("try")
+    static FitResult fitModel(double[] xs, double[] ys, double[] ws, ModelType model, int degree, double[] warmStart,
+                              FitSettings settings, FitMonitor monitor) {
+        ParallelScan.Range range = ParallelScan.range(xs);
+        checkModel(range, model, degree);
+        Solution s;
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.SOLVE, xs.length)) {
+            s = solve(xs, ys, ws, model, degree, startingPoint(xs, ys, ws, model, warmStart), settings, MAX_ITERATIONS, monitor);
+            span.counts(s.iterations, s.evaluations);
+        }
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.METRICS, xs.length)) {
+            return result(xs, ys, ws, model, degree, s, range.xmin, range.xmax);
+        }
+    }
+
+    /**
+     * Custom model fit, by Levenberg–Marquardt from {@code warmStart} or the model's own initial
+     * guess, whichever fits better.
+     */
+    @SuppressWarnings("try")
+    static FitResult fitModel(double[] xs, double[] ys, double[] ws, CurveModel model, double[] warmStart,
+                              FitSettings settings, FitMonitor monitor) {
+        ParallelScan.Range range = ParallelScan.range(xs);
+        Solution s;
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.SOLVE, xs.length)) {
+            double[] start = model.initialGuess(xs, ys, ws);
+            if (warmStart != null && warmStart.length == start.length
+                    && cost(xs, ys, ws, new ModelEvaluator.Custom(model, warmStart)) <= cost(xs, ys, ws, new ModelEvaluator.Custom(model, start))) {
+                start = warmStart.clone();
+            }
+            s = fitWithFunction(xs, ys, ws, new ModelEvaluator.Custom(model, start), settings, MAX_ITERATIONS, monitor);
+            span.counts(s.iterations, s.evaluations);
+        }
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.METRICS, xs.length)) {
+            Metrics m = metrics(xs, ys, ws, new ModelEvaluator.Custom(model, s.params));
+            return new FitResult(ModelType.CUSTOM, model, 0, s.params, m.r2, m.rmse, range.xmin, range.xmax,
+                    s.iterations, s.evaluations, null);
+        }
+    }
+
+    /** Rejects a polynomial degree out of range and x values outside the model's domain. */
+    static void checkModel(double[] xs, ModelType model, int degree) {
+        checkModel(ParallelScan.range(xs), model, degree);
+    }
+
+    static void checkModel(ParallelScan.Range range, ModelType model, int degree) {
+        switch (model) {
+            case POLYNOMIAL:
+                if (degree < 2 || degree > 6) throw new IllegalArgumentException("Polynomial degree must be between 2 and 6.");
+                break;
+            case POWER:
+                if (range.nonPositive > 0)
+                    throw new IllegalArgumentException("Power model requires x > 0 for all points.");
+                break;
+            case LOGARITHMIC:
+                if (range.nonPositive > 0)
+                    throw new IllegalArgumentException("Logarithmic model requires x > 0 for all points.");
+                break;
+            case RECIPROCAL:
+                if (range.zeros > 0)
+                    throw new IllegalArgumentException("Reciprocal model requires x ≠ 0 for all points.");
+                break;
+            case CUSTOM:
+                // Only the plain least-squares fit of one in-memory series knows the CurveModel
+                throw new IllegalArgumentException("Custom formulas support only ordinary fits of a single in-memory series.");
+            default:
+                break;
+        }
+    }
+
+    /**
+     * One (weighted) fit of a checked model. Linear-in-parameter models are solved directly;
+     * EXPONENTIAL and POWER iterate from {@code start}, or from a log-linear guess when it is
+     * null, and stop after {@code maxIterations} without failing when that is below
+     * {@link #MAX_ITERATIONS}.
+     */
+    static Solution solve(double[] xs, double[] ys, double[] ws, ModelType model, int degree, double[] start,
+                          FitSettings settings, int maxIterations, FitMonitor monitor) {
+        switch (model) {
+            case LINEAR:
+                // y = a + b x
+                return direct(LinearLeastSquares.fit(xs, ys, ws, LinearLeastSquares.Transform.IDENTITY, 1,
+                        LinearLeastSquares.Solver.defaultFor(1)));
+            case POLYNOMIAL:
+                return direct(LinearLeastSquares.fit(xs, ys, ws, LinearLeastSquares.Transform.IDENTITY, degree,
+                        LinearLeastSquares.Solver.defaultFor(degree)));
+            case EXPONENTIAL:
+            case POWER:
+                // y = a e^(b x) or a x^b, y > 0 ideally
+                return fitWithFunction(xs, ys, ws, ModelEvaluator.of(model, start != null ? start : guess(xs, ys, model)),
+                        settings, maxIterations, monitor);
+            case LOGARITHMIC:
+                // y = a + b ln(x), x>0
+                return direct(LinearLeastSquares.fit(xs, ys, ws, LinearLeastSquares.Transform.LOG, 1,
+                        LinearLeastSquares.Solver.defaultFor(1)));
+            case RECIPROCAL:
+                // y = a + b / x, x != 0
+                return direct(LinearLeastSquares.fit(xs, ys, ws, LinearLeastSquares.Transform.RECIPROCAL, 1,
+                        LinearLeastSquares.Solver.defaultFor(1)));
+        }
+        throw new IllegalStateException("Unhandled model");
+    }
+
+    private static Solution direct(double[] params) {
+        return new Solution(params, 0, 0);
+    }
+
+    /**
+     * Start for an iterative model: {@code warmStart} if it fits the data at least as well as
+     * the log-linear guess, else the guess. Null for linear-in-parameter models.
+     */
+    static double[] startingPoint(double[] xs, double[] ys, double[] ws, ModelType model, double[] warmStart) {
+        if (isLinearInParameters(model)) return null;
+        double[] guess = guess(xs, ys, model);
+        if (warmStart == null || warmStart.length != guess.length) return guess;
+        // Two evaluation passes; a fresh guess would cost the optimizer many more
+        double warm = cost(xs, ys, ws, ModelEvaluator.of(model, warmStart));
+        return warm <= cost(xs, ys, ws, ModelEvaluator.of(model, guess)) ? warmStart.clone() : guess;
+    }
+
+    /** Wraps fitted parameters with their (weighted) metrics. */
+    static FitResult result(double[] xs, double[] ys, double[] ws, ModelType model, int degree, Solution s, double xmin, double xmax) {
+        Metrics m = metrics(xs, ys, ws, ModelEvaluator.of(model, s.params));
+        int shownDegree = model == ModelType.LINEAR ? 1 : model == ModelType.POLYNOMIAL ? degree : 0;
+        return new FitResult(model, shownDegree, s.params, m.r2, m.rmse, xmin, xmax, s.iterations, s.evaluations);
+    }
+
+    /**
+     * Iterative fit for the models that are not linear in their parameters (EXPONENTIAL, POWER).
+     * Levenberg–Marquardt fit equivalent to {@code SimpleCurveFitter}, with a checker hooked in
+     * so that every iteration reports progress and honours thread interruption. Starts from the
+     * evaluator's current parameters.
+     */
+    static Solution fitWithFunction(double[] xs, double[] ys, ModelEvaluator f, FitMonitor monitor) {
+        return fitWithFunction(xs, ys, null, f, FitSettings.DEFAULT, MAX_ITERATIONS, monitor);
+    }
+
+    /**
+     * Weighted variant: residuals and Jacobian rows are scaled by √w in place, which leaves
+     * the optimizer an ordinary problem without a weight matrix. Below {@link #MAX_ITERATIONS},
+     * {@code maxIterations} ends the fit early at the current point instead of failing; running
+     * out of the settings' evaluation budget fails it.
+     */
+    static Solution fitWithFunction(double[] xs, double[] ys, double[] ws, ModelEvaluator f, FitSettings settings,
+                                    int maxIterations, FitMonitor monitor) {
+        // One set of buffers per fit: the optimizer copies what it keeps before the next evaluation
+        double[] values = new double[xs.length];
+        double[][] jacobian = new double[xs.length][f.parameterCount()];
+        double[] sqrtW = null, target = ys;
+        if (ws != null) {
+            sqrtW = new double[xs.length];
+            target = new double[xs.length];
+            for (int i = 0; i < xs.length; i++) {
+                sqrtW[i] = Math.sqrt(ws[i]);
+                target[i] = sqrtW[i] * ys[i];
+            }
+        }
+        double[] rowScale = sqrtW;
+        MultivariateJacobianFunction model = point -> {
+            f.setParameters(point.toArray());
+            f.valueAndJacobian(xs, values, jacobian);
+            if (rowScale != null) {
+                for (int i = 0; i < values.length; i++) {
+                    double sw = rowScale[i];
+                    values[i] *= sw;
+                    double[] row = jacobian[i];
+                    for (int k = 0; k < row.length; k++) row[k] *= sw;
+                }
+            }
+            return new Pair<>(new ArrayRealVector(values, false), new Array2DRowRealMatrix(jacobian, false));
+        };
+        LeastSquaresProblem problem = new LeastSquaresBuilder()
+                .maxEvaluations(settings.maxEvaluations)
+                .maxIterations(MAX_ITERATIONS)
+                .start(f.p.clone())
+                .target(target)
+                .model(model)
+                .checker((iteration, previous, current) -> {
+                    if (Thread.currentThread().isInterrupted()) throw new CancellationException("Fit cancelled");
+                    monitor.onIteration(new FitProgress(iteration, current.getRMS()));
+                    // otherwise leave convergence to the optimizer's own tolerances
+                    return iteration >= maxIterations && maxIterations < MAX_ITERATIONS;
+                })
+                .build();
+        LeastSquaresOptimizer optimizer = new LevenbergMarquardtOptimizer()
+                .withCostRelativeTolerance(settings.tolerance)
+                .withParameterRelativeTolerance(settings.tolerance);
+        try {
+            LeastSquaresOptimizer.Optimum optimum = optimizer.optimize(problem);
+            return new Solution(optimum.getPoint().toArray(), optimum.getIterations(), optimum.getEvaluations());
+        } catch (TooManyEvaluationsException ex) {
+            throw new IllegalArgumentException("The fit did not converge within " + settings.maxEvaluations
+                    + " evaluations; relax the tolerance or raise the evaluation budget.");
+        } catch (TooManyIterationsException ex) {
+            // The iteration cap is fixed, so only the tolerance or a better start can help
+            throw new IllegalArgumentException("The fit did not converge within " + MAX_ITERATIONS
+                    + " iterations; relax the tolerance or start from a closer fit.");
+        }
+    }
+
+    // Initial guesses: a straight line through (x or ln x, ln y) over the points with y > 0
+
+    private static double[] guess(double[] xs, double[] ys, ModelType model) {
+        boolean power = model == ModelType.POWER;
+        int size = Math.min(xs.length, METRICS_BLOCK);
+        // Excluded points get weight 0 (and finite values, so they add exact zeros)
+        double[] tx = new double[size], ty = new double[size], w = new double[size], lanes = new double[5 * Kernels.LANES];
+        for (int b = 0; b < xs.length; b += METRICS_BLOCK) {
+            int m = Math.min(METRICS_BLOCK, xs.length - b);
+            for (int j = 0; j < m; j++) {
+                int i = b + j;
+                boolean ok = ys[i] > 0 && (!power || xs[i] > 0);
+                tx[j] = !ok ? 0 : power ? Math.log(xs[i]) : xs[i];
+                ty[j] = ok ? Math.log(ys[i]) : 0;
+                w[j] = ok ? 1 : 0;
+            }
+            Kernels.INSTANCE.powerSums(tx, ty, w, 0, m, 1, lanes);
+        }
+        double n = Kernels.fold(lanes, 0), sumx = Kernels.fold(lanes, 1), sumxx = Kernels.fold(lanes, 2);
+        double sumy = Kernels.fold(lanes, 3), sumxy = Kernels.fold(lanes, 4);
+        if (n < 2) return power ? new double[]{1, 1} : new double[]{1, 0.01};
+        double denom = n*sumxx - sumx*sumx;
+        double b = denom == 0 ? 0 : (n*sumxy - sumx*sumy)/denom;
+        double a = (sumy - b*sumx)/n;
+        return new double[]{Math.exp(a), b};
+    }
+
+    // Weighted residual sum of squares, a block at a time
+    private static double cost(double[] xs, double[] ys, double[] ws, ModelEvaluator f) {
+        int n = xs.length;
+        double[] yhat = new double[Math.min(n, METRICS_BLOCK)];
+        double sum = 0;
+        for (int from = 0; from < n; from += METRICS_BLOCK) {
+            int to = Math.min(n, from + METRICS_BLOCK);
+            f.evaluate(xs, from, to, yhat);
+            for (int i = from; i < to; i++) {
+                double r = ys[i] - yhat[i - from];
+                sum += (ws == null ? 1.0 : ws[i]) * r * r;
+            }
+        }
+        return sum;
+    }
+
+    static class Metrics {
+        final double r2, rmse;
+        Metrics(double r2, double rmse) { this.r2 = r2; this.rmse = rmse; }
+    }
+
+    static Metrics metrics(double[] xs, double[] ys, ModelEvaluator f) {
+        return metrics(xs, ys, null, f);
+    }
+
+    /** Weighted R² and RMSE ({@code √(Σw·r² / Σw)}); {@code ws == null} means unit weights. */
+    static Metrics metrics(double[] xs, double[] ys, double[] ws, ModelEvaluator f) {
+        return ParallelScan.metrics(xs, ys, ws, f);
+    }
+
+    /** Fills {@code fx}/{@code fy} with the fitted curve sampled evenly over [min, max]. */
+    static void sampleCurve(FitResult fit, double min, double max, double[] fx, double[] fy) {
+        int samples = fx.length;
+        double step = (max - min) / (samples - 1);
+        for (int i = 0; i < samples; i++) fx[i] = min + i * step;
+        ModelEvaluator.of(fit).evaluate(fx, fy);
+    }
+
+    /** Evaluates a fitted model at x; NaN outside the model's domain. */
+    static double evaluate(FitResult fit, double x) {
+        return ModelEvaluator.of(fit).value(x);
+    }
+}
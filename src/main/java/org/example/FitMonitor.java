@@ -0,0 +1,7 @@
+package org.example;
+
+/** Receives optimizer progress; called on the fitting thread. */
+interface FitMonitor {
+    FitMonitor NONE = p -> { };
+    void onIteration(FitProgress progress);
+}
@@ -0,0 +1,8 @@
+package org.example;
+
+/** Snapshot of a running optimization, reported once per iteration. */
+final class FitProgress {
+    final int iteration;
+    final double rms;
+    FitProgress(int iteration, double rms) { this.iteration = iteration; this.rms = rms; }
+}
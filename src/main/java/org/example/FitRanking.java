@@ -0,0 +1,165 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * "Fit all": every {@link ModelType} (and every polynomial degree 2–6) fitted concurrently
+ * on the common fork-join pool, then ranked by an information criterion or goodness of fit.
+ * Wall-clock time is roughly that of the slowest single fit.
+ */
+final class FitRanking {
+
+    static final int MIN_DEGREE = 2, MAX_DEGREE = 6;
+
+    private FitRanking() { }
+
+    enum Criterion {
+        AIC("AIC"), BIC("BIC"), R2("R²"), RMSE("RMSE");
+
+        final String label;
+        Criterion(String label) { this.label = label; }
+        @Override public String toString() { return label; }
+
+        /** Best first; failed candidates always sort last. */
+        Comparator<Entry> order() {
+            Comparator<Entry> byValue;
+            switch (this) {
+                case BIC: byValue = Comparator.comparingDouble(Entry::bic); break;
+                case R2: byValue = Comparator.comparingDouble((Entry e) -> e.fit.r2).reversed(); break;
+                case RMSE: byValue = Comparator.comparingDouble(e -> e.fit.rmse); break;
+                default: byValue = Comparator.comparingDouble(Entry::aic); break;
+            }
+            return Comparator.comparing((Entry e) -> e.fit == null).thenComparing(
+                    (a, b) -> a.fit == null ? 0 : byValue.compare(a, b));
+        }
+    }
+
+    /** One candidate model: either a fit or the reason it could not be fitted. */
+    static final class Entry {
+        final ModelType model;
+        final CurveModel custom; // when model is CUSTOM
+        final int degree;
+        final FitResult fit;
+        final String error;
+        final int n;
+
+        Entry(ModelType model, int degree, FitResult fit, String error, int n) {
+            this(model, null, degree, fit, error, n);
+        }
+
+        Entry(ModelType model, CurveModel custom, int degree, FitResult fit, String error, int n) {
+            this.model = model;
+            this.custom = custom;
+            this.degree = degree;
+            this.fit = fit;
+            this.error = error;
+            this.n = n;
+        }
+
+        String name() {
+            if (custom != null) return custom.name();
+            return model == ModelType.POLYNOMIAL ? "Polynomial (degree " + degree + ")" : model.label;
+        }
+
+        int parameterCount() {
+            if (custom != null) return custom.parameterNames().length;
+            return model == ModelType.POLYNOMIAL ? degree + 1 : 2;
+        }
+
+        // Gaussian log-likelihood up to a constant: n·ln(SS_res/n), with SS_res/n = RMSE²
+        private double logLikelihoodTerm() { return n * Math.log(fit.rmse * fit.rmse); }
+
+        double aic() { return logLikelihoodTerm() + 2.0 * parameterCount(); }
+
+        double bic() { return logLikelihoodTerm() + parameterCount() * Math.log(n); }
+    }
+
+    /**
+     * Fits all candidates in parallel; {@code ws == null} means unit weights. The monitor is
+     * shared by every fit and may throw {@link CancellationException} to abort the whole run.
+     */
+    @SuppressWarnings("try")
+    static List<Entry> fitAll(double[] xs, double[] ys, double[] ws, FitSettings settings, FitMonitor monitor,
+                              Runnable onCandidateDone) throws InterruptedException {
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.FIT_ALL, xs.length)) {
+            return fitAllCandidates(xs, ys, ws, settings, monitor, onCandidateDone);
+        }
+    }
+
+    private static List<Entry> fitAllCandidates(double[] xs, double[] ys, double[] ws, FitSettings settings, FitMonitor monitor,
+                                                Runnable onCandidateDone) throws InterruptedException {
+        List<Callable<Entry>> tasks = new ArrayList<>();
+        for (int[] c : candidates()) {
+            ModelType model = ModelType.values()[c[0]];
+            tasks.add(() -> {
+                try {
+                    return fitCandidate(xs, ys, ws, model, c[1], null, settings, monitor);
+                } finally {
+                    onCandidateDone.run();
+                }
+            });
+        }
+        List<Entry> entries = new ArrayList<>(tasks.size());
+        for (Future<Entry> f : ForkJoinPool.commonPool().invokeAll(tasks)) {
+            try {
+                entries.add(f.get());
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof CancellationException) throw (CancellationException) ex.getCause();
+                throw new IllegalStateException(ex.getCause());
+            }
+        }
+        return entries;
+    }
+
+    /** Every built-in candidate as {@code {model ordinal, degree}}; degree is 0 for non-polynomial models. */
+    static List<int[]> candidates() {
+        List<int[]> out = new ArrayList<>();
+        for (ModelType model : ModelType.values()) {
+            if (model == ModelType.CUSTOM) continue;
+            if (model == ModelType.POLYNOMIAL) {
+                for (int d = MIN_DEGREE; d <= MAX_DEGREE; d++) out.add(new int[]{model.ordinal(), d});
+            } else {
+                out.add(new int[]{model.ordinal(), 0});
+            }
+        }
+        return out;
+    }
+
+    /** Fits one candidate on the calling thread, robustly unless {@code loss} is null. */
+    static Entry fitCandidate(double[] xs, double[] ys, double[] ws, ModelType model, int degree, RobustFit.Loss loss,
+                              FitSettings settings, FitMonitor monitor) {
+        try {
+            FitResult fit = loss == null
+                    ? FitEngine.fitModel(xs, ys, ws, model, degree, null, settings, monitor)
+                    : RobustFit.fit(xs, ys, ws, model, degree, loss, settings, monitor);
+            return new Entry(model, degree, fit, null, xs.length);
+        } catch (CancellationException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            // Domain violations and non-convergence only disqualify this candidate
+            return new Entry(model, degree, null, ex.getMessage(), xs.length);
+        }
+    }
+
+    /** Fits a custom model on the calling thread. */
+    static Entry fitCandidate(double[] xs, double[] ys, double[] ws, CurveModel model, FitSettings settings, FitMonitor monitor) {
+        try {
+            return new Entry(ModelType.CUSTOM, model, 0, FitEngine.fitModel(xs, ys, ws, model, null, settings, monitor), null, xs.length);
+        } catch (CancellationException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            return new Entry(ModelType.CUSTOM, model, 0, null, ex.getMessage(), xs.length);
+        }
+    }
+
+    static void rank(List<Entry> entries, Criterion criterion) {
+        entries.sort(criterion.order());
+    }
+}
@@ -0,0 +1,142 @@
+package org.example;
+
+import java.text.DecimalFormat;
+import java.util.Locale;
+
+/** Parameters and goodness of fit of one fitted model. */
+final class FitResult {
+    final ModelType model;
+    final int degree; // relevant for polynomial
+    final double[] params; // a, b, c...
+    final double r2;
+    final double rmse;
+    final double xmin, xmax;
+    final int iterations, evaluations; // spent by the iterative optimizer; 0 for direct solves
+    final Bootstrap.Intervals intervals; // null until bootstrapped
+    final CurveModel custom; // the model when CUSTOM, else null
+
+    FitResult(ModelType model, int degree, double[] params, double r2, double rmse, double xmin, double xmax) {
+        this(model, degree, params, r2, rmse, xmin, xmax, 0, 0);
+    }
+
+    FitResult(ModelType model, int degree, double[] params, double r2, double rmse, double xmin, double xmax,
+              int iterations, int evaluations) {
+        this(model, degree, params, r2, rmse, xmin, xmax, iterations, evaluations, null);
+    }
+
+    FitResult(ModelType model, int degree, double[] params, double r2, double rmse, double xmin, double xmax,
+              int iterations, int evaluations, Bootstrap.Intervals intervals) {
+        this(model, null, degree, params, r2, rmse, xmin, xmax, iterations, evaluations, intervals);
+    }
+
+    FitResult(ModelType model, CurveModel custom, int degree, double[] params, double r2, double rmse, double xmin,
+              double xmax, int iterations, int evaluations, Bootstrap.Intervals intervals) {
+        this.model = model;
+        this.custom = custom;
+        this.degree = degree;
+        this.params = params;
+        this.r2 = r2;
+        this.rmse = rmse;
+        this.xmin = xmin;
+        this.xmax = xmax;
+        this.iterations = iterations;
+        this.evaluations = evaluations;
+        this.intervals = intervals;
+    }
+
+    FitResult withIntervals(Bootstrap.Intervals intervals) {
+        return new FitResult(model, custom, degree, params, r2, rmse, xmin, xmax, iterations, evaluations, intervals);
+    }
+
+    String toDisplayString() {
+        DecimalFormat df = new DecimalFormat("0.###E0");
+        StringBuilder eq = new StringBuilder("Model: ").append(label()).append("  |  ");
+        eq.append("Equation: ").append(formatEquation(df)).append("  |  ");
+        eq.append("R² = ").append(new DecimalFormat("0.0000").format(r2));
+        eq.append("    RMSE = ").append(new DecimalFormat("0.0000").format(rmse));
+        if (iterations > 0) eq.append("  |  ").append(iterations).append(" iterations, ").append(evaluations).append(" evaluations");
+        if (intervals != null) {
+            eq.append("  |  ").append(Math.round(Bootstrap.LEVEL * 100)).append("% CI:");
+            for (int i = 0; i < params.length; i++) {
+                eq.append(i == 0 ? " " : ", ").append(parameterName(i))
+                        .append(" ∈ [").append(fmt(df, intervals.low[i])).append(", ").append(fmt(df, intervals.high[i])).append(']');
+            }
+        }
+        return eq.toString();
+    }
+
+    /** The model's label, or the custom model's name. */
+    String label() {
+        return custom != null ? custom.name() : model.label;
+    }
+
+    /** Name of parameter i as used in the equations: a, b for two-parameter models, a0…an for polynomials. */
+    String parameterName(int i) {
+        if (custom != null) return custom.parameterNames()[i];
+        return model == ModelType.POLYNOMIAL ? "a" + i : String.valueOf((char) ('a' + i));
+    }
+
+    String formatEquation(DecimalFormat df) {
+        if (custom != null) return custom.equation(params, v -> fmt(df, v));
+        switch (model) {
+            case LINEAR:
+                return "y = " + fmt(df, params[0]) + " + " + fmt(df, params[1]) + "·x";
+            case POLYNOMIAL:
+                StringBuilder sb = new StringBuilder("y = ");
+                // PolynomialCurveFitter returns [a0, a1, ..., an] for a0 + a1 x + a2 x^2 ...
+                for (int i = params.length - 1; i >= 0; i--) {
+                    double c = params[i];
+                    if (i == params.length - 1) {
+                        sb.append(fmt(df, c)).append("·x").append(superscript(i));
+                    } else if (i > 1) {
+                        sb.append(" + ").append(fmt(df, c)).append("·x").append(superscript(i));
+                    } else if (i == 1) {
+                        sb.append(" + ").append(fmt(df, c)).append("·x");
+                    } else {
+                        sb.append(" + ").append(fmt(df, c));
+                    }
+                }
+                return sb.toString().replace("x¹", "x").replace("x⁰", "");
+            case EXPONENTIAL:
+                return "y = " + fmt(df, params[0]) + "·e^(" + fmt(df, params[1]) + "·x)";
+            case POWER:
+                return "y = " + fmt(df, params[0]) + "·x^(" + fmt(df, params[1]) + ")";
+            case LOGARITHMIC:
+                return "y = " + fmt(df, params[0]) + " + " + fmt(df, params[1]) + "·ln(x)";
+            case RECIPROCAL:
+                return "y = " + fmt(df, params[0]) + " + " + fmt(df, params[1]) + "/x";
+            default:
+                return "";
+        }
+    }
+
+    static String fmt(DecimalFormat df, double v) {
+        // Use fixed decimals for moderate ranges, scientific for large/small
+        if (Math.abs(v) >= 1e-3 && Math.abs(v) < 1e4) {
+            return String.format(Locale.US, "%.6f", v);
+        }
+        return df.format(v);
+    }
+
+    private static String superscript(int n) {
+        String s = String.valueOf(n);
+        StringBuilder sb = new StringBuilder();
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '0': sb.append('⁰'); break;
+                case '1': sb.append('¹'); break;
+                case '2': sb.append('²'); break;
+                case '3': sb.append('³'); break;
+                case '4': sb.append('⁴'); break;
+                case '5': sb.append('⁵'); break;
+                case '6': sb.append('⁶'); break;
+                case '7': sb.append('⁷'); break;
+                case '8': sb.append('⁸'); break;
+                case '9': sb.append('⁹'); break;
+                case '-': sb.append('⁻'); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,28 @@
+package org.example;
+
+import java.util.Locale;
+
+/**
+ * Convergence settings of the iterative (Levenberg–Marquardt) fits. The linear-in-parameter
+ * models are solved directly and ignore them. Immutable; the defaults match the optimizer's.
+ */
+final class FitSettings {
+
+    static final FitSettings DEFAULT = new FitSettings(1e-10, 100_000);
+
+    /** Relative change in cost and in the parameters below which a fit counts as converged. */
+    final double tolerance;
+    /** Model evaluations a fit may spend before it is given up as not converging. */
+    final int maxEvaluations;
+
+    FitSettings(double tolerance, int maxEvaluations) {
+        if (!(tolerance > 0 && tolerance < 1)) throw new IllegalArgumentException("Tolerance must be between 0 and 1.");
+        if (maxEvaluations < 1) throw new IllegalArgumentException("Evaluation budget must be at least 1.");
+        this.tolerance = tolerance;
+        this.maxEvaluations = maxEvaluations;
+    }
+
+    @Override public String toString() {
+        return String.format(Locale.US, "tolerance %.0e, at most %d evaluations", tolerance, maxEvaluations);
+    }
+}
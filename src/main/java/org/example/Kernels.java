@@ -0,0 +1,119 @@
+package org.example;
+
+/**
+ * The innermost loops of fitting and metrics: polynomial evaluation, the power sums of the
+ * normal equations and the residual moments. {@link Scalar} is plain Java; the optional
+ * {@code VectorKernels}, built by the {@code vector} Maven profile from {@code src/vector/java},
+ * runs them on the JDK Vector API (run with {@code --add-modules jdk.incubator.vector}).
+ * <p>
+ * The two agree to the bit. Reductions keep {@link #LANES} partial sums: point j of a call
+ * goes to lane {@code j % LANES}, each lane accumulates in index order, and callers fold the
+ * lanes in a fixed order. Both perform the same IEEE operations in the same order, without
+ * fused multiply-add. System property {@code curvefit.kernels}: {@code auto} (default: vector
+ * when the module is present and the CPU has 256-bit vectors), {@code scalar} or {@code vector}.
+ */
+abstract class Kernels {
+
+    /** Partial sums per reduction: one 256-bit vector of doubles. */
+    static final int LANES = 4;
+    /** Lane slots per field of {@link #residualMoments}: sumW, mean, M2, Σw·r² and its compensation. */
+    static final int SUM_W = 0, MEAN = LANES, M2 = 2 * LANES, SS_RES = 3 * LANES, SS_COMP = 4 * LANES, MOMENT_SLOTS = 5 * LANES;
+
+    static final Kernels INSTANCE = select(System.getProperty("curvefit.kernels", "auto"));
+
+    private static Kernels select(String choice) {
+        if (choice.equals("scalar")) return new Scalar();
+        Kernels vector = vector();
+        if (vector == null && choice.equals("vector")) {
+            System.err.println("Vector kernels unavailable (build with -Pvector, run with --add-modules jdk.incubator.vector); using scalar.");
+        }
+        return vector != null ? vector : new Scalar();
+    }
+
+    /** The Vector API kernels, or null when they were not built, the module is missing or the CPU lacks 256-bit vectors. */
+    static Kernels vector() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return null;
+        try {
+            Kernels k = (Kernels) Class.forName("org.example.VectorKernels").getDeclaredConstructor().newInstance();
+            return k.supported() ? k : null;
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            return null;
+        }
+    }
+
+    static Kernels scalar() { return new Scalar(); }
+
+    abstract String name();
+
+    boolean supported() { return true; }
+
+    /** {@code out[i - from] = Σ c[k]·xs[i]^k} for i in [from, to), by Horner's rule from the top coefficient. */
+    abstract void horner(double[] c, double[] xs, int from, int to, double[] out);
+
+    /**
+     * Adds {@code w·u^k} (k ≤ 2·degree) and {@code w·y·u^k} (k ≤ degree) of points
+     * {@code u[j], ys[from + j], ws[from + j]}, j < n, into {@code lanes}: the u powers of lane l
+     * at {@code lanes[k·LANES + l]}, then the y sums. {@code ws == null} means unit weights.
+     */
+    abstract void powerSums(double[] u, double[] ys, double[] ws, int from, int n, int degree, double[] lanes);
+
+    /**
+     * Adds points {@code ys[from + j], ws[from + j]} with predictions {@code yhat[j]}, j < n, to
+     * per-lane weighted Welford moments of y and a Neumaier sum of {@code w·r²}, laid out as
+     * {@link #SUM_W}, {@link #MEAN}, …; zero weights only add their residual.
+     */
+    abstract void residualMoments(double[] ys, double[] ws, int from, double[] yhat, int n, double[] lanes);
+
+    /** The lanes of one power sum added up in the fixed order {@code (l0 + l1) + (l2 + l3)}. */
+    static double fold(double[] lanes, int k) {
+        int at = k * LANES;
+        return (lanes[at] + lanes[at + 1]) + (lanes[at + 2] + lanes[at + 3]);
+    }
+
+    /** Plain Java, the reference for the vector kernels. */
+    static final class Scalar extends Kernels {
+
+        @Override String name() { return "scalar"; }
+
+        @Override void horner(double[] c, double[] xs, int from, int to, double[] out) {
+            int last = c.length - 1;
+            double top = c[last];
+            for (int i = from; i < to; i++) out[i - from] = top;
+            // Coefficient-major: each pass is a straight multiply-add over the block
+            for (int k = last - 1; k >= 0; k--) {
+                double ck = c[k];
+                for (int i = from; i < to; i++) out[i - from] = out[i - from] * xs[i] + ck;
+            }
+        }
+
+        @Override void powerSums(double[] u, double[] ys, double[] ws, int from, int n, int degree, double[] lanes) {
+            int powers = 2 * degree + 1, ySums = powers * LANES;
+            for (int j = 0; j < n; j++) {
+                int lane = j & (LANES - 1);
+                double w = ws == null ? 1.0 : ws[from + j], uj = u[j];
+                double pk = w;
+                for (int k = 0; k < powers; k++, pk *= uj) lanes[k * LANES + lane] += pk;
+                double q = w * ys[from + j];
+                for (int k = 0; k <= degree; k++, q *= uj) lanes[ySums + k * LANES + lane] += q;
+            }
+        }
+
+        @Override void residualMoments(double[] ys, double[] ws, int from, double[] yhat, int n, double[] lanes) {
+            for (int j = 0; j < n; j++) {
+                int l = j & (LANES - 1);
+                double w = ws == null ? 1.0 : ws[from + j], y = ys[from + j], r = y - yhat[j];
+                double v = w * r * r, s = lanes[SS_RES + l], t = s + v;
+                // Neumaier: the compensation picks up whatever the larger operand rounded away
+                lanes[SS_COMP + l] += Math.abs(s) >= Math.abs(v) ? (s - t) + v : (v - t) + s;
+                lanes[SS_RES + l] = t;
+                if (w == 0) continue;
+                double sumW = lanes[SUM_W + l] + w, mean = lanes[MEAN + l];
+                double d = y - mean;
+                mean += d * w / sumW;
+                lanes[SUM_W + l] = sumW;
+                lanes[MEAN + l] = mean;
+                lanes[M2 + l] += w * d * (y - mean);
+            }
+        }
+    }
+}
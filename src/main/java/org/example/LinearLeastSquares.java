@@ -0,0 +1,232 @@
+package org.example;
+
+/**
+ * Direct least squares for models that are linear in their parameters:
+ * {@code y = c0 + c1·t + … + cd·t^d} with {@code t = x}, {@code ln x} or {@code 1/x}.
+ * This covers LINEAR, POLYNOMIAL, LOGARITHMIC and RECIPROCAL without any iteration.
+ * <p>
+ * Rows are centred and scaled to {@code u = (t - c) / s ∈ [-1, 1]} before accumulation, which
+ * keeps the polynomial basis well conditioned; coefficients are mapped back to powers of
+ * {@code t} at the end.
+ */
+final class LinearLeastSquares {
+
+    private LinearLeastSquares() { }
+
+    /** Regressor applied to x before building the polynomial basis. */
+    enum Transform {
+        IDENTITY, LOG, RECIPROCAL;
+
+        double apply(double x) {
+            switch (this) {
+                case LOG: return Math.log(x);
+                case RECIPROCAL: return 1.0 / x;
+                default: return x;
+            }
+        }
+    }
+
+    enum Solver {
+        /** Normal equations {@code AᵀA·c = Aᵀy}, Cholesky factorised. Fastest, fine for few parameters. */
+        CHOLESKY,
+        /** Streaming Givens QR of A itself; avoids squaring the condition number. */
+        QR;
+
+        /** Cholesky for straight lines, QR once higher powers make the basis less benign. */
+        static Solver defaultFor(int degree) { return degree <= 2 ? CHOLESKY : QR; }
+    }
+
+    /** Fits a degree-{@code degree} polynomial in {@code t(x)}; returns {@code [c0, …, cd]}. */
+    static double[] fit(double[] xs, double[] ys, Transform transform, int degree, Solver solver) {
+        return fit(xs, ys, null, transform, degree, solver);
+    }
+
+    /** Weighted fit minimising {@code Σ w·(y - ŷ)²}; {@code ws == null} means unit weights. */
+    static double[] fit(double[] xs, double[] ys, double[] ws, Transform transform, int degree, Solver solver) {
+        int p = degree + 1;
+        if (xs.length < p) {
+            throw new IllegalArgumentException("Need at least " + p + " data points for this model.");
+        }
+
+        double tmin = Double.POSITIVE_INFINITY, tmax = Double.NEGATIVE_INFINITY;
+        for (double x : xs) {
+            double t = transform.apply(x);
+            if (t < tmin) tmin = t;
+            if (t > tmax) tmax = t;
+        }
+        double c = 0.5 * (tmin + tmax);
+        double s = 0.5 * (tmax - tmin);
+        if (!(s > 0) || Double.isInfinite(s)) s = 1.0;
+
+        double[] u = solver == Solver.QR
+                ? solveQr(xs, ys, ws, transform, p, c, s)
+                : solveNormal(xs, ys, ws, transform, p, c, s);
+        return unscale(u, c, s);
+    }
+
+    // AᵀA is the Hankel matrix of the power sums Σw·u^(j+k), so only 2p - 1 sums are needed
+    private static double[] solveNormal(double[] xs, double[] ys, double[] ws, Transform transform, int p, double c, double s) {
+        int n = xs.length, block = FitEngine.METRICS_BLOCK;
+        double[] u = new double[Math.min(n, block)];
+        double[] lanes = new double[(3 * p - 1) * Kernels.LANES];
+        for (int b = 0; b < n; b += block) {
+            int m = Math.min(block, n - b);
+            for (int j = 0; j < m; j++) u[j] = (transform.apply(xs[b + j]) - c) / s;
+            Kernels.INSTANCE.powerSums(u, ys, ws, b, m, p - 1, lanes);
+        }
+        double[][] ata = new double[p][p];
+        double[] aty = new double[p];
+        for (int j = 0; j < p; j++) {
+            aty[j] = Kernels.fold(lanes, 2 * p - 1 + j);
+            for (int k = 0; k <= j; k++) ata[j][k] = Kernels.fold(lanes, j + k);
+        }
+        return solveCholesky(ata, aty);
+    }
+
+    /**
+     * Solves {@code M·c = b} for symmetric positive definite {@code M}; only the lower
+     * triangle of {@code m} is read and it is overwritten with the factor.
+     */
+    static double[] solveCholesky(double[][] m, double[] b) {
+        choleskyFactor(m);
+        return choleskySolve(m, b);
+    }
+
+    /** Overwrites the lower triangle of {@code m} with its Cholesky factor L. */
+    static void choleskyFactor(double[][] m) {
+        int p = m.length;
+        for (int j = 0; j < p; j++) {
+            double d = m[j][j];
+            for (int k = 0; k < j; k++) d -= m[j][k] * m[j][k];
+            if (!(d > 1e-12 * Math.max(1.0, Math.abs(m[j][j])))) throw singular();
+            d = Math.sqrt(d);
+            m[j][j] = d;
+            for (int i = j + 1; i < p; i++) {
+                double v = m[i][j];
+                for (int k = 0; k < j; k++) v -= m[i][k] * m[j][k];
+                m[i][j] = v / d;
+            }
+        }
+    }
+
+    /** Solves {@code L·Lᵀ·c = b} with a factor from {@link #choleskyFactor}; one factor serves many b. */
+    static double[] choleskySolve(double[][] l, double[] b) {
+        int p = b.length;
+        double[] z = new double[p];
+        for (int i = 0; i < p; i++) {
+            double v = b[i];
+            for (int k = 0; k < i; k++) v -= l[i][k] * z[k];
+            z[i] = v / l[i][i];
+        }
+        for (int i = p - 1; i >= 0; i--) {
+            double v = z[i];
+            for (int k = i + 1; k < p; k++) v -= l[k][i] * z[k];
+            z[i] = v / l[i][i];
+        }
+        return z;
+    }
+
+    private static double[] solveQr(double[] xs, double[] ys, double[] ws, Transform transform, int p, double c, double s) {
+        // R is upper triangular, qty = Qᵀy; each row is folded in with p Givens rotations
+        double[][] r = new double[p][p];
+        double[] qty = new double[p];
+        double[] row = new double[p];
+        for (int i = 0; i < xs.length; i++) {
+            double y = ys[i];
+            if (ws == null) {
+                basis((transform.apply(xs[i]) - c) / s, row);
+            } else {
+                // Weighted rows are the plain rows scaled by √w
+                if (ws[i] == 0) continue;
+                double sw = Math.sqrt(ws[i]);
+                basis((transform.apply(xs[i]) - c) / s, row);
+                for (int j = 0; j < p; j++) row[j] *= sw;
+                y *= sw;
+            }
+            for (int k = 0; k < p; k++) {
+                double a = row[k];
+                if (a == 0) continue;
+                double rkk = r[k][k];
+                double h = Math.hypot(rkk, a);
+                double cos = rkk / h, sin = a / h;
+                r[k][k] = h;
+                for (int j = k + 1; j < p; j++) {
+                    double rkj = r[k][j];
+                    r[k][j] = cos * rkj + sin * row[j];
+                    row[j] = cos * row[j] - sin * rkj;
+                }
+                double q = qty[k];
+                qty[k] = cos * q + sin * y;
+                y = cos * y - sin * q;
+            }
+        }
+        return backSubstitute(r, qty);
+    }
+
+    /**
+     * Folds one row into the upper triangular {@code r} with p Givens rotations, applying the
+     * same rotations to every right-hand side: {@code qty[s]} takes {@code y[s]}. Both
+     * {@code row} and {@code y} are used as scratch.
+     */
+    static void rotateIn(double[][] r, double[] row, double[][] qty, double[] y) {
+        int p = row.length;
+        for (int k = 0; k < p; k++) {
+            double a = row[k];
+            if (a == 0) continue;
+            double rkk = r[k][k];
+            double h = Math.hypot(rkk, a);
+            double cos = rkk / h, sin = a / h;
+            r[k][k] = h;
+            for (int j = k + 1; j < p; j++) {
+                double rkj = r[k][j];
+                r[k][j] = cos * rkj + sin * row[j];
+                row[j] = cos * row[j] - sin * rkj;
+            }
+            for (int s = 0; s < qty.length; s++) {
+                double q = qty[s][k];
+                qty[s][k] = cos * q + sin * y[s];
+                y[s] = cos * y[s] - sin * q;
+            }
+        }
+    }
+
+    /** Solves {@code R·z = qty} for upper triangular R. */
+    static double[] backSubstitute(double[][] r, double[] qty) {
+        int p = qty.length;
+        double rmax = 0;
+        for (int k = 0; k < p; k++) rmax = Math.max(rmax, Math.abs(r[k][k]));
+        double[] z = new double[p];
+        for (int k = p - 1; k >= 0; k--) {
+            if (!(Math.abs(r[k][k]) > 1e-12 * rmax)) throw singular();
+            double v = qty[k];
+            for (int j = k + 1; j < p; j++) v -= r[k][j] * z[j];
+            z[k] = v / r[k][k];
+        }
+        return z;
+    }
+
+    static void basis(double u, double[] row) {
+        double v = 1.0;
+        for (int j = 0; j < row.length; j++) {
+            row[j] = v;
+            v *= u;
+        }
+    }
+
+    /** Re-expands {@code Σ b_k·((t - c)/s)^k} into plain powers of t. */
+    static double[] unscale(double[] b, double c, double s) {
+        int p = b.length;
+        double[] out = new double[p];
+        // Horner on polynomials: acc = acc·(t - c)/s + b_k, from the highest power down
+        for (int k = p - 1; k >= 0; k--) {
+            for (int j = p - 1; j > 0; j--) out[j] = (out[j - 1] - c * out[j]) / s;
+            out[0] = -c * out[0] / s;
+            out[0] += b[k];
+        }
+        return out;
+    }
+
+    private static IllegalArgumentException singular() {
+        return new IllegalArgumentException("The data do not determine this model (too few distinct x values).");
+    }
+}
@@ -0,0 +1,315 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Live input: points streamed from a local socket, a named pipe or a file that is being
+ * appended to, with the selected model refitted to a {@link RollingWindow} of the latest ones.
+ * <p>
+ * A reader thread parses one point per line (X and Y, separated by tabs, commas, semicolons or
+ * spaces, with numbers read as {@link DelimitedImporter} reads them; anything else is skipped)
+ * into a bounded {@link PointQueue}, and stalls when the queue is full rather than dropping
+ * points. A second thread drains the queue into the window and
+ * refits at most {@code refitsPerSecond} times a second, and only when points arrived or the
+ * model changed. A sliding window refits a linear-in-parameter model from its running sums; the
+ * window is copied out and sorted only for the iterative models and for the listener's chart.
+ * Sockets end when the peer closes them; files are followed like {@code tail -f}.
+ */
+final class LiveStream implements AutoCloseable {
+
+    static final int QUEUE_CAPACITY = 1 << 16;
+    // How often a followed file is polled for appended lines
+    private static final long TAIL_POLL_MILLIS = 50;
+    // Longer lines are not points; they are dropped rather than buffered
+    private static final int MAX_LINE = 4096;
+    private static final Pattern SOCKET = Pattern.compile("(?:([^:/\\\\\\s]+):)?(\\d{1,5})");
+
+    /** One refit, or the end of the stream. */
+    static final class Frame {
+        // Null when the listener did not ask for the points
+        final RollingWindow.Snapshot data;
+        final FitResult fit;
+        final String error;
+        final long received;
+        final int inWindow;
+        final boolean ended;
+        // The unexpected exception that ended the stream, or null
+        final RuntimeException failure;
+
+        Frame(RollingWindow.Snapshot data, FitResult fit, String error, long received, int inWindow, boolean ended,
+              RuntimeException failure) {
+            this.data = data;
+            this.fit = fit;
+            this.error = error;
+            this.received = received;
+            this.inWindow = inWindow;
+            this.ended = ended;
+            this.failure = failure;
+        }
+
+        /** This frame with the points of an earlier one it replaces, when it has none of its own. */
+        Frame withDataOf(Frame earlier) {
+            if (data != null || earlier == null || earlier.data == null) return this;
+            return new Frame(earlier.data, fit, error, received, inWindow, ended, failure);
+        }
+    }
+
+    /** Receives frames on the refit thread. */
+    interface Listener {
+        void onFrame(Frame frame);
+
+        /** Whether the next frame should carry the window's points, which costs a copy and a sort. */
+        default boolean wantsPoints() { return true; }
+    }
+
+    private final String source;
+    private final PointQueue queue = new PointQueue(QUEUE_CAPACITY);
+    private final RollingWindow window;
+    private final FitSettings settings;
+    private final Listener listener;
+    private final Thread reader;
+    private final ScheduledExecutorService refits;
+
+    private volatile ModelType model;
+    private volatile int degree;
+    // Set when the model changes, so the next tick refits even without new points
+    private volatile boolean dirty = true;
+    private volatile boolean stopped, readerDone;
+    private volatile String endReason;
+    private volatile InputStream input;
+    // The reader is blocked opening a named pipe that has no writer yet
+    private volatile boolean opening;
+
+    // Reader thread only: the fields of the line being parsed
+    private final NumberParser numbers = new NumberParser();
+    private double parsedX, parsedY;
+
+    // Refit thread only
+    private long received;
+    private double[] warmStart;
+    private ModelType warmModel;
+
+    /** Connects or opens {@code source} on the reader thread and starts both threads. */
+    LiveStream(String source, RollingWindow window, double refitsPerSecond, ModelType model, int degree,
+               FitSettings settings, Listener listener) {
+        if (!(refitsPerSecond > 0)) throw new IllegalArgumentException("The refit rate must be positive.");
+        this.source = source.trim();
+        this.window = window;
+        this.model = model;
+        this.degree = degree;
+        this.settings = settings;
+        this.listener = listener;
+        reader = new Thread(this::read, "curvefit-live-reader");
+        reader.setDaemon(true);
+        refits = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "curvefit-live-fit");
+            t.setDaemon(true);
+            return t;
+        });
+        reader.start();
+        long period = Math.max(1, Math.round(1000 / refitsPerSecond));
+        refits.scheduleWithFixedDelay(this::tick, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /** Model of the next refits; takes effect within one refit period. */
+    void model(ModelType model, int degree) {
+        this.model = model;
+        this.degree = degree;
+        dirty = true;
+    }
+
+    /** {@code host:port} or a bare port (on localhost) for a socket, otherwise a file path. */
+    private InputStream open() throws IOException {
+        Matcher m = SOCKET.matcher(source);
+        if (m.matches()) {
+            Socket socket = new Socket();
+            socket.connect(new InetSocketAddress(m.group(1) == null ? "localhost" : m.group(1), Integer.parseInt(m.group(2))), 5000);
+            return socket.getInputStream();
+        }
+        // Opening a named pipe blocks here until a writer opens it; close() releases it
+        opening = true;
+        try {
+            return Files.newInputStream(Path.of(source));
+        } finally {
+            opening = false;
+        }
+    }
+
+    private void read() {
+        boolean socket = SOCKET.matcher(source).matches();
+        try (InputStream in = open()) {
+            input = in;
+            byte[] buf = new byte[8192];
+            byte[] line = new byte[MAX_LINE];
+            ByteBuffer lineView = ByteBuffer.wrap(line);
+            int len = 0;
+            boolean overlong = false;
+            while (!stopped) {
+                int n = in.read(buf);
+                if (n < 0) {
+                    if (socket) break;
+                    Thread.sleep(TAIL_POLL_MILLIS);
+                    continue;
+                }
+                for (int i = 0; i < n; i++) {
+                    byte c = buf[i];
+                    if (c == '\n') {
+                        if (!overlong) parseLine(lineView, len);
+                        len = 0;
+                        overlong = false;
+                    } else if (len < MAX_LINE) {
+                        line[len++] = c;
+                    } else {
+                        overlong = true;
+                    }
+                }
+            }
+            if (!stopped) endReason = "the source closed the stream";
+        } catch (IOException ex) {
+            if (!stopped) endReason = ex.getMessage();
+        } catch (InterruptedException ex) {
+            // Stopped while waiting for the file to grow
+        } finally {
+            readerDone = true;
+        }
+    }
+
+    // X and Y from the first two fields of a line; headers, blanks and comments do not parse.
+    // As in imported files, a comma is the decimal point when tabs or semicolons separate
+    private void parseLine(ByteBuffer line, int len) {
+        boolean decimalComma = false;
+        for (int i = 0; i < len && !decimalComma; i++) decimalComma = line.get(i) == '\t' || line.get(i) == ';';
+        int i = 0;
+        for (int field = 0; field < 2; field++) {
+            while (i < len && isSeparator(line.get(i), decimalComma)) i++;
+            int start = i;
+            while (i < len && !isSeparator(line.get(i), decimalComma)) i++;
+            double v = numbers.parse(line, start, i, decimalComma);
+            if (!Double.isFinite(v)) return;
+            if (field == 0) parsedX = v;
+            else parsedY = v;
+        }
+        // Back-pressure: a full queue stalls the reader, and with it the sender
+        while (!queue.offer(parsedX, parsedY)) {
+            if (stopped) return;
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    private static boolean isSeparator(byte c, boolean decimalComma) {
+        return c == ' ' || c == '\t' || c == ';' || c == '\r' || (c == ',' && !decimalComma);
+    }
+
+    // Runs on the scheduler, which would silently cancel all later ticks if one threw
+    private void tick() {
+        try {
+            refit();
+        } catch (CancellationException ex) {
+            // Stopped mid-fit
+        } catch (RuntimeException ex) {
+            fail(ex);
+        }
+    }
+
+    @SuppressWarnings("try")
+    private void refit() {
+        boolean done = readerDone;
+        int drained = queue.drain(window::add, queue.capacity());
+        received += drained;
+        boolean ended = done && queue.size() == 0;
+        if (ended) refits.shutdown();
+        if (drained == 0 && !dirty && !ended) return;
+        if (window.size() < 2 && !ended) return;
+        dirty = false;
+        ModelType m = model;
+        int d = degree;
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.LIVE, window.size())) {
+            SufficientStats stats = FitEngine.isLinearInParameters(m) ? window.stats(FitEngine.transformOf(m)) : null;
+            RollingWindow.Snapshot data = stats == null || listener.wantsPoints() ? window.snapshot() : null;
+            FitResult fit = null;
+            String error = ended ? endReason : null;
+            try {
+                if (window.size() >= 2) fit = stats != null ? fitFromStats(stats, m, d) : fit(data, m, d);
+            } catch (IllegalArgumentException ex) {
+                error = ex.getMessage();
+            }
+            listener.onFrame(new Frame(data, fit, error, received, window.size(), ended, null));
+        }
+    }
+
+    // A refit failed unexpectedly: stop the stream and hand the exception to the listener as its end
+    private void fail(RuntimeException ex) {
+        close();
+        try {
+            listener.onFrame(new Frame(null, null, "live refit failed: " + ex, received, window.size(), true, ex));
+        } catch (RuntimeException again) {
+            // The listener itself is failing; there is nobody left to tell
+        }
+    }
+
+    // Sliding windows solve linear-in-parameter models from running sums, without the points
+    private FitResult fitFromStats(SufficientStats stats, ModelType m, int d) {
+        if (m == ModelType.POLYNOMIAL) FitEngine.checkModel(new double[0], m, d);
+        return FitEngine.fitFromStats(stats, m, m == ModelType.LINEAR ? 1 : m == ModelType.POLYNOMIAL ? d : 0,
+                window.xMin(), window.xMax());
+    }
+
+    // The rest refit the window, the iterative models from the previous live parameters
+    private FitResult fit(RollingWindow.Snapshot data, ModelType m, int d) {
+        FitResult fit = FitEngine.fitModel(data.xs, data.ys, data.ws, m, d, m == warmModel ? warmStart : null, settings, p -> {
+            if (stopped) throw new CancellationException("Live input stopped");
+        });
+        warmModel = m;
+        warmStart = fit.params;
+        return fit;
+    }
+
+    /** Stops both threads; no frame is delivered after this returns, except one already being built. */
+    @Override public void close() {
+        stopped = true;
+        refits.shutdownNow();
+        reader.interrupt();
+        if (opening) releasePipe();
+        InputStream in = input;
+        if (in == null) return;
+        try {
+            // Unblocks a reader waiting on a socket
+            in.close();
+        } catch (IOException ex) {
+            // Closing anyway
+        }
+    }
+
+    /**
+     * Opens the named pipe the reader is waiting on for writing and closes it again, which lets
+     * the reader's open return (to an empty stream) so the thread can see it was stopped. On its
+     * own thread: should the reader have given up meanwhile, this open blocks in turn.
+     */
+    @SuppressWarnings("try")
+    private void releasePipe() {
+        Thread release = new Thread(() -> {
+            try (OutputStream out = Files.newOutputStream(Path.of(source), StandardOpenOption.WRITE)) {
+                // Opening was the point
+            } catch (IOException ex) {
+                // Nothing to release
+            }
+        }, "curvefit-live-release");
+        release.setDaemon(true);
+        release.start();
+    }
+}
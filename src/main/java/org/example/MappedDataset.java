@@ -0,0 +1,263 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read-only dataset in a memory-mapped column file, for captures larger than the heap.
+ * Values are paged in by the OS on access, so opening, viewing and fitting cost constant heap
+ * whatever the row count.
+ * <p>
+ * File layout, little-endian throughout:
+ * <pre>
+ *   0  magic "CFCOLS01"
+ *   8  int   header length in bytes (multiple of 8; the data start)
+ *  12  int   column count
+ *  16  long  row count
+ *  24  int   rows per group
+ *  28  int   reserved (0)
+ *  32  column names: u16 byte length + UTF-8 bytes each, zero-padded to the header length
+ *  data: row groups in order; in each, every column's values of the group's rows in turn
+ * </pre>
+ * Groups are the unit of streaming: a scan reads one group of a column into a reused array.
+ * Every group but the last is full, so any value's offset is computed directly.
+ */
+final class MappedDataset implements AutoCloseable {
+
+    static final String EXTENSION = ".cfcol";
+    static final int GROUP_ROWS = 1 << 14;
+
+    private static final byte[] MAGIC = "CFCOLS01".getBytes(StandardCharsets.US_ASCII);
+    private static final int FIXED_HEADER = 32;
+    // Mapped windows stay below the 2 GB limit of one buffer and hold whole groups
+    private static final long WINDOW = 1L << 30;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final String[] names;
+    private final long rows;
+    private final int groupRows, groupsPerWindow;
+    // Null once closed; the buffers are the only references to the mappings
+    private DoubleBuffer[] windows;
+    // A converted copy that nobody else knows about
+    private boolean temporary;
+
+    private MappedDataset(Path path, FileChannel channel, String[] names, long rows, int groupRows, long dataStart) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.names = names;
+        this.rows = rows;
+        this.groupRows = groupRows;
+        long groupBytes = (long) groupRows * names.length * Double.BYTES;
+        this.groupsPerWindow = (int) Math.max(1, WINDOW / groupBytes);
+        long groups = groups();
+        windows = new DoubleBuffer[(int) ((groups + groupsPerWindow - 1) / groupsPerWindow)];
+        long dataBytes = rows * names.length * Double.BYTES;
+        for (int w = 0; w < windows.length; w++) {
+            long from = w * groupsPerWindow * groupBytes;
+            long len = Math.min(groupsPerWindow * groupBytes, dataBytes - from);
+            windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, dataStart + from, len)
+                    .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        }
+    }
+
+    /** Maps a column file; fails if it is not one or is shorter than its header says. */
+    static MappedDataset open(Path path) throws IOException {
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer fixed = ByteBuffer.allocate(FIXED_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(ch, fixed, 0);
+            byte[] magic = new byte[MAGIC.length];
+            fixed.get(0, magic);
+            int headerBytes = fixed.getInt(8), columns = fixed.getInt(12), groupRows = fixed.getInt(24);
+            long rows = fixed.getLong(16);
+            if (!Arrays.equals(magic, MAGIC) || headerBytes < FIXED_HEADER || headerBytes > 1 << 24 || columns < 1 || groupRows < 1 || rows < 0) {
+                throw new IOException("Not a CurveFit column file.");
+            }
+            if (ch.size() < headerBytes + rows * columns * Double.BYTES) throw new IOException("Column file is truncated.");
+            ByteBuffer header = ByteBuffer.allocate(headerBytes - FIXED_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(ch, header, FIXED_HEADER);
+            String[] names = new String[columns];
+            for (int c = 0; c < columns; c++) {
+                byte[] bytes = new byte[header.getShort() & 0xFFFF];
+                header.get(bytes);
+                names[c] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return new MappedDataset(path, ch, names, rows, groupRows, headerBytes);
+        } catch (IOException | RuntimeException ex) {
+            ch.close();
+            throw ex instanceof IOException ? (IOException) ex : new IOException("Not a CurveFit column file.", ex);
+        }
+    }
+
+    /**
+     * Converts a delimited file to a temporary column file and maps it. The file is deleted
+     * when the dataset is closed, or failing that when the JVM exits.
+     */
+    static MappedDataset convert(Path source, int maxColumns) throws IOException {
+        Path file = Files.createTempFile("curvefit-", EXTENSION);
+        file.toFile().deleteOnExit();
+        try {
+            DelimitedImporter.convert(source, file, maxColumns);
+            MappedDataset data = open(file);
+            data.temporary = true;
+            return data;
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(file);
+            throw ex;
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position()) < 0) throw new IOException("Not a CurveFit column file.");
+        }
+        buf.flip();
+    }
+
+    Path path() { return path; }
+    long rows() { return rows; }
+    int columns() { return names.length; }
+    String name(int column) { return names[column]; }
+    int groupRows() { return groupRows; }
+    int groups() { return (int) ((rows + groupRows - 1) / groupRows); }
+
+    /** Weight column by the importer's rule (a w or weight header), or -1. */
+    int weightColumn() {
+        return DelimitedImporter.weightColumn(names, names.length);
+    }
+
+    /** The first Y column: the first one after X that is not the weights. */
+    int yColumn() {
+        return weightColumn() == 1 ? 2 : 1;
+    }
+
+    /** Rows in group {@code g}: {@link #groupRows()} except in the last group. */
+    int rowsIn(int g) { return (int) Math.min(groupRows, rows - (long) g * groupRows); }
+
+    /** One value; thread-safe. */
+    double get(int column, long row) {
+        int g = (int) (row / groupRows);
+        return window(g).get(offset(g, column) + (int) (row - (long) g * groupRows));
+    }
+
+    /** Copies column {@code column} of group {@code g} into {@code dst}; returns the row count. Thread-safe. */
+    int read(int column, int g, double[] dst) {
+        return read(column, g, dst, 0);
+    }
+
+    /** As {@link #read(int, int, double[])}, into {@code dst} from index {@code at}. */
+    int read(int column, int g, double[] dst, int at) {
+        int n = rowsIn(g);
+        window(g).get(offset(g, column), dst, at, n);
+        return n;
+    }
+
+    // A worker still reading after close gets an exception rather than a dead mapping
+    private DoubleBuffer window(int g) {
+        DoubleBuffer[] w = windows;
+        if (w == null) throw new IllegalStateException("The dataset is closed.");
+        return w[g / groupsPerWindow];
+    }
+
+    // Index of the group's first value of the column within its window
+    private int offset(int g, int column) {
+        return (int) ((long) (g % groupsPerWindow) * groupRows * names.length) + column * rowsIn(g);
+    }
+
+    /**
+     * Drops the mappings and closes the file, deleting it if it was converted. Java has no
+     * safe explicit unmap (a read racing with it would crash the VM), so the pages are
+     * released when the collector clears the buffers; unlinking a mapped file is fine on
+     * POSIX, and on Windows the exit hook deletes it.
+     */
+    @Override public void close() throws IOException {
+        windows = null;
+        try {
+            channel.close();
+        } finally {
+            if (temporary) {
+                temporary = false;
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException ex) {
+                    // Still mapped; deleteOnExit gets it
+                }
+            }
+        }
+    }
+
+    /** Writes a column file row by row with one group of buffers on the heap. */
+    static final class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        private final int columns;
+        private final double[][] group;
+        private final ByteBuffer out;
+        private int filled;
+        private long rows;
+
+        Writer(Path path, String[] names) throws IOException {
+            this.columns = names.length;
+            byte[][] encoded = new byte[columns][];
+            int length = FIXED_HEADER;
+            for (int c = 0; c < columns; c++) {
+                byte[] b = names[c].getBytes(StandardCharsets.UTF_8);
+                encoded[c] = b.length > 0xFFFF ? Arrays.copyOf(b, 0xFFFF) : b;
+                length += 2 + encoded[c].length;
+            }
+            int headerBytes = (length + 7) & ~7;
+            ByteBuffer header = ByteBuffer.allocate(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC).putInt(headerBytes).putInt(columns).putLong(0).putInt(GROUP_ROWS).putInt(0);
+            for (byte[] b : encoded) header.putShort((short) b.length).put(b);
+            header.clear();
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            try {
+                while (header.hasRemaining()) channel.write(header);
+            } catch (IOException ex) {
+                channel.close();
+                throw ex;
+            }
+            group = new double[columns][GROUP_ROWS];
+            out = ByteBuffer.allocateDirect(GROUP_ROWS * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /** Appends one row; values beyond {@code n} are NaN. */
+        void append(double[] row, int n) throws IOException {
+            for (int c = 0; c < columns; c++) group[c][filled] = c < n ? row[c] : Double.NaN;
+            if (++filled == GROUP_ROWS) flush();
+        }
+
+        long rows() { return rows + filled; }
+
+        private void flush() throws IOException {
+            if (filled == 0) return;
+            for (int c = 0; c < columns; c++) {
+                out.clear();
+                out.asDoubleBuffer().put(group[c], 0, filled);
+                out.limit(filled * Double.BYTES);
+                while (out.hasRemaining()) channel.write(out);
+            }
+            rows += filled;
+            filled = 0;
+        }
+
+        /** Writes the last group and the final row count. */
+        @Override public void close() throws IOException {
+            try {
+                flush();
+                ByteBuffer count = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(0, rows);
+                while (count.hasRemaining()) channel.write(count, 16 + count.position());
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
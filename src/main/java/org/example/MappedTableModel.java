@@ -0,0 +1,33 @@
+package org.example;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Read-only table over a {@link MappedDataset}. Cells are read from the mapping only when
+ * Swing renders them, so scrolling pages the file in lazily and nothing is copied.
+ */
+@SuppressWarnings("serial")
+final class MappedTableModel extends AbstractTableModel {
+
+    /** Rows a JTable can lay out before its pixel height overflows an int. */
+    static final int MAX_ROWS = 50_000_000;
+
+    private final MappedDataset data;
+
+    MappedTableModel(MappedDataset data) { this.data = data; }
+
+    @Override public int getRowCount() { return (int) Math.min(MAX_ROWS, data.rows()); }
+    @Override public int getColumnCount() { return data.columns(); }
+    @Override public Class<?> getColumnClass(int columnIndex) { return Double.class; }
+
+    @Override public String getColumnName(int column) {
+        String name = data.name(column);
+        if (!name.isEmpty()) return name;
+        return column == DataTableModel.X ? "X" : data.columns() == 2 ? "Y" : "Y" + column;
+    }
+
+    @Override public Object getValueAt(int row, int column) {
+        double v = data.get(column, row);
+        return Double.isNaN(v) ? null : v;
+    }
+}
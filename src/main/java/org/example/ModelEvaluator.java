@@ -0,0 +1,224 @@
+package org.example;
+
+/**
+ * Evaluation kernels for the fitted models, one final subclass per model family, shared by
+ * fitting, metrics and chart sampling. Each subclass owns its batch loops, so every loop
+ * sees exactly one implementation and the JIT can inline it; the straight line and the
+ * polynomial use {@link Kernels#horner}. Nothing here allocates after construction.
+ * <p>
+ * An evaluator holds its own copy of the parameters; the iterative fit updates them in place
+ * with {@link #setParameters}. Outside the model's domain the value is NaN.
+ */
+abstract class ModelEvaluator {
+
+    final double[] p;
+
+    ModelEvaluator(double[] params) { this.p = params.clone(); }
+
+    static ModelEvaluator of(FitResult fit) {
+        return of(fit, fit.params);
+    }
+
+    /** The model of {@code fit}, built-in or custom, with other parameters. */
+    static ModelEvaluator of(FitResult fit, double[] params) {
+        return fit.custom != null ? new Custom(fit.custom, params) : of(fit.model, params);
+    }
+
+    static ModelEvaluator of(ModelType model, double[] params) {
+        switch (model) {
+            case LINEAR: return new Linear(params);
+            case POLYNOMIAL: return new Polynomial(params);
+            case EXPONENTIAL: return new Exponential(params);
+            case POWER: return new Power(params);
+            case LOGARITHMIC: return new Logarithmic(params);
+            case RECIPROCAL: return new Reciprocal(params);
+            case CUSTOM: throw new IllegalArgumentException("A custom model needs its CurveModel.");
+        }
+        throw new IllegalStateException("Unhandled model");
+    }
+
+    int parameterCount() { return p.length; }
+
+    void setParameters(double[] params) { System.arraycopy(params, 0, p, 0, p.length); }
+
+    abstract double value(double x);
+
+    /** Writes ∂f/∂p at x into {@code out[0..parameterCount())}. */
+    abstract void gradient(double x, double[] out);
+
+    /** Writes f(xs[i]) for i in [from, to) into {@code out[i - from]}. */
+    abstract void evaluate(double[] xs, int from, int to, double[] out);
+
+    final void evaluate(double[] xs, double[] out) { evaluate(xs, 0, xs.length, out); }
+
+    /** Values and Jacobian rows at every x in one pass, into caller-owned buffers. */
+    void valueAndJacobian(double[] xs, double[] values, double[][] jacobian) {
+        evaluate(xs, values);
+        for (int i = 0; i < xs.length; i++) gradient(xs[i], jacobian[i]);
+    }
+
+    /** y = a + b x */
+    static final class Linear extends ModelEvaluator {
+        Linear(double[] params) { super(params); }
+
+        @Override double value(double x) { return p[0] + p[1] * x; }
+
+        @Override void gradient(double x, double[] out) {
+            out[0] = 1;
+            out[1] = x;
+        }
+
+        @Override void evaluate(double[] xs, int from, int to, double[] out) {
+            Kernels.INSTANCE.horner(p, xs, from, to, out);
+        }
+    }
+
+    /** y = Σ p[k] x^k, by Horner's rule. */
+    static final class Polynomial extends ModelEvaluator {
+        Polynomial(double[] params) { super(params); }
+
+        @Override double value(double x) {
+            double y = p[p.length - 1];
+            for (int k = p.length - 2; k >= 0; k--) y = y * x + p[k];
+            return y;
+        }
+
+        @Override void gradient(double x, double[] out) {
+            double xk = 1;
+            for (int k = 0; k < p.length; k++) {
+                out[k] = xk;
+                xk *= x;
+            }
+        }
+
+        @Override void evaluate(double[] xs, int from, int to, double[] out) {
+            Kernels.INSTANCE.horner(p, xs, from, to, out);
+        }
+    }
+
+    /** y = a e^(b x) */
+    static final class Exponential extends ModelEvaluator {
+        Exponential(double[] params) { super(params); }
+
+        @Override double value(double x) { return p[0] * Math.exp(p[1] * x); }
+
+        @Override void gradient(double x, double[] out) {
+            double e = Math.exp(p[1] * x);
+            out[0] = e;
+            out[1] = p[0] * x * e;
+        }
+
+        @Override void evaluate(double[] xs, int from, int to, double[] out) {
+            double a = p[0], b = p[1];
+            for (int i = from; i < to; i++) out[i - from] = a * Math.exp(b * xs[i]);
+        }
+
+        @Override void valueAndJacobian(double[] xs, double[] values, double[][] jacobian) {
+            double a = p[0], b = p[1];
+            for (int i = 0; i < xs.length; i++) {
+                double x = xs[i], e = Math.exp(b * x);
+                double[] row = jacobian[i];
+                values[i] = a * e;
+                row[0] = e;
+                row[1] = a * x * e;
+            }
+        }
+    }
+
+    /** y = a x^b, x > 0 */
+    static final class Power extends ModelEvaluator {
+        Power(double[] params) { super(params); }
+
+        @Override double value(double x) { return x <= 0 ? Double.NaN : p[0] * Math.pow(x, p[1]); }
+
+        @Override void gradient(double x, double[] out) {
+            double xb = Math.pow(x, p[1]);
+            out[0] = xb;
+            out[1] = p[0] * xb * Math.log(x);
+        }
+
+        @Override void evaluate(double[] xs, int from, int to, double[] out) {
+            double a = p[0], b = p[1];
+            for (int i = from; i < to; i++) {
+                double x = xs[i];
+                out[i - from] = x <= 0 ? Double.NaN : a * Math.pow(x, b);
+            }
+        }
+
+        @Override void valueAndJacobian(double[] xs, double[] values, double[][] jacobian) {
+            double a = p[0], b = p[1];
+            for (int i = 0; i < xs.length; i++) {
+                double x = xs[i], xb = Math.pow(x, b);
+                double[] row = jacobian[i];
+                values[i] = a * xb;
+                row[0] = xb;
+                row[1] = a * xb * Math.log(x);
+            }
+        }
+    }
+
+    /** y = a + b ln(x), x > 0 */
+    static final class Logarithmic extends ModelEvaluator {
+        Logarithmic(double[] params) { super(params); }
+
+        @Override double value(double x) { return x <= 0 ? Double.NaN : p[0] + p[1] * Math.log(x); }
+
+        @Override void gradient(double x, double[] out) {
+            out[0] = 1;
+            out[1] = Math.log(x);
+        }
+
+        @Override void evaluate(double[] xs, int from, int to, double[] out) {
+            double a = p[0], b = p[1];
+            for (int i = from; i < to; i++) {
+                double x = xs[i];
+                out[i - from] = x <= 0 ? Double.NaN : a + b * Math.log(x);
+            }
+        }
+    }
+
+    /** y = a + b / x, x ≠ 0 */
+    static final class Reciprocal extends ModelEvaluator {
+        Reciprocal(double[] params) { super(params); }
+
+        @Override double value(double x) { return x == 0 ? Double.NaN : p[0] + p[1] / x; }
+
+        @Override void gradient(double x, double[] out) {
+            out[0] = 1;
+            out[1] = 1 / x;
+        }
+
+        @Override void evaluate(double[] xs, int from, int to, double[] out) {
+            double a = p[0], b = p[1];
+            for (int i = from; i < to; i++) {
+                double x = xs[i];
+                out[i - from] = x == 0 ? Double.NaN : a + b / x;
+            }
+        }
+    }
+
+    /** A {@link CurveModel}, which owns its own batch loops. */
+    static final class Custom extends ModelEvaluator {
+        final CurveModel model;
+
+        Custom(CurveModel model, double[] params) {
+            super(params);
+            this.model = model;
+        }
+
+        // Single points only; batches go through evaluate
+        @Override double value(double x) {
+            double[] y = new double[1];
+            model.evaluate(new double[]{x}, 0, 1, p, y);
+            return y[0];
+        }
+
+        @Override void gradient(double x, double[] out) { model.gradient(x, p, out); }
+
+        @Override void evaluate(double[] xs, int from, int to, double[] out) { model.evaluate(xs, from, to, p, out); }
+
+        @Override void valueAndJacobian(double[] xs, double[] values, double[][] jacobian) {
+            model.valueAndJacobian(xs, p, values, jacobian);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * The {@link CurveModel}s available besides the built-in {@link ModelType}s: those installed as
+ * service providers, then formulas compiled during this session, by name. Only the
+ * {@link #MAX_COMPILED} most recently used formulas are kept; older ones are compiled again
+ * when they come back.
+ */
+final class ModelRegistry {
+
+    static final int MAX_COMPILED = 256;
+
+    private static final Map<String, CurveModel> INSTALLED = new LinkedHashMap<>();
+    // Access-ordered, so the eldest entry is the least recently used formula
+    @SuppressWarnings("serial")
+    private static final Map<String, CurveModel> COMPILED = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, CurveModel> eldest) {
+            return size() > MAX_COMPILED;
+        }
+    };
+
+    static {
+        try {
+            for (CurveModel m : ServiceLoader.load(CurveModel.class)) INSTALLED.putIfAbsent(m.name(), m);
+        } catch (ServiceConfigurationError ex) {
+            // A broken provider jar must not keep the built-in models from working
+            System.err.println("Ignoring custom models: " + ex.getMessage());
+        }
+    }
+
+    private ModelRegistry() { }
+
+    /** Installed models in registration order, then compiled ones from least to most recently used. */
+    static synchronized List<CurveModel> all() {
+        List<CurveModel> all = new ArrayList<>(INSTALLED.values());
+        all.addAll(COMPILED.values());
+        return all;
+    }
+
+    /** The model registered under {@code text}, or {@code text} compiled as a formula and registered. */
+    static synchronized CurveModel resolve(String text) {
+        String name = text.trim();
+        CurveModel m = INSTALLED.get(name);
+        if (m == null) m = COMPILED.get(name);
+        if (m != null) return m;
+        m = ExpressionModel.compile(name);
+        CurveModel known = INSTALLED.get(m.name());
+        if (known != null) return known;
+        known = COMPILED.putIfAbsent(m.name(), m);
+        return known != null ? known : m;
+    }
+}
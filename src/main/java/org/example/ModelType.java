@@ -0,0 +1,16 @@
+package org.example;
+
+/** The built-in regression models, and {@link #CUSTOM} for a {@link CurveModel} or formula. */
+enum ModelType {
+    LINEAR("Linear: y = a + b·x"),
+    POLYNOMIAL("Polynomial (degree n)"),
+    EXPONENTIAL("Exponential: y = a·e^(b·x)"),
+    POWER("Power: y = a·x^b"),
+    LOGARITHMIC("Logarithmic: y = a + b·ln(x)"),
+    RECIPROCAL("Reciprocal: y = a + b/x"),
+    CUSTOM("Custom formula");
+
+    public final String label;
+    ModelType(String label) { this.label = label; }
+    @Override public String toString() { return label; }
+}
@@ -0,0 +1,88 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Allocation-free decimal parser for the importer and the live reader: sign, digits, one '.'
+ * (or ',' when commas cannot be delimiters) and an optional exponent. Up to 15 significant
+ * digits with |exponent| ≤ 22 are computed exactly; anything else falls back to
+ * {@link Double#parseDouble}. Not thread-safe: each reader keeps its own.
+ */
+final class NumberParser {
+
+    // Exact powers of ten; with a mantissa below 2^53 one multiply or divide rounds correctly
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private boolean failed;
+
+    /** Whether the last {@link #parse} found no number; a literal NaN is a number. */
+    boolean failed() { return failed; }
+
+    /** The number in bytes {@code [s, e)} of {@code b}, NaN when it is not one. */
+    double parse(ByteBuffer b, int s, int e, boolean decimalComma) {
+        failed = false;
+        int i = s;
+        boolean negative = false;
+        if (i < e && (b.get(i) == '+' || b.get(i) == '-')) negative = b.get(i++) == '-';
+        long mantissa = 0;
+        int digits = 0, exp10 = 0;
+        boolean sawDigit = false, sawPoint = false, truncated = false;
+        for (; i < e; i++) {
+            byte c = b.get(i);
+            if (c >= '0' && c <= '9') {
+                sawDigit = true;
+                if (mantissa == 0 && c == '0') {
+                    if (sawPoint) exp10--;
+                } else if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits++;
+                    if (sawPoint) exp10--;
+                } else {
+                    truncated = true;
+                    if (!sawPoint) exp10++;
+                }
+            } else if (c == '.' || (c == ',' && decimalComma)) {
+                if (sawPoint) { failed = true; return Double.NaN; }
+                sawPoint = true;
+            } else if ((c == 'e' || c == 'E') && sawDigit) {
+                int j = i + 1;
+                boolean expNegative = false;
+                if (j < e && (b.get(j) == '+' || b.get(j) == '-')) expNegative = b.get(j++) == '-';
+                if (j >= e) return fallback(b, s, e, decimalComma);
+                int exp = 0;
+                for (; j < e; j++) {
+                    byte ce = b.get(j);
+                    if (ce < '0' || ce > '9') return fallback(b, s, e, decimalComma);
+                    if (exp < 100_000) exp = exp * 10 + (ce - '0');
+                }
+                exp10 += expNegative ? -exp : exp;
+                break;
+            } else {
+                return fallback(b, s, e, decimalComma);
+            }
+        }
+        if (!sawDigit) return fallback(b, s, e, decimalComma);
+        if (mantissa == 0) return negative ? -0.0 : 0.0;
+        if (truncated || digits > 15 || exp10 < -22 || exp10 > 22) return fallback(b, s, e, decimalComma);
+        double v = exp10 >= 0 ? mantissa * POW10[exp10] : mantissa / POW10[-exp10];
+        return negative ? -v : v;
+    }
+
+    // Rare path (long mantissas, NaN/Infinity, malformed input), via a String
+    private double fallback(ByteBuffer b, int s, int e, boolean decimalComma) {
+        byte[] bytes = new byte[e - s];
+        for (int i = s; i < e; i++) bytes[i - s] = b.get(i);
+        String str = new String(bytes, StandardCharsets.UTF_8);
+        if (decimalComma && str.indexOf(',') >= 0 && str.indexOf('.') < 0) str = str.replace(',', '.');
+        try {
+            return Double.parseDouble(str);
+        } catch (NumberFormatException ex) {
+            failed = true;
+            return Double.NaN;
+        }
+    }
+}
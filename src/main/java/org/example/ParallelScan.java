@@ -0,0 +1,161 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Fused single-pass reductions over the point arrays of a fit: the X range with the domain
+ * checks, and the weighted moments of y together with the residual sum of squares.
+ * <p>
+ * Arrays longer than one chunk are split at fixed boundaries and the chunks run on the common
+ * pool. Partial results are merged in chunk order and sums carry a Neumaier compensation
+ * term, so a result depends only on the data, never on the thread count or scheduling.
+ */
+final class ParallelScan {
+
+    // Points per task: large enough that a task outweighs its scheduling
+    static final int CHUNK = 1 << 16;
+
+    private ParallelScan() { }
+
+    /** X range plus what the model domains need to know, from one pass. */
+    static final class Range {
+        final int n;
+        final double xmin, xmax;
+        final int nonPositive, zeros;
+
+        Range(int n, double xmin, double xmax, int nonPositive, int zeros) {
+            this.n = n;
+            this.xmin = xmin;
+            this.xmax = xmax;
+            this.nonPositive = nonPositive;
+            this.zeros = zeros;
+        }
+
+        Range merge(Range o) {
+            return new Range(n + o.n, Math.min(xmin, o.xmin), Math.max(xmax, o.xmax), nonPositive + o.nonPositive, zeros + o.zeros);
+        }
+    }
+
+    static Range range(double[] xs) {
+        if (xs.length == 0) return new Range(0, 0, 1, 0, 0);
+        return reduce(xs.length, (from, to) -> {
+            double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+            int nonPositive = 0, zeros = 0;
+            for (int i = from; i < to; i++) {
+                double x = xs[i];
+                if (x < lo) lo = x;
+                if (x > hi) hi = x;
+                if (x <= 0) nonPositive++;
+                if (x == 0) zeros++;
+            }
+            return new Range(to - from, lo, hi, nonPositive, zeros);
+        }, Range::merge);
+    }
+
+    /**
+     * Weighted R² and RMSE of {@code f} in one pass: a weighted Welford mean and M2 of y,
+     * merged across chunks with Chan's formula, alongside the compensated Σw·r².
+     */
+    static FitEngine.Metrics metrics(double[] xs, double[] ys, double[] ws, ModelEvaluator f) {
+        if (ys.length == 0) return new FitEngine.Metrics(1.0, Double.NaN);
+        return metrics(reduce(ys.length, (from, to) -> moments(xs, ys, ws, f, from, to), Moments::merge));
+    }
+
+    /** R² and RMSE from {@link Kernels#residualMoments} lanes filled in one sequential pass. */
+    static FitEngine.Metrics metrics(double[] lanes) {
+        return metrics(merge(lanes));
+    }
+
+    private static FitEngine.Metrics metrics(Moments m) {
+        double ssRes = m.ssRes + m.ssResComp;
+        double r2 = m.m2 == 0 ? 1.0 : 1.0 - ssRes / m.m2;
+        return new FitEngine.Metrics(r2, Math.sqrt(ssRes / m.sumW));
+    }
+
+    private static Moments moments(double[] xs, double[] ys, double[] ws, ModelEvaluator f, int from, int to) {
+        // Predictions are produced a block at a time by the model's own batch loop
+        double[] yhat = new double[Math.min(to - from, FitEngine.METRICS_BLOCK)];
+        double[] lanes = new double[Kernels.MOMENT_SLOTS];
+        for (int b = from; b < to; b += FitEngine.METRICS_BLOCK) {
+            int e = Math.min(to, b + FitEngine.METRICS_BLOCK);
+            f.evaluate(xs, b, e, yhat);
+            Kernels.INSTANCE.residualMoments(ys, ws, b, yhat, e - b, lanes);
+        }
+        return merge(lanes);
+    }
+
+    // The kernel's lanes are partial moments like any chunk's, merged in lane order
+    private static Moments merge(double[] lanes) {
+        Moments m = null;
+        for (int l = 0; l < Kernels.LANES; l++) {
+            Moments lane = new Moments();
+            lane.sumW = lanes[Kernels.SUM_W + l];
+            lane.mean = lanes[Kernels.MEAN + l];
+            lane.m2 = lanes[Kernels.M2 + l];
+            lane.ssRes = lanes[Kernels.SS_RES + l];
+            lane.ssResComp = lanes[Kernels.SS_COMP + l];
+            m = m == null ? lane : m.merge(lane);
+        }
+        return m;
+    }
+
+    /** Partial moments of one chunk. */
+    private static final class Moments {
+        double sumW, mean, m2, ssRes, ssResComp;
+
+        // Neumaier: the compensation picks up whatever the larger operand rounded away
+        void addResidual(double v) {
+            double t = ssRes + v;
+            ssResComp += Math.abs(ssRes) >= Math.abs(v) ? (ssRes - t) + v : (v - t) + ssRes;
+            ssRes = t;
+        }
+
+        Moments merge(Moments o) {
+            if (o.sumW > 0) {
+                double w = sumW + o.sumW, d = o.mean - mean;
+                m2 += o.m2 + d * d * sumW * o.sumW / w;
+                mean += d * o.sumW / w;
+                sumW = w;
+            }
+            addResidual(o.ssRes);
+            ssResComp += o.ssResComp;
+            return this;
+        }
+    }
+
+    private interface ChunkTask<T> {
+        T run(int from, int to);
+    }
+
+    private interface Merge<T> {
+        T merge(T a, T b);
+    }
+
+    // Runs the chunks of [0, n) and merges their results left to right
+    private static <T> T reduce(int n, ChunkTask<T> task, Merge<T> merge) {
+        int chunks = (n + CHUNK - 1) / CHUNK;
+        if (chunks <= 1) return task.run(0, n);
+        List<Callable<T>> tasks = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            int from = c * CHUNK, to = Math.min(n, from + CHUNK);
+            tasks.add(() -> task.run(from, to));
+        }
+        T out = null;
+        try {
+            for (Future<T> f : ForkJoinPool.commonPool().invokeAll(tasks)) out = out == null ? f.get() : merge.merge(out, f.get());
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) throw (RuntimeException) ex.getCause();
+            throw new IllegalStateException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted");
+        }
+        return out;
+    }
+}
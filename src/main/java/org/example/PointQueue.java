@@ -0,0 +1,65 @@
+package org.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free queue of (x, y) points between exactly one producer thread and one
+ * consumer thread. Each side owns one counter and only publishes it with a release store, so
+ * neither {@link #offer} nor {@link #drain} ever blocks or allocates.
+ */
+final class PointQueue {
+
+    /** Receives drained points in arrival order. */
+    interface Sink {
+        void accept(double x, double y);
+    }
+
+    private final double[] xs, ys;
+    private final int mask;
+    // Next slot to read (consumer-owned) and to write (producer-owned)
+    private final AtomicLong head = new AtomicLong(), tail = new AtomicLong();
+    // The producer's last view of head; refreshed only when the queue looks full
+    private long headSeen;
+
+    /** Room for at least {@code capacity} points, rounded up to a power of two. */
+    PointQueue(int capacity) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        xs = new double[size];
+        ys = new double[size];
+        mask = size - 1;
+    }
+
+    int capacity() { return xs.length; }
+
+    /** Producer side: appends a point, or returns false when the queue is full. */
+    boolean offer(double x, double y) {
+        long t = tail.getPlain();
+        if (t - headSeen == xs.length) {
+            headSeen = head.getAcquire();
+            if (t - headSeen == xs.length) return false;
+        }
+        int i = (int) t & mask;
+        xs[i] = x;
+        ys[i] = y;
+        tail.setRelease(t + 1);
+        return true;
+    }
+
+    /** Consumer side: hands at most {@code max} queued points to {@code sink}; returns how many. */
+    int drain(Sink sink, int max) {
+        long h = head.getPlain();
+        int n = (int) Math.min(max, tail.getAcquire() - h);
+        for (int k = 0; k < n; k++) {
+            int i = (int) (h + k) & mask;
+            sink.accept(xs[i], ys[i]);
+        }
+        head.setRelease(h + n);
+        return n;
+    }
+
+    /** Points queued at the moment of the call; approximate while the other side runs. */
+    int size() {
+        long h = head.getAcquire();
+        return (int) (tail.getAcquire() - h);
+    }
+}
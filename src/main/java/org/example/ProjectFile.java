@@ -0,0 +1,347 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Saved sessions: the data and the fit state in one file that reopens without parsing.
+ * <p>
+ * A project is a {@link MappedDataset} column file (X, the Y series, then W) followed by a
+ * session section, which column-file readers ignore. Little-endian, strings as u16 byte length
+ * + UTF-8:
+ * <pre>
+ *   magic "CFSESS01", int version
+ *   byte  mapped (reopen as a read-only mapped dataset rather than into the table)
+ *   int   series count, byte weighted
+ *   model, int degree, formula, robust loss (names; "" for none)
+ *   per series: int m, m X values, m Y values (the chart overview, see StreamingFit#overview)
+ *   long  data fingerprint, then the fit on screen and the cached fits (int count, key + fit each)
+ *   last 16 bytes: long section offset, magic "CFSESS01"
+ * </pre>
+ * The overviews let a reopened project draw its chart before any data page is read.
+ */
+final class ProjectFile {
+
+    static final String EXTENSION = ".cfproj";
+
+    private static final byte[] MAGIC = "CFSESS01".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int TRAILER = Long.BYTES + 8;
+    private static final int OVERVIEW_BUCKETS = 4096;
+
+    private ProjectFile() { }
+
+    /** Everything about a session but the data. */
+    static final class Session {
+        final boolean mapped;
+        final boolean weighted;
+        final ModelType model;
+        final int degree;
+        final String formula; // "" unless a custom formula is selected
+        final RobustFit.Loss loss;
+        final long fingerprint;
+        final FitResult shown; // may be null
+        final RobustFit.Loss shownLoss;
+        final Map<FitCache.Key, FitResult> fits;
+        double[][][] overviews; // [series]{xs, ys}; filled by save and open
+
+        Session(boolean mapped, boolean weighted, ModelType model, int degree, String formula, RobustFit.Loss loss,
+                long fingerprint, FitResult shown, RobustFit.Loss shownLoss, Map<FitCache.Key, FitResult> fits) {
+            this.mapped = mapped;
+            this.weighted = weighted;
+            this.model = model;
+            this.degree = degree;
+            this.formula = formula;
+            this.loss = loss;
+            this.fingerprint = fingerprint;
+            this.shown = shown;
+            this.shownLoss = shownLoss;
+            this.fits = fits;
+        }
+    }
+
+    /** Writes the table's columns (X, each series, W when weighted) and the session. */
+    static void save(Path path, double[][] columns, String[] names, Session session) throws IOException {
+        Path tmp = temporary(path);
+        try {
+            try (MappedDataset.Writer out = new MappedDataset.Writer(tmp, names)) {
+                int n = columns[0].length;
+                double[] row = new double[columns.length];
+                for (int i = 0; i < n; i++) {
+                    for (int c = 0; c < row.length; c++) row[c] = columns[c][i];
+                    out.append(row, row.length);
+                }
+            }
+            finish(tmp, path, session);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Copies a mapped dataset group by group, then writes the session. */
+    static void save(Path path, MappedDataset source, Session session) throws IOException {
+        Path tmp = temporary(path);
+        try {
+            String[] names = new String[source.columns()];
+            for (int c = 0; c < names.length; c++) names[c] = source.name(c);
+            try (MappedDataset.Writer out = new MappedDataset.Writer(tmp, names)) {
+                double[][] group = new double[names.length][source.groupRows()];
+                double[] row = new double[names.length];
+                for (int g = 0; g < source.groups(); g++) {
+                    int n = 0;
+                    for (int c = 0; c < names.length; c++) n = source.read(c, g, group[c]);
+                    for (int i = 0; i < n; i++) {
+                        for (int c = 0; c < row.length; c++) row[c] = group[c][i];
+                        out.append(row, row.length);
+                    }
+                }
+            }
+            finish(tmp, path, session);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // Written beside the target and moved over it, so a failed save keeps the old project and
+    // saving over the project being viewed does not pull the data from under its mapping
+    private static Path temporary(Path path) {
+        return path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    private static void finish(Path tmp, Path path, Session session) throws IOException {
+        try (MappedDataset data = MappedDataset.open(tmp)) {
+            int[] series = seriesColumns(data, session);
+            session.overviews = new double[series.length][][];
+            for (int s = 0; s < series.length; s++) {
+                StreamingFit.Summary summary = StreamingFit.summarize(data, series[s], FitMonitor.NONE);
+                session.overviews[s] = summary.count == 0 ? new double[][]{new double[0], new double[0]}
+                        : StreamingFit.overview(data, series[s], summary, OVERVIEW_BUCKETS, FitMonitor.NONE);
+            }
+        }
+        Out out = new Out();
+        writeSession(out, session);
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            long offset = ch.size();
+            out.buf.putLong(offset).put(MAGIC).flip();
+            while (out.buf.hasRemaining()) ch.write(out.buf, offset + out.buf.position());
+            ch.force(false);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** The Y columns: all but X and the weights. */
+    static int[] seriesColumns(MappedDataset data, Session session) {
+        int w = session.mapped ? data.weightColumn() : session.weighted ? data.columns() - 1 : -1;
+        int[] series = new int[data.columns() - 1 - (w >= 0 ? 1 : 0)];
+        for (int c = 1, s = 0; c < data.columns(); c++) if (c != w) series[s++] = c;
+        return series;
+    }
+
+    /** A mapped project and its session; the caller closes {@link #data}. */
+    static final class Opened {
+        final MappedDataset data;
+        final Session session;
+
+        Opened(MappedDataset data, Session session) {
+            this.data = data;
+            this.session = session;
+        }
+    }
+
+    /** Maps the project and reads its session; touches none of the data. */
+    static Opened open(Path path) throws IOException {
+        Session session;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < TRAILER) throw new IOException("Not a CurveFit project.");
+            ByteBuffer trailer = read(ch, size - TRAILER, TRAILER);
+            byte[] magic = new byte[MAGIC.length];
+            long offset = trailer.getLong();
+            trailer.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || offset < 0 || offset > size - TRAILER || size - TRAILER - offset > Integer.MAX_VALUE) {
+                throw new IOException("Not a CurveFit project.");
+            }
+            try {
+                session = readSession(read(ch, offset, (int) (size - TRAILER - offset)));
+            } catch (RuntimeException ex) {
+                throw new IOException("The project's session is damaged.", ex);
+            }
+        }
+        MappedDataset data = MappedDataset.open(path);
+        int series = data.columns() < 2 ? 0 : seriesColumns(data, session).length;
+        if (series == 0 || series != session.overviews.length) {
+            data.close();
+            throw new IOException("The project's session does not match its data.");
+        }
+        return new Opened(data, session);
+    }
+
+    private static ByteBuffer read(FileChannel ch, long pos, int len) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(len).order(ByteOrder.LITTLE_ENDIAN);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position()) < 0) throw new IOException("Project file is truncated.");
+        }
+        return buf.flip();
+    }
+
+    private static void writeSession(Out out, Session s) {
+        out.ensure(MAGIC.length).put(MAGIC);
+        out.ensure(16).putInt(VERSION).put((byte) (s.mapped ? 1 : 0)).putInt(s.overviews.length).put((byte) (s.weighted ? 1 : 0));
+        out.string(s.model.name());
+        out.ensure(4).putInt(s.degree);
+        out.string(s.formula);
+        out.string(s.loss == null ? "" : s.loss.name());
+        for (double[][] o : s.overviews) {
+            out.ensure(4).putInt(o[0].length);
+            out.doubles(o[0]);
+            out.doubles(o[1]);
+        }
+        out.ensure(9).putLong(s.fingerprint).put((byte) (s.shown != null ? 1 : 0));
+        if (s.shown != null) {
+            out.string(s.shownLoss == null ? "" : s.shownLoss.name());
+            writeFit(out, s.shown);
+        }
+        out.ensure(4).putInt(s.fits.size());
+        for (Map.Entry<FitCache.Key, FitResult> e : s.fits.entrySet()) {
+            out.string(e.getKey().loss == null ? "" : e.getKey().loss.name());
+            writeFit(out, e.getValue());
+        }
+    }
+
+    private static void writeFit(Out out, FitResult fit) {
+        out.string(fit.model.name());
+        out.string(fit.custom == null ? "" : fit.custom.name());
+        out.ensure(8).putInt(fit.degree).putInt(fit.params.length);
+        out.doubles(fit.params);
+        out.ensure(40).putDouble(fit.r2).putDouble(fit.rmse).putDouble(fit.xmin).putDouble(fit.xmax)
+                .putInt(fit.iterations).putInt(fit.evaluations);
+        Bootstrap.Intervals ci = fit.intervals;
+        out.ensure(4).putInt(ci == null ? -1 : ci.replicates);
+        if (ci == null) return;
+        out.ensure(8).putInt(ci.failed).putInt(ci.curveCount());
+        out.doubles(ci.low);
+        out.doubles(ci.high);
+        for (int r = 0; r < ci.curveCount(); r++) out.doubles(ci.curve(r));
+    }
+
+    private static Session readSession(ByteBuffer in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a CurveFit project.");
+        if (in.getInt() != VERSION) throw new IOException("The project was saved by a newer version.");
+        boolean mapped = in.get() != 0;
+        int seriesCount = in.getInt();
+        boolean weighted = in.get() != 0;
+        ModelType model = ModelType.valueOf(string(in));
+        int degree = in.getInt();
+        String formula = string(in);
+        RobustFit.Loss loss = loss(string(in));
+        double[][][] overviews = new double[seriesCount][][];
+        for (int s = 0; s < seriesCount; s++) {
+            int m = in.getInt();
+            overviews[s] = new double[][]{doubles(in, m), doubles(in, m)};
+        }
+        long fingerprint = in.getLong();
+        FitResult shown = null;
+        RobustFit.Loss shownLoss = null;
+        if (in.get() != 0) {
+            shownLoss = loss(string(in));
+            shown = readFit(in);
+        }
+        Map<FitCache.Key, FitResult> fits = new LinkedHashMap<>();
+        for (int i = 0, count = in.getInt(); i < count; i++) {
+            RobustFit.Loss keyLoss = loss(string(in));
+            FitResult fit = readFit(in);
+            // Fits of formulas that no longer compile, or of providers no longer installed, are dropped
+            if (fit == null) continue;
+            fits.put(fit.custom != null ? new FitCache.Key(fingerprint, fit.custom)
+                    : new FitCache.Key(fingerprint, fit.model, fit.degree, keyLoss), fit);
+        }
+        Session session = new Session(mapped, weighted, model, degree, formula, loss, fingerprint, shown, shownLoss, fits);
+        session.overviews = overviews;
+        return session;
+    }
+
+    // Null when the fit's custom model cannot be resolved
+    private static FitResult readFit(ByteBuffer in) {
+        ModelType model = ModelType.valueOf(string(in));
+        String customName = string(in);
+        int degree = in.getInt();
+        double[] params = doubles(in, in.getInt());
+        double r2 = in.getDouble(), rmse = in.getDouble(), xmin = in.getDouble(), xmax = in.getDouble();
+        int iterations = in.getInt(), evaluations = in.getInt();
+        CurveModel custom = null;
+        boolean resolved = true;
+        if (!customName.isEmpty()) {
+            try {
+                custom = ModelRegistry.resolve(customName);
+                resolved = custom.parameterNames().length == params.length;
+            } catch (IllegalArgumentException ex) {
+                resolved = false;
+            }
+        }
+        FitResult fit = new FitResult(model, custom, degree, params, r2, rmse, xmin, xmax, iterations, evaluations, null);
+        int replicates = in.getInt();
+        if (replicates < 0) return resolved ? fit : null;
+        int failed = in.getInt(), curveCount = in.getInt();
+        double[] low = doubles(in, params.length), high = doubles(in, params.length);
+        ModelEvaluator[] curves = new ModelEvaluator[curveCount];
+        for (int r = 0; r < curveCount; r++) {
+            double[] p = doubles(in, params.length);
+            if (resolved) curves[r] = ModelEvaluator.of(fit, p);
+        }
+        return resolved ? fit.withIntervals(new Bootstrap.Intervals(replicates, failed, low, high, curves)) : null;
+    }
+
+    private static RobustFit.Loss loss(String name) {
+        return name.isEmpty() ? null : RobustFit.Loss.valueOf(name);
+    }
+
+    private static String string(ByteBuffer in) {
+        byte[] b = new byte[in.getShort() & 0xFFFF];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static double[] doubles(ByteBuffer in, int n) {
+        double[] v = new double[n];
+        in.asDoubleBuffer().get(v);
+        in.position(in.position() + n * Double.BYTES);
+        return v;
+    }
+
+    /** A little-endian buffer that grows as the session is written, with room for the trailer. */
+    private static final class Out {
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+        ByteBuffer ensure(int bytes) {
+            int need = buf.position() + bytes + TRAILER;
+            if (need > buf.capacity()) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(need, 2 * buf.capacity())).order(ByteOrder.LITTLE_ENDIAN);
+                buf = grown.put(buf.flip());
+            }
+            return buf;
+        }
+
+        void string(String s) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            if (b.length > 0xFFFF) b = Arrays.copyOf(b, 0xFFFF);
+            ensure(2 + b.length).putShort((short) b.length).put(b);
+        }
+
+        void doubles(double[] v) {
+            ensure(v.length * Double.BYTES).asDoubleBuffer().put(v);
+            buf.position(buf.position() + v.length * Double.BYTES);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Robust regression by iteratively reweighted least squares. Each pass scales the residuals
+ * by a MAD estimate of the noise, turns them into Huber or Tukey weights and refits with
+ * those weights (times the data weights). Iterative models restart from the previous pass's
+ * parameters and take only a few optimizer steps per pass, and the weight, residual and
+ * scratch buffers are allocated once per fit, so a robust fit costs a few ordinary fits.
+ */
+final class RobustFit {
+
+    static final int MAX_PASSES = 50;
+    static final double TOLERANCE = 1e-6;
+    // Iterative models take only a few optimizer steps per pass; IRLS convergence still requires them to settle
+    static final int ITERATIONS_PER_PASS = 3;
+    // The noise scale is a median; beyond this many residuals a strided sample estimates it well enough
+    static final int SCALE_SAMPLE = 1 << 16;
+    // MAD of a normal sample is 0.6745 σ
+    private static final double MAD_TO_SIGMA = 1 / 0.6744897501960817;
+
+    private RobustFit() { }
+
+    /** Loss functions, with the usual tuning constants for 95% efficiency on Gaussian noise. */
+    enum Loss {
+        HUBER("Huber", 1.345), TUKEY("Tukey", 4.685);
+
+        final String label;
+        final double tuning;
+        Loss(String label, double tuning) { this.label = label; this.tuning = tuning; }
+        @Override public String toString() { return label; }
+
+        /** IRLS weight ψ(u)/u of a residual in units of the noise scale. */
+        double weight(double u) {
+            double a = Math.abs(u);
+            switch (this) {
+                case HUBER: return a <= tuning ? 1.0 : tuning / a;
+                default:
+                    if (a >= tuning) return 0.0;
+                    double t = 1 - (u / tuning) * (u / tuning);
+                    return t * t;
+            }
+        }
+    }
+
+    /**
+     * Fits {@code model} robustly. R² and RMSE are weighted by the final robust weights, so
+     * they describe the fit to the points it accepted rather than being dominated by outliers.
+     * The reported iterations and evaluations are summed over all passes.
+     */
+    @SuppressWarnings("try")
+    static FitResult fit(double[] xs, double[] ys, double[] ws, ModelType model, int degree, Loss loss,
+                         FitSettings settings, FitMonitor monitor) {
+        int n = xs.length;
+        ParallelScan.Range range = ParallelScan.range(xs);
+        FitEngine.checkModel(range, model, degree);
+        double[] weights = new double[n];
+        FitEngine.Solution solution;
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.SOLVE, n)) {
+            solution = irls(xs, ys, ws, model, degree, loss, settings, monitor, weights);
+            span.counts(solution.iterations, solution.evaluations);
+        }
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.METRICS, n)) {
+            return FitEngine.result(xs, ys, weights, model, degree, solution, range.xmin, range.xmax);
+        }
+    }
+
+    // The IRLS passes; leaves the final robust weights (times the data weights) in weights
+    private static FitEngine.Solution irls(double[] xs, double[] ys, double[] ws, ModelType model, int degree, Loss loss,
+                                           FitSettings settings, FitMonitor monitor, double[] weights) {
+        int n = xs.length;
+        // Ordinary (data-weighted) fit as the starting point
+        FitEngine.Solution s = FitEngine.solve(xs, ys, ws, model, degree, null, settings, FitEngine.MAX_ITERATIONS, monitor);
+        int iterations = s.iterations, evaluations = s.evaluations;
+        ModelEvaluator f = ModelEvaluator.of(model, s.params);
+        int stride = Math.max(1, n / SCALE_SAMPLE);
+        double[] residuals = new double[n], scratch = new double[(n + stride - 1) / stride];
+        if (ws == null) Arrays.fill(weights, 1.0); else System.arraycopy(ws, 0, weights, 0, n);
+
+        for (int pass = 1; pass <= MAX_PASSES; pass++) {
+            if (Thread.currentThread().isInterrupted()) throw new CancellationException("Fit cancelled");
+            f.evaluate(xs, residuals);
+            for (int i = 0; i < n; i++) residuals[i] = ys[i] - residuals[i];
+            int m = 0;
+            for (int i = 0; i < n; i += stride) scratch[m++] = Math.abs(residuals[i]);
+            double scale = median(scratch, m) * MAD_TO_SIGMA;
+            // More than half the points fit exactly: nothing left to down-weight
+            if (!(scale > 0)) break;
+            double ss = 0, sw = 0;
+            for (int i = 0; i < n; i++) {
+                double w = loss.weight(residuals[i] / scale);
+                weights[i] = ws == null ? w : w * ws[i];
+                ss += weights[i] * residuals[i] * residuals[i];
+                sw += weights[i];
+            }
+            monitor.onIteration(new FitProgress(pass, Math.sqrt(ss / sw)));
+
+            // Iterative models warm-start from the previous pass
+            s = FitEngine.solve(xs, ys, weights, model, degree, f.p, settings, ITERATIONS_PER_PASS, monitor);
+            iterations += s.iterations;
+            evaluations += s.evaluations;
+            double[] next = s.params;
+            boolean converged = true;
+            for (int k = 0; k < next.length; k++) {
+                if (Math.abs(next[k] - f.p[k]) > TOLERANCE * (Math.abs(next[k]) + TOLERANCE)) converged = false;
+            }
+            f.setParameters(next);
+            if (converged) break;
+        }
+        return new FitEngine.Solution(f.p.clone(), iterations, evaluations);
+    }
+
+    /** Median of {@code a[0..n)}, partially reordering it (Hoare quickselect). */
+    static double median(double[] a, int n) {
+        if (n == 0) return Double.NaN;
+        double hi = select(a, n, n / 2);
+        if ((n & 1) == 1) return hi;
+        // Even n: the lower middle is the largest value left of the upper one
+        double lo = a[0];
+        for (int i = 1; i < n / 2; i++) lo = Math.max(lo, a[i]);
+        return 0.5 * (lo + hi);
+    }
+
+    private static double select(double[] a, int n, int k) {
+        int left = 0, right = n - 1;
+        while (left < right) {
+            double pivot = a[(left + right) >>> 1];
+            int i = left, j = right;
+            while (i <= j) {
+                while (a[i] < pivot) i++;
+                while (a[j] > pivot) j--;
+                if (i <= j) {
+                    double t = a[i];
+                    a[i++] = a[j];
+                    a[j--] = t;
+                }
+            }
+            if (k <= j) right = j;
+            else if (k >= i) left = i;
+            else return a[k];
+        }
+        return a[k];
+    }
+}
@@ -0,0 +1,154 @@
+package org.example;
+
+/**
+ * The most recent points of a live stream, oldest first, in a fixed ring. In
+ * {@link Mode#SLIDING} mode every point in the window counts fully; in {@link Mode#DECAYING}
+ * mode a point's weight halves every {@code halfLife} arrivals after it.
+ * <p>
+ * Sliding windows also keep {@link SufficientStats} for one transform current as points enter
+ * and leave, and the X extent in two monotonic queues, so a linear-in-parameter refit costs
+ * O(new points) rather than O(window) and never copies or sorts the window.
+ * Not thread-safe; owned by the refit thread.
+ */
+final class RollingWindow {
+
+    enum Mode {
+        SLIDING("Sliding"), DECAYING("Exponential decay");
+
+        final String label;
+        Mode(String label) { this.label = label; }
+        @Override public String toString() { return label; }
+    }
+
+    /** {@code xs} ascending with {@code ys} and {@code ws} (null when unweighted) alongside. */
+    static final class Snapshot {
+        final double[] xs, ys, ws;
+
+        Snapshot(double[] xs, double[] ys, double[] ws) {
+            this.xs = xs;
+            this.ys = ys;
+            this.ws = ws;
+        }
+    }
+
+    private final Mode mode;
+    private final double halfLife;
+    private final double[] xs, ys;
+    // Slot of the oldest point, and the points held
+    private int start, count;
+    // Points added so far; point s lives in slot s % capacity
+    private long added;
+    private final Extreme lowest, highest;
+    private SufficientStats stats;
+
+    RollingWindow(Mode mode, int capacity, double halfLife) {
+        if (capacity < 2) throw new IllegalArgumentException("The window must hold at least 2 points.");
+        if (mode == Mode.DECAYING && !(halfLife > 0)) throw new IllegalArgumentException("The half-life must be positive.");
+        this.mode = mode;
+        this.halfLife = halfLife;
+        xs = new double[capacity];
+        ys = new double[capacity];
+        lowest = new Extreme(true);
+        highest = new Extreme(false);
+    }
+
+    Mode mode() { return mode; }
+    int size() { return count; }
+    int capacity() { return xs.length; }
+
+    /** Appends a point, evicting the oldest once the window is full. */
+    void add(double x, double y) {
+        int slot;
+        if (count == xs.length) {
+            slot = start;
+            if (stats != null) stats.remove(xs[slot], ys[slot]);
+            start = (start + 1) % xs.length;
+        } else {
+            slot = (start + count++) % xs.length;
+        }
+        xs[slot] = x;
+        ys[slot] = y;
+        if (stats != null) stats.add(x, y);
+        long oldest = added + 1 - count;
+        lowest.add(added, x, oldest);
+        highest.add(added, x, oldest);
+        added++;
+    }
+
+    /**
+     * Running sums of a sliding window for {@code transform}; rebuilt from the window only when
+     * the transform changes. Null in decaying mode, where every weight changes on each arrival.
+     */
+    SufficientStats stats(LinearLeastSquares.Transform transform) {
+        if (mode != Mode.SLIDING) return null;
+        if (stats == null || stats.transform() != transform) {
+            stats = new SufficientStats(transform);
+            double[][] copy = ordered();
+            stats.addAll(copy[0], copy[1], count);
+        }
+        return stats;
+    }
+
+    /** Smallest X in the window; +∞ when empty. */
+    double xMin() { return count == 0 ? Double.POSITIVE_INFINITY : xs[lowest.front()]; }
+
+    /** Largest X in the window; -∞ when empty. */
+    double xMax() { return count == 0 ? Double.NEGATIVE_INFINITY : xs[highest.front()]; }
+
+    /** Copies the window out sorted by X, with decay weights in decaying mode. */
+    Snapshot snapshot() {
+        double[][] copy = ordered();
+        double[] ws = null;
+        if (mode == Mode.DECAYING) {
+            // The newest point has weight 1; each older one is 2^(-1/halfLife) of its successor
+            ws = new double[count];
+            double w = 1, factor = Math.pow(0.5, 1 / halfLife);
+            for (int k = count - 1; k >= 0; k--, w *= factor) ws[k] = w;
+            DoubleColumn.sortBy(copy[0], count, copy[1], ws);
+        } else {
+            DoubleColumn.sortBy(copy[0], count, copy[1]);
+        }
+        return new Snapshot(copy[0], copy[1], ws);
+    }
+
+    /**
+     * Points of the window that could still be its minimum (or maximum), as arrival numbers in a
+     * ring: their X values are increasing (decreasing) from the front, so the front is the answer.
+     */
+    private final class Extreme {
+        private final boolean min;
+        private final long[] q = new long[xs.length];
+        private int head, size;
+
+        Extreme(boolean min) { this.min = min; }
+
+        void add(long s, double x, long oldest) {
+            while (size > 0 && q[head] < oldest) {
+                head = (head + 1) % q.length;
+                size--;
+            }
+            // A newer point at least as extreme makes the older ones irrelevant
+            while (size > 0) {
+                double last = xs[slot(q[(head + size - 1) % q.length])];
+                if (min ? last < x : last > x) break;
+                size--;
+            }
+            q[(head + size++) % q.length] = s;
+        }
+
+        int front() { return slot(q[head]); }
+    }
+
+    private int slot(long s) { return (int) (s % xs.length); }
+
+    // The points oldest first
+    private double[][] ordered() {
+        double[] ox = new double[count], oy = new double[count];
+        int first = Math.min(count, xs.length - start);
+        System.arraycopy(xs, start, ox, 0, first);
+        System.arraycopy(ys, start, oy, 0, first);
+        System.arraycopy(xs, 0, ox, first, count - first);
+        System.arraycopy(ys, 0, oy, first, count - first);
+        return new double[][]{ox, oy};
+    }
+}
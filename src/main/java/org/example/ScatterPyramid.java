@@ -0,0 +1,396 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Level-of-detail index for drawing a large scatter series. Over points sorted by X, each
+ * level stores, per bucket of 2^k consecutive points, the indices of the lowest and highest
+ * Y. A view of any X range is then answered with about two points per horizontal pixel by
+ * min-max decimation, in time proportional to the pixel count, not to n, and still shows
+ * every vertical extreme (outliers included).
+ * <p>
+ * Points are kept in blocks of a few thousand, each with its own levels, so {@link #add} and
+ * {@link #remove} only re-index one block: the table keeps its chart points current as it is
+ * edited instead of copying and sorting every row. Levels start at {@link #BASE} points per
+ * bucket and double up to a whole block, so the index costs about one byte per point. Finer
+ * buckets are scanned from the raw data.
+ */
+final class ScatterPyramid {
+
+    static final int BASE = 16;
+    // Points per block when built in bulk; a block splits in two at twice this size
+    static final int BLOCK = 4096;
+
+    private final List<Block> blocks = new ArrayList<>();
+    private int size;
+
+    /** An empty index, filled by {@link #add}. */
+    ScatterPyramid() { }
+
+    /** {@code xs} must be ascending and NaN-free; the arrays are kept, not copied, until the first change. */
+    ScatterPyramid(double[] xs, double[] ys) {
+        addAll(xs, ys, xs.length);
+    }
+
+    int size() { return size; }
+
+    double minX() { return blocks.get(0).x(0); }
+
+    double maxX() {
+        Block last = blocks.get(blocks.size() - 1);
+        return last.x(last.n - 1);
+    }
+
+    /** Inserts a point after any others with the same x. */
+    void add(double x, double y) {
+        if (blocks.isEmpty()) {
+            blocks.add(new Block(new double[2 * BLOCK], new double[2 * BLOCK], 0, 0));
+        }
+        // The last block starting at or before x; points left of everything go to the first
+        int lo = 0, hi = blocks.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (blocks.get(mid).x(0) <= x) lo = mid + 1; else hi = mid;
+        }
+        int b = Math.max(0, lo - 1);
+        Block block = blocks.get(b);
+        block.insert(block.upperBound(x), x, y);
+        if (block.n >= 2 * BLOCK) blocks.add(b + 1, block.split());
+        size++;
+    }
+
+    /**
+     * Adds {@code n} points sorted by x; the arrays may be kept. Many points at once are merged
+     * with the index in one pass, which beats inserting them one block at a time.
+     */
+    void addAll(double[] xs, double[] ys, int n) {
+        if ((long) n * BLOCK <= size) {
+            for (int i = 0; i < n; i++) add(xs[i], ys[i]);
+            return;
+        }
+        if (size == 0) {
+            for (int from = 0; from < n; from += BLOCK) blocks.add(new Block(xs, ys, from, Math.min(BLOCK, n - from)));
+            size = n;
+            return;
+        }
+        double[] mx = new double[size + n], my = new double[size + n];
+        int i = 0, k = 0;
+        for (Block block : blocks) {
+            for (int j = 0; j < block.n; j++) {
+                double x = block.x(j);
+                // New points go after old ones with the same x, as add() puts them
+                while (i < n && xs[i] < x) {
+                    mx[k] = xs[i];
+                    my[k++] = ys[i++];
+                }
+                mx[k] = x;
+                my[k++] = block.y(j);
+            }
+        }
+        System.arraycopy(xs, i, mx, k, n - i);
+        System.arraycopy(ys, i, my, k, n - i);
+        blocks.clear();
+        int total = size + n;
+        for (int from = 0; from < total; from += BLOCK) blocks.add(new Block(mx, my, from, Math.min(BLOCK, total - from)));
+        size = total;
+    }
+
+    /** Removes one point equal to (x, y); returns false when there is none. */
+    boolean remove(double x, double y) {
+        // The first block that reaches x; equal x values may continue over several blocks
+        int lo = 0, hi = blocks.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            Block m = blocks.get(mid);
+            if (m.x(m.n - 1) < x) lo = mid + 1; else hi = mid;
+        }
+        for (int b = lo; b < blocks.size() && blocks.get(b).x(0) <= x; b++) {
+            Block block = blocks.get(b);
+            for (int i = block.lowerBound(x); i < block.n && block.x(i) == x; i++) {
+                if (Double.compare(block.y(i), y) != 0) continue;
+                block.delete(i);
+                size--;
+                if (block.n == 0) {
+                    blocks.remove(b);
+                } else if (block.n < BLOCK / 4 && b + 1 < blocks.size() && block.n + blocks.get(b + 1).n < 2 * BLOCK) {
+                    block.append(blocks.remove(b + 1));
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Number of points with x in [x0, x1]. */
+    int count(double x0, double x1) {
+        return Math.max(0, upperBound(x1) - lowerBound(x0));
+    }
+
+    /**
+     * Points with x in [x0, x1] as {@code {xs, ys}}: all of them when they fit in about two per
+     * pixel, otherwise the lowest and highest point of each pixel-wide bucket, in X order.
+     */
+    double[][] view(double x0, double x1, int pixels) {
+        int from = lowerBound(x0), to = upperBound(x1);
+        int m = Math.max(0, to - from);
+        Cursor at = new Cursor(from);
+        if (m <= 2 * pixels) {
+            double[] vx = new double[m], vy = new double[m];
+            for (int k = 0; k < m; k++, at.next()) {
+                vx[k] = at.block.x(at.i);
+                vy[k] = at.block.y(at.i);
+            }
+            return new double[][]{vx, vy};
+        }
+        // Smallest power-of-two bucket giving at most one bucket per pixel, aligned to its rank
+        // so panning does not make the points jitter
+        int size = Integer.highestOneBit(Math.max(1, (m - 1) / Math.max(1, pixels))) << 1;
+        int first = from / size, last = (to - 1) / size;
+        double[] vx = new double[2 * (last - first + 1)], vy = new double[vx.length];
+        Extremes e = new Extremes();
+        int k = 0;
+        for (int b = first; b <= last; b++) {
+            int end = Math.min(to, (b + 1) * size);
+            e.clear();
+            while (at.rank < end) {
+                int take = Math.min(at.block.n - at.i, end - at.rank);
+                at.block.extremes(at.i, at.i + take, at.rank - at.i, e);
+                at.skip(take);
+            }
+            boolean minFirst = e.minRank <= e.maxRank;
+            vx[k] = minFirst ? e.minX : e.maxX;
+            vy[k++] = minFirst ? e.minY : e.maxY;
+            if (e.minRank != e.maxRank) {
+                vx[k] = minFirst ? e.maxX : e.minX;
+                vy[k++] = minFirst ? e.maxY : e.minY;
+            }
+        }
+        return new double[][]{Arrays.copyOf(vx, k), Arrays.copyOf(vy, k)};
+    }
+
+    // Rank of the first point with x >= x
+    private int lowerBound(double x) {
+        int rank = 0;
+        for (Block block : blocks) {
+            if (block.x(block.n - 1) >= x) return rank + block.lowerBound(x);
+            rank += block.n;
+        }
+        return rank;
+    }
+
+    // Rank of the first point with x > x
+    private int upperBound(double x) {
+        int rank = 0;
+        for (Block block : blocks) {
+            if (block.x(block.n - 1) > x) return rank + block.upperBound(x);
+            rank += block.n;
+        }
+        return rank;
+    }
+
+    /** Walks the points in X order from a given rank. */
+    private final class Cursor {
+        int b, i, rank;
+        Block block;
+
+        Cursor(int rank) {
+            this.rank = rank;
+            int r = rank;
+            while (b < blocks.size() && r >= blocks.get(b).n) r -= blocks.get(b++).n;
+            i = r;
+            block = b < blocks.size() ? blocks.get(b) : null;
+        }
+
+        void next() { skip(1); }
+
+        void skip(int k) {
+            rank += k;
+            i += k;
+            while (block != null && i >= block.n) {
+                i -= block.n;
+                block = ++b < blocks.size() ? blocks.get(b) : null;
+            }
+        }
+    }
+
+    /** Lowest and highest point seen so far; ties keep the point of lower rank. */
+    private static final class Extremes {
+        double minX, minY, maxX, maxY;
+        int minRank, maxRank;
+
+        void clear() {
+            minY = Double.POSITIVE_INFINITY;
+            maxY = Double.NEGATIVE_INFINITY;
+            minRank = maxRank = -1;
+        }
+
+        void low(Block block, int i, int rank) {
+            double y = block.y(i);
+            if (minRank >= 0 && !(y < minY)) return;
+            minX = block.x(i);
+            minY = y;
+            minRank = rank;
+        }
+
+        void high(Block block, int i, int rank) {
+            double y = block.y(i);
+            if (maxRank >= 0 && !(y > maxY)) return;
+            maxX = block.x(i);
+            maxY = y;
+            maxRank = rank;
+        }
+    }
+
+    /** Up to 2·BLOCK consecutive points and the levels over them. */
+    private static final class Block {
+        double[] xs, ys;
+        // Points are xs[off] … xs[off + n - 1]; shared arrays are copied before the first change
+        int off, n;
+        boolean shared;
+        // levels.get(k) holds {minIdx, maxIdx} of buckets of BASE·2^k points, relative to off
+        final List<int[][]> levels = new ArrayList<>();
+        int lowest, highest;
+
+        Block(double[] xs, double[] ys, int off, int n) {
+            this.xs = xs;
+            this.ys = ys;
+            this.off = off;
+            this.n = n;
+            shared = n > 0;
+            index();
+        }
+
+        double x(int i) { return xs[off + i]; }
+        double y(int i) { return ys[off + i]; }
+
+        int lowerBound(double x) {
+            int lo = 0, hi = n;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (xs[off + mid] < x) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        int upperBound(double x) {
+            int lo = 0, hi = n;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (xs[off + mid] <= x) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        void insert(int at, double x, double y) {
+            own(n + 1);
+            System.arraycopy(xs, at, xs, at + 1, n - at);
+            System.arraycopy(ys, at, ys, at + 1, n - at);
+            xs[at] = x;
+            ys[at] = y;
+            n++;
+            index();
+        }
+
+        void delete(int at) {
+            own(n);
+            System.arraycopy(xs, at + 1, xs, at, n - at - 1);
+            System.arraycopy(ys, at + 1, ys, at, n - at - 1);
+            n--;
+            index();
+        }
+
+        /** Moves the upper half into a new block. */
+        Block split() {
+            int half = n / 2;
+            Block upper = new Block(Arrays.copyOfRange(xs, off + half, off + 2 * BLOCK + half),
+                    Arrays.copyOfRange(ys, off + half, off + 2 * BLOCK + half), 0, n - half);
+            upper.shared = false;
+            upper.index();
+            n = half;
+            index();
+            return upper;
+        }
+
+        void append(Block next) {
+            own(n + next.n);
+            System.arraycopy(next.xs, next.off, xs, n, next.n);
+            System.arraycopy(next.ys, next.off, ys, n, next.n);
+            n += next.n;
+            index();
+        }
+
+        // Gives the block arrays of its own with room for at least `capacity` points, at offset 0
+        private void own(int capacity) {
+            if (!shared && off == 0 && xs.length >= capacity) return;
+            int room = Math.max(2 * BLOCK, capacity);
+            xs = Arrays.copyOfRange(xs, off, off + room);
+            ys = Arrays.copyOfRange(ys, off, off + room);
+            off = 0;
+            shared = false;
+        }
+
+        private void index() {
+            levels.clear();
+            lowest = highest = 0;
+            for (int i = 1; i < n; i++) {
+                if (y(i) < y(lowest)) lowest = i;
+                if (y(i) > y(highest)) highest = i;
+            }
+            if (n <= BASE) return;
+            int buckets = (n + BASE - 1) / BASE;
+            int[] lo = new int[buckets], hi = new int[buckets];
+            for (int b = 0; b < buckets; b++) {
+                int from = b * BASE, to = Math.min(n, from + BASE);
+                int mn = from, mx = from;
+                for (int i = from + 1; i < to; i++) {
+                    if (y(i) < y(mn)) mn = i;
+                    if (y(i) > y(mx)) mx = i;
+                }
+                lo[b] = mn;
+                hi[b] = mx;
+            }
+            levels.add(new int[][]{lo, hi});
+            while (buckets > 1) {
+                int[] plo = lo, phi = hi;
+                int pb = buckets;
+                buckets = (pb + 1) / 2;
+                lo = new int[buckets];
+                hi = new int[buckets];
+                for (int b = 0; b < buckets; b++) {
+                    int l = 2 * b, r = Math.min(pb - 1, l + 1);
+                    lo[b] = y(plo[r]) < y(plo[l]) ? plo[r] : plo[l];
+                    hi[b] = y(phi[r]) > y(phi[l]) ? phi[r] : phi[l];
+                }
+                levels.add(new int[][]{lo, hi});
+            }
+        }
+
+        /** Feeds the extremes of points [from, to) to {@code e}; point i has rank {@code base + i}. */
+        void extremes(int from, int to, int base, Extremes e) {
+            if (from == 0 && to == n) {
+                e.low(this, lowest, base + lowest);
+                e.high(this, highest, base + highest);
+                return;
+            }
+            int i = from;
+            while (i < to) {
+                // The largest aligned, complete bucket starting at i, else a single point
+                int level = -1;
+                while (level + 1 < levels.size() && i % (BASE << (level + 1)) == 0 && i + (BASE << (level + 1)) <= to) level++;
+                if (level < 0) {
+                    e.low(this, i, base + i);
+                    e.high(this, i, base + i);
+                    i++;
+                } else {
+                    int b = i / (BASE << level);
+                    int mn = levels.get(level)[0][b], mx = levels.get(level)[1][b];
+                    e.low(this, mn, base + mn);
+                    e.high(this, mx, base + mx);
+                    i += BASE << level;
+                }
+            }
+        }
+    }
+}
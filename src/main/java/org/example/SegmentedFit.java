@@ -0,0 +1,371 @@
+package org.example;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+
+/**
+ * Segmented regression: a straight line or low-degree polynomial per segment, with the
+ * breakpoints placed to minimise the total weighted sum of squared residuals.
+ * <p>
+ * Points are sorted by x and cut into at most {@link #GRID} cells at x-quantiles. Per-cell
+ * sums of {@code w·u^k} (k ≤ 2d), {@code w·y·u^k} (k ≤ d) and {@code w·y²} in the scaled
+ * variable {@code u ∈ [-1, 1]} are prefix-summed with a compensation term, so the sums of any
+ * run of cells are two subtractions and its least-squares SSE is {@code Σwy² − bᵀA⁻¹b}, a
+ * (d+1)² solve independent of the number of points. The SSE of every run is tabulated, rows
+ * in parallel, and a dynamic programme over the cell boundaries picks the best breakpoints;
+ * each is then moved to the best split among the points of its two neighbouring cells.
+ * Segments are finally refitted exactly by {@link FitEngine}. Tasks write disjoint slots and
+ * ties go to the leftmost split, so the result never depends on scheduling.
+ */
+final class SegmentedFit {
+
+    /** Candidate cell boundaries for the breakpoint search. */
+    static final int GRID = 2000;
+    /** Highest polynomial degree per segment; above it the scaled sums lose too many digits. */
+    static final int MAX_DEGREE = 3;
+    static final int MAX_BREAKS = 8;
+
+    // Rows of the cost table per parallel task
+    private static final int ROWS = 16;
+
+    private SegmentedFit() { }
+
+    /** The fitted segments, left to right, and the fit over all points. */
+    static final class Result {
+        final double[] breaks;
+        final List<FitResult> segments;
+        final double r2, rmse;
+
+        Result(double[] breaks, List<FitResult> segments, double r2, double rmse) {
+            this.breaks = breaks;
+            this.segments = segments;
+            this.r2 = r2;
+            this.rmse = rmse;
+        }
+
+        String toDisplayString() {
+            DecimalFormat df = new DecimalFormat("0.###E0");
+            FitResult first = segments.get(0);
+            StringBuilder sb = new StringBuilder("Model: Piecewise ")
+                    .append(first.model == ModelType.LINEAR ? "linear" : "polynomial of degree " + first.degree).append("  |  Breaks at ");
+            for (int i = 0; i < breaks.length; i++) sb.append(i == 0 ? "" : ", ").append(FitResult.fmt(df, breaks[i]));
+            for (int i = 0; i < segments.size(); i++) {
+                sb.append("  |  ").append(i + 1).append(": ").append(segments.get(i).formatEquation(df));
+            }
+            sb.append("  |  R² = ").append(new DecimalFormat("0.0000").format(r2));
+            sb.append("    RMSE = ").append(new DecimalFormat("0.0000").format(rmse));
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Fits {@code breaks + 1} segments of degree 1 ({@link ModelType#LINEAR}) or {@code degree}
+     * ({@link ModelType#POLYNOMIAL}) to points sorted by x; {@code ws == null} means unit weights.
+     * The monitor hears the RMS of the best split with 0, 1, … breakpoints as the search
+     * finds them, and may throw {@link CancellationException} to abort.
+     */
+    @SuppressWarnings("try")
+    static Result fit(double[] xs, double[] ys, double[] ws, ModelType model, int degree, int breaks, FitMonitor monitor) {
+        if (model != ModelType.LINEAR && model != ModelType.POLYNOMIAL) {
+            throw new IllegalArgumentException("Segmented fits are piecewise linear or polynomial.");
+        }
+        int d = model == ModelType.LINEAR ? 1 : degree;
+        if (d > MAX_DEGREE) throw new IllegalArgumentException("Segmented polynomials go up to degree " + MAX_DEGREE + ".");
+        if (breaks < 1 || breaks > MAX_BREAKS) throw new IllegalArgumentException("Between 1 and " + MAX_BREAKS + " breakpoints.");
+        int[] at;
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.SEGMENTS, xs.length)) {
+            at = new Search(xs, ys, ws, d, breaks).run(monitor);
+        }
+        return refit(xs, ys, ws, model, d, at, monitor);
+    }
+
+    // Splits at the point indices in at, fits each degree-d segment and measures the whole
+    private static Result refit(double[] xs, double[] ys, double[] ws, ModelType model, int degree, int[] at, FitMonitor monitor) {
+        int segs = at.length + 1;
+        double[] cuts = new double[segs + 1];
+        cuts[0] = xs[0];
+        cuts[segs] = xs[xs.length - 1];
+        for (int j = 0; j < at.length; j++) cuts[j + 1] = 0.5 * (xs[at[j] - 1] + xs[at[j]]);
+        List<FitResult> fits = new ArrayList<>(segs);
+        double ssRes = 0, sumW = 0;
+        for (int s = 0; s < segs; s++) {
+            checkCancelled(Thread.currentThread());
+            int from = s == 0 ? 0 : at[s - 1], to = s == segs - 1 ? xs.length : at[s];
+            double[] sw = ws == null ? null : Arrays.copyOfRange(ws, from, to);
+            FitResult f = FitEngine.fitModel(Arrays.copyOfRange(xs, from, to), Arrays.copyOfRange(ys, from, to), sw,
+                    model, degree, monitor);
+            double w = 0;
+            for (int i = from; i < to; i++) w += ws == null ? 1.0 : ws[i];
+            ssRes += f.rmse * f.rmse * w;
+            sumW += w;
+            // Each piece is drawn up to the breakpoints, so neighbours meet there
+            fits.add(new FitResult(model, degree, f.params, f.r2, f.rmse, cuts[s], cuts[s + 1]));
+        }
+        double mean = 0, w = 0, ssTot = 0;
+        for (int i = 0; i < xs.length; i++) {
+            double wi = ws == null ? 1.0 : ws[i];
+            if (wi == 0) continue;
+            w += wi;
+            double dy = ys[i] - mean;
+            mean += dy * wi / w;
+            ssTot += wi * dy * (ys[i] - mean);
+        }
+        double[] breakXs = Arrays.copyOfRange(cuts, 1, segs);
+        return new Result(breakXs, fits, ssTot > 0 ? 1 - ssRes / ssTot : 1.0, Math.sqrt(ssRes / sumW));
+    }
+
+    /** The breakpoint search over one sorted data set. */
+    private static final class Search {
+        private final double[] u, y, ws;
+        private final int n, d, breaks, width;
+        // Cell boundaries as point indices, bounds[0] = 0 … bounds[cells] = n
+        private final int[] bounds;
+        private final int cells;
+        private final double sd;
+        // Whether the grid skipped some x changes, so the breakpoints need a finer look
+        private final boolean coarse;
+        // Compensated prefix sums over cells: [t·width + k] holds the sums of cells < t
+        private final double[] hi, lo;
+
+        Search(double[] xs, double[] ys, double[] ws, int d, int breaks) {
+            this.n = xs.length;
+            this.d = d;
+            this.breaks = breaks;
+            this.ws = ws;
+            this.width = 3 * d + 3;
+            // Same scaling as the direct solvers: u in [-1, 1]; y centred and scaled to unit spread
+            double c = 0.5 * (xs[0] + xs[n - 1]), s = 0.5 * (xs[n - 1] - xs[0]);
+            if (!(s > 0) || Double.isInfinite(s)) s = 1.0;
+            double mean = 0, m2 = 0;
+            for (int i = 0; i < n; i++) {
+                double dy = ys[i] - mean;
+                mean += dy / (i + 1);
+                m2 += dy * (ys[i] - mean);
+            }
+            sd = m2 > 0 ? Math.sqrt(m2 / n) : 1.0;
+            u = new double[n];
+            y = new double[n];
+            for (int i = 0; i < n; i++) {
+                u[i] = (xs[i] - c) / s;
+                y[i] = (ys[i] - mean) / sd;
+            }
+            int changes = 0;
+            for (int i = 1; i < n; i++) if (xs[i] > xs[i - 1]) changes++;
+            bounds = grid(xs, changes);
+            cells = bounds.length - 1;
+            coarse = cells <= changes;
+            if (cells < (breaks + 1) * (d + 1)) {
+                throw new IllegalArgumentException("Not enough distinct x values for " + (breaks + 1) + " segments of degree " + d + ".");
+            }
+            hi = new double[(cells + 1) * width];
+            lo = new double[(cells + 1) * width];
+        }
+
+        // Candidate splits fall only where x changes, at most GRID of them, evenly by rank
+        private static int[] grid(double[] xs, int changes) {
+            int n = xs.length, keep = Math.min(changes, GRID - 1);
+            int[] b = new int[keep + 2];
+            b[keep + 1] = n;
+            for (int i = 1, seen = 0, k = 1; i < n && k <= keep; i++) {
+                if (xs[i] <= xs[i - 1]) continue;
+                // The k-th kept change is the ⌈k·changes / (keep + 1)⌉-th overall
+                if ((long) ++seen * (keep + 1) >= (long) k * changes) b[k++] = i;
+            }
+            return b;
+        }
+
+        int[] run(FitMonitor monitor) {
+            prefixSums();
+            int segs = breaks + 1, minCells = d + 1, rows = cells + 1;
+            // cost[a][b - a - minCells]: SSE of the points in cells [a, b)
+            double[][] cost = new double[rows][];
+            parallel(rows, a -> {
+                double[] v = new double[width], scratch = new double[(d + 1) * (d + 2)];
+                double[] row = new double[Math.max(0, cells - a - minCells + 1)];
+                for (int b = a + minCells; b <= cells; b++) {
+                    span(a, b, v);
+                    row[b - a - minCells] = sse(v, d, scratch);
+                }
+                cost[a] = row;
+            });
+            // best[s][b]: least SSE of s + 1 segments over cells [0, b); from[s][b]: where the last one starts
+            double[][] best = new double[segs][];
+            int[][] from = new int[segs][rows];
+            best[0] = new double[rows];
+            for (int b = 0; b < rows; b++) best[0][b] = b >= minCells ? cost[0][b - minCells] : Double.POSITIVE_INFINITY;
+            monitor.onIteration(progress(0, best[0][cells]));
+            for (int s = 1; s < segs; s++) {
+                double[] prev = best[s - 1], cur = new double[rows];
+                int[] arg = from[s];
+                int layer = s;
+                parallel(rows, b -> {
+                    double m = Double.POSITIVE_INFINITY;
+                    int am = -1;
+                    for (int a = layer * minCells; a <= b - minCells; a++) {
+                        double v = prev[a] + cost[a][b - a - minCells];
+                        if (v < m) {
+                            m = v;
+                            am = a;
+                        }
+                    }
+                    cur[b] = m;
+                    arg[b] = am;
+                });
+                best[s] = cur;
+                monitor.onIteration(progress(s, cur[cells]));
+            }
+            if (!(best[segs - 1][cells] < Double.POSITIVE_INFINITY)) {
+                throw new IllegalArgumentException("No well-conditioned split into " + segs + " segments; try fewer breakpoints.");
+            }
+            int[] cut = new int[breaks];
+            for (int s = segs - 1, b = cells; s > 0; s--) {
+                b = from[s][b];
+                cut[s - 1] = b;
+            }
+            int[] at = new int[breaks];
+            for (int j = 0; j < breaks; j++) at[j] = bounds[cut[j]];
+            if (!coarse) return at;
+            for (int j = 0; j < breaks; j++) {
+                checkCancelled(Thread.currentThread());
+                at[j] = refine(at, j, bounds[cut[j] - 1], bounds[cut[j] + 1]);
+            }
+            return at;
+        }
+
+        // Breakpoints so far and the RMS of the best split with that many, in the units of y
+        private FitProgress progress(int found, double sse) {
+            return new FitProgress(found, sd * Math.sqrt(sse / (hi[cells * width] + lo[cells * width])));
+        }
+
+        // Best split for break j among the points strictly inside (lo, hi), its neighbours held fixed
+        private int refine(int[] at, int j, int lo, int hi) {
+            int start = j == 0 ? 0 : at[j - 1], end = j == at.length - 1 ? n : at[j + 1];
+            double[] left = new double[width], right = new double[width], scratch = new double[(d + 1) * (d + 2)];
+            for (int i = start; i <= lo; i++) add(i, left, 1);
+            for (int i = lo + 1; i < end; i++) add(i, right, 1);
+            int bestAt = at[j];
+            double best = Double.POSITIVE_INFINITY;
+            for (int i = lo + 1; i < hi; i++) {
+                if (u[i] > u[i - 1]) {
+                    double v = sse(left, d, scratch) + sse(right, d, scratch);
+                    if (v < best) {
+                        best = v;
+                        bestAt = i;
+                    }
+                }
+                add(i, left, 1);
+                add(i, right, -1);
+            }
+            return bestAt;
+        }
+
+        // Adds (sign 1) or removes (sign -1) point i's terms
+        private void add(int i, double[] v, int sign) {
+            double w = sign * (ws == null ? 1.0 : ws[i]), ui = u[i], pk = w;
+            for (int k = 0; k <= 2 * d; k++, pk *= ui) v[k] += pk;
+            double q = w * y[i];
+            for (int k = 0; k <= d; k++, q *= ui) v[2 * d + 1 + k] += q;
+            v[3 * d + 2] += w * y[i] * y[i];
+        }
+
+        private void prefixSums() {
+            double[] sums = new double[cells * width];
+            parallel(cells, t -> {
+                double[] v = new double[width];
+                for (int i = bounds[t]; i < bounds[t + 1]; i++) add(i, v, 1);
+                System.arraycopy(v, 0, sums, t * width, width);
+            });
+            for (int t = 0; t < cells; t++) {
+                for (int k = 0; k < width; k++) {
+                    // Two-sum: lo keeps what hi rounded away, so long prefixes difference exactly enough
+                    double a = hi[t * width + k], b = sums[t * width + k], s = a + b, bb = s - a;
+                    hi[(t + 1) * width + k] = s;
+                    lo[(t + 1) * width + k] = lo[t * width + k] + ((a - (s - bb)) + (b - bb));
+                }
+            }
+        }
+
+        // Sums of the points in cells [a, b)
+        private void span(int a, int b, double[] v) {
+            for (int k = 0; k < width; k++) {
+                v[k] = (hi[b * width + k] - hi[a * width + k]) + (lo[b * width + k] - lo[a * width + k]);
+            }
+        }
+
+        /**
+         * Runs body(0 … count - 1) in blocks on the common pool. Joining pool tasks holds back
+         * an interrupt until they are all done, so the caller waits interruptibly on each in
+         * turn instead; once a cancelled worker is interrupted, the remaining rows are skipped.
+         */
+        private static void parallel(int count, IntConsumer body) {
+            Thread caller = Thread.currentThread();
+            AtomicBoolean stop = new AtomicBoolean();
+            int blocks = (count + ROWS - 1) / ROWS;
+            List<Future<?>> tasks = new ArrayList<>(blocks);
+            for (int t = 0; t < blocks; t++) {
+                int from = t * ROWS, to = Math.min(count, from + ROWS);
+                tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                    for (int i = from; i < to && !stop.get(); i++) {
+                        // The caller itself may run a block while it waits
+                        checkCancelled(caller);
+                        body.accept(i);
+                    }
+                }));
+            }
+            try {
+                for (Future<?> f : tasks) f.get();
+            } catch (ExecutionException ex) {
+                stop.set(true);
+                if (ex.getCause() instanceof RuntimeException) throw (RuntimeException) ex.getCause();
+                throw new IllegalStateException(ex.getCause());
+            } catch (InterruptedException ex) {
+                stop.set(true);
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Fit cancelled");
+            }
+        }
+    }
+
+    private static void checkCancelled(Thread caller) {
+        if (caller.isInterrupted()) throw new CancellationException("Fit cancelled");
+    }
+
+    /**
+     * Least-squares SSE of the sums {@code v} (layout of {@link Search#add}): {@code Σwy² − bᵀc}
+     * with {@code A·c = b}; infinite when A is too close to singular to trust.
+     */
+    static double sse(double[] v, int d, double[] scratch) {
+        int p = d + 1;
+        // scratch: L row-major (p × p), then the solution
+        for (int i = 0; i < p; i++) {
+            for (int j = 0; j <= i; j++) {
+                double s = v[i + j];
+                for (int k = 0; k < j; k++) s -= scratch[i * p + k] * scratch[j * p + k];
+                if (i == j) {
+                    if (!(s > 1e-10 * v[2 * i])) return Double.POSITIVE_INFINITY;
+                    scratch[i * p + i] = Math.sqrt(s);
+                } else {
+                    scratch[i * p + j] = s / scratch[j * p + j];
+                }
+            }
+        }
+        // bᵀA⁻¹b = |L⁻¹b|², so only the forward substitution is needed
+        double explained = 0;
+        int z = p * p;
+        for (int i = 0; i < p; i++) {
+            double s = v[2 * d + 1 + i];
+            for (int k = 0; k < i; k++) s -= scratch[i * p + k] * scratch[z + k];
+            scratch[z + i] = s / scratch[i * p + i];
+            explained += scratch[z + i] * scratch[z + i];
+        }
+        return Math.max(0, v[3 * d + 2] - explained);
+    }
+}
@@ -0,0 +1,382 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * One model fitted to many Y series that share an X column (a multi-channel export).
+ * <p>
+ * Ordinary fits of the linear-in-parameter models make a single pass over the rows: the
+ * regressor t(x), its scaling and powers are computed once per row and accumulated into every
+ * series' system. Series without gaps share one system, so AᵀA (or R) is built and factored
+ * once for all of them and each series only adds its right-hand side. Row chunks run in
+ * parallel on the common pool and are merged in chunk order, so results do not depend on
+ * scheduling. Iterative and robust fits run one task per series instead.
+ */
+final class SeriesFit {
+
+    // Rows per parallel task; chunk boundaries are fixed, so is the merge order
+    private static final int CHUNK = 1 << 14;
+
+    private SeriesFit() { }
+
+    /** One series: its fit, or the reason it could not be fitted. */
+    static final class Entry {
+        final String name;
+        final int n;
+        final FitResult fit;
+        final String error;
+
+        Entry(String name, int n, FitResult fit, String error) {
+            this.name = name;
+            this.n = n;
+            this.fit = fit;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Fits {@code model} to every series {@code ys[s]} against {@code xs}; NaN marks a
+     * missing value. {@code ws == null} means unit weights, {@code loss != null} robust fits.
+     * The monitor is polled by every task and may throw {@link CancellationException} to
+     * abort the run; {@code onSeriesDone} runs once per finished series.
+     */
+    @SuppressWarnings("try")
+    static List<Entry> fitAll(double[] xs, double[][] ys, String[] names, double[] ws, ModelType model, int degree,
+                              RobustFit.Loss loss, FitSettings settings, FitMonitor monitor,
+                              Runnable onSeriesDone) throws InterruptedException {
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.FIT_SERIES, (long) xs.length * ys.length)) {
+            return fitSeries(xs, ys, names, ws, model, degree, loss, settings, monitor, onSeriesDone);
+        }
+    }
+
+    private static List<Entry> fitSeries(double[] xs, double[][] ys, String[] names, double[] ws, ModelType model, int degree,
+                                         RobustFit.Loss loss, FitSettings settings, FitMonitor monitor,
+                                         Runnable onSeriesDone) throws InterruptedException {
+        boolean domainOk;
+        try {
+            // A domain that holds for the shared X holds for every series
+            FitEngine.checkModel(xs, model, degree);
+            domainOk = true;
+        } catch (IllegalArgumentException ex) {
+            if (model == ModelType.POLYNOMIAL && (degree < 2 || degree > 6)) throw ex;
+            domainOk = false;
+        }
+        if (domainOk && loss == null && FitEngine.isLinearInParameters(model)) {
+            List<Entry> entries = new Direct(xs, ys, names, ws, model, degree).fit(monitor);
+            for (int s = 0; s < ys.length; s++) onSeriesDone.run();
+            return entries;
+        }
+        List<Callable<Entry>> tasks = new ArrayList<>(ys.length);
+        for (int s = 0; s < ys.length; s++) {
+            int series = s;
+            tasks.add(() -> {
+                try {
+                    return fitOne(xs, ys[series], names[series], ws, model, degree, loss, settings, monitor);
+                } finally {
+                    onSeriesDone.run();
+                }
+            });
+        }
+        return invokeAll(tasks);
+    }
+
+    // One series on its own: the rows where it has a value, through the single-series engine
+    private static Entry fitOne(double[] xs, double[] y, String name, double[] ws, ModelType model, int degree,
+                                RobustFit.Loss loss, FitSettings settings, FitMonitor monitor) {
+        int m = 0;
+        for (double v : y) if (!Double.isNaN(v)) m++;
+        double[] fx = new double[m], fy = new double[m], fw = ws == null ? null : new double[m];
+        for (int i = 0, j = 0; i < y.length; i++) {
+            if (Double.isNaN(y[i])) continue;
+            fx[j] = xs[i];
+            if (fw != null) fw[j] = ws[i];
+            fy[j++] = y[i];
+        }
+        if (m < 2) return new Entry(name, m, null, "Fewer than 2 data points.");
+        try {
+            FitResult fit = loss == null
+                    ? FitEngine.fitModel(fx, fy, fw, model, degree, null, settings, monitor)
+                    : RobustFit.fit(fx, fy, fw, model, degree, loss, settings, monitor);
+            return new Entry(name, m, fit, null);
+        } catch (CancellationException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            return new Entry(name, m, null, ex.getMessage());
+        }
+    }
+
+    private static <T> List<T> invokeAll(List<Callable<T>> tasks) throws InterruptedException {
+        List<T> out = new ArrayList<>(tasks.size());
+        for (Future<T> f : ForkJoinPool.commonPool().invokeAll(tasks)) {
+            try {
+                out.add(f.get());
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof CancellationException) throw (CancellationException) ex.getCause();
+                throw new IllegalStateException(ex.getCause());
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Direct solve of a linear-in-parameter model for all series. System 0 holds the series
+     * without gaps; every series with gaps gets a system of its own over its rows. Degrees up
+     * to 2 use the normal equations, higher ones streaming Givens QR, as for a single series.
+     */
+    private static final class Direct {
+        final double[] xs, u, ws;
+        final double[][] ys;
+        final String[] names;
+        final ModelType model;
+        final int degree, p;
+        final double c, s, xmin, xmax;
+        final boolean qr;
+        // Series of each system, and each series' system
+        final int[][] members;
+        final int[] systemOf;
+
+        Direct(double[] xs, double[][] ys, String[] names, double[] ws, ModelType model, int degree) {
+            LinearLeastSquares.Transform transform = FitEngine.transformOf(model);
+            int n = xs.length;
+            // The shared per-X work: t(x), its centring and scaling, once for every series
+            u = new double[n];
+            double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+            double xlo = Double.POSITIVE_INFINITY, xhi = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                u[i] = transform.apply(xs[i]);
+                lo = Math.min(lo, u[i]);
+                hi = Math.max(hi, u[i]);
+                xlo = Math.min(xlo, xs[i]);
+                xhi = Math.max(xhi, xs[i]);
+            }
+            double center = 0.5 * (lo + hi), scale = 0.5 * (hi - lo);
+            if (!(scale > 0) || Double.isInfinite(scale)) scale = 1.0;
+            for (int i = 0; i < n; i++) u[i] = (u[i] - center) / scale;
+            this.c = center;
+            this.s = scale;
+            this.xmin = xlo;
+            this.xmax = xhi;
+            this.xs = xs;
+            this.ys = ys;
+            this.ws = ws;
+            this.names = names;
+            this.model = model;
+            this.degree = degree;
+            this.p = (model == ModelType.POLYNOMIAL ? degree : 1) + 1;
+            this.qr = LinearLeastSquares.Solver.defaultFor(p - 1) == LinearLeastSquares.Solver.QR;
+
+            systemOf = new int[ys.length];
+            List<Integer> complete = new ArrayList<>();
+            int gappy = 0;
+            for (int k = 0; k < ys.length; k++) {
+                if (hasGaps(ys[k])) systemOf[k] = 1 + gappy++;
+                else complete.add(k);
+            }
+            members = new int[1 + gappy][];
+            members[0] = complete.stream().mapToInt(Integer::intValue).toArray();
+            for (int k = 0; k < ys.length; k++) if (systemOf[k] > 0) members[systemOf[k]] = new int[]{k};
+        }
+
+        private static boolean hasGaps(double[] y) {
+            for (double v : y) if (Double.isNaN(v)) return true;
+            return false;
+        }
+
+        List<Entry> fit(FitMonitor monitor) throws InterruptedException {
+            int n = u.length, k = ys.length;
+            int chunks = Math.max(1, (n + CHUNK - 1) / CHUNK);
+            // Pass 1: normal equations or R per system, plus each series' weighted sum and count
+            List<Callable<Partial>> accumulate = new ArrayList<>(chunks);
+            for (int ch = 0; ch < chunks; ch++) {
+                int from = ch * CHUNK, to = Math.min(n, from + CHUNK), index = ch;
+                accumulate.add(() -> {
+                    monitor.onIteration(new FitProgress(index, 0));
+                    return accumulate(from, to);
+                });
+            }
+            List<Partial> partials = invokeAll(accumulate);
+            Partial total = partials.get(0);
+            for (int ch = 1; ch < chunks; ch++) total.merge(partials.get(ch), qr);
+
+            double[][] b = new double[k][];
+            String[] errors = new String[k];
+            for (int sys = 0; sys < members.length; sys++) solve(total, sys, b, errors);
+
+            // Pass 2: residuals against the scaled coefficients, again one basis row per x
+            double[] mean = new double[k];
+            for (int j = 0; j < k; j++) mean[j] = total.sumW[j] == 0 ? 0 : total.sumWY[j] / total.sumW[j];
+            List<Callable<double[][]>> residuals = new ArrayList<>(chunks);
+            for (int ch = 0; ch < chunks; ch++) {
+                int from = ch * CHUNK, to = Math.min(n, from + CHUNK), index = ch;
+                residuals.add(() -> {
+                    monitor.onIteration(new FitProgress(index, 0));
+                    return sumsOfSquares(from, to, b, mean);
+                });
+            }
+            double[] ssRes = new double[k], ssTot = new double[k];
+            for (double[][] part : invokeAll(residuals)) {
+                for (int j = 0; j < k; j++) {
+                    ssRes[j] += part[0][j];
+                    ssTot[j] += part[1][j];
+                }
+            }
+
+            List<Entry> entries = new ArrayList<>(k);
+            int shownDegree = model == ModelType.LINEAR ? 1 : model == ModelType.POLYNOMIAL ? degree : 0;
+            for (int j = 0; j < k; j++) {
+                int m = total.count[j];
+                if (errors[j] != null) {
+                    entries.add(new Entry(names[j], m, null, errors[j]));
+                    continue;
+                }
+                double r2 = ssTot[j] == 0 ? 1.0 : 1.0 - ssRes[j] / ssTot[j];
+                double rmse = Math.sqrt(ssRes[j] / total.sumW[j]);
+                double lo = systemOf[j] == 0 ? xmin : total.xmin[j], hi = systemOf[j] == 0 ? xmax : total.xmax[j];
+                FitResult fit = new FitResult(model, shownDegree, LinearLeastSquares.unscale(b[j], c, s), r2, rmse, lo, hi);
+                entries.add(new Entry(names[j], m, fit, null));
+            }
+            return entries;
+        }
+
+        private Partial accumulate(int from, int to) {
+            int k = ys.length;
+            Partial part = new Partial(members, p, k);
+            double[] row = new double[p], scratch = new double[p];
+            double[] y0 = new double[members[0].length], y1 = new double[1];
+            for (int i = from; i < to; i++) {
+                double w = ws == null ? 1.0 : ws[i];
+                if (w == 0) continue;
+                LinearLeastSquares.basis(u[i], row);
+                double sw = qr ? Math.sqrt(w) : 1.0;
+                if (qr) for (int j = 0; j < p; j++) row[j] *= sw;
+                for (int sys = 0; sys < members.length; sys++) {
+                    int[] series = members[sys];
+                    if (series.length == 0) continue;
+                    double[] yv = sys == 0 ? y0 : y1;
+                    boolean any = false;
+                    for (int m = 0; m < series.length; m++) {
+                        double y = ys[series[m]][i];
+                        yv[m] = y;
+                        if (Double.isNaN(y)) continue;
+                        any = true;
+                        int j = series[m];
+                        part.count[j]++;
+                        part.sumW[j] += w;
+                        part.sumWY[j] += w * y;
+                        if (sys > 0) {
+                            part.xmin[j] = Math.min(part.xmin[j], xs[i]);
+                            part.xmax[j] = Math.max(part.xmax[j], xs[i]);
+                        }
+                    }
+                    if (!any) continue;
+                    double[][] m = part.m[sys], rhs = part.rhs[sys];
+                    if (qr) {
+                        // Rotations consume the row, so every system gets its own copy
+                        System.arraycopy(row, 0, scratch, 0, p);
+                        for (int q = 0; q < yv.length; q++) yv[q] *= sw;
+                        LinearLeastSquares.rotateIn(m, scratch, rhs, yv);
+                    } else {
+                        for (int j = 0; j < p; j++) {
+                            double rj = w * row[j];
+                            for (int q = 0; q < yv.length; q++) rhs[q][j] += rj * yv[q];
+                            for (int l = 0; l <= j; l++) m[j][l] += rj * row[l];
+                        }
+                    }
+                }
+            }
+            return part;
+        }
+
+        private void solve(Partial total, int sys, double[][] b, String[] errors) {
+            int[] series = members[sys];
+            if (series.length == 0) return;
+            double[][] m = total.m[sys];
+            try {
+                for (int j : series) {
+                    if (total.count[j] < p) throw new IllegalArgumentException("Need at least " + p + " data points for this model.");
+                }
+                if (!qr) LinearLeastSquares.choleskyFactor(m);
+                for (int q = 0; q < series.length; q++) {
+                    double[] rhs = total.rhs[sys][q];
+                    b[series[q]] = qr ? LinearLeastSquares.backSubstitute(m, rhs) : LinearLeastSquares.choleskySolve(m, rhs);
+                }
+            } catch (IllegalArgumentException ex) {
+                for (int j : series) errors[j] = ex.getMessage();
+            }
+        }
+
+        // {ssRes, ssTot} per series over rows [from, to)
+        private double[][] sumsOfSquares(int from, int to, double[][] b, double[] mean) {
+            int k = ys.length;
+            double[] ssRes = new double[k], ssTot = new double[k], row = new double[p];
+            for (int i = from; i < to; i++) {
+                double w = ws == null ? 1.0 : ws[i];
+                LinearLeastSquares.basis(u[i], row);
+                for (int j = 0; j < k; j++) {
+                    double y = ys[j][i];
+                    if (b[j] == null || Double.isNaN(y)) continue;
+                    double yhat = 0;
+                    for (int q = 0; q < p; q++) yhat += b[j][q] * row[q];
+                    double r = y - yhat, d = y - mean[j];
+                    ssRes[j] += w * r * r;
+                    ssTot[j] += w * d * d;
+                }
+            }
+            return new double[][]{ssRes, ssTot};
+        }
+    }
+
+    /** Per-chunk sums: one system (AᵀA or R, and right-hand sides) per group of series. */
+    private static final class Partial {
+        final double[][][] m, rhs;
+        final double[] sumW, sumWY, xmin, xmax;
+        final int[] count;
+
+        Partial(int[][] members, int p, int k) {
+            m = new double[members.length][p][p];
+            rhs = new double[members.length][][];
+            for (int sys = 0; sys < members.length; sys++) rhs[sys] = new double[members[sys].length][p];
+            sumW = new double[k];
+            sumWY = new double[k];
+            xmin = new double[k];
+            xmax = new double[k];
+            Arrays.fill(xmin, Double.POSITIVE_INFINITY);
+            Arrays.fill(xmax, Double.NEGATIVE_INFINITY);
+            count = new int[k];
+        }
+
+        /** Adds a later chunk; with QR its R rows are rotated into this R like data rows. */
+        void merge(Partial o, boolean qr) {
+            for (int sys = 0; sys < m.length; sys++) {
+                int p = m[sys].length, r = rhs[sys].length;
+                if (qr) {
+                    double[] row = new double[p], y = new double[r];
+                    for (int k = 0; k < p; k++) {
+                        System.arraycopy(o.m[sys][k], 0, row, 0, p);
+                        for (int q = 0; q < r; q++) y[q] = o.rhs[sys][q][k];
+                        LinearLeastSquares.rotateIn(m[sys], row, rhs[sys], y);
+                    }
+                } else {
+                    for (int j = 0; j < p; j++) {
+                        for (int l = 0; l <= j; l++) m[sys][j][l] += o.m[sys][j][l];
+                        for (int q = 0; q < r; q++) rhs[sys][q][j] += o.rhs[sys][q][j];
+                    }
+                }
+            }
+            for (int j = 0; j < count.length; j++) {
+                sumW[j] += o.sumW[j];
+                sumWY[j] += o.sumWY[j];
+                xmin[j] = Math.min(xmin[j], o.xmin[j]);
+                xmax[j] = Math.max(xmax[j], o.xmax[j]);
+                count[j] += o.count[j];
+            }
+        }
+    }
+}
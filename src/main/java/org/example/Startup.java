@@ -0,0 +1,58 @@
+package org.example;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Startup timeline, from the launch of the JVM to the first window on screen, for checking a
+ * time-to-first-window target. Phases are marked in order as they end; with
+ * {@code -Dcurvefit.startupLog=true} the timeline is printed to stderr once the window shows,
+ * and the background warm-up that follows gets a line of its own.
+ * <p>
+ * The JVM's own share (launch to {@code main}) comes from its uptime, read only when logging,
+ * after the window is up; everything after is measured with {@link System#nanoTime}.
+ */
+final class Startup {
+
+    private static final boolean LOG = Boolean.getBoolean("curvefit.startupLog");
+    private static final long MAIN_NANOS = System.nanoTime();
+
+    private static final List<String> phases = new ArrayList<>();
+    private static long last = MAIN_NANOS;
+
+    private Startup() { }
+
+    /** Starts the clock; call first thing in {@code main}. */
+    static void begin() {
+        // Loading this class did the work
+    }
+
+    /** Ends phase {@code name}, which began where the previous one ended. */
+    static synchronized void mark(String name) {
+        long now = System.nanoTime();
+        phases.add(name + " " + (now - last) / 1_000_000 + " ms");
+        last = now;
+    }
+
+    /** Ends the last phase and logs the timeline. */
+    static synchronized void windowShown() {
+        mark("window");
+        if (LOG) {
+            // Uptime and clock read together, after the management classes have loaded
+            long uptime = sinceLaunch(), jvm = uptime - (System.nanoTime() - MAIN_NANOS) / 1_000_000;
+            System.err.println("startup: JVM " + jvm + " ms, " + String.join(", ", phases)
+                    + "; first window at " + (jvm + (last - MAIN_NANOS) / 1_000_000) + " ms");
+        }
+        phases.clear();
+    }
+
+    /** Logs a phase that ran off the startup path, such as the warm-up after the first window. */
+    static void background(String name, long nanos) {
+        if (LOG) System.err.println("startup: " + name + " " + nanos / 1_000_000 + " ms (background), done at " + sinceLaunch() + " ms");
+    }
+
+    private static long sinceLaunch() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+}
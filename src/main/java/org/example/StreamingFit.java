@@ -0,0 +1,181 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Fits and summaries over a {@link MappedDataset}, one row group at a time, so the heap in
+ * use does not grow with the row count. Column 0 is X; the Y and optional weight columns are
+ * chosen by index. Rows missing X or Y are skipped; NaN or negative weights count as 1, as in
+ * the table.
+ * <p>
+ * Linear-in-parameter models stream every row into {@link SufficientStats} and are solved
+ * from the sums. The iterative models are fitted on an evenly strided sample of at most
+ * {@link #MAX_SAMPLE} rows (all rows when there are fewer), and their R² and RMSE are then
+ * computed over every row in a second pass.
+ */
+final class StreamingFit {
+
+    // Large enough for stable estimates of the few parameters, small enough for the optimizer's
+    // n×p Jacobian to stay a few MB
+    static final int MAX_SAMPLE = 1 << 18;
+
+    private StreamingFit() { }
+
+    /** Receives the complete rows of one group; the arrays are reused for the next. */
+    private interface Chunk {
+        void accept(double[] xs, double[] ys, double[] ws, int n);
+    }
+
+    /** Complete rows and their X range. */
+    static final class Summary {
+        final long count;
+        final double xmin, xmax;
+
+        Summary(long count, double xmin, double xmax) {
+            this.count = count;
+            this.xmin = xmin;
+            this.xmax = xmax;
+        }
+    }
+
+    static Summary summarize(MappedDataset data, int yColumn, FitMonitor monitor) {
+        long[] count = {0};
+        double[] range = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        scan(data, yColumn, -1, monitor, (xs, ys, ws, n) -> {
+            count[0] += n;
+            for (int i = 0; i < n; i++) {
+                range[0] = Math.min(range[0], xs[i]);
+                range[1] = Math.max(range[1], xs[i]);
+            }
+        });
+        return new Summary(count[0], range[0], range[1]);
+    }
+
+    /**
+     * Min-max decimation for the chart: per X bucket over [xmin, xmax], the rows with the
+     * lowest and the highest Y, in ascending X. At most {@code 2·buckets} points.
+     */
+    static double[][] overview(MappedDataset data, int yColumn, Summary summary, int buckets, FitMonitor monitor) {
+        double[] loX = new double[buckets], loY = new double[buckets], hiX = new double[buckets], hiY = new double[buckets];
+        Arrays.fill(loY, Double.POSITIVE_INFINITY);
+        Arrays.fill(hiY, Double.NEGATIVE_INFINITY);
+        double width = summary.xmax > summary.xmin ? (summary.xmax - summary.xmin) / buckets : 1;
+        scan(data, yColumn, -1, monitor, (xs, ys, ws, n) -> {
+            for (int i = 0; i < n; i++) {
+                int b = (int) Math.min(buckets - 1, Math.max(0, (xs[i] - summary.xmin) / width));
+                if (ys[i] < loY[b]) { loY[b] = ys[i]; loX[b] = xs[i]; }
+                if (ys[i] > hiY[b]) { hiY[b] = ys[i]; hiX[b] = xs[i]; }
+            }
+        });
+        int m = 0;
+        double[] px = new double[2 * buckets], py = new double[2 * buckets];
+        for (int b = 0; b < buckets; b++) {
+            if (loY[b] == Double.POSITIVE_INFINITY) continue;
+            boolean lowFirst = loX[b] <= hiX[b];
+            px[m] = lowFirst ? loX[b] : hiX[b];
+            py[m++] = lowFirst ? loY[b] : hiY[b];
+            if (loX[b] == hiX[b] && loY[b] == hiY[b]) continue;
+            px[m] = lowFirst ? hiX[b] : loX[b];
+            py[m++] = lowFirst ? hiY[b] : loY[b];
+        }
+        return new double[][]{Arrays.copyOf(px, m), Arrays.copyOf(py, m)};
+    }
+
+    /**
+     * Fits {@code model} to column {@code yColumn} against X; {@code wColumn < 0} means unit
+     * weights. The monitor is polled once per group and by the optimizer.
+     */
+    static FitResult fit(MappedDataset data, int yColumn, int wColumn, ModelType model, int degree, FitSettings settings,
+                         FitMonitor monitor) {
+        if (model == ModelType.POLYNOMIAL || model == ModelType.CUSTOM) FitEngine.checkModel(new double[0], model, degree);
+        return FitEngine.isLinearInParameters(model)
+                ? fitLinear(data, yColumn, wColumn, model, degree, monitor)
+                : fitIterative(data, yColumn, wColumn, model, degree, settings, monitor);
+    }
+
+    @SuppressWarnings("try")
+    private static FitResult fitLinear(MappedDataset data, int yColumn, int wColumn, ModelType model, int degree, FitMonitor monitor) {
+        SufficientStats stats = new SufficientStats(FitEngine.transformOf(model));
+        double[] range = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.SOLVE, data.rows())) {
+            scan(data, yColumn, wColumn, monitor, (xs, ys, ws, n) -> {
+                stats.addAll(xs, ys, ws, n);
+                for (int i = 0; i < n; i++) {
+                    range[0] = Math.min(range[0], xs[i]);
+                    range[1] = Math.max(range[1], xs[i]);
+                }
+            });
+            int shownDegree = model == ModelType.LINEAR ? 1 : model == ModelType.POLYNOMIAL ? degree : 0;
+            return FitEngine.fitFromStats(stats, model, shownDegree, range[0], range[1]);
+        }
+    }
+
+    @SuppressWarnings("try")
+    private static FitResult fitIterative(MappedDataset data, int yColumn, int wColumn, ModelType model, int degree,
+                                          FitSettings settings, FitMonitor monitor) {
+        // The stride bounds the sample by the row count, so one pass both counts and samples
+        long stride = Math.max(1, (data.rows() + MAX_SAMPLE - 1) / MAX_SAMPLE);
+        int cap = (int) Math.min(MAX_SAMPLE, data.rows());
+        double[] sx = new double[cap], sy = new double[cap], sw = wColumn < 0 ? null : new double[cap];
+        long[] seen = {0};
+        int[] taken = {0};
+        double[] range = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.SNAPSHOT, data.rows())) {
+            scan(data, yColumn, wColumn, monitor, (xs, ys, ws, n) -> {
+                for (int i = 0; i < n; i++) {
+                    if (model == ModelType.POWER && !(xs[i] > 0)) throw new IllegalArgumentException("Power model requires x > 0 for all points.");
+                    range[0] = Math.min(range[0], xs[i]);
+                    range[1] = Math.max(range[1], xs[i]);
+                    if (seen[0]++ % stride != 0) continue;
+                    int j = taken[0]++;
+                    sx[j] = xs[i];
+                    sy[j] = ys[i];
+                    if (sw != null) sw[j] = ws[i];
+                }
+            });
+        }
+        int m = taken[0];
+        if (m < 2) throw new IllegalArgumentException("Please add at least 2 data points.");
+        double[] xs = m == cap ? sx : Arrays.copyOf(sx, m), ys = m == cap ? sy : Arrays.copyOf(sy, m);
+        double[] ws = sw == null || m == cap ? sw : Arrays.copyOf(sw, m);
+        FitResult sampleFit = FitEngine.fitModel(xs, ys, ws, model, degree, null, settings, monitor);
+        if (stride == 1) return sampleFit;
+
+        // R² and RMSE over every row, with the in-memory metrics' Welford moments and
+        // compensated Σw·r², accumulated group after group
+        ModelEvaluator f = ModelEvaluator.of(model, sampleFit.params);
+        double[] lanes = new double[Kernels.MOMENT_SLOTS];
+        double[] yhat = new double[data.groupRows()];
+        FitEngine.Metrics metrics;
+        try (Diagnostics.Span span = Diagnostics.begin(Diagnostics.Phase.METRICS, seen[0])) {
+            scan(data, yColumn, wColumn, monitor, (cx, cy, cw, n) -> {
+                f.evaluate(cx, 0, n, yhat);
+                Kernels.INSTANCE.residualMoments(cy, cw, 0, yhat, n, lanes);
+            });
+            metrics = ParallelScan.metrics(lanes);
+        }
+        return new FitResult(model, 0, sampleFit.params, metrics.r2, metrics.rmse, range[0], range[1],
+                sampleFit.iterations, sampleFit.evaluations);
+    }
+
+    // Hands the complete rows of each group to the visitor, in row order
+    private static void scan(MappedDataset data, int yColumn, int wColumn, FitMonitor monitor, Chunk chunk) {
+        int size = data.groupRows();
+        double[] x = new double[size], y = new double[size], w = wColumn < 0 ? null : new double[size];
+        for (int g = 0, groups = data.groups(); g < groups; g++) {
+            monitor.onIteration(new FitProgress(g, 0));
+            int n = data.read(0, g, x);
+            data.read(yColumn, g, y);
+            if (w != null) data.read(wColumn, g, w);
+            int m = 0;
+            for (int i = 0; i < n; i++) {
+                if (Double.isNaN(x[i]) || Double.isNaN(y[i])) continue;
+                x[m] = x[i];
+                y[m] = y[i];
+                if (w != null) w[m] = Double.isNaN(w[i]) || w[i] < 0 ? 1.0 : w[i];
+                m++;
+            }
+            if (m > 0) chunk.accept(x, y, w, m);
+        }
+    }
+}
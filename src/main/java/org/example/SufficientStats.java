@@ -0,0 +1,296 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Running sufficient statistics for the linear-in-parameter models of one
+ * {@link LinearLeastSquares.Transform}: the weighted moments {@code Σw·u^k} (k ≤ 12) and
+ * {@code Σw·u^k·y} (k ≤ 6) of the scaled regressor {@code u = (t(x) - c) / s}, plus
+ * {@code Σw·y²} and a weighted Welford mean/variance of y. Points can be added and removed in O(1), and a straight line or a
+ * polynomial up to degree 6 is then solved from the sums alone, independent of n.
+ * <p>
+ * Every sum carries a Neumaier compensation term, so long add/remove histories do not drift.
+ * When new points fall far outside the current scaling window, or removals leave it much
+ * wider than the points, the moments are re-based algebraically instead of being recomputed
+ * from the data.
+ */
+final class SufficientStats {
+
+    static final int MAX_DEGREE = 6;
+    private static final int MOMENTS = 2 * MAX_DEGREE + 1;
+    // |u| beyond this triggers a re-base; moments of u^12 stay well inside double range
+    private static final double REBASE_LIMIT = 4.0;
+
+    private final LinearLeastSquares.Transform transform;
+
+    private final double[] su = new double[MOMENTS], suComp = new double[MOMENTS];
+    private final double[] suy = new double[MAX_DEGREE + 1], suyComp = new double[MAX_DEGREE + 1];
+    private double syy, syyComp;
+
+    private long count;
+    private double sumW, meanY, m2Y;
+    private long outOfDomain;
+
+    private boolean based;
+    private double center, scale = 1, yCenter;
+    private double tmin = Double.POSITIVE_INFINITY, tmax = Double.NEGATIVE_INFINITY;
+
+    private final double[] powers = new double[MOMENTS];
+
+    SufficientStats(LinearLeastSquares.Transform transform) { this.transform = transform; }
+
+    LinearLeastSquares.Transform transform() { return transform; }
+
+    long count() { return count; }
+
+    /** Number of points whose x lies outside the transform's domain (x ≤ 0 for ln, x = 0 for 1/x). */
+    long outOfDomain() { return outOfDomain; }
+
+    void add(double x, double y) { update(x, y, 1.0, +1); }
+
+    void remove(double x, double y) { update(x, y, 1.0, -1); }
+
+    void add(double x, double y, double w) { update(x, y, w, +1); }
+
+    void remove(double x, double y, double w) { update(x, y, w, -1); }
+
+    void addAll(double[] xs, double[] ys, int n) {
+        addAll(xs, ys, null, n);
+    }
+
+    /** Adds {@code n} points; {@code ws == null} means unit weights. */
+    void addAll(double[] xs, double[] ys, double[] ws, int n) {
+        if (!based) {
+            // Pick the scaling window from the batch so the first rebase is rarely needed
+            double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY, ySum = 0;
+            int m = 0;
+            for (int i = 0; i < n; i++) {
+                if (!inDomain(xs[i])) continue;
+                double t = transform.apply(xs[i]);
+                lo = Math.min(lo, t);
+                hi = Math.max(hi, t);
+                ySum += ys[i];
+                m++;
+            }
+            if (m > 0) base(lo, hi, ySum / m);
+        }
+        for (int i = 0; i < n; i++) update(xs[i], ys[i], ws == null ? 1.0 : ws[i], +1);
+    }
+
+    void clear() {
+        empty();
+        outOfDomain = 0;
+    }
+
+    // Forgets every in-domain point and the scaling window
+    private void empty() {
+        Arrays.fill(su, 0);
+        Arrays.fill(suComp, 0);
+        Arrays.fill(suy, 0);
+        Arrays.fill(suyComp, 0);
+        syy = syyComp = 0;
+        count = 0;
+        sumW = meanY = m2Y = 0;
+        based = false;
+        center = 0;
+        scale = 1;
+        yCenter = 0;
+        tmin = Double.POSITIVE_INFINITY;
+        tmax = Double.NEGATIVE_INFINITY;
+    }
+
+    private boolean inDomain(double x) {
+        switch (transform) {
+            case LOG: return x > 0;
+            case RECIPROCAL: return x != 0;
+            default: return true;
+        }
+    }
+
+    private void update(double x, double y, double w, int sign) {
+        if (!inDomain(x)) {
+            outOfDomain += sign;
+            return;
+        }
+        double t = transform.apply(x);
+        if (!based) base(t, t, y);
+        if (sign > 0 && (t < tmin || t > tmax)) {
+            tmin = Math.min(tmin, t);
+            tmax = Math.max(tmax, t);
+            if (Math.abs((t - center) / scale) > REBASE_LIMIT) rebase(tmin, tmax, count > 0 ? meanY : y);
+        }
+
+        double u = (t - center) / scale;
+        double dy = y - yCenter;
+        double p = sign * w;
+        for (int k = 0; k < MOMENTS; k++) {
+            powers[k] = p;
+            p *= u;
+        }
+        for (int k = 0; k < MOMENTS; k++) add(su, suComp, k, powers[k]);
+        // The rounding of each product goes into the compensation too; solve() subtracts
+        // nearly equal sums of these
+        for (int k = 0; k <= MAX_DEGREE; k++) addProduct(suy, suyComp, k, powers[k], dy);
+        double wdy = sign * w * dy;
+        double sq = wdy * dy;
+        double s = syy + sq;
+        syyComp += (Math.abs(syy) >= Math.abs(sq) ? (syy - s) + sq : (sq - s) + syy) + Math.fma(wdy, dy, -sq);
+        syy = s;
+
+        // Weighted Welford, run backwards for removals
+        if (sign > 0) {
+            count++;
+            sumW += w;
+            if (sumW > 0) {
+                double delta = y - meanY;
+                meanY += w * delta / sumW;
+                m2Y += w * delta * (y - meanY);
+            }
+        } else if (count == 1) {
+            // Also drops what rounding left in the sums
+            empty();
+        } else {
+            count--;
+            if ((sumW -= w) <= 0) {
+                sumW = meanY = m2Y = 0;
+            } else {
+                double delta = y - meanY;
+                meanY -= w * delta / sumW;
+                m2Y = Math.max(0, m2Y - w * delta * (y - meanY));
+            }
+            narrow();
+        }
+    }
+
+    /**
+     * Shrinks [tmin, tmax] after a removal, so the next re-base fits the points that remain
+     * instead of every point ever seen. The data are gone, so the extent becomes the
+     * mean ± 2σ of t from the moments (± σ·√(n-1) for fewer points, which bounds them all). Points
+     * left outside it only get |u| a little over 1 after a re-base.
+     */
+    private void narrow() {
+        double w = su[0] + suComp[0];
+        if (!(w > 0)) return;
+        double mean = (su[1] + suComp[1]) / w;
+        double reach = Math.sqrt(Math.max(0, (su[2] + suComp[2]) / w - mean * mean) * Math.min(count - 1, 4));
+        tmin = Math.max(tmin, center + scale * (mean - reach));
+        tmax = Math.min(tmax, center + scale * (mean + reach));
+        // A window much wider than the points, or off to one side, makes the normal equations
+        // badly conditioned; small steps also keep each re-base's cancellation small
+        double lo = (tmin - center) / scale, hi = (tmax - center) / scale;
+        if (hi - lo < 1 || Math.abs(lo + hi) > 1) rebase(tmin, tmax, meanY);
+    }
+
+    // Neumaier summation into sum[k] with running compensation comp[k]
+    private static void add(double[] sum, double[] comp, int k, double v) {
+        double s = sum[k];
+        double t = s + v;
+        comp[k] += Math.abs(s) >= Math.abs(v) ? (s - t) + v : (v - t) + s;
+        sum[k] = t;
+    }
+
+    // Adds a·b to sum[k], the product's rounding error included
+    private static void addProduct(double[] sum, double[] comp, int k, double a, double b) {
+        double q = a * b;
+        add(sum, comp, k, q);
+        comp[k] += Math.fma(a, b, -q);
+    }
+
+    private void base(double lo, double hi, double yc) {
+        center = 0.5 * (lo + hi);
+        scale = 0.5 * (hi - lo);
+        if (!(scale > 0) || Double.isInfinite(scale)) scale = Math.max(1.0, Math.abs(center));
+        yCenter = yc;
+        tmin = lo;
+        tmax = hi;
+        based = true;
+    }
+
+    /** Re-expresses all moments in a new window: u' = α·u + β, y' = y + δ. O(MAX_DEGREE²). */
+    private void rebase(double lo, double hi, double yc) {
+        double oldCenter = center, oldScale = scale, oldYCenter = yCenter;
+        base(lo, hi, yc);
+        double alpha = oldScale / scale;
+        double beta = (oldCenter - center) / scale;
+        double delta = oldYCenter - yCenter;
+
+        double[] s = new double[MOMENTS], sy = new double[MAX_DEGREE + 1];
+        for (int k = 0; k < MOMENTS; k++) s[k] = su[k] + suComp[k];
+        for (int k = 0; k <= MAX_DEGREE; k++) sy[k] = suy[k] + suyComp[k];
+        double yy = syy + syyComp;
+
+        // Σw(dy + δ)² = Σw·dy² + 2δΣw·dy + δ²Σw, using the old-basis zeroth moments
+        double newYy = yy + 2 * delta * sy[0] + delta * delta * s[0];
+        double[] syShift = new double[MAX_DEGREE + 1];
+        for (int k = 0; k <= MAX_DEGREE; k++) syShift[k] = sy[k] + delta * s[k];
+
+        double[] binom = new double[MOMENTS];
+        for (int k = 0; k < MOMENTS; k++) {
+            // binomial row C(k, j), then Σ_j C(k,j) α^j β^(k-j) S_j
+            binom[k] = 1;
+            for (int j = k - 1; j > 0; j--) binom[j] += binom[j - 1];
+            double acc = 0;
+            for (int j = 0; j <= k; j++) acc += binom[j] * Math.pow(alpha, j) * Math.pow(beta, k - j) * s[j];
+            su[k] = acc;
+            suComp[k] = 0;
+            if (k <= MAX_DEGREE) {
+                double accY = 0;
+                for (int j = 0; j <= k; j++) accY += binom[j] * Math.pow(alpha, j) * Math.pow(beta, k - j) * syShift[j];
+                suy[k] = accY;
+                suyComp[k] = 0;
+            }
+        }
+        syy = newYy;
+        syyComp = 0;
+    }
+
+    /** Least-squares solution of a degree-{@code degree} polynomial in t, with its fit metrics. */
+    static final class Solution {
+        final double[] params;
+        final double r2, rmse;
+
+        Solution(double[] params, double r2, double rmse) {
+            this.params = params;
+            this.r2 = r2;
+            this.rmse = rmse;
+        }
+    }
+
+    Solution solve(int degree) {
+        if (degree < 1 || degree > MAX_DEGREE) throw new IllegalArgumentException("Degree must be between 1 and " + MAX_DEGREE + ".");
+        int p = degree + 1;
+        if (count < p) throw new IllegalArgumentException("Need at least " + p + " data points for this model.");
+
+        double[][] m = new double[p][p];
+        double[] b = new double[p];
+        for (int j = 0; j < p; j++) {
+            for (int k = 0; k <= j; k++) m[j][k] = su[j + k] + suComp[j + k];
+            b[j] = suy[j] + suyComp[j];
+        }
+        double[] coeffs = LinearLeastSquares.solveCholesky(m, b.clone());
+
+        // SS_res = Σdy² - 2cᵀb + cᵀMc = Σdy² - cᵀb + cᵀ(Mc - b). Mc - b vanishes at the optimum,
+        // so errors in c only enter squared; the products are summed exactly (fma) with their
+        // compensation terms, since the result can be many orders below Σdy²
+        double[] ss = {syy}, ssComp = {syyComp};
+        double[] g = new double[1], gComp = new double[1];
+        for (int j = 0; j < p; j++) {
+            g[0] = gComp[0] = 0;
+            for (int k = 0; k < p; k++) {
+                addProduct(g, gComp, 0, coeffs[k], su[j + k]);
+                addProduct(g, gComp, 0, coeffs[k], suComp[j + k]);
+            }
+            add(g, gComp, 0, -suy[j]);
+            add(g, gComp, 0, -suyComp[j]);
+            addProduct(ss, ssComp, 0, -coeffs[j], suy[j]);
+            addProduct(ss, ssComp, 0, -coeffs[j], suyComp[j]);
+            addProduct(ss, ssComp, 0, coeffs[j], g[0] + gComp[0]);
+        }
+        double ssRes = Math.max(0, ss[0] + ssComp[0]);
+        double r2 = m2Y == 0 ? 1.0 : 1.0 - ssRes / m2Y;
+        double rmse = Math.sqrt(ssRes / sumW);
+
+        coeffs[0] += yCenter;
+        return new Solution(LinearLeastSquares.unscale(coeffs, center, scale), r2, rmse);
+    }
+}
@@ -0,0 +1,46 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BatchRunnerTest {
+
+    @TempDir
+    Path dir;
+
+    private List<String> run(String... args) throws IOException {
+        Path out = dir.resolve("out.csv");
+        String[] all = new String[args.length + 2];
+        System.arraycopy(args, 0, all, 0, args.length);
+        all[args.length] = "--out";
+        all[args.length + 1] = out.toString();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        assertEquals(0, BatchRunner.run(all, new PrintStream(err, true, StandardCharsets.UTF_8)), err.toString(StandardCharsets.UTF_8));
+        return Files.readAllLines(out);
+    }
+
+    @Test
+    void weightColumnWeightsEverySeries() throws IOException {
+        // The outlier at x = 4 has weight 0, so the weighted fit is the exact line y = 2x + 1
+        Path file = dir.resolve("data.csv");
+        Files.writeString(file, "x,y,w\n0,1,1\n1,3,1\n2,5,1\n3,7,1\n4,100,0\n");
+        List<String> lines = run("--model", "linear", file.toString());
+        assertEquals(2, lines.size(), String.join("\n", lines));
+        String[] cells = lines.get(1).split(",");
+        assertEquals("y", cells[1]);
+        assertEquals(1.0, Double.parseDouble(cells[5]), 1e-12);
+        String[] params = cells[9].split(" ");
+        assertEquals(1.0, Double.parseDouble(params[0]), 1e-9);
+        assertEquals(2.0, Double.parseDouble(params[1]), 1e-9);
+    }
+}
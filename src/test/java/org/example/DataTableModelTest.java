@@ -0,0 +1,73 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class DataTableModelTest {
+
+    private static final double NAN = Double.NaN;
+
+    @Test
+    void incrementalBuildAndFreshLoadShareFingerprint() {
+        DataTableModel incremental = new DataTableModel();
+        incremental.addRows(new double[]{1, 2, 3}, new double[]{10, 20, 30}, 3);
+        incremental.addRows(new double[]{4, 5}, List.of(new double[]{40, 50}, new double[]{7, 8}, new double[]{NAN, 9}), null, null, 2);
+        incremental.addRow(6, 60);
+
+        DataTableModel fresh = new DataTableModel();
+        fresh.addRows(new double[]{6, 5, 4, 3, 2, 1},
+                List.of(new double[]{60, 50, 40, 30, 20, 10}, new double[]{NAN, 8, 7, NAN, NAN, NAN}, new double[]{NAN, 9, NAN, NAN, NAN, NAN}),
+                null, null, 6);
+
+        assertEquals(fresh.fingerprint(), incremental.fingerprint());
+    }
+
+    @Test
+    void fingerprintFollowsEdits() {
+        DataTableModel model = new DataTableModel();
+        model.addRows(new double[]{1, 2, 3}, List.of(new double[]{10, 20, 30}, new double[]{NAN, 5, NAN}), null, null, 3);
+        long before = model.fingerprint();
+        // The same value in another series is a different table
+        model.setValueAt(null, 1, DataTableModel.Y + 1);
+        model.setValueAt(5.0, 1, DataTableModel.Y);
+        assertNotEquals(before, model.fingerprint());
+        model.setValueAt(20.0, 1, DataTableModel.Y);
+        model.setValueAt(5.0, 1, DataTableModel.Y + 1);
+        assertEquals(before, model.fingerprint());
+        model.sortBy(DataTableModel.Y, false);
+        assertEquals(before, model.fingerprint());
+    }
+
+    @Test
+    void chartPointsAndRangeFollowEdits() {
+        DataTableModel model = new DataTableModel();
+        model.addRows(new double[]{3, 1, 2, 5}, new double[]{30, 10, 20, 50}, 4);
+        model.addRow(4, 40);
+        model.setValueAt(null, 1, DataTableModel.Y);
+        model.removeRows(new int[]{3});
+        assertArrayEquals(new double[]{2, 4}, model.xRange());
+        model.sortBy(DataTableModel.X, false);
+        double[][] all = model.points().view(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 100);
+        assertArrayEquals(new double[]{2, 3, 4}, all[0]);
+        assertArrayEquals(new double[]{20, 30, 40}, all[1]);
+        double[][] snapshot = model.snapshotSortedByX();
+        assertArrayEquals(snapshot[0], all[0]);
+        model.clear();
+        assertEquals(0, model.points().size());
+    }
+
+    @Test
+    void emptyCellsStayLastInBothSortDirections() {
+        DataTableModel model = new DataTableModel();
+        model.addRows(new double[]{1, 2, 3, 4}, new double[]{20, NAN, 10, 30}, 4);
+        model.sortBy(DataTableModel.Y, false);
+        assertArrayEquals(new double[]{4, 1, 3, 2}, model.columns()[0]);
+        model.sortBy(DataTableModel.Y, true);
+        assertArrayEquals(new double[]{3, 1, 4, 2}, model.columns()[0]);
+    }
+}
@@ -0,0 +1,92 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DelimitedImporterTest {
+
+    @Test
+    void numbersMatchParseDoubleBitForBit() {
+        Random r = new Random(3);
+        String[] tokens = new String[50_000];
+        StringBuilder text = new StringBuilder();
+        for (int k = 0; k < tokens.length; k++) {
+            String t;
+            switch (k % 6) {
+                case 0: t = Double.toString(r.nextGaussian() * Math.pow(10, r.nextInt(40) - 20)); break;
+                case 1: t = String.format(Locale.ROOT, "%.6f", r.nextGaussian() * 1000); break;
+                case 2: t = Integer.toString(r.nextInt()); break;
+                case 3: t = String.format(Locale.ROOT, "%.3e", r.nextDouble() * 1e5); break;
+                case 4: t = String.format(Locale.ROOT, "%.17f", r.nextDouble()); break;
+                default: t = "-0.0" + r.nextInt(1000) + "E+" + r.nextInt(30);
+            }
+            tokens[k] = t;
+            text.append(t).append('\t').append(k).append('\n');
+        }
+        DelimitedImporter.Result result = DelimitedImporter.parse(text.toString());
+        assertEquals(tokens.length, result.rows());
+        for (int k = 0; k < tokens.length; k++) {
+            assertEquals(Double.doubleToLongBits(Double.parseDouble(tokens[k])), Double.doubleToLongBits(result.xs().get(k)), tokens[k]);
+        }
+    }
+
+    @Test
+    void decimalCommaUnlessCommaDelimits() {
+        DelimitedImporter.Result semicolon = DelimitedImporter.parse("1,5;2,25\n3;4,0\n");
+        assertEquals(DelimitedImporter.Delimiter.TAB_OR_SEMICOLON, semicolon.delimiter);
+        assertArrayEquals(new double[]{1.5, 3}, semicolon.xs().toArray());
+        assertArrayEquals(new double[]{2.25, 4}, semicolon.ys().toArray());
+
+        DelimitedImporter.Result comma = DelimitedImporter.parse("1.5,2\n3,4e1\n");
+        assertEquals(DelimitedImporter.Delimiter.COMMA, comma.delimiter);
+        assertArrayEquals(new double[]{2, 40}, comma.ys().toArray());
+    }
+
+    @Test
+    void skipsTextAndKeepsHeaderOfMultiColumnData() {
+        DelimitedImporter.Result r = DelimitedImporter.parse("x,y1,w\n1,2,0.5\n2,,1\nnot,a,row\n3,4,2,\n", 8);
+        assertEquals(3, r.columns.size());
+        assertArrayEquals(new String[]{"x", "y1", "w"}, r.header);
+        assertEquals(2, r.skippedLines);
+        assertTrue(Double.isNaN(r.ys().get(1)));
+        assertEquals(2, r.weightColumn());
+        assertArrayEquals(new int[]{1}, r.seriesColumns());
+    }
+
+    @Test
+    void onlyAHeaderMakesAWeightColumn() {
+        DelimitedImporter.Result headerless = DelimitedImporter.parse("1\t2\t3\n4\t5\t6\n", 8);
+        assertEquals(-1, headerless.weightColumn());
+        assertArrayEquals(new int[]{1, 2}, headerless.seriesColumns());
+
+        DelimitedImporter.Result weighted = DelimitedImporter.parse("x;y;Weight\n1;2;-1\n2;3;\n3;4;0\n", 8);
+        assertEquals(2, weighted.weightColumn());
+        assertEquals(2, weighted.invalidWeights());
+    }
+
+    @Test
+    void keepsOnlyXAndYByDefault() {
+        DelimitedImporter.Result r = DelimitedImporter.parse("1 2 3\n4 5 6\n");
+        assertEquals(DelimitedImporter.Delimiter.WHITESPACE, r.delimiter);
+        assertEquals(2, r.columns.size());
+        assertArrayEquals(new double[]{2, 5}, r.ys().toArray());
+    }
+
+    @Test
+    void countsRowsWiderThanTheFirst() {
+        DelimitedImporter.Result r = DelimitedImporter.parse("1,2\r3,4,5\r6,7,\r8\r", 8);
+        assertEquals(2, r.columns.size());
+        assertEquals(3, r.rows());
+        assertEquals(1, r.raggedRows);
+        assertEquals(1, r.skippedLines);
+        assertArrayEquals(new double[]{2, 4, 7}, r.ys().toArray());
+        // Keeping X and Y only is not raggedness
+        assertEquals(0, DelimitedImporter.parse("1 2 3\n4 5 6 7\n").raggedRows);
+    }
+}
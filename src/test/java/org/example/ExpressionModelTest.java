@@ -0,0 +1,89 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ExpressionModelTest {
+
+    private static final String[] FORMULAS = {
+            "a*exp(-b*x)+c", "y = a + b*x + c*x^2", "a*sin(b*x+c)", "a/(1+exp(-b*(x-c)))", "a*x^b",
+            "a*tanh(b*x)+sqrt(c^2+x^2)*d", "e^(a*x)*b + log10(abs(c*x)+1)", "a*2^(b*x)", "a*cosh(b*x)/(c+x*x)",
+            "a**2*x - atan(b*x) + ln(c)", "x/a - b/(x + c)"
+    };
+
+    private static double valueAt(ExpressionModel m, double x, double[] params) {
+        double[] out = new double[1];
+        m.evaluate(new double[]{x}, 0, 1, params, out);
+        return out[0];
+    }
+
+    @Test
+    void parametersAreNamedAlphabetically() {
+        ExpressionModel m = ExpressionModel.compile("k*x + b*exp(-x/tau)");
+        assertArrayEquals(new String[]{"b", "k", "tau"}, m.parameterNames());
+        assertEquals("k*x + b*exp(-x/tau)", m.name());
+    }
+
+    @Test
+    void evaluatesLikeTheFormula() {
+        ExpressionModel m = ExpressionModel.compile("a*exp(-b*x)+c");
+        double[] xs = new double[1000];
+        for (int i = 0; i < xs.length; i++) xs[i] = i * 0.01;
+        double[] params = {2, 0.7, -1}, out = new double[xs.length];
+        m.evaluate(xs, 0, xs.length, params, out);
+        for (int i = 0; i < xs.length; i++) assertEquals(2 * Math.exp(-0.7 * xs[i]) - 1, out[i], 1e-15);
+    }
+
+    @Test
+    void gradientsMatchFiniteDifferencesAndJacobian() {
+        Random r = new Random(1);
+        for (String f : FORMULAS) {
+            ExpressionModel m = ExpressionModel.compile(f);
+            int p = m.parameterNames().length;
+            double[] params = new double[p];
+            for (int k = 0; k < p; k++) params[k] = 0.5 + r.nextDouble();
+            double[] xs = new double[700];
+            for (int i = 0; i < xs.length; i++) xs[i] = 0.1 + 3 * r.nextDouble();
+            double[] values = new double[xs.length], evaluated = new double[xs.length];
+            double[][] jacobian = new double[xs.length][p];
+            m.valueAndJacobian(xs, params, values, jacobian);
+            m.evaluate(xs, 0, xs.length, params, evaluated);
+            assertArrayEquals(evaluated, values, 0, f);
+            double[] g = new double[p];
+            for (int i = 0; i < xs.length; i += 37) {
+                m.gradient(xs[i], params, g);
+                assertArrayEquals(g, jacobian[i], 0, f);
+                for (int k = 0; k < p; k++) {
+                    double h = 1e-6 * Math.max(1, Math.abs(params[k]));
+                    double[] up = params.clone(), down = params.clone();
+                    up[k] += h;
+                    down[k] -= h;
+                    double fd = (valueAt(m, xs[i], up) - valueAt(m, xs[i], down)) / (2 * h);
+                    assertEquals(fd, g[k], 1e-5 * Math.max(1, Math.abs(fd)), f + " d/d" + m.parameterNames()[k]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void rejectsMalformedFormulas() {
+        for (String bad : new String[]{"", "a*", "a*foo(x)", "(a+x", "2*x", "a x", "a*exp x"}) {
+            assertThrows(IllegalArgumentException.class, () -> ExpressionModel.compile(bad), bad);
+        }
+    }
+
+    @Test
+    void dividingByAParameterRoundsLikeOneDivision() {
+        ExpressionModel m = ExpressionModel.compile("x/a");
+        double[] xs = new double[1000];
+        for (int i = 0; i < xs.length; i++) xs[i] = i * 0.37 + 1;
+        double[] out = new double[xs.length];
+        m.evaluate(xs, 0, xs.length, new double[]{3}, out);
+        for (int i = 0; i < xs.length; i++) assertEquals(xs[i] / 3, out[i], 0.0);
+    }
+}
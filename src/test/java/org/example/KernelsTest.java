@@ -0,0 +1,94 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/** The scalar kernels against plain loops, and the vector kernels (under -Pvector) against the scalar ones. */
+class KernelsTest {
+
+    private static final Kernels SCALAR = Kernels.scalar();
+
+    @Test
+    void scalarHornerEvaluatesPolynomial() {
+        double[] c = {1, -2, 0.5};
+        double[] xs = {0, 1, 2, 3, 4}, out = new double[3];
+        SCALAR.horner(c, xs, 1, 4, out);
+        assertArrayEquals(new double[]{-0.5, -1, -0.5}, out);
+    }
+
+    @Test
+    void scalarPowerSumsSpreadPointsOverLanes() {
+        Random r = new Random(2);
+        int n = 103, degree = 2;
+        double[] u = new double[n], ys = new double[n], ws = new double[n];
+        for (int j = 0; j < n; j++) {
+            u[j] = r.nextDouble() * 2 - 1;
+            ys[j] = r.nextGaussian();
+            ws[j] = r.nextDouble();
+        }
+        double[] lanes = new double[(3 * degree + 2) * Kernels.LANES];
+        SCALAR.powerSums(u, ys, ws, 0, n, degree, lanes);
+        for (int k = 0; k <= 2 * degree; k++) {
+            double want = 0;
+            for (int j = 0; j < n; j++) want += ws[j] * Math.pow(u[j], k);
+            assertEquals(want, Kernels.fold(lanes, k), 1e-12);
+        }
+        for (int k = 0; k <= degree; k++) {
+            double want = 0;
+            for (int j = 0; j < n; j++) want += ws[j] * ys[j] * Math.pow(u[j], k);
+            assertEquals(want, Kernels.fold(lanes, 2 * degree + 1 + k), 1e-12);
+        }
+    }
+
+    @Test
+    void vectorMatchesScalarBitForBit() {
+        Kernels vector = Kernels.vector();
+        assumeTrue(vector != null, "vector kernels not built or not supported here");
+        Random r = new Random(21);
+        for (int trial = 0; trial < 2000; trial++) {
+            // Ragged lengths and offsets exercise the loop tails
+            int n = 1 + r.nextInt(67), from = r.nextInt(5), degree = 1 + r.nextInt(3);
+            double[] xs = new double[from + n], ys = new double[from + n], ws = r.nextBoolean() ? new double[from + n] : null;
+            double[] u = new double[n], yhat = new double[n];
+            for (int i = 0; i < from + n; i++) {
+                xs[i] = r.nextGaussian() * 10;
+                ys[i] = r.nextInt(20) == 0 ? Double.NaN : r.nextGaussian() * 100;
+                if (ws != null) ws[i] = r.nextInt(10) == 0 ? 0 : r.nextDouble();
+            }
+            for (int j = 0; j < n; j++) {
+                u[j] = r.nextDouble() * 2 - 1;
+                yhat[j] = ys[from + j] + r.nextGaussian();
+            }
+            double[] c = new double[degree + 1];
+            for (int k = 0; k <= degree; k++) c[k] = r.nextGaussian();
+
+            double[] a = new double[n], b = new double[n];
+            SCALAR.horner(c, xs, from, from + n, a);
+            vector.horner(c, xs, from, from + n, b);
+            assertBits(a, b, "horner", trial);
+
+            a = new double[(3 * degree + 2) * Kernels.LANES];
+            b = a.clone();
+            SCALAR.powerSums(u, ys, ws, from, n, degree, a);
+            vector.powerSums(u, ys, ws, from, n, degree, b);
+            assertBits(a, b, "powerSums", trial);
+
+            a = new double[Kernels.MOMENT_SLOTS];
+            b = a.clone();
+            SCALAR.residualMoments(ys, ws, from, yhat, n, a);
+            vector.residualMoments(ys, ws, from, yhat, n, b);
+            assertBits(a, b, "residualMoments", trial);
+        }
+    }
+
+    private static void assertBits(double[] want, double[] got, String kernel, int trial) {
+        for (int i = 0; i < want.length; i++) {
+            assertEquals(Double.doubleToLongBits(want[i]), Double.doubleToLongBits(got[i]), kernel + " trial " + trial + " at " + i);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LinearLeastSquaresTest {
+
+    private static double[] line(double[] xs, double... c) {
+        double[] ys = new double[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            double v = 0;
+            for (int k = c.length - 1; k >= 0; k--) v = v * xs[i] + c[k];
+            ys[i] = v;
+        }
+        return ys;
+    }
+
+    @Test
+    void recoversExactPolynomialWithBothSolvers() {
+        double[] xs = new double[50];
+        for (int i = 0; i < xs.length; i++) xs[i] = 100 + 0.5 * i;
+        double[] c = {3, -2, 0.25, -0.001};
+        double[] ys = line(xs, c);
+        for (LinearLeastSquares.Solver solver : LinearLeastSquares.Solver.values()) {
+            double[] fit = LinearLeastSquares.fit(xs, ys, LinearLeastSquares.Transform.IDENTITY, 3, solver);
+            double[] back = line(xs, fit);
+            for (int i = 0; i < xs.length; i++) assertEquals(ys[i], back[i], 1e-7 * Math.abs(ys[i]), solver.name());
+        }
+    }
+
+    @Test
+    void solversAgreeOnNoisyData() {
+        Random r = new Random(7);
+        double[] xs = new double[500], ys = new double[500];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = r.nextDouble() * 10;
+            ys[i] = 1 + 2 * xs[i] - 0.3 * xs[i] * xs[i] + r.nextGaussian();
+        }
+        double[] chol = LinearLeastSquares.fit(xs, ys, LinearLeastSquares.Transform.IDENTITY, 2, LinearLeastSquares.Solver.CHOLESKY);
+        double[] qr = LinearLeastSquares.fit(xs, ys, LinearLeastSquares.Transform.IDENTITY, 2, LinearLeastSquares.Solver.QR);
+        assertArrayEquals(chol, qr, 1e-9);
+    }
+
+    @Test
+    void zeroWeightIgnoresPoint() {
+        double[] xs = {1, 2, 3, 4, 5};
+        double[] ys = {2, 4, 6, 8, 1000};
+        double[] ws = {1, 1, 1, 1, 0};
+        for (LinearLeastSquares.Solver solver : LinearLeastSquares.Solver.values()) {
+            double[] fit = LinearLeastSquares.fit(xs, ys, ws, LinearLeastSquares.Transform.IDENTITY, 1, solver);
+            assertArrayEquals(new double[]{0, 2}, fit, 1e-12, solver.name());
+        }
+    }
+
+    @Test
+    void transformsFitInTransformedRegressor() {
+        double[] xs = {1, 2, 4, 8, 16};
+        double[] ys = new double[xs.length];
+        for (int i = 0; i < xs.length; i++) ys[i] = 5 - 3 * Math.log(xs[i]);
+        double[] fit = LinearLeastSquares.fit(xs, ys, LinearLeastSquares.Transform.LOG, 1, LinearLeastSquares.Solver.CHOLESKY);
+        assertArrayEquals(new double[]{5, -3}, fit, 1e-12);
+    }
+
+    @Test
+    void unscaleExpandsScaledPowers() {
+        // 1 + 2u + 3u² with u = (t - 4)/2 is 0.75·t² - 5t + 9
+        double[] out = LinearLeastSquares.unscale(new double[]{1, 2, 3}, 4, 2);
+        assertArrayEquals(new double[]{9, -5, 0.75}, out, 1e-12);
+    }
+
+    @Test
+    void rejectsUnderdeterminedData() {
+        assertThrows(IllegalArgumentException.class, () -> LinearLeastSquares.fit(new double[]{1, 2}, new double[]{1, 2},
+                LinearLeastSquares.Transform.IDENTITY, 2, LinearLeastSquares.Solver.CHOLESKY));
+        assertThrows(IllegalArgumentException.class, () -> LinearLeastSquares.fit(new double[]{1, 1, 1}, new double[]{1, 2, 3},
+                LinearLeastSquares.Transform.IDENTITY, 1, LinearLeastSquares.Solver.QR));
+    }
+}
@@ -0,0 +1,41 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedDatasetTest {
+
+    @Test
+    void convertedCopyIsDeletedOnClose(@TempDir Path dir) throws Exception {
+        Path csv = dir.resolve("points.csv");
+        Files.writeString(csv, "x,y,w\n1,2,1\n2,4,3\n3,6,1\n");
+        MappedDataset data = MappedDataset.convert(csv, 8);
+        Path copy = data.path();
+        assertTrue(Files.exists(copy));
+        assertEquals(3, data.rows());
+        assertEquals(2, data.weightColumn());
+        assertEquals(4, data.get(1, 1));
+        data.close();
+        assertFalse(Files.exists(copy));
+        assertThrows(IllegalStateException.class, () -> data.get(1, 1));
+        data.close();
+    }
+
+    @Test
+    void openedFileIsKept(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("points" + MappedDataset.EXTENSION);
+        try (MappedDataset.Writer writer = new MappedDataset.Writer(file, new String[]{"x", "y"})) {
+            writer.append(new double[]{1, 2}, 2);
+        }
+        MappedDataset.open(file).close();
+        assertTrue(Files.exists(file));
+    }
+}
@@ -0,0 +1,19 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModelRegistryTest {
+
+    @Test
+    void keepsOnlyTheRecentlyUsedFormulas() {
+        CurveModel first = ModelRegistry.resolve("a*x + b");
+        assertSame(first, ModelRegistry.resolve(" a*x + b "));
+        for (int i = 0; i < ModelRegistry.MAX_COMPILED; i++) ModelRegistry.resolve("a*x + " + i + "*b");
+        assertTrue(ModelRegistry.all().size() <= ModelRegistry.MAX_COMPILED);
+        assertNotSame(first, ModelRegistry.resolve("a*x + b"));
+    }
+}
@@ -0,0 +1,46 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NumberParserTest {
+
+    private final NumberParser numbers = new NumberParser();
+
+    private double parse(String s, boolean decimalComma) {
+        ByteBuffer b = ByteBuffer.wrap(("[" + s + "]").getBytes(StandardCharsets.UTF_8));
+        return numbers.parse(b, 1, b.limit() - 1, decimalComma);
+    }
+
+    @Test
+    void fastAndFallbackPathsAgreeWithParseDouble() {
+        String[] tokens = {"0", "-0.0", "+12.5", "1e22", "1e23", "123456789012345", "1234567890123456789",
+                "0.1", "-7.25E-3", "4.9e-324", "1.7976931348623157e308", "Infinity", "NaN"};
+        for (String t : tokens) {
+            assertEquals(Double.doubleToLongBits(Double.parseDouble(t)), Double.doubleToLongBits(parse(t, false)), t);
+            assertFalse(numbers.failed(), t);
+        }
+    }
+
+    @Test
+    void decimalCommaOnlyWhenCommasCannotDelimit() {
+        assertEquals(2.5, parse("2,5", true));
+        assertEquals(-1.25e3, parse("-1,25e3", true));
+        assertTrue(Double.isNaN(parse("2,5", false)));
+        assertTrue(numbers.failed());
+    }
+
+    @Test
+    void malformedTokensFail() {
+        for (String t : new String[]{"", "-", "1.2.3", "abc", "1e", "1e+x", "1,5,2"}) {
+            assertTrue(Double.isNaN(parse(t, true)), t);
+            assertTrue(numbers.failed(), t);
+        }
+    }
+}
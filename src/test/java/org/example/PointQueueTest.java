@@ -0,0 +1,43 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PointQueueTest {
+
+    @Test
+    void roundsCapacityUpAndRefusesWhenFull() {
+        PointQueue q = new PointQueue(5);
+        assertEquals(8, q.capacity());
+        for (int i = 0; i < 8; i++) assertTrue(q.offer(i, -i));
+        assertFalse(q.offer(8, -8));
+        assertEquals(8, q.size());
+        assertEquals(3, q.drain((x, y) -> { }, 3));
+        assertTrue(q.offer(8, -8));
+    }
+
+    @Test
+    void keepsOrderAcrossThreads() throws InterruptedException {
+        PointQueue q = new PointQueue(1000);
+        int n = 200_000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < n; i++) while (!q.offer(i, -i)) Thread.yield();
+        });
+        producer.start();
+        long[] next = {0};
+        boolean[] ordered = {true};
+        while (next[0] < n) {
+            int got = q.drain((x, y) -> {
+                if (x != next[0] || y != -next[0]) ordered[0] = false;
+                next[0]++;
+            }, 512);
+            if (got == 0) Thread.yield();
+        }
+        producer.join();
+        assertTrue(ordered[0]);
+        assertEquals(0, q.size());
+    }
+}
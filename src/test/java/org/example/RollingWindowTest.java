@@ -0,0 +1,68 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RollingWindowTest {
+
+    @Test
+    void extremesFollowTheWindow() {
+        Random r = new Random(3);
+        RollingWindow w = new RollingWindow(RollingWindow.Mode.SLIDING, 37, 0);
+        assertEquals(Double.POSITIVE_INFINITY, w.xMin());
+        ArrayDeque<Double> ref = new ArrayDeque<>();
+        for (int i = 0; i < 20_000; i++) {
+            double x = r.nextInt(50);
+            w.add(x, 0);
+            ref.addLast(x);
+            if (ref.size() > 37) ref.removeFirst();
+            assertEquals(Collections.min(ref), w.xMin(), "min after " + i);
+            assertEquals(Collections.max(ref), w.xMax(), "max after " + i);
+        }
+        assertEquals(37, w.size());
+    }
+
+    @Test
+    void slidingSnapshotIsSortedAndUnweighted() {
+        RollingWindow w = new RollingWindow(RollingWindow.Mode.SLIDING, 4, 0);
+        double[] xs = {5, 1, 4, 2, 3, 0};
+        for (double x : xs) w.add(x, 10 * x);
+        RollingWindow.Snapshot s = w.snapshot();
+        assertArrayEquals(new double[]{0, 2, 3, 4}, s.xs);
+        assertArrayEquals(new double[]{0, 20, 30, 40}, s.ys);
+        assertNull(s.ws);
+    }
+
+    @Test
+    void decayingWeightsHalveEveryHalfLife() {
+        RollingWindow w = new RollingWindow(RollingWindow.Mode.DECAYING, 10, 2);
+        for (int i = 0; i < 5; i++) w.add(i, i);
+        RollingWindow.Snapshot s = w.snapshot();
+        assertEquals(1.0, s.ws[4], 1e-15);
+        assertEquals(0.5, s.ws[2], 1e-15);
+        assertEquals(0.25, s.ws[0], 1e-15);
+    }
+
+    @Test
+    void statsTrackTheSlidingWindow() {
+        RollingWindow w = new RollingWindow(RollingWindow.Mode.SLIDING, 50, 0);
+        SufficientStats stats = w.stats(LinearLeastSquares.Transform.IDENTITY);
+        for (int i = 0; i < 500; i++) w.add(i, i < 450 ? -i : 3 + 2 * i);
+        assertEquals(50, stats.count());
+        assertArrayEquals(new double[]{3, 2}, stats.solve(1).params, 1e-9);
+    }
+
+    @Test
+    void rejectsBadSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new RollingWindow(RollingWindow.Mode.SLIDING, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new RollingWindow(RollingWindow.Mode.DECAYING, 10, 0));
+    }
+}
@@ -0,0 +1,121 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScatterPyramidTest {
+
+    // The decimation contract over plain sorted arrays: first lowest and first highest point
+    // of each rank-aligned bucket, in X order
+    private static double[][] reference(double[] xs, double[] ys, double x0, double x1, int pixels) {
+        int from = 0, to = 0;
+        while (from < xs.length && xs[from] < x0) from++;
+        to = from;
+        while (to < xs.length && xs[to] <= x1) to++;
+        int m = to - from;
+        if (m <= 2 * pixels) return new double[][]{Arrays.copyOfRange(xs, from, to), Arrays.copyOfRange(ys, from, to)};
+        int size = Integer.highestOneBit(Math.max(1, (m - 1) / pixels)) << 1;
+        List<double[]> out = new ArrayList<>();
+        for (int b = from / size; b <= (to - 1) / size; b++) {
+            int bFrom = Math.max(from, b * size), bTo = Math.min(to, (b + 1) * size), mn = bFrom, mx = bFrom;
+            for (int i = bFrom + 1; i < bTo; i++) {
+                if (ys[i] < ys[mn]) mn = i;
+                if (ys[i] > ys[mx]) mx = i;
+            }
+            out.add(new double[]{xs[Math.min(mn, mx)], ys[Math.min(mn, mx)]});
+            if (mn != mx) out.add(new double[]{xs[Math.max(mn, mx)], ys[Math.max(mn, mx)]});
+        }
+        double[][] view = new double[2][out.size()];
+        for (int k = 0; k < out.size(); k++) {
+            view[0][k] = out.get(k)[0];
+            view[1][k] = out.get(k)[1];
+        }
+        return view;
+    }
+
+    private static void assertSameView(double[][] want, double[][] got) {
+        assertArrayEquals(want[0], got[0]);
+        assertArrayEquals(want[1], got[1]);
+    }
+
+    @Test
+    void bulkIndexDecimatesLikeThePlainScan() {
+        Random r = new Random(8);
+        int n = 100_000;
+        double[] xs = new double[n], ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = i / 3;
+            ys[i] = r.nextGaussian();
+        }
+        ScatterPyramid p = new ScatterPyramid(xs, ys);
+        assertEquals(n, p.size());
+        assertEquals(0, p.minX());
+        assertEquals(xs[n - 1], p.maxX());
+        for (int pixels : new int[]{100, 777, 4000, 60_000}) {
+            assertSameView(reference(xs, ys, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, pixels),
+                    p.view(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, pixels));
+            assertSameView(reference(xs, ys, 1234.5, 20_001, pixels), p.view(1234.5, 20_001, pixels));
+        }
+        assertEquals(3 * 100, p.count(100, 199));
+    }
+
+    @Test
+    void editsKeepTheIndexEqualToASortedList() {
+        Random r = new Random(9);
+        List<double[]> ref = new ArrayList<>();
+        ScatterPyramid p = new ScatterPyramid();
+        for (int step = 0; step < 30_000; step++) {
+            if (ref.isEmpty() || r.nextInt(3) > 0) {
+                double x = r.nextInt(2000), y = r.nextInt(100);
+                int at = 0;
+                while (at < ref.size() && ref.get(at)[0] <= x) at++;
+                ref.add(at, new double[]{x, y});
+                p.add(x, y);
+            } else {
+                // The index drops the first equal point, so the list does too
+                double[] gone = ref.get(r.nextInt(ref.size()));
+                int at = 0;
+                while (ref.get(at)[0] != gone[0] || ref.get(at)[1] != gone[1]) at++;
+                ref.remove(at);
+                assertTrue(p.remove(gone[0], gone[1]));
+            }
+            if (step % 1000 == 999) {
+                double[] xs = new double[ref.size()], ys = new double[ref.size()];
+                for (int i = 0; i < xs.length; i++) {
+                    xs[i] = ref.get(i)[0];
+                    ys[i] = ref.get(i)[1];
+                }
+                double[][] all = p.view(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, Integer.MAX_VALUE / 2);
+                assertArrayEquals(xs, all[0]);
+                assertEquals(xs.length, p.size());
+                assertEquals(xs[0], p.minX());
+                assertEquals(xs[xs.length - 1], p.maxX());
+                assertEquals(p.count(500, 999), (int) Arrays.stream(xs).filter(x -> x >= 500 && x <= 999).count());
+                assertSameView(reference(xs, ys, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 300),
+                        p.view(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 300));
+                assertSameView(reference(xs, ys, 700, 1500, 50), p.view(700, 1500, 50));
+            }
+        }
+        assertFalse(p.remove(-1, 0));
+    }
+
+    @Test
+    void mergesLargeBatchesAfterExistingEqualPoints() {
+        ScatterPyramid p = new ScatterPyramid();
+        p.add(1, 10);
+        p.add(2, 20);
+        p.addAll(new double[]{0, 1, 1, 3}, new double[]{0, 11, 12, 30}, 4);
+        double[][] all = p.view(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 100);
+        assertArrayEquals(new double[]{0, 1, 1, 1, 2, 3}, all[0]);
+        assertArrayEquals(new double[]{0, 10, 11, 12, 20, 30}, all[1]);
+    }
+}
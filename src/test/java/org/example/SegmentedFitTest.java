@@ -0,0 +1,88 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentedFitTest {
+
+    private static double sse(double[] xs, double[] ys, int from, int to, int degree) {
+        double[] x = Arrays.copyOfRange(xs, from, to), y = Arrays.copyOfRange(ys, from, to);
+        double[] c = LinearLeastSquares.fit(x, y, LinearLeastSquares.Transform.IDENTITY, degree, LinearLeastSquares.Solver.QR);
+        double s = 0;
+        for (int i = 0; i < x.length; i++) {
+            double v = 0;
+            for (int k = degree; k >= 0; k--) v = v * x[i] + c[k];
+            s += (y[i] - v) * (y[i] - v);
+        }
+        return s;
+    }
+
+    @Test
+    void findsTheBestSplitsOfSmallData() {
+        Random r = new Random(4);
+        int n = 60;
+        double[] xs = new double[n], ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = i + r.nextDouble() * 0.5;
+            ys[i] = (xs[i] < 20 ? xs[i] : xs[i] < 41 ? 40 - xs[i] : 0.5 * xs[i] - 21.5) + r.nextGaussian();
+        }
+        for (int degree = 1; degree <= 2; degree++) {
+            // Exhaustive search over both breakpoints, at least degree + 1 points per segment
+            int m = degree + 1;
+            double bestSse = Double.POSITIVE_INFINITY;
+            for (int a = m; a <= n - 2 * m; a++) {
+                double left = sse(xs, ys, 0, a, degree);
+                for (int b = a + m; b <= n - m; b++) {
+                    bestSse = Math.min(bestSse, left + sse(xs, ys, a, b, degree) + sse(xs, ys, b, n, degree));
+                }
+            }
+            ModelType model = degree == 1 ? ModelType.LINEAR : ModelType.POLYNOMIAL;
+            SegmentedFit.Result result = SegmentedFit.fit(xs, ys, null, model, degree, 2, FitMonitor.NONE);
+            assertEquals(bestSse, result.rmse * result.rmse * n, 1e-9 * bestSse, "degree " + degree);
+            assertEquals(3, result.segments.size());
+            for (FitResult f : result.segments) assertEquals(degree, f.degree);
+        }
+    }
+
+    @Test
+    void recoversKnotsOfNoiselessLines() {
+        int n = 5000;
+        double[] xs = new double[n], ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = i * 0.02;
+            ys[i] = xs[i] < 30 ? 2 + xs[i] : xs[i] < 70 ? 62 - xs[i] : -8;
+        }
+        SegmentedFit.Result result = SegmentedFit.fit(xs, ys, null, ModelType.LINEAR, 1, 2, FitMonitor.NONE);
+        assertArrayEquals(new double[]{30, 70}, result.breaks, 0.02);
+        assertEquals(0, result.rmse, 1e-9);
+        assertTrue(result.toDisplayString().startsWith("Model: Piecewise linear"));
+    }
+
+    @Test
+    void monitorCanCancel() {
+        double[] xs = new double[100], ys = new double[100];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = i;
+            ys[i] = i % 7;
+        }
+        assertThrows(CancellationException.class, () -> SegmentedFit.fit(xs, ys, null, ModelType.LINEAR, 1, 3, p -> {
+            throw new CancellationException();
+        }));
+    }
+
+    @Test
+    void rejectsUnsupportedRequests() {
+        double[] xs = {0, 1, 2, 3, 4, 5}, ys = {0, 1, 2, 1, 0, 1};
+        assertThrows(IllegalArgumentException.class, () -> SegmentedFit.fit(xs, ys, null, ModelType.EXPONENTIAL, 1, 1, FitMonitor.NONE));
+        assertThrows(IllegalArgumentException.class, () -> SegmentedFit.fit(xs, ys, null, ModelType.LINEAR, 1, 0, FitMonitor.NONE));
+        assertThrows(IllegalArgumentException.class, () -> SegmentedFit.fit(xs, ys, null, ModelType.POLYNOMIAL, 2, 2, FitMonitor.NONE));
+    }
+}
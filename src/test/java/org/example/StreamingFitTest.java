@@ -0,0 +1,38 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamingFitTest {
+
+    @Test
+    void sampledFitReportsTheMetricsOfEveryRow(@TempDir Path dir) throws Exception {
+        Random r = new Random(2);
+        int n = StreamingFit.MAX_SAMPLE + 40_000;
+        double[] xs = new double[n], ys = new double[n], ws = new double[n];
+        Path file = dir.resolve("rows.cfcol");
+        try (MappedDataset.Writer writer = new MappedDataset.Writer(file, new String[]{"x", "y", "w"})) {
+            for (int i = 0; i < n; i++) {
+                xs[i] = i * 1e-5;
+                // A large offset next to a small spread is where plain running sums lose digits
+                ys[i] = 1e6 + 3 * Math.exp(0.5 * xs[i]) + r.nextGaussian() * 0.01;
+                ws[i] = 1 + r.nextInt(3);
+                writer.append(new double[]{xs[i], ys[i], ws[i]}, 3);
+            }
+        }
+        FitResult fit;
+        try (MappedDataset data = MappedDataset.open(file)) {
+            fit = StreamingFit.fit(data, 1, 2, ModelType.EXPONENTIAL, 0, FitSettings.DEFAULT, FitMonitor.NONE);
+        }
+        FitEngine.Metrics all = FitEngine.metrics(xs, ys, ws, ModelEvaluator.of(ModelType.EXPONENTIAL, fit.params));
+        assertEquals(all.rmse, fit.rmse, 1e-12 * all.rmse);
+        assertEquals(all.r2, fit.r2, 1e-12);
+        assertArrayEquals(new double[]{0, xs[n - 1]}, new double[]{fit.xmin, fit.xmax});
+    }
+}
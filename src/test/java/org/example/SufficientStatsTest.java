@@ -0,0 +1,146 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SufficientStatsTest {
+
+    private static final double[] CUBIC = {4, -1.5, 0.2, -0.01};
+
+    private static double cubic(double x) {
+        return ((CUBIC[3] * x + CUBIC[2]) * x + CUBIC[1]) * x + CUBIC[0];
+    }
+
+    @Test
+    void matchesDirectSolve() {
+        Random r = new Random(11);
+        int n = 2000;
+        double[] xs = new double[n], ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = r.nextDouble() * 20;
+            ys[i] = cubic(xs[i]) + r.nextGaussian();
+        }
+        SufficientStats stats = new SufficientStats(LinearLeastSquares.Transform.IDENTITY);
+        stats.addAll(xs, ys, n);
+        double[] direct = LinearLeastSquares.fit(xs, ys, LinearLeastSquares.Transform.IDENTITY, 3, LinearLeastSquares.Solver.QR);
+        assertArrayEquals(direct, stats.solve(3).params, 1e-8);
+    }
+
+    @Test
+    void slidingWindowMatchesFreshStats() {
+        Random r = new Random(5);
+        int n = 20_000, window = 300;
+        double[] xs = new double[n], ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            // The window drifts, forcing re-bases on the way
+            xs[i] = i * 0.01 + r.nextDouble();
+            ys[i] = 3 - 0.5 * xs[i] + r.nextGaussian() * 0.1;
+        }
+        SufficientStats rolling = new SufficientStats(LinearLeastSquares.Transform.IDENTITY);
+        for (int i = 0; i < n; i++) {
+            rolling.add(xs[i], ys[i]);
+            if (i >= window) rolling.remove(xs[i - window], ys[i - window]);
+        }
+        SufficientStats fresh = new SufficientStats(LinearLeastSquares.Transform.IDENTITY);
+        fresh.addAll(Arrays.copyOfRange(xs, n - window, n), Arrays.copyOfRange(ys, n - window, n), window);
+        assertEquals(window, rolling.count());
+        SufficientStats.Solution a = rolling.solve(1), b = fresh.solve(1);
+        assertArrayEquals(b.params, a.params, 1e-9);
+        assertEquals(b.rmse, a.rmse, 1e-9);
+        assertEquals(b.r2, a.r2, 1e-9);
+    }
+
+    @Test
+    void weightedRemoveUndoesAdd() {
+        SufficientStats stats = new SufficientStats(LinearLeastSquares.Transform.IDENTITY);
+        for (int i = 0; i < 10; i++) stats.add(i, 2 * i + 1, 1 + i % 3);
+        stats.add(4.5, 500, 7);
+        stats.remove(4.5, 500, 7);
+        SufficientStats.Solution s = stats.solve(1);
+        assertArrayEquals(new double[]{1, 2}, s.params, 1e-9);
+        assertEquals(0, s.rmse, 1e-6);
+        assertEquals(1, s.r2, 1e-12);
+    }
+
+    @Test
+    void countsPointsOutsideTheDomain() {
+        SufficientStats stats = new SufficientStats(LinearLeastSquares.Transform.LOG);
+        stats.add(-1, 5);
+        stats.add(0, 5);
+        for (int i = 1; i <= 5; i++) stats.add(i, 2 + Math.log(i));
+        assertEquals(2, stats.outOfDomain());
+        assertEquals(5, stats.count());
+        assertArrayEquals(new double[]{2, 1}, stats.solve(1).params, 1e-12);
+        stats.remove(-1, 5);
+        assertEquals(1, stats.outOfDomain());
+    }
+
+    @Test
+    void residualsOfAnAlmostExactFit() {
+        Random r = new Random(3);
+        int n = 10_000;
+        double[] xs = new double[n], ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = 100 + r.nextDouble() * 1000;
+            ys[i] = 3 + 2 * xs[i] + 1e-4 * xs[i] * xs[i] + 1e-6 * r.nextGaussian();
+        }
+        SufficientStats stats = new SufficientStats(LinearLeastSquares.Transform.IDENTITY);
+        for (int i = 0; i < n; i++) stats.add(xs[i], ys[i]);
+        SufficientStats.Solution s = stats.solve(3);
+        double ss = 0;
+        for (int i = 0; i < n; i++) {
+            double f = ((s.params[3] * xs[i] + s.params[2]) * xs[i] + s.params[1]) * xs[i] + s.params[0];
+            ss += (ys[i] - f) * (ys[i] - f);
+        }
+        // Σdy² is about 1e11 here, the residual sum of squares 1e-8
+        assertEquals(Math.sqrt(ss / n), s.rmse, 1e-7);
+    }
+
+    @Test
+    void removingTheOutermostPointsNarrowsTheWindow() {
+        Random r = new Random(8);
+        int n = 20_000, window = 200;
+        double[] xs = new double[n], ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            // A hundred window widths of drift
+            xs[i] = i + r.nextDouble();
+            ys[i] = 1 + 1e-3 * (xs[i] % 1000) + r.nextGaussian() * 0.01;
+        }
+        SufficientStats rolling = new SufficientStats(LinearLeastSquares.Transform.IDENTITY);
+        // A far outlier that leaves again must not keep the scaling window wide either
+        rolling.add(-1e7, 0);
+        rolling.remove(-1e7, 0);
+        for (int i = 0; i < n; i++) {
+            rolling.add(xs[i], ys[i]);
+            if (i >= window) rolling.remove(xs[i - window], ys[i - window]);
+        }
+        SufficientStats fresh = new SufficientStats(LinearLeastSquares.Transform.IDENTITY);
+        fresh.addAll(Arrays.copyOfRange(xs, n - window, n), Arrays.copyOfRange(ys, n - window, n), window);
+        SufficientStats.Solution a = rolling.solve(2), b = fresh.solve(2);
+        for (int x = n - window; x < n; x += 20) {
+            assertEquals(polynomial(b.params, x), polynomial(a.params, x), 1e-8);
+        }
+        assertEquals(b.rmse, a.rmse, 1e-9);
+    }
+
+    private static double polynomial(double[] c, double x) {
+        double f = 0;
+        for (int k = c.length - 1; k >= 0; k--) f = f * x + c[k];
+        return f;
+    }
+
+    @Test
+    void rejectsTooFewPoints() {
+        SufficientStats stats = new SufficientStats(LinearLeastSquares.Transform.IDENTITY);
+        stats.add(1, 1);
+        stats.add(2, 2);
+        assertThrows(IllegalArgumentException.class, () -> stats.solve(2));
+        assertThrows(IllegalArgumentException.class, () -> stats.solve(SufficientStats.MAX_DEGREE + 1));
+    }
+}
@@ -0,0 +1,110 @@
+package org.example;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link Kernels} on the JDK Vector API, four doubles per operation. Only built by the
+ * {@code vector} Maven profile; loaded reflectively by {@link Kernels#vector()}.
+ * <p>
+ * Every lane does exactly what {@link Kernels.Scalar} does for the points it owns, so the
+ * results match the scalar kernels bit for bit; loop tails run the scalar code on the lanes.
+ * Vectors stay in locals (a shared constant vector merged into a loop value defeats the
+ * compiler's unboxing and costs several times the scalar loop).
+ */
+final class VectorKernels extends Kernels {
+
+    private static final VectorSpecies<Double> S = DoubleVector.SPECIES_256;
+
+    @Override String name() { return "vector"; }
+
+    // Narrower hardware would emulate the 256-bit species, slower than plain loops
+    @Override boolean supported() { return DoubleVector.SPECIES_PREFERRED.vectorBitSize() >= 256; }
+
+    @Override void horner(double[] c, double[] xs, int from, int to, double[] out) {
+        int last = c.length - 1, n = to - from, bound = S.loopBound(n), j = 0;
+        double top = c[last];
+        for (; j < bound; j += LANES) {
+            DoubleVector x = DoubleVector.fromArray(S, xs, from + j);
+            DoubleVector acc = DoubleVector.broadcast(S, top);
+            for (int k = last - 1; k >= 0; k--) acc = acc.mul(x).add(c[k]);
+            acc.intoArray(out, j);
+        }
+        for (; j < n; j++) {
+            double x = xs[from + j], acc = top;
+            for (int k = last - 1; k >= 0; k--) acc = acc * x + c[k];
+            out[j] = acc;
+        }
+    }
+
+    @Override void powerSums(double[] u, double[] ys, double[] ws, int from, int n, int degree, double[] lanes) {
+        int powers = 2 * degree + 1, ySums = powers * LANES, bound = S.loopBound(n), j = 0;
+        for (; j < bound; j += LANES) {
+            DoubleVector uj = DoubleVector.fromArray(S, u, j);
+            DoubleVector w = ws == null ? DoubleVector.broadcast(S, 1.0) : DoubleVector.fromArray(S, ws, from + j);
+            DoubleVector pk = w;
+            for (int k = 0; k < powers; k++) {
+                DoubleVector.fromArray(S, lanes, k * LANES).add(pk).intoArray(lanes, k * LANES);
+                pk = pk.mul(uj);
+            }
+            DoubleVector q = w.mul(DoubleVector.fromArray(S, ys, from + j));
+            for (int k = 0; k <= degree; k++) {
+                int at = ySums + k * LANES;
+                DoubleVector.fromArray(S, lanes, at).add(q).intoArray(lanes, at);
+                q = q.mul(uj);
+            }
+        }
+        for (; j < n; j++) {
+            int lane = j & (LANES - 1);
+            double w = ws == null ? 1.0 : ws[from + j], uj = u[j];
+            double pk = w;
+            for (int k = 0; k < powers; k++, pk *= uj) lanes[k * LANES + lane] += pk;
+            double q = w * ys[from + j];
+            for (int k = 0; k <= degree; k++, q *= uj) lanes[ySums + k * LANES + lane] += q;
+        }
+    }
+
+    @Override void residualMoments(double[] ys, double[] ws, int from, double[] yhat, int n, double[] lanes) {
+        int bound = S.loopBound(n), j = 0;
+        DoubleVector sumW = DoubleVector.fromArray(S, lanes, SUM_W), mean = DoubleVector.fromArray(S, lanes, MEAN);
+        DoubleVector m2 = DoubleVector.fromArray(S, lanes, M2), ss = DoubleVector.fromArray(S, lanes, SS_RES);
+        DoubleVector comp = DoubleVector.fromArray(S, lanes, SS_COMP);
+        for (; j < bound; j += LANES) {
+            DoubleVector w = ws == null ? DoubleVector.broadcast(S, 1.0) : DoubleVector.fromArray(S, ws, from + j);
+            DoubleVector y = DoubleVector.fromArray(S, ys, from + j);
+            DoubleVector r = y.sub(DoubleVector.fromArray(S, yhat, j));
+            DoubleVector v = w.mul(r).mul(r), t = ss.add(v);
+            VectorMask<Double> larger = ss.abs().compare(VectorOperators.GE, v.abs());
+            comp = comp.add(v.sub(t).add(ss).blend(ss.sub(t).add(v), larger));
+            ss = t;
+            // Zero weights keep their lane's moments
+            VectorMask<Double> weighted = w.compare(VectorOperators.NE, 0.0);
+            DoubleVector sw = sumW.add(w), d = y.sub(mean);
+            DoubleVector next = mean.add(d.mul(w).div(sw));
+            m2 = m2.blend(m2.add(w.mul(d).mul(y.sub(next))), weighted);
+            mean = mean.blend(next, weighted);
+            sumW = sumW.blend(sw, weighted);
+        }
+        sumW.intoArray(lanes, SUM_W);
+        mean.intoArray(lanes, MEAN);
+        m2.intoArray(lanes, M2);
+        ss.intoArray(lanes, SS_RES);
+        comp.intoArray(lanes, SS_COMP);
+        for (; j < n; j++) {
+            int l = j & (LANES - 1);
+            double w = ws == null ? 1.0 : ws[from + j], y = ys[from + j], r = y - yhat[j];
+            double v = w * r * r, s = lanes[SS_RES + l], t = s + v;
+            lanes[SS_COMP + l] += Math.abs(s) >= Math.abs(v) ? (s - t) + v : (v - t) + s;
+            lanes[SS_RES + l] = t;
+            if (w == 0) continue;
+            double sw = lanes[SUM_W + l] + w, m = lanes[MEAN + l];
+            double d = y - m;
+            m += d * w / sw;
+            lanes[SUM_W + l] = sw;
+            lanes[MEAN + l] = m;
+            lanes[M2 + l] += w * d * (y - m);
+        }
+    }
+}